@@ -0,0 +1,36 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The marker annotation that looks up a collection of keys in chunks via Mapper interface.
+ * The method must return a Map, be annotated with {@link MapKey} and take the keys as its only parameter.
+ * 标记注解--把键集合分块查询 结果按@MapKey指定的属性组织成Map
+ *
+ * @see org.apache.ibatis.session.SqlSessionUtil#selectByKeys(org.apache.ibatis.session.SqlSession, String,
+ *      java.util.Collection, String)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface BatchLookup {
+}
@@ -72,8 +72,29 @@ public @interface CacheNamespace {
      */
     boolean readWrite() default true;
 
+    /**
+     * 读写缓存的集合结果是否按需反序列化 不同块的行共享的对象会反序列化成不同的副本
+     *
+     * @return
+     */
+    boolean lazyCopy() default false;
+
     boolean blocking() default false;
 
+    /**
+     * 空结果的存活时间 毫秒 为0表示空结果和普通结果一样缓存
+     *
+     * @return
+     */
+    long negativeTtl() default 0;
+
+    /**
+     * 最多缓存的空结果数量
+     *
+     * @return
+     */
+    int negativeSize() default 1024;
+
     /**
      * Property values for a implementation object.
      *
@@ -16,8 +16,10 @@
 package org.apache.ibatis.binding;
 
 import org.apache.ibatis.annotations.Flush;
+import org.apache.ibatis.annotations.BatchLookup;
 import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.result.ColumnarResult;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
@@ -28,6 +30,7 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionUtil;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
@@ -117,6 +120,10 @@ public class MapperMethod {
                 else if (method.returnsCursor()) {
                     result = executeForCursor(sqlSession, args);
                 }
+                //如果返回的是按列读取的结果
+                else if (method.returnsColumns()) {
+                    result = executeForColumns(sqlSession, args);
+                }
                 //其他情形
                 else {
                     //转化参数
@@ -263,6 +270,22 @@ public class MapperMethod {
         return result;
     }
 
+    /**
+     * 按列读取的形式执行
+     *
+     * @param sqlSession
+     * @param args
+     * @return
+     */
+    private ColumnarResult executeForColumns(SqlSession sqlSession, Object[] args) {
+        Object param = method.convertArgsToSqlCommandParam(args);
+        if (method.hasRowBounds()) {
+            RowBounds rowBounds = method.extractRowBounds(args);
+            return SqlSessionUtil.selectColumns(sqlSession, command.getName(), param, rowBounds);
+        }
+        return SqlSessionUtil.selectColumns(sqlSession, command.getName(), param);
+    }
+
     /**
      * 转换成声明的集合
      *
@@ -317,6 +340,11 @@ public class MapperMethod {
      */
     private <K, V> Map<K, V> executeForMap(SqlSession sqlSession, Object[] args) {
         Map<K, V> result;
+        //按键集合分块查询
+        if (method.isBatchLookup()) {
+            return SqlSessionUtil.<K, V>selectByKeys(sqlSession, command.getName(), method.<K>extractKeys(args),
+                    method.getMapKey());
+        }
         //转换参数
         Object param = method.convertArgsToSqlCommandParam(args);
         //如果有分页参数
@@ -476,6 +504,11 @@ public class MapperMethod {
          */
         private final boolean returnsCursor;
 
+        /**
+         * 是否返回按列读取的结果
+         */
+        private final boolean returnsColumns;
+
         /**
          * 返回的类型
          */
@@ -486,6 +519,11 @@ public class MapperMethod {
          */
         private final String mapKey;
 
+        /**
+         * 方法有@BatchLookup时 键集合参数所在的索引
+         */
+        private final Integer keysIndex;
+
         /**
          * resultHandler参数所在的索引
          */
@@ -530,6 +568,8 @@ public class MapperMethod {
                     configuration.getObjectFactory().isCollection(this.returnType) || this.returnType.isArray();
             //设置返回是不是游标
             this.returnsCursor = Cursor.class.equals(this.returnType);
+            //设置返回是不是按列读取的结果
+            this.returnsColumns = ColumnarResult.class.equals(this.returnType);
             //获取mapKey的值 只有在返回类型是map并且@MapKey不为空的时候才会有值
             this.mapKey = getMapKey(method);
             //设置是不是返回的map
@@ -538,6 +578,8 @@ public class MapperMethod {
             this.rowBoundsIndex = getUniqueParamIndex(method, RowBounds.class);
             //如果ResultHandler的索引
             this.resultHandlerIndex = getUniqueParamIndex(method, ResultHandler.class);
+            //获取@BatchLookup方法的键集合参数的索引
+            this.keysIndex = getKeysIndex(method);
             //参数名称分解器
             this.paramNameResolver = new ParamNameResolver(configuration, method);
         }
@@ -590,6 +632,26 @@ public class MapperMethod {
             return hasResultHandler() ? (ResultHandler) args[resultHandlerIndex] : null;
         }
 
+        /**
+         * 是否是@BatchLookup方法
+         *
+         * @return
+         */
+        public boolean isBatchLookup() {
+            return keysIndex != null;
+        }
+
+        /**
+         * 拿到@BatchLookup方法的键集合参数
+         *
+         * @param args
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        public <K> Collection<K> extractKeys(Object[] args) {
+            return isBatchLookup() ? (Collection<K>) args[keysIndex] : null;
+        }
+
         /**
          * 获取@MapKey注解的value
          * 只有在方法返回的是map并且有@MapKey才会有值
@@ -645,6 +707,15 @@ public class MapperMethod {
             return returnsCursor;
         }
 
+        /**
+         * 是否返回ColumnarResult
+         *
+         * @return
+         */
+        public boolean returnsColumns() {
+            return returnsColumns;
+        }
+
         /**
          * 获取paramType类型的参数所在索引值
          * 并且方法参数中只能存在一个paramType类型的参数
@@ -671,6 +742,25 @@ public class MapperMethod {
             return index;
         }
 
+        /**
+         * 有@BatchLookup时获取键集合参数的索引 方法必须返回map并且有@MapKey
+         * 每一块的参数只包含键集合 所以键集合必须是唯一的参数 其它参数不会传给查询
+         *
+         * @param method
+         * @return
+         */
+        private Integer getKeysIndex(Method method) {
+            if (!method.isAnnotationPresent(BatchLookup.class)) {
+                return null;
+            }
+            Integer index = getUniqueParamIndex(method, Collection.class);
+            if (mapKey == null || index == null || method.getParameterTypes().length != 1) {
+                throw new BindingException(method.getName()
+                        + " is annotated with @BatchLookup, it must return a Map annotated with @MapKey and take a Collection of keys as its only parameter");
+            }
+            return index;
+        }
+
         /**
          * 如果方法的返回是map类型的子类
          * 并且这个方法有@MapKey
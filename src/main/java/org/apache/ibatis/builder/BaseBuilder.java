@@ -104,6 +104,17 @@ public abstract class BaseBuilder {
         return value == null ? defaultValue : Integer.valueOf(value);
     }
 
+    /**
+     * 转换为Long
+     *
+     * @param value
+     * @param defaultValue
+     * @return
+     */
+    protected Long longValueOf(String value, Long defaultValue) {
+        return value == null ? defaultValue : Long.valueOf(value);
+    }
+
     /**
      * 处理,分割的string
      *
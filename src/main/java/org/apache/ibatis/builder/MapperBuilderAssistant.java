@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheAdmissionPolicy;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.executor.ErrorContext;
@@ -199,14 +200,54 @@ public class MapperBuilderAssistant extends BaseBuilder {
      */
     public Cache useNewCache(Class<? extends Cache> typeClass, Class<? extends Cache> evictionClass, Long flushInterval,
             Integer size, boolean readWrite, boolean blocking, Properties props) {
+        return useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, false, blocking, null, null, props);
+    }
+
+    /**
+     * 根据给出的参数构建新的缓存
+     *
+     * @param typeClass
+     * @param evictionClass
+     * @param flushInterval
+     * @param size
+     * @param readWrite
+     * @param lazyCopy      读写缓存的集合结果是否按需反序列化
+     * @param blocking
+     * @param negativeTtl   空结果的存活时间 为null表示不单独缓存空结果
+     * @param negativeSize  最多缓存的空结果数量
+     * @param props
+     * @return
+     */
+    public Cache useNewCache(Class<? extends Cache> typeClass, Class<? extends Cache> evictionClass, Long flushInterval,
+            Integer size, boolean readWrite, boolean lazyCopy, boolean blocking, Long negativeTtl, Integer negativeSize,
+            Properties props) {
         Cache cache = new CacheBuilder(currentNamespace).implementation(valueOrDefault(typeClass, PerpetualCache.class))
                 .addDecorator(valueOrDefault(evictionClass, LruCache.class)).clearInterval(flushInterval).size(size)
-                .readWrite(readWrite).blocking(blocking).properties(props).build();
+                .readWrite(readWrite).lazyCopy(lazyCopy).blocking(blocking).negativeTimeToLive(negativeTtl).negativeSize(negativeSize)
+                .properties(props).build();
         configuration.addCache(cache);
         currentCache = cache;
         return cache;
     }
 
+    /**
+     * 根据给出的参数配置二级缓存准入策略 所有参数都为空的时候不做任何配置
+     *
+     * @param id                   命名空间或者声明id
+     * @param maxRows
+     * @param maxBytes
+     * @param admitOnSecondRequest
+     * @param minQueryTime
+     */
+    public void useCacheAdmissionPolicy(String id, Integer maxRows, Long maxBytes, Boolean admitOnSecondRequest,
+            Long minQueryTime) {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy().maxRows(maxRows).maxBytes(maxBytes)
+                .minQueryTime(minQueryTime).admitOnSecondRequest(Boolean.TRUE.equals(admitOnSecondRequest));
+        if (!policy.isEmpty()) {
+            configuration.addCacheAdmissionPolicy(id, policy);
+        }
+    }
+
     /**
      * 添加参数map
      *
@@ -264,6 +305,23 @@ public class MapperBuilderAssistant extends BaseBuilder {
      */
     public ResultMap addResultMap(String id, Class<?> type, String extend, Discriminator discriminator,
             List<ResultMapping> resultMappings, Boolean autoMapping) {
+        return addResultMap(id, type, extend, discriminator, resultMappings, autoMapping, null);
+    }
+
+    /**
+     * 添加结果map
+     *
+     * @param id             对应resultMapId
+     * @param type
+     * @param extend
+     * @param discriminator
+     * @param resultMappings
+     * @param autoMapping
+     * @param deduplicate    是否在结果集内复用相同的值
+     * @return
+     */
+    public ResultMap addResultMap(String id, Class<?> type, String extend, Discriminator discriminator,
+            List<ResultMapping> resultMappings, Boolean autoMapping, Boolean deduplicate) {
         id = applyCurrentNamespace(id, false);
         extend = applyCurrentNamespace(extend, true);
         //如果继承不为null的话 进行相应处理
@@ -291,10 +349,13 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 }
             }
             resultMappings.addAll(extendedResultMappings);
+            if (deduplicate == null) {
+                deduplicate = resultMap.getDeduplicate();
+            }
         }
         //构建resultMap
         ResultMap resultMap = new ResultMap.Builder(configuration, id, type, resultMappings, autoMapping)
-                .discriminator(discriminator).build();
+                .discriminator(discriminator).deduplicate(deduplicate).build();
         configuration.addResultMap(resultMap);
         return resultMap;
     }
@@ -451,6 +512,63 @@ public class MapperBuilderAssistant extends BaseBuilder {
             JdbcType jdbcType, String nestedSelect, String nestedResultMap, String notNullColumn, String columnPrefix,
             Class<? extends TypeHandler<?>> typeHandler, List<ResultFlag> flags, String resultSet, String foreignColumn,
             boolean lazy) {
+        return buildResultMapping(resultType, property, column, javaType, jdbcType, nestedSelect, nestedResultMap,
+                notNullColumn, columnPrefix, typeHandler, flags, resultSet, foreignColumn, lazy, false);
+    }
+
+    /**
+     * 构建结果映射
+     *
+     * @param resultType
+     * @param property
+     * @param column
+     * @param javaType
+     * @param jdbcType
+     * @param nestedSelect
+     * @param nestedResultMap
+     * @param notNullColumn
+     * @param columnPrefix
+     * @param typeHandler
+     * @param flags
+     * @param resultSet
+     * @param foreignColumn
+     * @param lazy
+     * @param batch         嵌套查询是否按批次加载
+     * @return
+     */
+    public ResultMapping buildResultMapping(Class<?> resultType, String property, String column, Class<?> javaType,
+            JdbcType jdbcType, String nestedSelect, String nestedResultMap, String notNullColumn, String columnPrefix,
+            Class<? extends TypeHandler<?>> typeHandler, List<ResultFlag> flags, String resultSet, String foreignColumn,
+            boolean lazy, boolean batch) {
+        return buildResultMapping(resultType, property, column, javaType, jdbcType, nestedSelect, nestedResultMap,
+                notNullColumn, columnPrefix, typeHandler, flags, resultSet, foreignColumn, lazy, batch, null);
+    }
+
+    /**
+     * 构建结果映射
+     *
+     * @param resultType
+     * @param property
+     * @param column
+     * @param javaType
+     * @param jdbcType
+     * @param nestedSelect
+     * @param nestedResultMap
+     * @param notNullColumn
+     * @param columnPrefix
+     * @param typeHandler
+     * @param flags
+     * @param resultSet
+     * @param foreignColumn
+     * @param lazy
+     * @param batch         嵌套查询是否按批次加载
+     * @param deduplicate   是否在结果集内复用相同的值 为null时使用所在resultMap的设置
+     * @return
+     */
+    public ResultMapping buildResultMapping(Class<?> resultType, String property, String column, Class<?> javaType,
+            JdbcType jdbcType, String nestedSelect, String nestedResultMap, String notNullColumn, String columnPrefix,
+            Class<? extends TypeHandler<?>> typeHandler, List<ResultFlag> flags, String resultSet, String foreignColumn,
+            boolean lazy, boolean batch, Boolean deduplicate) {
         //解析结果java类型
         Class<?> javaTypeClass = resolveResultJavaType(resultType, property, javaType);
         //解析类型处理器
@@ -462,7 +580,8 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .nestedResultMapId(applyCurrentNamespace(nestedResultMap, true)).resultSet(resultSet)
                 .typeHandler(typeHandlerInstance).flags(flags == null ? new ArrayList<ResultFlag>() : flags)
                 .composites(composites).notNullColumns(parseMultipleColumnNames(notNullColumn))
-                .columnPrefix(columnPrefix).foreignColumn(foreignColumn).lazy(lazy).build();
+                .columnPrefix(columnPrefix).foreignColumn(foreignColumn).lazy(lazy).batch(batch).deduplicate(deduplicate)
+                .build();
     }
 
     private Set<String> parseMultipleColumnNames(String columnName) {
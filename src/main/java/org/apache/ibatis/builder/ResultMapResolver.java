@@ -63,6 +63,11 @@ public class ResultMapResolver {
      */
     private final Boolean autoMapping;
 
+    /**
+     * 是否在结果集内复用相同的值
+     */
+    private final Boolean deduplicate;
+
     /**
      * 构造函数
      *
@@ -76,6 +81,24 @@ public class ResultMapResolver {
      */
     public ResultMapResolver(MapperBuilderAssistant assistant, String id, Class<?> type, String extend,
             Discriminator discriminator, List<ResultMapping> resultMappings, Boolean autoMapping) {
+        this(assistant, id, type, extend, discriminator, resultMappings, autoMapping, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param assistant
+     * @param id
+     * @param type
+     * @param extend
+     * @param discriminator
+     * @param resultMappings
+     * @param autoMapping
+     * @param deduplicate
+     */
+    public ResultMapResolver(MapperBuilderAssistant assistant, String id, Class<?> type, String extend,
+            Discriminator discriminator, List<ResultMapping> resultMappings, Boolean autoMapping,
+            Boolean deduplicate) {
         this.assistant = assistant;
         this.id = id;
         this.type = type;
@@ -83,6 +106,7 @@ public class ResultMapResolver {
         this.discriminator = discriminator;
         this.resultMappings = resultMappings;
         this.autoMapping = autoMapping;
+        this.deduplicate = deduplicate;
     }
 
     /**
@@ -92,7 +116,7 @@ public class ResultMapResolver {
      */
     public ResultMap resolve() {
         return assistant.addResultMap(this.id, this.type, this.extend, this.discriminator, this.resultMappings,
-                this.autoMapping);
+                this.autoMapping, this.deduplicate);
     }
 
 }
\ No newline at end of file
@@ -244,10 +244,13 @@ public class MapperAnnotationBuilder {
             Integer size = cacheDomain.size() == 0 ? null : cacheDomain.size();
             //获取缓存的周期
             Long flushInterval = cacheDomain.flushInterval() == 0 ? null : cacheDomain.flushInterval();
+            //获取空结果的存活时间
+            Long negativeTtl = cacheDomain.negativeTtl() == 0 ? null : cacheDomain.negativeTtl();
             //转换属性配置
             Properties props = convertToProperties(cacheDomain.properties());
             assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size,
-                    cacheDomain.readWrite(), cacheDomain.blocking(), props);
+                    cacheDomain.readWrite(), cacheDomain.lazyCopy(), cacheDomain.blocking(), negativeTtl,
+                    cacheDomain.negativeSize(), props);
         }
     }
 
@@ -17,6 +17,8 @@ package org.apache.ibatis.builder.xml;
 
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import javax.sql.DataSource;
 
@@ -44,6 +46,7 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.LocalCacheScope;
 import org.apache.ibatis.transaction.TransactionFactory;
+import org.apache.ibatis.transaction.routing.ReplicaSelector;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeHandler;
 
@@ -458,6 +461,27 @@ public class XMLConfigBuilder extends BaseBuilder {
                 props.getProperty("logImpl"));
         configuration.setLogImpl(logImpl);
         configuration.setConfigurationFactory(resolveClass(props.getProperty("configurationFactory")));
+        configuration.setBatchGroupingEnabled(booleanValueOf(props.getProperty("batchGroupingEnabled"), false));
+        configuration.setMaxBatchSize(integerValueOf(props.getProperty("maxBatchSize"), null));
+        configuration.setMaxBatchBytes(longValueOf(props.getProperty("maxBatchBytes"), null));
+        configuration.setRetainBatchResults(booleanValueOf(props.getProperty("retainBatchResults"), true));
+        configuration.setRewriteBatchedInserts(booleanValueOf(props.getProperty("rewriteBatchedInserts"), false));
+        configuration.setRewriteBatchedInsertsParameterLimit(integerValueOf(props.getProperty("rewriteBatchedInsertsParameterLimit"), 2000));
+        configuration.setMultiStatementPipelining(booleanValueOf(props.getProperty("multiStatementPipelining"), false));
+        configuration.setReuseStatementCacheSize(integerValueOf(props.getProperty("reuseStatementCacheSize"), 256));
+        configuration.setBatchNestedSelects(booleanValueOf(props.getProperty("batchNestedSelects"), false));
+        configuration.setNestedSelectBatchSize(integerValueOf(props.getProperty("nestedSelectBatchSize"), 500));
+        configuration.setNestedSelectParallelism(integerValueOf(props.getProperty("nestedSelectParallelism"), 0));
+        configuration.setKeyLookupChunkSize(integerValueOf(props.getProperty("keyLookupChunkSize"), 500));
+        configuration.setCompileRowMappers(booleanValueOf(props.getProperty("compileRowMappers"), false));
+        configuration.setCacheResultSetMetadata(booleanValueOf(props.getProperty("cacheResultSetMetadata"), false));
+        configuration.setStreamNestedResults(booleanValueOf(props.getProperty("streamNestedResults"), false));
+        configuration.setLazyResultLists(booleanValueOf(props.getProperty("lazyResultLists"), false));
+        configuration.setCompactRowMaps(booleanValueOf(props.getProperty("compactRowMaps"), true));
+        configuration.setValueDictionarySize(integerValueOf(props.getProperty("valueDictionarySize"), 1024));
+        configuration.setAdaptiveDeduplication(booleanValueOf(props.getProperty("adaptiveDeduplication"), true));
+        configuration.setMappingParallelism(integerValueOf(props.getProperty("mappingParallelism"), 0));
+        configuration.setMappingBatchSize(integerValueOf(props.getProperty("mappingBatchSize"), 256));
     }
 
     /**
@@ -486,6 +510,11 @@ public class XMLConfigBuilder extends BaseBuilder {
                     //创建环境配置 并设置事务工厂 数据源
                     Environment.Builder environmentBuilder = new Environment.Builder(id).transactionFactory(txFactory)
                             .dataSource(dataSource);
+                    //配置了从库的话 设置从库选择器
+                    XNode replicas = child.evalNode("replicas");
+                    if (replicas != null) {
+                        environmentBuilder.replicaSelector(replicasElement(replicas));
+                    }
                     //设置环境
                     configuration.setEnvironment(environmentBuilder.build());
                 }
@@ -493,6 +522,27 @@ public class XMLConfigBuilder extends BaseBuilder {
         }
     }
 
+    /**
+     * 解析从库配置
+     *
+     * @param context
+     * @return
+     * @throws Exception
+     */
+    private ReplicaSelector replicasElement(XNode context) throws Exception {
+        String selector = context.getStringAttribute("selector", "ROUND_ROBIN");
+        ReplicaSelector replicaSelector = (ReplicaSelector) resolveClass(selector).newInstance();
+        replicaSelector.setProperties(context.getChildrenAsProperties());
+        List<DataSource> replicas = new ArrayList<DataSource>();
+        for (XNode child : context.getChildren()) {
+            if ("dataSource".equals(child.getName())) {
+                replicas.add(dataSourceElement(child).getDataSource());
+            }
+        }
+        replicaSelector.setReplicas(replicas);
+        return replicaSelector;
+    }
+
     /**
      * 解析数据库id
      *
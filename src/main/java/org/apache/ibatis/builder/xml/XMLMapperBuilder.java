@@ -328,12 +328,22 @@ public class XMLMapperBuilder extends BaseBuilder {
             Integer size = context.getIntAttribute("size");
             //拿到是否只读
             boolean readWrite = !context.getBooleanAttribute("readOnly", false);
+            //拿到读写缓存的集合结果是否按需反序列化
+            boolean lazyCopy = context.getBooleanAttribute("lazyCopy", false);
             //拿到是否阻断
             boolean blocking = context.getBooleanAttribute("blocking", false);
+            //拿到空结果的存活时间以及数量
+            Long negativeTtl = context.getLongAttribute("negativeTtl");
+            Integer negativeSize = context.getIntAttribute("negativeSize");
             //拿到相应的属性配置
             Properties props = context.getChildrenAsProperties();
             //根据这些信息创建一个新的缓存
-            builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, props);
+            builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, lazyCopy, blocking,
+                    negativeTtl, negativeSize, props);
+            //命名空间级别的缓存准入策略
+            builderAssistant.useCacheAdmissionPolicy(builderAssistant.getCurrentNamespace(),
+                    context.getIntAttribute("admitMaxRows"), context.getLongAttribute("admitMaxBytes"),
+                    context.getBooleanAttribute("admitOnSecondRequest"), context.getLongAttribute("admitMinQueryTime"));
         }
     }
 
@@ -436,6 +446,7 @@ public class XMLMapperBuilder extends BaseBuilder {
                 resultMapNode.getStringAttribute("resultType", resultMapNode.getStringAttribute("javaType"))));
         String extend = resultMapNode.getStringAttribute("extends");
         Boolean autoMapping = resultMapNode.getBooleanAttribute("autoMapping");
+        Boolean deduplicate = resultMapNode.getBooleanAttribute("deduplicate");
         Class<?> typeClass = resolveClass(type);
         Discriminator discriminator = null;
         List<ResultMapping> resultMappings = new ArrayList<ResultMapping>();
@@ -463,7 +474,7 @@ public class XMLMapperBuilder extends BaseBuilder {
             }
         }
         ResultMapResolver resultMapResolver = new ResultMapResolver(builderAssistant, id, typeClass, extend,
-                discriminator, resultMappings, autoMapping);
+                discriminator, resultMappings, autoMapping, deduplicate);
         try {
             return resultMapResolver.resolve();
         } catch (IncompleteElementException e) {
@@ -621,8 +632,13 @@ public class XMLMapperBuilder extends BaseBuilder {
         String resultSet = context.getStringAttribute("resultSet");
         String foreignColumn = context.getStringAttribute("foreignColumn");
         //如果允许懒加载
-        boolean lazy = "lazy".equals(context
-                .getStringAttribute("fetchType", configuration.isLazyLoadingEnabled() ? "lazy" : "eager"));
+        String fetchType = context
+                .getStringAttribute("fetchType", configuration.isLazyLoadingEnabled() ? "lazy" : "eager");
+        boolean lazy = "lazy".equals(fetchType);
+        //按批次加载 所有父记录的嵌套查询合并成in查询
+        boolean batch = "batch".equals(fetchType);
+        //是否在结果集内复用相同的值
+        Boolean deduplicate = context.getBooleanAttribute("deduplicate");
         //解析java类型类
         Class<?> javaTypeClass = resolveClass(javaType);
         //解析类型处理器
@@ -634,7 +650,7 @@ public class XMLMapperBuilder extends BaseBuilder {
         return builderAssistant
                 .buildResultMapping(resultType, property, column, javaTypeClass, jdbcTypeEnum, nestedSelect,
                         nestedResultMap, notNullColumn, columnPrefix, typeHandlerClass, flags, resultSet, foreignColumn,
-                        lazy);
+                        lazy, batch, deduplicate);
     }
 
     private String processNestedResultMappings(XNode context, List<ResultMapping> resultMappings) throws Exception {
@@ -148,6 +148,12 @@ public class XMLStatementBuilder extends BaseBuilder {
                 .addMappedStatement(id, sqlSource, statementType, sqlCommandType, fetchSize, timeout, parameterMap,
                         parameterTypeClass, resultMap, resultTypeClass, resultSetTypeEnum, flushCache, useCache,
                         resultOrdered, keyGenerator, keyProperty, keyColumn, databaseId, langDriver, resultSets);
+        //声明级别的缓存准入策略
+        if (isSelect) {
+            builderAssistant.useCacheAdmissionPolicy(builderAssistant.applyCurrentNamespace(id, false),
+                    context.getIntAttribute("admitMaxRows"), context.getLongAttribute("admitMaxBytes"),
+                    context.getBooleanAttribute("admitOnSecondRequest"), context.getLongAttribute("admitMinQueryTime"));
+        }
     }
 
     /**
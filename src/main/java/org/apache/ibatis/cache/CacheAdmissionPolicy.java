@@ -0,0 +1,297 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 二级缓存准入策略
+ * 决定一次查询的结果是否值得放进二级缓存 避免一次性的大结果把有用的缓存都挤出去
+ * <p>
+ * 可以按命名空间或者按声明配置 所有条件都满足才允许放入缓存
+ * <ul>
+ * <li>maxRows 结果行数上限</li>
+ * <li>maxBytes 结果估算字节数上限</li>
+ * <li>admitOnSecondRequest 同一个缓存key第二次请求的时候才放入缓存 第一次只记录在布隆过滤器中</li>
+ * <li>minQueryTime 只缓存执行时间不少于这个毫秒数的查询</li>
+ * </ul>
+ *
+ */
+public class CacheAdmissionPolicy {
+
+    /**
+     * 估算字节数时最多抽样的行数
+     */
+    private static final int SAMPLE_ROWS = 8;
+
+    /**
+     * 无法序列化的对象每行的估算字节数
+     */
+    private static final int DEFAULT_ROW_BYTES = 256;
+
+    /**
+     * 布隆过滤器的默认容量
+     */
+    private static final int DEFAULT_DOORKEEPER_CAPACITY = 10000;
+
+    /**
+     * 结果行数上限
+     */
+    private Integer maxRows;
+
+    /**
+     * 结果估算字节数上限
+     */
+    private Long maxBytes;
+
+    /**
+     * 最小的查询耗时 毫秒
+     */
+    private Long minQueryTime;
+
+    /**
+     * 门卫布隆过滤器 为null表示第一次请求就允许放入缓存
+     */
+    private Doorkeeper doorkeeper;
+
+    public Integer getMaxRows() {
+        return maxRows;
+    }
+
+    public CacheAdmissionPolicy maxRows(Integer maxRows) {
+        this.maxRows = maxRows;
+        return this;
+    }
+
+    public Long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public CacheAdmissionPolicy maxBytes(Long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public Long getMinQueryTime() {
+        return minQueryTime;
+    }
+
+    public CacheAdmissionPolicy minQueryTime(Long minQueryTime) {
+        this.minQueryTime = minQueryTime;
+        return this;
+    }
+
+    public boolean isAdmitOnSecondRequest() {
+        return doorkeeper != null;
+    }
+
+    public CacheAdmissionPolicy admitOnSecondRequest(boolean admitOnSecondRequest) {
+        return admitOnSecondRequest(admitOnSecondRequest, DEFAULT_DOORKEEPER_CAPACITY);
+    }
+
+    /**
+     * 设置是否第二次请求才放入缓存
+     *
+     * @param admitOnSecondRequest
+     * @param capacity             布隆过滤器记录多少个key以后重置
+     * @return
+     */
+    public CacheAdmissionPolicy admitOnSecondRequest(boolean admitOnSecondRequest, int capacity) {
+        this.doorkeeper = admitOnSecondRequest ? new Doorkeeper(capacity) : null;
+        return this;
+    }
+
+    /**
+     * 是否没有配置任何条件
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return maxRows == null && maxBytes == null && minQueryTime == null && doorkeeper == null;
+    }
+
+    /**
+     * 判断结果是否允许放入缓存
+     * 门卫放在最后判断 这样被其他条件拒绝的结果不会占用布隆过滤器
+     *
+     * @param key         缓存key
+     * @param result      查询结果
+     * @param elapsedTime 查询耗时 毫秒
+     * @return
+     */
+    public boolean admit(Object key, Object result, long elapsedTime) {
+        if (minQueryTime != null && elapsedTime < minQueryTime) {
+            return false;
+        }
+        if (maxRows != null && rowCount(result) > maxRows) {
+            return false;
+        }
+        if (maxBytes != null && estimateBytes(result) > maxBytes) {
+            return false;
+        }
+        return doorkeeper == null || doorkeeper.admit(key);
+    }
+
+    private int rowCount(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        return result == null ? 0 : 1;
+    }
+
+    /**
+     * 估算结果占用的字节数
+     * 均匀抽样几行进行序列化 然后按行数推算整体大小
+     *
+     * @param result
+     * @return
+     */
+    protected long estimateBytes(Object result) {
+        if (!(result instanceof List)) {
+            return result == null ? 0 : estimateRowBytes(result);
+        }
+        List<?> list = (List<?>) result;
+        int size = list.size();
+        if (size == 0) {
+            return 0;
+        }
+        int samples = Math.min(size, SAMPLE_ROWS);
+        long sampledBytes = 0;
+        for (int i = 0; i < samples; i++) {
+            sampledBytes += estimateRowBytes(list.get((int) ((long) i * size / samples)));
+        }
+        return sampledBytes * size / samples;
+    }
+
+    private long estimateRowBytes(Object row) {
+        if (!(row instanceof Serializable)) {
+            return DEFAULT_ROW_BYTES;
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(counter);
+            oos.writeObject(row);
+            oos.flush();
+        } catch (IOException e) {
+            return DEFAULT_ROW_BYTES;
+        }
+        return counter.count;
+    }
+
+    /**
+     * 只计数不保存数据的输出流
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * 门卫布隆过滤器 记录已经请求过一次的key
+     * 记录的key数量达到容量以后整体重置 这样只有近期重复的请求才能进入缓存
+     */
+    private static class Doorkeeper {
+
+        private final AtomicLongArray bits;
+
+        private final int bitCount;
+
+        private final int capacity;
+
+        private final AtomicInteger additions = new AtomicInteger();
+
+        Doorkeeper(int capacity) {
+            this.capacity = capacity;
+            //每个key大约8个bit 误判率约2%
+            int longs = Math.max(1, (capacity * 8 + 63) / 64);
+            this.bits = new AtomicLongArray(longs);
+            this.bitCount = longs * 64;
+        }
+
+        /**
+         * 如果key已经被记录过返回true 否则记录下来并返回false
+         *
+         * @param key
+         * @return
+         */
+        boolean admit(Object key) {
+            int hash = spread(key == null ? 0 : key.hashCode());
+            int h1 = hash;
+            int h2 = (hash >>> 16) | (hash << 16);
+            boolean seen = true;
+            for (int i = 0; i < 3; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+                if (!setBit(bit)) {
+                    seen = false;
+                }
+            }
+            if (!seen && additions.incrementAndGet() >= capacity) {
+                reset();
+            }
+            return seen;
+        }
+
+        /**
+         * 设置bit 如果之前已经设置过返回true
+         *
+         * @param bit
+         * @return
+         */
+        private boolean setBit(int bit) {
+            int index = bit >>> 6;
+            long mask = 1L << (bit & 63);
+            while (true) {
+                long current = bits.get(index);
+                if ((current & mask) != 0) {
+                    return true;
+                }
+                if (bits.compareAndSet(index, current, current | mask)) {
+                    return false;
+                }
+            }
+        }
+
+        private void reset() {
+            additions.set(0);
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, 0L);
+            }
+        }
+
+        private static int spread(int h) {
+            h ^= (h >>> 20) ^ (h >>> 12);
+            return h ^ (h >>> 7) ^ (h >>> 4);
+        }
+    }
+
+}
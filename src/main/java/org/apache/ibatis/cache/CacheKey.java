@@ -17,6 +17,7 @@ package org.apache.ibatis.cache;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.ibatis.reflection.ArrayUtil;
@@ -100,6 +101,15 @@ public class CacheKey implements Cloneable, Serializable {
         return updateList.size();
     }
 
+    /**
+     * 获取用来计算hash的对象 按加入的顺序
+     *
+     * @return
+     */
+    public List<Object> getUpdateList() {
+        return Collections.unmodifiableList(updateList);
+    }
+
     /**
      * 根据每次给出的内容计算hashCode
      * 同时将给出的object加到更新集合中
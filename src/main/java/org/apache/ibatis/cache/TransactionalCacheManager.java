@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationBus;
 
 /**
  * 事务缓存管理器
@@ -32,6 +33,24 @@ public class TransactionalCacheManager {
      */
     private final Map<Cache, TransactionalCache> transactionalCaches = new HashMap<Cache, TransactionalCache>();
 
+    /**
+     * 缓存失效总线
+     */
+    private final CacheInvalidationBus invalidationBus;
+
+    public TransactionalCacheManager() {
+        this(null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param invalidationBus
+     */
+    public TransactionalCacheManager(CacheInvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
+
     /**
      * 清除缓存
      *
@@ -92,7 +111,7 @@ public class TransactionalCacheManager {
         TransactionalCache txCache = transactionalCaches.get(cache);
         //如果为空 那么装饰出来一个
         if (txCache == null) {
-            txCache = new TransactionalCache(cache);
+            txCache = new TransactionalCache(cache, invalidationBus);
             transactionalCaches.put(cache, txCache);
         }
         return txCache;
@@ -0,0 +1,207 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * 按需反序列化的结果集合
+ * 缓存中的结果按块序列化 只有访问到某一行的时候才反序列化这一行所在的块
+ * 每次从缓存获取都是一个新的集合 反序列化出来的对象只属于这个集合 修改它们不会影响缓存
+ * 发生结构性修改(add/remove)的时候先完整反序列化成普通的ArrayList
+ * 每个块用单独的流反序列化 不同块的行共享的对象会得到各自的副本 这一点和一次性反序列化整个集合不同
+ *
+ */
+class LazyDeserializingList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 3718403624436582150L;
+
+    /**
+     * 还没有反序列化的占位对象
+     */
+    private static final Object NOT_LOADED = new Object();
+
+    /**
+     * 序列化后的行
+     */
+    private final transient SerializedRows rows;
+
+    /**
+     * 已经反序列化的行
+     */
+    private transient Object[] loaded;
+
+    /**
+     * 结构性修改之后的完整副本
+     */
+    private transient List<E> copy;
+
+    LazyDeserializingList(SerializedRows rows) {
+        this.rows = rows;
+        this.loaded = new Object[rows.size()];
+        for (int i = 0; i < loaded.length; i++) {
+            loaded[i] = NOT_LOADED;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (copy != null) {
+            return copy.get(index);
+        }
+        if (index < 0 || index >= loaded.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + loaded.length);
+        }
+        if (loaded[index] == NOT_LOADED) {
+            loadChunk(rows.chunkOf(index));
+        }
+        return (E) loaded[index];
+    }
+
+    @Override
+    public int size() {
+        return copy != null ? copy.size() : loaded.length;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        if (copy != null) {
+            return copy.set(index, element);
+        }
+        E previous = get(index);
+        loaded[index] = element;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        materialize().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E removed = materialize().remove(index);
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        copy = new ArrayList<E>();
+        loaded = null;
+        modCount++;
+    }
+
+    /**
+     * 完整反序列化成普通的集合 之后的操作都在这个集合上进行
+     *
+     * @return
+     */
+    private List<E> materialize() {
+        if (copy == null) {
+            List<E> list = new ArrayList<E>(loaded.length);
+            for (int i = 0; i < loaded.length; i++) {
+                list.add(get(i));
+            }
+            copy = list;
+            loaded = null;
+        }
+        return copy;
+    }
+
+    /**
+     * 反序列化一个块 已经被set过的行保持不变
+     *
+     * @param chunk
+     */
+    private void loadChunk(int chunk) {
+        int start = rows.chunkStart(chunk);
+        int end = Math.min(start + rows.getChunkSize(), loaded.length);
+        try {
+            ObjectInputStream ois = new SerializedCache.CustomObjectInputStream(
+                    new ByteArrayInputStream(rows.chunk(chunk)));
+            for (int i = start; i < end; i++) {
+                Object row = ois.readObject();
+                if (loaded[i] == NOT_LOADED) {
+                    loaded[i] = row;
+                }
+            }
+            ois.close();
+        } catch (Exception e) {
+            throw new CacheException("Error deserializing object.  Cause: " + e, e);
+        }
+    }
+
+    /**
+     * 序列化的时候写出完整的ArrayList
+     *
+     * @return
+     * @throws ObjectStreamException
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return new ArrayList<E>(this);
+    }
+
+    /**
+     * 分块序列化的行 保存在被装饰的缓存中
+     */
+    static final class SerializedRows {
+
+        private final int size;
+
+        private final int chunkSize;
+
+        private final byte[][] chunks;
+
+        SerializedRows(int size, int chunkSize, byte[][] chunks) {
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunks = chunks;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int getChunkSize() {
+            return chunkSize;
+        }
+
+        int chunkOf(int index) {
+            return index / chunkSize;
+        }
+
+        int chunkStart(int chunk) {
+            return chunk * chunkSize;
+        }
+
+        byte[] chunk(int chunk) {
+            return chunks[chunk];
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * 空结果缓存装饰类
+ * 查询结果为空的key单独保存 只记录过期时间 不保存空的list 有自己的过期时间和大小上限
+ * 不会占用被装饰缓存的容量 命名空间被清空的时候一起清空
+ * 命中的时候每次返回一个新的空list 调用方修改返回的list不会影响缓存
+ *
+ */
+public class NegativeResultCache implements Cache {
+
+    private final Cache delegate;
+
+    /**
+     * 空结果的key以及对应的过期时间 按访问顺序排序
+     */
+    private Map<Object, Long> negativeKeys;
+
+    /**
+     * 空结果的存活时间 毫秒
+     */
+    private long timeToLive;
+
+    /**
+     * 构造函数 默认存活1分钟 最多1024个key
+     *
+     * @param delegate
+     */
+    public NegativeResultCache(Cache delegate) {
+        this.delegate = delegate;
+        this.timeToLive = 60 * 1000;
+        setSize(1024);
+    }
+
+    /**
+     * 设置空结果的存活时间
+     *
+     * @param timeToLive
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * 设置最多保存的空结果key的数量 超过后淘汰最近最少使用的key
+     *
+     * @param size
+     */
+    public void setSize(final int size) {
+        negativeKeys = new LinkedHashMap<Object, Long>(16, .75F, true) {
+            private static final long serialVersionUID = -2618741234566810293L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Long> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize() + negativeKeys.size();
+    }
+
+    /**
+     * 存入缓存 空的集合只记录key
+     *
+     * @param key
+     * @param object
+     */
+    @Override
+    public void putObject(Object key, Object object) {
+        if (isEmptyResult(object)) {
+            delegate.removeObject(key);
+            negativeKeys.put(key, System.currentTimeMillis() + timeToLive);
+        } else {
+            negativeKeys.remove(key);
+            delegate.putObject(key, object);
+        }
+    }
+
+    /**
+     * 获取缓存 先检查空结果
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public Object getObject(Object key) {
+        Long expiresAt = negativeKeys.get(key);
+        if (expiresAt != null) {
+            if (expiresAt > System.currentTimeMillis()) {
+                return new ArrayList<Object>(0);
+            }
+            negativeKeys.remove(key);
+        }
+        return delegate.getObject(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        negativeKeys.remove(key);
+        return delegate.removeObject(key);
+    }
+
+    @Override
+    public void clear() {
+        negativeKeys.clear();
+        delegate.clear();
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return delegate.equals(obj);
+    }
+
+    private boolean isEmptyResult(Object object) {
+        return object instanceof Collection && ((Collection<?>) object).isEmpty();
+    }
+
+}
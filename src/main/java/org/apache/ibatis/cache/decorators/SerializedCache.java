@@ -23,6 +23,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
@@ -31,6 +32,7 @@ import org.apache.ibatis.io.Resources;
 
 /**
  * 支持序列化的缓存装饰
+ * 开启lazy以后集合类型的结果按块序列化 获取的时候返回按需反序列化的集合
  *
  * @author Clinton Begin
  */
@@ -41,6 +43,21 @@ public class SerializedCache implements Cache {
      */
     private final Cache delegate;
 
+    /**
+     * 懒加载模式下每个序列化块包含的行数
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 16;
+
+    /**
+     * 集合结果是否按需反序列化
+     */
+    private boolean lazy;
+
+    /**
+     * 每个序列化块包含的行数
+     */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
     /**
      * 构造函数
      *
@@ -50,6 +67,27 @@ public class SerializedCache implements Cache {
         this.delegate = delegate;
     }
 
+    /**
+     * 设置集合结果是否按需反序列化
+     *
+     * @param lazy
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * 设置每个序列化块包含的行数
+     *
+     * @param chunkSize
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new CacheException("Chunk size must be positive but was " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
     @Override
     public String getId() {
         return delegate.getId();
@@ -69,7 +107,9 @@ public class SerializedCache implements Cache {
      */
     @Override
     public void putObject(Object key, Object object) {
-        if (object == null || object instanceof Serializable) {
+        if (lazy && object instanceof List) {
+            delegate.putObject(key, serializeRows((List<?>) object));
+        } else if (object == null || object instanceof Serializable) {
             delegate.putObject(key, serialize((Serializable) object));
         } else {
             throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
@@ -86,6 +126,9 @@ public class SerializedCache implements Cache {
     @Override
     public Object getObject(Object key) {
         Object object = delegate.getObject(key);
+        if (object instanceof LazyDeserializingList.SerializedRows) {
+            return new LazyDeserializingList<Object>((LazyDeserializingList.SerializedRows) object);
+        }
         return object == null ? null : deserialize((byte[]) object);
     }
 
@@ -143,6 +186,33 @@ public class SerializedCache implements Cache {
         }
     }
 
+    /**
+     * 把集合中的行按块进行序列化 每个块使用独立的流 这样可以单独反序列化
+     *
+     * @param list
+     * @return
+     */
+    private LazyDeserializingList.SerializedRows serializeRows(List<?> list) {
+        int size = list.size();
+        byte[][] chunks = new byte[(size + chunkSize - 1) / chunkSize][];
+        try {
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(bos);
+                int end = Math.min((chunk + 1) * chunkSize, size);
+                for (int i = chunk * chunkSize; i < end; i++) {
+                    oos.writeObject(list.get(i));
+                }
+                oos.flush();
+                oos.close();
+                chunks[chunk] = bos.toByteArray();
+            }
+        } catch (Exception e) {
+            throw new CacheException("Error serializing object.  Cause: " + e, e);
+        }
+        return new LazyDeserializingList.SerializedRows(size, chunkSize, chunks);
+    }
+
     /**
      * 对value进行反序列化
      *
@@ -22,6 +22,7 @@ import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationBus;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -61,12 +62,27 @@ public class TransactionalCache implements Cache {
      */
     private final Set<Object> entriesMissedInCache;
 
+    /**
+     * 缓存失效总线 为null表示不需要通知其他节点
+     */
+    private final CacheInvalidationBus invalidationBus;
+
     /**
      * 构造函数
      * @param delegate
      */
     public TransactionalCache(Cache delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * 构造函数
+     * @param delegate
+     * @param invalidationBus
+     */
+    public TransactionalCache(Cache delegate, CacheInvalidationBus invalidationBus) {
         this.delegate = delegate;
+        this.invalidationBus = invalidationBus;
         this.clearOnCommit = false;
         this.entriesToAddOnCommit = new HashMap<Object, Object>();
         this.entriesMissedInCache = new HashSet<Object>();
@@ -119,11 +135,16 @@ public class TransactionalCache implements Cache {
     }
 
     public void commit() {
+        boolean cleared = clearOnCommit;
         if (clearOnCommit) {
             delegate.clear();
         }
         flushPendingEntries();
         reset();
+        //本地清空之后通知其他节点清空各自的缓存
+        if (cleared && invalidationBus != null) {
+            invalidationBus.publishClear(getId());
+        }
     }
 
     public void rollback() {
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 缓存失效总线
+ * 本节点二级缓存在事务提交时被清空后 通过传输层把失效消息广播给其他节点
+ * 其他节点收到消息后直接清理本地的二级缓存 不会再次广播
+ * 所有节点必须使用相同的共享密钥 签名不正确的消息会被丢弃 伪造的数据报无法清空缓存
+ * <p>
+ * 使用方式:
+ * <pre>
+ * CacheInvalidationBus bus = new CacheInvalidationBus(configuration, new UdpInvalidationTransport(4446, 4447), secret);
+ * configuration.setCacheInvalidationBus(bus);
+ * bus.start();
+ * </pre>
+ *
+ */
+public class CacheInvalidationBus implements InvalidationListener {
+
+    private static final Log log = LogFactory.getLog(CacheInvalidationBus.class);
+
+    /**
+     * 按key失效的时候最多携带的key数量 超过后退化为清空整个缓存
+     */
+    private static final int DEFAULT_MAX_KEYS_PER_MESSAGE = 256;
+
+    /**
+     * 全局配置 用于根据缓存id找到本地缓存
+     */
+    private final Configuration configuration;
+
+    /**
+     * 传输层
+     */
+    private final InvalidationTransport transport;
+
+    /**
+     * 当前节点id 用于忽略自己发出的消息
+     */
+    private final String nodeId;
+
+    /**
+     * 签名消息的共享密钥
+     */
+    private final byte[] secret;
+
+    /**
+     * 单条消息最多携带的key数量
+     */
+    private int maxKeysPerMessage = DEFAULT_MAX_KEYS_PER_MESSAGE;
+
+    /**
+     * 构造函数
+     *
+     * @param configuration
+     * @param transport
+     * @param secret        所有节点共享的签名密钥
+     */
+    public CacheInvalidationBus(Configuration configuration, InvalidationTransport transport, byte[] secret) {
+        this(configuration, transport, secret, UUID.randomUUID().toString());
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param configuration
+     * @param transport
+     * @param secret        所有节点共享的签名密钥
+     * @param nodeId
+     */
+    public CacheInvalidationBus(Configuration configuration, InvalidationTransport transport, byte[] secret,
+            String nodeId) {
+        if (secret == null || secret.length == 0) {
+            throw new CacheException("A shared secret is required to sign cache invalidation messages");
+        }
+        this.configuration = configuration;
+        this.transport = transport;
+        this.secret = Arrays.copyOf(secret, secret.length);
+        this.nodeId = nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setMaxKeysPerMessage(int maxKeysPerMessage) {
+        this.maxKeysPerMessage = maxKeysPerMessage;
+    }
+
+    /**
+     * 开始接收其他节点的失效消息
+     */
+    public void start() {
+        transport.start(this);
+    }
+
+    /**
+     * 关闭总线
+     */
+    public void close() {
+        transport.close();
+    }
+
+    /**
+     * 广播清空整个缓存
+     *
+     * @param cacheId
+     */
+    public void publishClear(String cacheId) {
+        publish(InvalidationMessage.clear(nodeId, cacheId));
+    }
+
+    /**
+     * 广播按key失效 key太多或者有不能编码的key的时候退化为清空整个缓存
+     *
+     * @param cacheId
+     * @param keys
+     */
+    public void publishRemove(String cacheId, Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (keys.size() > maxKeysPerMessage) {
+            publishClear(cacheId);
+            return;
+        }
+        for (Object key : keys) {
+            if (!InvalidationMessage.isEncodable(key)) {
+                publishClear(cacheId);
+                return;
+            }
+        }
+        publish(InvalidationMessage.remove(nodeId, cacheId, keys));
+    }
+
+    /**
+     * 发布消息 传输失败不影响本地事务的提交
+     *
+     * @param message
+     */
+    private void publish(InvalidationMessage message) {
+        try {
+            transport.publish(message.toBytes(secret));
+        } catch (Exception e) {
+            log.warn("Unexpected exception while publishing " + message + ".  Cause: " + e);
+        }
+    }
+
+    @Override
+    public void onMessage(byte[] data) {
+        InvalidationMessage message;
+        try {
+            message = InvalidationMessage.fromBytes(data, secret);
+        } catch (Exception e) {
+            log.warn("Discarding malformed cache invalidation message.  Cause: " + e);
+            return;
+        }
+        //忽略自己发出的消息
+        if (nodeId.equals(message.getOrigin())) {
+            return;
+        }
+        apply(message);
+    }
+
+    /**
+     * 把远程消息应用到本地缓存
+     *
+     * @param message
+     */
+    protected void apply(InvalidationMessage message) {
+        if (!configuration.hasCache(message.getCacheId())) {
+            return;
+        }
+        Cache cache = configuration.getCache(message.getCacheId());
+        if (log.isDebugEnabled()) {
+            log.debug("Applying remote " + message);
+        }
+        if (message.isClearAll()) {
+            cache.clear();
+        } else {
+            for (Object key : message.getKeys()) {
+                cache.removeObject(key);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,404 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheKey;
+
+/**
+ * 缓存失效消息
+ * 清空整个命名空间的消息只包含来源节点和缓存id 只有按key失效的时候才会编码key
+ * <p>
+ * 消息使用固定的二进制格式 不使用java序列化 key只能由字符串、数字、布尔、字符、日期以及由它们组成的CacheKey构成
+ * 消息末尾附带用共享密钥计算的HmacSHA256 校验不通过或者版本未知的消息会被拒绝
+ *
+ */
+public class InvalidationMessage {
+
+    /**
+     * 消息格式版本
+     */
+    private static final byte VERSION = 2;
+
+    /**
+     * 签名算法
+     */
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * 签名长度
+     */
+    private static final int MAC_LENGTH = 32;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_SHORT = 4;
+    private static final byte TYPE_BYTE = 5;
+    private static final byte TYPE_BOOLEAN = 6;
+    private static final byte TYPE_CHARACTER = 7;
+    private static final byte TYPE_DOUBLE = 8;
+    private static final byte TYPE_FLOAT = 9;
+    private static final byte TYPE_BIG_DECIMAL = 10;
+    private static final byte TYPE_BIG_INTEGER = 11;
+    private static final byte TYPE_DATE = 12;
+    private static final byte TYPE_SQL_DATE = 13;
+    private static final byte TYPE_TIME = 14;
+    private static final byte TYPE_TIMESTAMP = 15;
+    private static final byte TYPE_CACHE_KEY = 16;
+
+    /**
+     * 发出消息的节点id
+     */
+    private final String origin;
+
+    /**
+     * 缓存id 一般是命名空间
+     */
+    private final String cacheId;
+
+    /**
+     * 需要失效的key 为null表示清空整个缓存
+     */
+    private final List<Object> keys;
+
+    private InvalidationMessage(String origin, String cacheId, List<Object> keys) {
+        this.origin = origin;
+        this.cacheId = cacheId;
+        this.keys = keys;
+    }
+
+    /**
+     * 创建清空整个缓存的消息
+     *
+     * @param origin
+     * @param cacheId
+     * @return
+     */
+    public static InvalidationMessage clear(String origin, String cacheId) {
+        return new InvalidationMessage(origin, cacheId, null);
+    }
+
+    /**
+     * 创建按key失效的消息
+     *
+     * @param origin
+     * @param cacheId
+     * @param keys    只能包含{@link #isEncodable(Object)}的key
+     * @return
+     */
+    public static InvalidationMessage remove(String origin, String cacheId, Collection<?> keys) {
+        for (Object key : keys) {
+            if (!isEncodable(key)) {
+                throw new CacheException("Cache key " + key + " of cache " + cacheId
+                        + " cannot be sent in an invalidation message");
+            }
+        }
+        return new InvalidationMessage(origin, cacheId, new ArrayList<Object>(keys));
+    }
+
+    /**
+     * key能否编码到消息中
+     *
+     * @param key
+     * @return
+     */
+    public static boolean isEncodable(Object key) {
+        if (key instanceof CacheKey) {
+            if (key == CacheKey.NULL_CACHE_KEY) {
+                return false;
+            }
+            for (Object object : ((CacheKey) key).getUpdateList()) {
+                if (object instanceof CacheKey || !isEncodable(object)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return key == null || key instanceof String || key instanceof Integer || key instanceof Long
+                || key instanceof Short || key instanceof Byte || key instanceof Boolean || key instanceof Character
+                || key instanceof Double || key instanceof Float || key instanceof BigDecimal
+                || key instanceof BigInteger || key.getClass() == Date.class || key.getClass() == java.sql.Date.class
+                || key.getClass() == Time.class || key.getClass() == Timestamp.class;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getCacheId() {
+        return cacheId;
+    }
+
+    /**
+     * 是否清空整个缓存
+     *
+     * @return
+     */
+    public boolean isClearAll() {
+        return keys == null;
+    }
+
+    public List<Object> getKeys() {
+        return keys == null ? Collections.emptyList() : Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * 编码成字节数组 末尾附带签名
+     *
+     * @param secret 共享密钥
+     * @return
+     */
+    public byte[] toBytes(byte[] secret) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeByte(VERSION);
+            out.writeUTF(origin);
+            out.writeUTF(cacheId);
+            if (keys == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(keys.size());
+                for (Object key : keys) {
+                    writeKey(out, key);
+                }
+            }
+            out.flush();
+            byte[] body = bos.toByteArray();
+            byte[] data = Arrays.copyOf(body, body.length + MAC_LENGTH);
+            System.arraycopy(sign(secret, body, body.length), 0, data, body.length, MAC_LENGTH);
+            return data;
+        } catch (IOException e) {
+            throw new CacheException("Error encoding invalidation message for cache " + cacheId + ".  Cause: " + e, e);
+        }
+    }
+
+    /**
+     * 校验签名并从字节数组解码
+     *
+     * @param data
+     * @param secret 共享密钥
+     * @return
+     */
+    public static InvalidationMessage fromBytes(byte[] data, byte[] secret) {
+        if (data.length <= MAC_LENGTH) {
+            throw new CacheException("Invalidation message of " + data.length + " bytes is too short");
+        }
+        int length = data.length - MAC_LENGTH;
+        if (!MessageDigest.isEqual(sign(secret, data, length), Arrays.copyOfRange(data, length, data.length))) {
+            throw new CacheException("Invalidation message signature does not match");
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new CacheException("Unsupported invalidation message version " + version);
+            }
+            String origin = in.readUTF();
+            String cacheId = in.readUTF();
+            int size = in.readInt();
+            if (size < 0) {
+                return clear(origin, cacheId);
+            }
+            //每个key至少占一个字节
+            if (size > in.available()) {
+                throw new CacheException("Invalidation message declares " + size + " keys in " + length + " bytes");
+            }
+            List<Object> keys = new ArrayList<Object>(size);
+            for (int i = 0; i < size; i++) {
+                keys.add(readKey(in, true));
+            }
+            if (in.available() > 0) {
+                throw new CacheException("Invalidation message has " + in.available() + " trailing bytes");
+            }
+            return new InvalidationMessage(origin, cacheId, keys);
+        } catch (IOException e) {
+            throw new CacheException("Error decoding invalidation message.  Cause: " + e, e);
+        }
+    }
+
+    /**
+     * 计算签名
+     *
+     * @param secret
+     * @param data
+     * @param length 参与签名的字节数
+     * @return
+     */
+    private static byte[] sign(byte[] secret, byte[] data, int length) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, MAC_ALGORITHM));
+            mac.update(data, 0, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new CacheException("Error signing invalidation message.  Cause: " + e, e);
+        }
+    }
+
+    private static void writeKey(DataOutputStream out, Object key) throws IOException {
+        if (key == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (key instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeUTF((String) key);
+        } else if (key instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) key);
+        } else if (key instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) key);
+        } else if (key instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short) key);
+        } else if (key instanceof Byte) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) key);
+        } else if (key instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) key);
+        } else if (key instanceof Character) {
+            out.writeByte(TYPE_CHARACTER);
+            out.writeChar((Character) key);
+        } else if (key instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) key);
+        } else if (key instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) key);
+        } else if (key instanceof BigDecimal) {
+            out.writeByte(TYPE_BIG_DECIMAL);
+            out.writeUTF(key.toString());
+        } else if (key instanceof BigInteger) {
+            out.writeByte(TYPE_BIG_INTEGER);
+            out.writeUTF(key.toString());
+        } else if (key.getClass() == Date.class) {
+            out.writeByte(TYPE_DATE);
+            out.writeLong(((Date) key).getTime());
+        } else if (key.getClass() == java.sql.Date.class) {
+            out.writeByte(TYPE_SQL_DATE);
+            out.writeLong(((Date) key).getTime());
+        } else if (key.getClass() == Time.class) {
+            out.writeByte(TYPE_TIME);
+            out.writeLong(((Date) key).getTime());
+        } else if (key.getClass() == Timestamp.class) {
+            out.writeByte(TYPE_TIMESTAMP);
+            out.writeLong(((Timestamp) key).getTime());
+            out.writeInt(((Timestamp) key).getNanos());
+        } else if (key instanceof CacheKey) {
+            List<Object> objects = ((CacheKey) key).getUpdateList();
+            out.writeByte(TYPE_CACHE_KEY);
+            out.writeInt(objects.size());
+            for (Object object : objects) {
+                writeKey(out, object);
+            }
+        } else {
+            throw new CacheException("Cache key of " + key.getClass() + " cannot be sent in an invalidation message");
+        }
+    }
+
+    /**
+     * 读取一个key
+     *
+     * @param in
+     * @param allowCacheKey CacheKey只能出现在最外层
+     * @return
+     * @throws IOException
+     */
+    private static Object readKey(DataInputStream in, boolean allowCacheKey) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_STRING:
+            return in.readUTF();
+        case TYPE_INTEGER:
+            return in.readInt();
+        case TYPE_LONG:
+            return in.readLong();
+        case TYPE_SHORT:
+            return in.readShort();
+        case TYPE_BYTE:
+            return in.readByte();
+        case TYPE_BOOLEAN:
+            return in.readBoolean();
+        case TYPE_CHARACTER:
+            return in.readChar();
+        case TYPE_DOUBLE:
+            return in.readDouble();
+        case TYPE_FLOAT:
+            return in.readFloat();
+        case TYPE_BIG_DECIMAL:
+            return new BigDecimal(in.readUTF());
+        case TYPE_BIG_INTEGER:
+            return new BigInteger(in.readUTF());
+        case TYPE_DATE:
+            return new Date(in.readLong());
+        case TYPE_SQL_DATE:
+            return new java.sql.Date(in.readLong());
+        case TYPE_TIME:
+            return new Time(in.readLong());
+        case TYPE_TIMESTAMP:
+            Timestamp timestamp = new Timestamp(in.readLong());
+            timestamp.setNanos(in.readInt());
+            return timestamp;
+        case TYPE_CACHE_KEY:
+            if (allowCacheKey) {
+                int count = in.readInt();
+                if (count >= 0 && count <= in.available()) {
+                    Object[] objects = new Object[count];
+                    for (int i = 0; i < count; i++) {
+                        objects[i] = readKey(in, false);
+                    }
+                    return new CacheKey(objects);
+                }
+            }
+            throw new CacheException("Malformed cache key in invalidation message");
+        default:
+            throw new CacheException("Unknown key type " + type + " in invalidation message");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InvalidationMessage[origin=" + origin + ", cacheId=" + cacheId + ", keys=" + (keys == null ? "ALL"
+                : keys.size()) + "]";
+    }
+
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+/**
+ * 缓存失效消息的传输层 只负责字节的收发 消息的编码解码由{@link CacheInvalidationBus}完成
+ */
+public interface InvalidationTransport {
+
+    /**
+     * 开始接收消息
+     *
+     * @param listener
+     */
+    void start(InvalidationListener listener);
+
+    /**
+     * 广播一条消息给其他节点
+     *
+     * @param message
+     */
+    void publish(byte[] message);
+
+    /**
+     * 关闭传输层 释放资源
+     */
+    void close();
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 同一个JVM内的传输层 相同频道的所有总线可以互相收到消息 主要用于测试
+ *
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    /**
+     * 频道名称对应的监听器集合
+     */
+    private static final ConcurrentMap<String, List<InvalidationListener>> CHANNELS = new ConcurrentHashMap<String, List<InvalidationListener>>();
+
+    /**
+     * 频道名称
+     */
+    private final String channel;
+
+    /**
+     * 当前传输层注册的监听器
+     */
+    private InvalidationListener listener;
+
+    public LoopbackInvalidationTransport() {
+        this("default");
+    }
+
+    public LoopbackInvalidationTransport(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void start(InvalidationListener listener) {
+        this.listener = listener;
+        listeners().add(listener);
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        for (InvalidationListener each : listeners()) {
+            if (each != listener) {
+                each.onMessage(message);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (listener != null) {
+            listeners().remove(listener);
+            listener = null;
+        }
+    }
+
+    private List<InvalidationListener> listeners() {
+        List<InvalidationListener> listeners = CHANNELS.get(channel);
+        if (listeners == null) {
+            CHANNELS.putIfAbsent(channel, new CopyOnWriteArrayList<InvalidationListener>());
+            listeners = CHANNELS.get(channel);
+        }
+        return listeners;
+    }
+
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 基于UDP的传输层 绑定本机端口 并把消息发送给配置的各个对端端口
+ * 失效消息很小 一个数据报就能放下 丢包的情况下还有flushInterval兜底
+ *
+ */
+public class UdpInvalidationTransport implements InvalidationTransport {
+
+    private static final Log log = LogFactory.getLog(UdpInvalidationTransport.class);
+
+    /**
+     * 单个UDP数据报最大长度
+     */
+    private static final int MAX_PACKET_SIZE = 65507;
+
+    /**
+     * 地址
+     */
+    private final InetAddress address;
+
+    /**
+     * 本地监听端口
+     */
+    private final int port;
+
+    /**
+     * 对端端口
+     */
+    private final int[] peerPorts;
+
+    private volatile DatagramSocket socket;
+
+    private Thread receiver;
+
+    private volatile boolean running;
+
+    /**
+     * 构造函数 使用本机回环地址
+     *
+     * @param port
+     * @param peerPorts
+     */
+    public UdpInvalidationTransport(int port, int... peerPorts) {
+        this("127.0.0.1", port, peerPorts);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param host
+     * @param port
+     * @param peerPorts
+     */
+    public UdpInvalidationTransport(String host, int port, int... peerPorts) {
+        try {
+            this.address = InetAddress.getByName(host);
+        } catch (UnknownHostException e) {
+            throw new CacheException("Unknown invalidation host " + host + ".  Cause: " + e, e);
+        }
+        this.port = port;
+        this.peerPorts = Arrays.copyOf(peerPorts, peerPorts.length);
+    }
+
+    @Override
+    public synchronized void start(final InvalidationListener listener) {
+        if (running) {
+            return;
+        }
+        try {
+            socket = new DatagramSocket(port, address);
+        } catch (SocketException e) {
+            throw new CacheException("Could not bind invalidation socket to " + address + ":" + port + ".  Cause: " + e,
+                    e);
+        }
+        running = true;
+        final DatagramSocket bound = socket;
+        receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive(bound, listener);
+            }
+        }, "mybatis-cache-invalidation-" + port);
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * 接收线程的主循环
+     *
+     * @param socket
+     * @param listener
+     */
+    private void receive(DatagramSocket socket, InvalidationListener listener) {
+        byte[] buffer = new byte[MAX_PACKET_SIZE];
+        while (running) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Error receiving cache invalidation message.  Cause: " + e);
+                }
+                continue;
+            }
+            listener.onMessage(Arrays.copyOfRange(packet.getData(), packet.getOffset(),
+                    packet.getOffset() + packet.getLength()));
+        }
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        if (message.length > MAX_PACKET_SIZE) {
+            throw new CacheException("Invalidation message of " + message.length + " bytes exceeds the UDP limit");
+        }
+        DatagramSocket sender = socket;
+        if (sender == null) {
+            throw new CacheException("Invalidation transport on port " + port + " has not been started");
+        }
+        for (int peerPort : peerPorts) {
+            try {
+                sender.send(new DatagramPacket(message, message.length, address, peerPort));
+            } catch (IOException e) {
+                log.warn("Error sending cache invalidation message to " + address + ":" + peerPort + ".  Cause: " + e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (socket != null) {
+            socket.close();
+            socket = null;
+        }
+        receiver = null;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+}
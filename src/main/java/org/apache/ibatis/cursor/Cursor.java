@@ -21,6 +21,7 @@ import java.io.Closeable;
  * Cursor contract to handle fetching items lazily using an Iterator.
  * Cursors are a perfect fit to handle millions of items queries that would not normally fits in memory.
  * Cursor SQL queries must be ordered (resultOrdered="true") using the id columns of the resultMap.
+ * 开启streamNestedResults设置后所有语句都按有序处理 并且会校验同一个父对象的行是否连续
  * 游标对象
  *
  * @author Guillaume Darmont / guillaume@dropinocean.com
@@ -17,15 +17,23 @@ package org.apache.ibatis.executor;
 
 import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOLDER;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.executor.statement.StatementUtil;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -34,7 +42,9 @@ import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.ExceptionUtil;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.session.Configuration;
@@ -42,6 +52,7 @@ import org.apache.ibatis.session.LocalCacheScope;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.routing.ReadWriteSplittingTransaction;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 
 /**
@@ -50,7 +61,7 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
  *
  * @author Clinton Begin
  */
-public abstract class BaseExecutor implements Executor {
+public abstract class BaseExecutor implements Executor, MultiQueryExecutor {
 
     private static final Log log = LogFactory.getLog(BaseExecutor.class);
 
@@ -212,18 +223,98 @@ public abstract class BaseExecutor implements Executor {
             queryStack--;
         }
         if (queryStack == 0) {
-            for (DeferredLoad deferredLoad : deferredLoads) {
-                deferredLoad.load();
+            completeOutermostQuery();
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<List<Object>> queryMultiple(List<MappedStatement> mss, List<Object> parameters) throws SQLException {
+        if (closed) {
+            throw new ExecutorException("Executor was closed.");
+        }
+        List<List<Object>> results = new ArrayList<List<Object>>(mss.size());
+        List<Integer> pending = new ArrayList<Integer>();
+        List<BoundSql> pendingBoundSqls = new ArrayList<BoundSql>();
+        List<CacheKey> pendingKeys = new ArrayList<CacheKey>();
+        for (int i = 0; i < mss.size(); i++) {
+            MappedStatement ms = mss.get(i);
+            Object parameter = parameters.get(i);
+            BoundSql boundSql = ms.getBoundSql(parameter);
+            CacheKey key = createCacheKey(ms, parameter, RowBounds.DEFAULT, boundSql);
+            if (!configuration.isMultiStatementPipelining() || !isPipelinable(ms)) {
+                results.add(this.<Object>query(ms, parameter, RowBounds.DEFAULT, NO_RESULT_HANDLER, key, boundSql));
+                continue;
             }
-            // issue #601
-            deferredLoads.clear();
-            //如果本地缓存级别是声明级别 那么查询完成之后删除掉缓存
-            if (configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
-                // issue #482
+            ErrorContext.instance().resource(ms.getResource()).activity("executing a query").object(ms.getId());
+            if (queryStack == 0 && ms.isFlushCacheRequired()) {
                 clearLocalCache();
             }
+            Object cached = localCache.getObject(key);
+            if (cached instanceof List) {
+                results.add((List<Object>) cached);
+            } else {
+                results.add(null);
+                pending.add(i);
+                pendingBoundSqls.add(boundSql);
+                pendingKeys.add(key);
+            }
         }
-        return list;
+        if (pending.size() == 1) {
+            int i = pending.get(0);
+            results.set(i, this.<Object>query(mss.get(i), parameters.get(i), RowBounds.DEFAULT, NO_RESULT_HANDLER,
+                    pendingKeys.get(0), pendingBoundSqls.get(0)));
+        } else if (pending.size() > 1) {
+            List<MappedStatement> pendingStatements = new ArrayList<MappedStatement>(pending.size());
+            List<Object> pendingParameters = new ArrayList<Object>(pending.size());
+            for (int i : pending) {
+                pendingStatements.add(mss.get(i));
+                pendingParameters.add(parameters.get(i));
+            }
+            List<List<Object>> lists;
+            try {
+                queryStack++;
+                lists = doQueryMultiple(pendingStatements, pendingParameters, pendingBoundSqls);
+            } finally {
+                queryStack--;
+            }
+            for (int j = 0; j < pending.size(); j++) {
+                localCache.putObject(pendingKeys.get(j), lists.get(j));
+                results.set(pending.get(j), lists.get(j));
+            }
+            if (queryStack == 0) {
+                completeOutermostQuery();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 最外层的查询完成之后 加载延迟加载的属性 声明级别的本地缓存在这里清空
+     */
+    private void completeOutermostQuery() {
+        for (DeferredLoad deferredLoad : deferredLoads) {
+            deferredLoad.load();
+        }
+        // issue #601
+        deferredLoads.clear();
+        //如果本地缓存级别是声明级别 那么查询完成之后删除掉缓存
+        if (configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
+            // issue #482
+            clearLocalCache();
+        }
+    }
+
+    /**
+     * 能否拼接到多语句中执行 只拼接预编译的查询 存储过程 多结果集以及需要清空缓存的声明不能拼接
+     *
+     * @param ms
+     * @return
+     */
+    private boolean isPipelinable(MappedStatement ms) {
+        return ms.getSqlCommandType() == SqlCommandType.SELECT && ms.getStatementType() == StatementType.PREPARED
+                && ms.getResultSets() == null && !ms.isFlushCacheRequired();
     }
 
     @Override
@@ -383,6 +474,130 @@ public abstract class BaseExecutor implements Executor {
     protected abstract <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
             BoundSql boundSql) throws SQLException;
 
+    /**
+     * 把多个查询用分号拼接成一条语句 一次往返执行 然后依次映射每一个结果集
+     * 参数由每个查询自己的语句处理器绑定 拼接后的语句也通过语句处理器预编译
+     *
+     * @param mss
+     * @param parameters
+     * @param boundSqls
+     * @return 和声明一一对应的结果
+     * @throws SQLException
+     */
+    protected List<List<Object>> doQueryMultiple(List<MappedStatement> mss, List<Object> parameters,
+            List<BoundSql> boundSqls) throws SQLException {
+        StringBuilder sql = new StringBuilder();
+        List<ParameterMapping> parameterMappings = new ArrayList<ParameterMapping>();
+        Integer queryTimeout = null;
+        for (int i = 0; i < mss.size(); i++) {
+            String statementSql = boundSqls.get(i).getSql().trim();
+            if (statementSql.endsWith(";")) {
+                statementSql = statementSql.substring(0, statementSql.length() - 1);
+            }
+            if (i > 0) {
+                sql.append(";\n");
+            }
+            sql.append(statementSql);
+            parameterMappings.addAll(boundSqls.get(i).getParameterMappings());
+            Integer timeout = mss.get(i).getTimeout();
+            if (timeout != null && (queryTimeout == null || timeout > queryTimeout)) {
+                queryTimeout = timeout;
+            }
+        }
+        ErrorContext.instance().sql(sql.toString());
+        Connection connection = getConnection(mss.get(0));
+        //每一个查询的参数通过自己的语句处理器绑定并记录下来 插件可以拦截每一次parameterize
+        List<StatementHandler> handlers = new ArrayList<StatementHandler>(mss.size());
+        List<RecordedParameters> recordedParameters = new ArrayList<RecordedParameters>(mss.size());
+        for (int i = 0; i < mss.size(); i++) {
+            StatementHandler handler = configuration.newStatementHandler(wrapper, mss.get(i), parameters.get(i),
+                    RowBounds.DEFAULT, NO_RESULT_HANDLER, boundSqls.get(i));
+            handlers.add(handler);
+            recordedParameters.add(RecordedParameters.record(handler, connection));
+        }
+        //拼接后的语句通过第一个查询的语句处理器预编译 插件、fetchSize、结果集类型和超时时间都会生效
+        BoundSql boundSql = new BoundSql(configuration, sql.toString(), parameterMappings, parameters.get(0));
+        StatementHandler handler = configuration.newStatementHandler(wrapper, mss.get(0), parameters.get(0),
+                RowBounds.DEFAULT, NO_RESULT_HANDLER, boundSql);
+        Statement stmt = null;
+        try {
+            stmt = handler.prepare(connection, transaction.getTimeout());
+            if (!(stmt instanceof PreparedStatement)) {
+                throw new ExecutorException("Multi-statement query of " + mss.get(0).getId()
+                        + " requires a PreparedStatement but the statement handler created " + stmt.getClass());
+            }
+            PreparedStatement ps = (PreparedStatement) stmt;
+            if (queryTimeout != null && queryTimeout > ps.getQueryTimeout()) {
+                ps.setQueryTimeout(queryTimeout);
+                StatementUtil.applyTransactionTimeout(ps, queryTimeout, transaction.getTimeout());
+            }
+            int offset = 0;
+            for (int i = 0; i < mss.size(); i++) {
+                recordedParameters.get(i).replay(ps, offset);
+                offset += boundSqls.get(i).getParameterMappings().size();
+            }
+            ps.execute();
+            List<List<Object>> results = new ArrayList<List<Object>>(mss.size());
+            for (int i = 0; i < mss.size(); i++) {
+                MappedStatement ms = mss.get(i);
+                if (i > 0 && !moveToNextResultSet(ps)) {
+                    throw new ExecutorException("No result set was returned for statement " + ms.getId()
+                            + " in multi-statement query. Check that the driver allows multiple statements.");
+                }
+                ResultSetHandler resultSetHandler = configuration.newResultSetHandler(wrapper, ms, RowBounds.DEFAULT,
+                        handlers.get(i).getParameterHandler(), NO_RESULT_HANDLER, boundSqls.get(i));
+                results.add(resultSetHandler.<Object>handleResultSets(currentResultSetOnly(ps)));
+            }
+            return results;
+        } finally {
+            closeStatement(stmt);
+        }
+    }
+
+    /**
+     * 跳过更新数量 移动到下一个结果集
+     *
+     * @param statement
+     * @return 没有结果集了返回false
+     * @throws SQLException
+     */
+    private static boolean moveToNextResultSet(Statement statement) throws SQLException {
+        while (true) {
+            if (statement.getMoreResults()) {
+                return true;
+            }
+            if (statement.getUpdateCount() == -1) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 包装statement 结果集处理器只能看到当前的结果集 由调用方移动到下一个结果集
+     *
+     * @param statement
+     * @return
+     */
+    private static Statement currentResultSetOnly(final Statement statement) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { Statement.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getMoreResults")) {
+                            return false;
+                        }
+                        if (method.getName().equals("getUpdateCount")) {
+                            return -1;
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw ExceptionUtil.unwrapThrowable(e);
+                        }
+                    }
+                });
+    }
+
     /**
      * 关闭声明
      *
@@ -474,7 +689,35 @@ public abstract class BaseExecutor implements Executor {
      * @throws SQLException
      */
     protected Connection getConnection(Log statementLog) throws SQLException {
-        Connection connection = transaction.getConnection();
+        return wrapConnection(transaction.getConnection(), statementLog);
+    }
+
+    /**
+     * 获取执行声明的连接 读写分离的事务中查询可能使用从库的连接
+     *
+     * @param ms
+     * @return
+     * @throws SQLException
+     */
+    protected Connection getConnection(MappedStatement ms) throws SQLException {
+        return wrapConnection(getTransactionConnection(ms), ms.getStatementLog());
+    }
+
+    /**
+     * 获取事务中执行声明的原始连接
+     *
+     * @param ms
+     * @return
+     * @throws SQLException
+     */
+    protected Connection getTransactionConnection(MappedStatement ms) throws SQLException {
+        if (transaction instanceof ReadWriteSplittingTransaction) {
+            return ((ReadWriteSplittingTransaction) transaction).getConnection(ms);
+        }
+        return transaction.getConnection();
+    }
+
+    private Connection wrapConnection(Connection connection, Log statementLog) {
         //如果是允许debug级别的日志输出 那么获取一个有日志代理的连接
         if (statementLog.isDebugEnabled()) {
             return ConnectionLogger.newInstance(connection, statementLog, queryStack);
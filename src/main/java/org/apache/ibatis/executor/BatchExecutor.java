@@ -15,13 +15,20 @@
  */
 package org.apache.ibatis.executor;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
@@ -30,10 +37,13 @@ import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.type.TypeHandlerRegistry;
 
 /**
  * // TODO: 2021/4/7 CallYeDeGuo 核心类
@@ -45,11 +55,53 @@ public class BatchExecutor extends BaseExecutor {
 
     public static final int BATCH_UPDATE_RETURN_VALUE = Integer.MIN_VALUE + 1002;
 
+    /**
+     * 从insert/update/delete语句中解析出目标表
+     */
+    private static final Pattern TARGET_TABLE_PATTERN = Pattern.compile(
+            "^\\s*(?:insert\\s+(?:ignore\\s+)?into|update|delete\\s+from|delete|merge\\s+into|replace\\s+into)\\s+([\\w.$\"`\\[\\]]+)",
+            Pattern.CASE_INSENSITIVE);
+
     private final List<Statement> statementList = new ArrayList<Statement>();
     private final List<BatchResult> batchResultList = new ArrayList<BatchResult>();
     private String currentSql;
     private MappedStatement currentStatement;
 
+    /**
+     * 分组模式下sql对应的statement下标
+     */
+    private final Map<String, Integer> groupIndexes = new HashMap<String, Integer>();
+
+    /**
+     * 分组模式下每个statement的目标表 null表示无法解析
+     */
+    private final List<String> groupTables = new ArrayList<String>();
+
+    /**
+     * 屏障位置 在这之前创建的statement不再复用
+     */
+    private int barrierIndex;
+
+    /**
+     * 每个statement对应的多行insert改写 没有改写的为null
+     */
+    private final List<MultiRowInsertBatch> rewrites = new ArrayList<MultiRowInsertBatch>();
+
+    /**
+     * 每个statement已经执行过的参数对象数量
+     */
+    private final List<Integer> executedCounts = new ArrayList<Integer>();
+
+    /**
+     * 还没有执行的行数
+     */
+    private int pendingRows;
+
+    /**
+     * 还没有执行的参数估算字节数
+     */
+    private long pendingBytes;
+
     public BatchExecutor(Configuration configuration, Transaction transaction) {
         super(configuration, transaction);
     }
@@ -62,27 +114,182 @@ public class BatchExecutor extends BaseExecutor {
         final BoundSql boundSql = handler.getBoundSql();
         final String sql = boundSql.getSql();
         final Statement stmt;
-        if (sql.equals(currentSql) && ms.equals(currentStatement)) {
-            int last = statementList.size() - 1;
-            stmt = statementList.get(last);
-            applyTransactionTimeout(stmt);
-            handler.parameterize(stmt);//fix Issues 322
-            BatchResult batchResult = batchResultList.get(last);
+        final boolean grouping = configuration.isBatchGroupingEnabled();
+        final MultiRowInsertBatch rewrite;
+        int index = grouping ? findGroup(ms, sql) : findCurrent(ms, sql);
+        if (index >= 0) {
+            stmt = statementList.get(index);
+            rewrite = rewrites.get(index);
+            if (stmt != null) {
+                applyTransactionTimeout(stmt);
+            }
+            BatchResult batchResult = batchResultList.get(index);
             batchResult.addParameterObject(parameterObject);
         } else {
-            Connection connection = getConnection(ms.getStatementLog());
-            stmt = handler.prepare(connection, transaction.getTimeout());
-            handler.parameterize(stmt);    //fix Issues 322
+            //多行改写的insert在执行的时候才预编译
+            rewrite = configuration.isRewriteBatchedInserts() ? MultiRowInsertBatch.parse(ms, boundSql) : null;
+            if (rewrite == null) {
+                Connection connection = getConnection(ms);
+                stmt = handler.prepare(connection, transaction.getTimeout());
+            } else {
+                stmt = null;
+            }
             currentSql = sql;
             currentStatement = ms;
+            if (grouping) {
+                groupIndexes.put(sql, statementList.size());
+                groupTables.add(targetTable(sql));
+            }
             statementList.add(stmt);
+            rewrites.add(rewrite);
             batchResultList.add(new BatchResult(ms, sql, parameterObject));
+            executedCounts.add(0);
+        }
+        if (rewrite != null) {
+            rewrite.addRow(handler, getConnection(ms));
+        } else {
+            handler.parameterize(stmt);//fix Issues 322
+            handler.batch(stmt);
         }
-        // handler.parameterize(stmt);
-        handler.batch(stmt);
+        autoFlushIfRequired(configuration, ms, boundSql, parameterObject);
         return BATCH_UPDATE_RETURN_VALUE;
     }
 
+    /**
+     * 累计的行数或者参数字节数达到阈值的时候 按顺序执行所有statement中积累的批量
+     * statement不会被关闭 之后的语句可以继续复用
+     *
+     * @param configuration
+     * @param ms
+     * @param boundSql
+     * @param parameterObject
+     * @throws SQLException
+     */
+    private void autoFlushIfRequired(Configuration configuration, MappedStatement ms, BoundSql boundSql,
+            Object parameterObject) throws SQLException {
+        Integer maxBatchSize = configuration.getMaxBatchSize();
+        Long maxBatchBytes = configuration.getMaxBatchBytes();
+        pendingRows++;
+        if (maxBatchBytes != null) {
+            pendingBytes += estimateParameterBytes(configuration, boundSql, parameterObject);
+        }
+        if ((maxBatchSize != null && pendingRows >= maxBatchSize) || (maxBatchBytes != null
+                && pendingBytes >= maxBatchBytes)) {
+            List<BatchResult> results = new ArrayList<BatchResult>();
+            for (int i = 0, n = statementList.size(); i < n; i++) {
+                executeBatch(i, results);
+            }
+            pendingRows = 0;
+            pendingBytes = 0;
+        }
+    }
+
+    /**
+     * 估算绑定参数的字节数
+     *
+     * @param configuration
+     * @param boundSql
+     * @param parameterObject
+     * @return
+     */
+    private long estimateParameterBytes(Configuration configuration, BoundSql boundSql, Object parameterObject) {
+        TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        MetaObject metaObject = null;
+        long bytes = 0;
+        for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+            String propertyName = parameterMapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(propertyName)) {
+                value = boundSql.getAdditionalParameter(propertyName);
+            } else if (parameterObject == null) {
+                value = null;
+            } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+                value = parameterObject;
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameterObject);
+                }
+                value = metaObject.getValue(propertyName);
+            }
+            bytes += estimateValueBytes(value);
+        }
+        return bytes;
+    }
+
+    private static long estimateValueBytes(Object value) {
+        if (value == null) {
+            return 1;
+        } else if (value instanceof CharSequence) {
+            return 2L * ((CharSequence) value).length();
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        } else if (value instanceof char[]) {
+            return 2L * ((char[]) value).length;
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return 24;
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return 8;
+        } else {
+            return 16;
+        }
+    }
+
+    /**
+     * 设置一个屏障 之后的语句不会再合并到屏障之前的statement中 保证屏障前后的执行顺序
+     */
+    public void barrier() {
+        barrierIndex = statementList.size();
+        currentSql = null;
+    }
+
+    /**
+     * 只有和最后一个statement相同的时候才复用
+     *
+     * @param ms
+     * @param sql
+     * @return 可以复用的statement下标 没有返回-1
+     */
+    private int findCurrent(MappedStatement ms, String sql) {
+        if (sql.equals(currentSql) && ms.equals(currentStatement)) {
+            return statementList.size() - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * 查找相同sql的statement 复用它相当于把这条语句提前到之后创建的statement之前执行
+     * 所以只有之后创建的statement都没有操作同一张表的时候才能复用 无法解析目标表的语句不允许越过
+     *
+     * @param ms
+     * @param sql
+     * @return 可以复用的statement下标 没有返回-1
+     */
+    private int findGroup(MappedStatement ms, String sql) {
+        Integer index = groupIndexes.get(sql);
+        if (index == null || index < barrierIndex || !ms.equals(batchResultList.get(index).getMappedStatement())) {
+            return -1;
+        }
+        String table = groupTables.get(index);
+        for (int i = index + 1, n = groupTables.size(); i < n; i++) {
+            String other = groupTables.get(i);
+            if (table == null || other == null || table.equals(other)) {
+                return -1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 解析语句的目标表
+     *
+     * @param sql
+     * @return 无法解析的时候返回null
+     */
+    private static String targetTable(String sql) {
+        Matcher matcher = TARGET_TABLE_PATTERN.matcher(sql);
+        return matcher.find() ? matcher.group(1).toUpperCase(Locale.ENGLISH) : null;
+    }
+
     @Override
     public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds,
             ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
@@ -92,7 +299,7 @@ public class BatchExecutor extends BaseExecutor {
             Configuration configuration = ms.getConfiguration();
             StatementHandler handler = configuration
                     .newStatementHandler(wrapper, ms, parameterObject, rowBounds, resultHandler, boundSql);
-            Connection connection = getConnection(ms.getStatementLog());
+            Connection connection = getConnection(ms);
             stmt = handler.prepare(connection, transaction.getTimeout());
             handler.parameterize(stmt);
             return handler.<E>query(stmt, resultHandler);
@@ -101,13 +308,20 @@ public class BatchExecutor extends BaseExecutor {
         }
     }
 
+    @Override
+    protected List<List<Object>> doQueryMultiple(List<MappedStatement> mss, List<Object> parameters,
+            List<BoundSql> boundSqls) throws SQLException {
+        flushStatements();
+        return super.doQueryMultiple(mss, parameters, boundSqls);
+    }
+
     @Override
     protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql)
             throws SQLException {
         flushStatements();
         Configuration configuration = ms.getConfiguration();
         StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
-        Connection connection = getConnection(ms.getStatementLog());
+        Connection connection = getConnection(ms);
         Statement stmt = handler.prepare(connection, transaction.getTimeout());
         handler.parameterize(stmt);
         return handler.<E>queryCursor(stmt);
@@ -121,37 +335,11 @@ public class BatchExecutor extends BaseExecutor {
                 return Collections.emptyList();
             }
             for (int i = 0, n = statementList.size(); i < n; i++) {
-                Statement stmt = statementList.get(i);
-                applyTransactionTimeout(stmt);
-                BatchResult batchResult = batchResultList.get(i);
-                try {
-                    batchResult.setUpdateCounts(stmt.executeBatch());
-                    MappedStatement ms = batchResult.getMappedStatement();
-                    List<Object> parameterObjects = batchResult.getParameterObjects();
-                    KeyGenerator keyGenerator = ms.getKeyGenerator();
-                    if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
-                        Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
-                        jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
-                    } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
-                        for (Object parameter : parameterObjects) {
-                            keyGenerator.processAfter(this, ms, stmt, parameter);
-                        }
-                    }
-                    // Close statement to close cursor #1109
-                    closeStatement(stmt);
-                } catch (BatchUpdateException e) {
-                    StringBuilder message = new StringBuilder();
-                    message.append(batchResult.getMappedStatement().getId()).append(" (batch index #").append(i + 1)
-                            .append(")").append(" failed.");
-                    if (i > 0) {
-                        message.append(" ").append(i)
-                                .append(" prior sub executor(s) completed successfully, but will be rolled back.");
-                    }
-                    throw new BatchExecutorException(message.toString(), e, results, batchResult);
-                }
-                results.add(batchResult);
+                executeBatch(i, results);
+                // Close statement to close cursor #1109
+                closeStatement(statementList.get(i));
             }
-            return results;
+            return configuration.isRetainBatchResults() ? results : Collections.<BatchResult>emptyList();
         } finally {
             for (Statement stmt : statementList) {
                 closeStatement(stmt);
@@ -159,7 +347,84 @@ public class BatchExecutor extends BaseExecutor {
             currentSql = null;
             statementList.clear();
             batchResultList.clear();
+            groupIndexes.clear();
+            groupTables.clear();
+            rewrites.clear();
+            executedCounts.clear();
+            barrierIndex = 0;
+            pendingRows = 0;
+            pendingBytes = 0;
+        }
+    }
+
+    /**
+     * 执行一个statement中还没有执行的批量 并处理主键
+     * 不保留批量结果的时候执行完就释放参数对象
+     *
+     * @param i       statement下标
+     * @param results 本次已经执行完成的批量结果
+     * @throws SQLException
+     */
+    private void executeBatch(int i, List<BatchResult> results) throws SQLException {
+        Statement stmt = statementList.get(i);
+        BatchResult batchResult = batchResultList.get(i);
+        List<Object> parameterObjects = batchResult.getParameterObjects();
+        int executed = executedCounts.get(i);
+        if (executed == parameterObjects.size()) {
+            results.add(batchResult);
+            return;
+        }
+        MultiRowInsertBatch rewrite = rewrites.get(i);
+        try {
+            MappedStatement ms = batchResult.getMappedStatement();
+            List<Object> executedParameters = parameterObjects.subList(executed, parameterObjects.size());
+            int[] updateCounts;
+            if (rewrite != null) {
+                //多行改写的insert每执行一块就处理这一块的主键
+                updateCounts = rewrite.execute(this, getConnection(ms), transaction.getTimeout(),
+                        configuration.getRewriteBatchedInsertsParameterLimit(), executedParameters);
+            } else {
+                applyTransactionTimeout(stmt);
+                updateCounts = stmt.executeBatch();
+                KeyGenerator keyGenerator = ms.getKeyGenerator();
+                if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+                    Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
+                    jdbc3KeyGenerator.processBatch(ms, stmt, executedParameters);
+                } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
+                    for (Object parameter : executedParameters) {
+                        keyGenerator.processAfter(this, ms, stmt, parameter);
+                    }
+                }
+            }
+            if (configuration.isRetainBatchResults()) {
+                batchResult.setUpdateCounts(concat(batchResult.getUpdateCounts(), updateCounts));
+                executedCounts.set(i, parameterObjects.size());
+            } else {
+                batchResult.setUpdateCounts(updateCounts);
+                parameterObjects.clear();
+                executedCounts.set(i, 0);
+            }
+        } catch (BatchUpdateException e) {
+            StringBuilder message = new StringBuilder();
+            message.append(batchResult.getMappedStatement().getId()).append(" (batch index #").append(i + 1)
+                    .append(")").append(" failed.");
+            if (i > 0) {
+                message.append(" ").append(i)
+                        .append(" prior sub executor(s) completed successfully, but will be rolled back.");
+            }
+            throw new BatchExecutorException(message.toString(), e, results, batchResult);
+        }
+        results.add(batchResult);
+    }
+
+    private static int[] concat(int[] previous, int[] updateCounts) {
+        if (previous == null || previous.length == 0) {
+            return updateCounts;
         }
+        int[] merged = new int[previous.length + updateCounts.length];
+        System.arraycopy(previous, 0, merged, 0, previous.length);
+        System.arraycopy(updateCounts, 0, merged, previous.length, updateCounts.length);
+        return merged;
     }
 
 }
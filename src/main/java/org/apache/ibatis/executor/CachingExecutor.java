@@ -16,11 +16,14 @@
 package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheAdmissionPolicy;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationBus;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
@@ -39,7 +42,7 @@ import org.apache.ibatis.transaction.Transaction;
  * @author Clinton Begin
  * @author Eduardo Macarron
  */
-public class CachingExecutor implements Executor {
+public class CachingExecutor implements Executor, MultiQueryExecutor {
 
     /**
      * 代理执行器
@@ -49,7 +52,7 @@ public class CachingExecutor implements Executor {
     /**
      * 事务缓存管理器
      */
-    private final TransactionalCacheManager tcm = new TransactionalCacheManager();
+    private final TransactionalCacheManager tcm;
 
     /**
      * 构造函数
@@ -57,10 +60,30 @@ public class CachingExecutor implements Executor {
      * @param delegate
      */
     public CachingExecutor(Executor delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param delegate
+     * @param invalidationBus 缓存失效总线 提交时清空的缓存会通知到其他节点
+     */
+    public CachingExecutor(Executor delegate, CacheInvalidationBus invalidationBus) {
         this.delegate = delegate;
+        this.tcm = new TransactionalCacheManager(invalidationBus);
         delegate.setExecutorWrapper(this);
     }
 
+    /**
+     * 获取代理执行器
+     *
+     * @return
+     */
+    public Executor getDelegate() {
+        return delegate;
+    }
+
     @Override
     public Transaction getTransaction() {
         return delegate.getTransaction();
@@ -116,8 +139,12 @@ public class CachingExecutor implements Executor {
                 ensureNoOutParams(ms, boundSql);
                 @SuppressWarnings("unchecked") List<E> list = (List<E>) tcm.getObject(cache, key);
                 if (list == null) {
+                    long start = System.currentTimeMillis();
                     list = delegate.<E>query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
-                    tcm.putObject(cache, key, list); // issue #578 and #116
+                    //没有通过准入策略的结果不放入缓存 未命中的key在提交时仍然会被释放
+                    if (isAdmitted(ms, key, list, System.currentTimeMillis() - start)) {
+                        tcm.putObject(cache, key, list); // issue #578 and #116
+                    }
                 }
                 return list;
             }
@@ -125,6 +152,65 @@ public class CachingExecutor implements Executor {
         return delegate.<E>query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<List<Object>> queryMultiple(List<MappedStatement> mss, List<Object> parameters) throws SQLException {
+        if (!(delegate instanceof MultiQueryExecutor)) {
+            //被代理的执行器不支持的时候依次执行每一个查询
+            List<List<Object>> results = new ArrayList<List<Object>>(mss.size());
+            for (int i = 0; i < mss.size(); i++) {
+                results.add(this.<Object>query(mss.get(i), parameters.get(i), RowBounds.DEFAULT, NO_RESULT_HANDLER));
+            }
+            return results;
+        }
+        List<List<Object>> results = new ArrayList<List<Object>>(mss.size());
+        List<Integer> pending = new ArrayList<Integer>();
+        List<MappedStatement> pendingStatements = new ArrayList<MappedStatement>();
+        List<Object> pendingParameters = new ArrayList<Object>();
+        List<CacheKey> pendingKeys = new ArrayList<CacheKey>();
+        for (int i = 0; i < mss.size(); i++) {
+            MappedStatement ms = mss.get(i);
+            Object parameterObject = parameters.get(i);
+            Cache cache = ms.getCache();
+            CacheKey key = null;
+            if (cache != null) {
+                flushCacheIfRequired(ms);
+                if (ms.isUseCache()) {
+                    BoundSql boundSql = ms.getBoundSql(parameterObject);
+                    ensureNoOutParams(ms, boundSql);
+                    key = createCacheKey(ms, parameterObject, RowBounds.DEFAULT, boundSql);
+                    List<Object> list = (List<Object>) tcm.getObject(cache, key);
+                    if (list != null) {
+                        results.add(list);
+                        continue;
+                    }
+                }
+            }
+            //二级缓存没有命中的查询交给被代理的执行器一起执行
+            results.add(null);
+            pending.add(i);
+            pendingStatements.add(ms);
+            pendingParameters.add(parameterObject);
+            pendingKeys.add(key);
+        }
+        if (!pending.isEmpty()) {
+            long start = System.currentTimeMillis();
+            List<List<Object>> lists = ((MultiQueryExecutor) delegate)
+                    .queryMultiple(pendingStatements, pendingParameters);
+            long elapsedTime = System.currentTimeMillis() - start;
+            for (int j = 0; j < pending.size(); j++) {
+                MappedStatement ms = pendingStatements.get(j);
+                CacheKey key = pendingKeys.get(j);
+                List<Object> list = lists.get(j);
+                if (key != null && isAdmitted(ms, key, list, elapsedTime)) {
+                    tcm.putObject(ms.getCache(), key, list);
+                }
+                results.set(pending.get(j), list);
+            }
+        }
+        return results;
+    }
+
     @Override
     public List<BatchResult> flushStatements() throws SQLException {
         return delegate.flushStatements();
@@ -147,6 +233,20 @@ public class CachingExecutor implements Executor {
         }
     }
 
+    /**
+     * 判断查询结果是否满足二级缓存的准入策略
+     *
+     * @param ms
+     * @param key
+     * @param list
+     * @param elapsedTime
+     * @return
+     */
+    private boolean isAdmitted(MappedStatement ms, CacheKey key, List<?> list, long elapsedTime) {
+        CacheAdmissionPolicy policy = ms.getConfiguration().getCacheAdmissionPolicy(ms);
+        return policy == null || policy.admit(key, list, elapsedTime);
+    }
+
     private void ensureNoOutParams(MappedStatement ms, BoundSql boundSql) {
         if (ms.getStatementType() == StatementType.CALLABLE) {
             for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
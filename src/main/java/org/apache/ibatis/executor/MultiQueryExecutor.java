@@ -0,0 +1,39 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * 可以一次执行多个互不相关查询的执行器
+ * 不属于{@link Executor}接口 自定义的执行器和插件代理不需要实现它 不支持的执行器由调用方依次执行每一个查询
+ */
+public interface MultiQueryExecutor {
+
+    /**
+     * 依次执行多个互不相关的查询 开启multiStatementPipelining的时候拼接成一条多语句在一次往返中执行
+     *
+     * @param mss
+     * @param parameters 和声明一一对应的参数
+     * @return 和声明一一对应的结果
+     * @throws SQLException
+     */
+    List<List<Object>> queryMultiple(List<MappedStatement> mss, List<Object> parameters) throws SQLException;
+
+}
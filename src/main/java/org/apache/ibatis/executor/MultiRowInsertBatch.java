@@ -0,0 +1,240 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * 多行VALUES改写的批量插入
+ * 把多次单行的insert into ... values (...) 合并成 insert into ... values (...), (...), ... 执行
+ * 每一行的参数在添加的时候通过语句处理器绑定并记录下来 执行时按参数下标的偏移量重放
+ * 合并后的语句同样通过语句处理器预编译 插件、超时时间和fetchSize都会生效
+ *
+ */
+class MultiRowInsertBatch {
+
+    /**
+     * 单条语句最多包含的行数
+     */
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    /**
+     * 单行的insert语句 values后面只能有一组括号
+     */
+    private static final Pattern SINGLE_ROW_INSERT_PATTERN = Pattern.compile(
+            "^(\\s*insert\\s+into\\s+.+?\\bvalues)\\s*(\\(.*\\))\\s*$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final MappedStatement mappedStatement;
+
+    /**
+     * values之前的部分
+     */
+    private final String head;
+
+    /**
+     * 一行的values
+     */
+    private final String row;
+
+    /**
+     * 一行的参数映射
+     */
+    private final List<ParameterMapping> rowParameterMappings;
+
+    /**
+     * 每一行的参数数量
+     */
+    private final int parametersPerRow;
+
+    /**
+     * 等待执行的每一行记录下来的参数
+     */
+    private final List<RecordedParameters> pendingRows = new ArrayList<RecordedParameters>();
+
+    private MultiRowInsertBatch(MappedStatement mappedStatement, String head, String row,
+            List<ParameterMapping> rowParameterMappings) {
+        this.mappedStatement = mappedStatement;
+        this.head = head;
+        this.row = row;
+        this.rowParameterMappings = rowParameterMappings;
+        this.parametersPerRow = rowParameterMappings.size();
+    }
+
+    /**
+     * 判断语句能否改写 可以的话创建一个改写批量
+     * 只改写预编译的单行insert 主键生成器只能是空的或者jdbc3
+     *
+     * @param ms
+     * @param boundSql
+     * @return 不能改写返回null
+     */
+    static MultiRowInsertBatch parse(MappedStatement ms, BoundSql boundSql) {
+        if (ms.getSqlCommandType() != SqlCommandType.INSERT || ms.getStatementType() != StatementType.PREPARED) {
+            return null;
+        }
+        KeyGenerator keyGenerator = ms.getKeyGenerator();
+        if (!(keyGenerator instanceof NoKeyGenerator) && !(keyGenerator instanceof Jdbc3KeyGenerator)) {
+            return null;
+        }
+        Matcher matcher = SINGLE_ROW_INSERT_PATTERN.matcher(boundSql.getSql());
+        if (!matcher.matches() || !isSingleGroup(matcher.group(2))) {
+            return null;
+        }
+        return new MultiRowInsertBatch(ms, matcher.group(1), matcher.group(2), boundSql.getParameterMappings());
+    }
+
+    /**
+     * 判断values部分是否是一组完整的括号 忽略字符串中的括号
+     *
+     * @param values
+     * @return
+     */
+    private static boolean isSingleGroup(String values) {
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = 0, n = values.length(); i < n; i++) {
+            char c = values.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == '(') {
+                depth++;
+            } else if (!quoted && c == ')') {
+                depth--;
+                if (depth == 0 && i != n - 1) {
+                    return false;
+                }
+            }
+        }
+        return depth == 0 && !quoted;
+    }
+
+    /**
+     * 添加一行 立即绑定参数 避免复用的参数对象在执行前被修改
+     *
+     * @param handler    这一行的语句处理器
+     * @param connection
+     * @throws SQLException
+     */
+    void addRow(StatementHandler handler, Connection connection) throws SQLException {
+        pendingRows.add(RecordedParameters.record(handler, connection));
+    }
+
+    /**
+     * 按参数上限分块执行等待中的行 并处理生成的主键
+     *
+     * @param executor           创建语句处理器使用的执行器
+     * @param connection
+     * @param transactionTimeout
+     * @param parameterLimit     单条语句最多的参数数量
+     * @param parameterObjects   和等待中的行一一对应的参数对象
+     * @return 每一行的更新数量
+     * @throws SQLException
+     */
+    int[] execute(Executor executor, Connection connection, Integer transactionTimeout, int parameterLimit,
+            List<Object> parameterObjects) throws SQLException {
+        int total = pendingRows.size();
+        int[] updateCounts = new int[total];
+        int rowsPerStatement = parametersPerRow == 0 ? MAX_ROWS_PER_STATEMENT
+                : Math.max(1, Math.min(MAX_ROWS_PER_STATEMENT, parameterLimit / parametersPerRow));
+        PreparedStatement ps = null;
+        int preparedRows = 0;
+        try {
+            for (int offset = 0; offset < total; offset += rowsPerStatement) {
+                int rows = Math.min(rowsPerStatement, total - offset);
+                if (rows != preparedRows) {
+                    closeStatement(ps);
+                    ps = prepare(executor, connection, rows, transactionTimeout, parameterObjects.get(offset));
+                    preparedRows = rows;
+                }
+                for (int i = 0; i < rows; i++) {
+                    pendingRows.get(offset + i).replay(ps, i * parametersPerRow);
+                }
+                int count = ps.executeUpdate();
+                for (int i = 0; i < rows; i++) {
+                    updateCounts[offset + i] = count == rows ? 1 : Statement.SUCCESS_NO_INFO;
+                }
+                if (mappedStatement.getKeyGenerator() instanceof Jdbc3KeyGenerator) {
+                    ((Jdbc3KeyGenerator) mappedStatement.getKeyGenerator())
+                            .processBatch(mappedStatement, ps, parameterObjects.subList(offset, offset + rows));
+                }
+            }
+        } finally {
+            closeStatement(ps);
+            pendingRows.clear();
+        }
+        return updateCounts;
+    }
+
+    /**
+     * 通过语句处理器预编译包含指定行数的语句
+     *
+     * @param executor
+     * @param connection
+     * @param rows
+     * @param transactionTimeout
+     * @param parameterObject    第一行的参数对象
+     * @return
+     * @throws SQLException
+     */
+    private PreparedStatement prepare(Executor executor, Connection connection, int rows, Integer transactionTimeout,
+            Object parameterObject) throws SQLException {
+        StringBuilder sql = new StringBuilder(head.length() + (row.length() + 2) * rows);
+        sql.append(head).append(' ');
+        List<ParameterMapping> parameterMappings = new ArrayList<ParameterMapping>(parametersPerRow * rows);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+            parameterMappings.addAll(rowParameterMappings);
+        }
+        Configuration configuration = mappedStatement.getConfiguration();
+        BoundSql boundSql = new BoundSql(configuration, sql.toString(), parameterMappings, parameterObject);
+        StatementHandler handler = configuration
+                .newStatementHandler(executor, mappedStatement, parameterObject, RowBounds.DEFAULT, null, boundSql);
+        return (PreparedStatement) handler.prepare(connection, transactionTimeout);
+    }
+
+    private void closeStatement(Statement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 记录一行参数绑定时对PreparedStatement的setXxx调用 执行的时候按参数下标偏移量重放到真正的statement上
+ * 参数在记录的时候就已经绑定 之后修改或复用参数对象不会影响已经记录的值
+ */
+final class RecordedParameters implements InvocationHandler {
+
+    private final Connection connection;
+    private final List<Method> methods = new ArrayList<Method>();
+    private final List<Object[]> arguments = new ArrayList<Object[]>();
+
+    private RecordedParameters(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * 通过语句处理器绑定参数并记录下来
+     *
+     * @param handler    语句处理器 插件可以拦截它的parameterize
+     * @param connection 类型处理器需要创建Array等对象时使用的连接
+     * @return
+     * @throws SQLException
+     */
+    static RecordedParameters record(StatementHandler handler, Connection connection) throws SQLException {
+        RecordedParameters recorded = new RecordedParameters(connection);
+        handler.parameterize((PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, recorded));
+        return recorded;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (Object.class.equals(method.getDeclaringClass())) {
+            try {
+                return method.invoke(this, args);
+            } catch (InvocationTargetException e) {
+                throw ExceptionUtil.unwrapThrowable(e);
+            }
+        }
+        final String name = method.getName();
+        if (method.getDeclaringClass() == PreparedStatement.class && name.startsWith("set") && args != null
+                && args.length > 0 && args[0] instanceof Integer) {
+            methods.add(method);
+            arguments.add(args.clone());
+            return null;
+        }
+        if ("clearParameters".equals(name)) {
+            methods.clear();
+            arguments.clear();
+            return null;
+        }
+        if ("getConnection".equals(name)) {
+            return connection;
+        }
+        throw new SQLFeatureNotSupportedException("Recorded parameters do not support PreparedStatement." + name + "()");
+    }
+
+    /**
+     * 把记录的参数绑定到statement上
+     *
+     * @param statement
+     * @param offset    参数下标的偏移量
+     * @throws SQLException
+     */
+    void replay(PreparedStatement statement, int offset) throws SQLException {
+        for (int i = 0, n = methods.size(); i < n; i++) {
+            final Object[] args = arguments.get(i).clone();
+            args[0] = (Integer) args[0] + offset;
+            try {
+                methods.get(i).invoke(statement, args);
+            } catch (IllegalAccessException e) {
+                throw new ExecutorException("Could not bind recorded parameters.  Cause: " + e, e);
+            } catch (InvocationTargetException e) {
+                final Throwable cause = ExceptionUtil.unwrapThrowable(e);
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new ExecutorException("Could not bind recorded parameters.  Cause: " + cause, cause);
+            }
+        }
+    }
+
+}
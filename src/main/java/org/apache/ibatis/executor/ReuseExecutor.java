@@ -18,16 +18,17 @@ package org.apache.ibatis.executor;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.statement.StatementHandler;
-import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -41,10 +42,37 @@ import org.apache.ibatis.transaction.Transaction;
  */
 public class ReuseExecutor extends BaseExecutor {
 
-    private final Map<String, Statement> statementMap = new HashMap<String, Statement>();
+    /**
+     * 按最近最少使用排序的statement缓存 数量由reuseStatementCacheSize限制
+     */
+    private final Map<StatementKey, Statement> statementMap;
+
+    /**
+     * 被淘汰但是还没有关闭的statement
+     * 嵌套查询中淘汰的statement可能还有外层查询正在读取的结果集 要等回到最外层再关闭
+     */
+    private final List<Statement> evictedStatements = new ArrayList<Statement>();
+
+    /**
+     * 游标使用的statement 游标打开期间结果集一直依赖它 所以不放进缓存 不会被淘汰或者重用 刷新的时候关闭
+     */
+    private final List<Statement> cursorStatements = new ArrayList<Statement>();
 
     public ReuseExecutor(Configuration configuration, Transaction transaction) {
         super(configuration, transaction);
+        final int maxSize = configuration.getReuseStatementCacheSize();
+        this.statementMap = new LinkedHashMap<StatementKey, Statement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatementKey, Statement> eldest) {
+                if (maxSize > 0 && size() > maxSize) {
+                    evictedStatements.add(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
     }
 
     @Override
@@ -52,7 +80,7 @@ public class ReuseExecutor extends BaseExecutor {
         Configuration configuration = ms.getConfiguration();
         StatementHandler handler = configuration
                 .newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
-        Statement stmt = prepareStatement(handler, ms.getStatementLog());
+        Statement stmt = prepareStatement(handler, ms);
         return handler.update(stmt);
     }
 
@@ -62,7 +90,7 @@ public class ReuseExecutor extends BaseExecutor {
         Configuration configuration = ms.getConfiguration();
         StatementHandler handler = configuration
                 .newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
-        Statement stmt = prepareStatement(handler, ms.getStatementLog());
+        Statement stmt = prepareStatement(handler, ms);
         return handler.<E>query(stmt, resultHandler);
     }
 
@@ -71,7 +99,9 @@ public class ReuseExecutor extends BaseExecutor {
             throws SQLException {
         Configuration configuration = ms.getConfiguration();
         StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
-        Statement stmt = prepareStatement(handler, ms.getStatementLog());
+        Statement stmt = handler.prepare(getConnection(ms), transaction.getTimeout());
+        cursorStatements.add(stmt);
+        handler.parameterize(stmt);
         return handler.<E>queryCursor(stmt);
     }
 
@@ -81,39 +111,104 @@ public class ReuseExecutor extends BaseExecutor {
             closeStatement(stmt);
         }
         statementMap.clear();
+        closeEvictedStatements();
+        for (Statement stmt : cursorStatements) {
+            closeStatement(stmt);
+        }
+        cursorStatements.clear();
         return Collections.emptyList();
     }
 
-    private Statement prepareStatement(StatementHandler handler, Log statementLog) throws SQLException {
-        Statement stmt;
+    private Statement prepareStatement(StatementHandler handler, MappedStatement ms) throws SQLException {
         BoundSql boundSql = handler.getBoundSql();
-        String sql = boundSql.getSql();
-        if (hasStatementFor(sql)) {
-            stmt = getStatement(sql);
+        StatementKey key = new StatementKey(getTransactionConnection(ms), ms.getSqlSource(), boundSql.getSql());
+        Statement stmt = getStatement(key);
+        if (stmt != null) {
             applyTransactionTimeout(stmt);
         } else {
-            Connection connection = getConnection(statementLog);
+            Connection connection = getConnection(ms);
             stmt = handler.prepare(connection, transaction.getTimeout());
-            putStatement(sql, stmt);
+            putStatement(key, stmt);
+            //只有最外层的查询或者更新才关闭淘汰的statement
+            if (queryStack <= 1) {
+                closeEvictedStatements();
+            }
         }
         handler.parameterize(stmt);
         return stmt;
     }
 
-    private boolean hasStatementFor(String sql) {
+    /**
+     * 获取可以重用的statement 连接已经关闭的statement不能重用
+     *
+     * @param key
+     * @return
+     */
+    private Statement getStatement(StatementKey key) {
+        Statement stmt = statementMap.get(key);
         try {
-            return statementMap.keySet().contains(sql) && !statementMap.get(sql).getConnection().isClosed();
+            return stmt != null && !stmt.getConnection().isClosed() ? stmt : null;
         } catch (SQLException e) {
-            return false;
+            return null;
         }
     }
 
-    private Statement getStatement(String s) {
-        return statementMap.get(s);
+    private void putStatement(StatementKey key, Statement stmt) {
+        Statement previous = statementMap.put(key, stmt);
+        if (previous != null && previous != stmt) {
+            evictedStatements.add(previous);
+        }
+    }
+
+    private void closeEvictedStatements() {
+        for (Statement stmt : evictedStatements) {
+            closeStatement(stmt);
+        }
+        evictedStatements.clear();
     }
 
-    private void putStatement(String sql, Statement stmt) {
-        statementMap.put(sql, stmt);
+    /**
+     * statement缓存的key
+     * 由连接 sql模板的身份和生成的sql组成 静态sql每次生成的都是同一个字符串 比较的时候直接比较引用
+     * 读写分离的时候同一条sql在主库和从库上的statement分开缓存
+     * 动态sql先比较模板和预先计算好的hash 最后才比较sql文本
+     */
+    private static final class StatementKey {
+
+        private final Connection connection;
+
+        private final SqlSource sqlSource;
+
+        private final String sql;
+
+        private final int hashCode;
+
+        StatementKey(Connection connection, SqlSource sqlSource, String sql) {
+            this.connection = connection;
+            this.sqlSource = sqlSource;
+            this.sql = sql;
+            this.hashCode = 31 * (31 * System.identityHashCode(connection) + System.identityHashCode(sqlSource))
+                    + sql.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof StatementKey)) {
+                return false;
+            }
+            StatementKey other = (StatementKey) obj;
+            return connection == other.connection && sqlSource == other.sqlSource && hashCode == other.hashCode
+                    && (sql == other.sql || sql.equals(other.sql));
+        }
+
     }
 
 }
@@ -17,7 +17,6 @@ package org.apache.ibatis.executor;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.statement.StatementHandler;
-import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.Configuration;
@@ -50,7 +49,7 @@ public class SimpleExecutor extends BaseExecutor {
             Configuration configuration = ms.getConfiguration();
             StatementHandler handler = configuration
                     .newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
-            stmt = prepareStatement(handler, ms.getStatementLog());
+            stmt = prepareStatement(handler, ms);
             return handler.update(stmt);
         } finally {
             closeStatement(stmt);
@@ -66,7 +65,7 @@ public class SimpleExecutor extends BaseExecutor {
             //创建statementHandler代理对象 并且执行processBefore方法 再就插件的包装也是在这里面
             StatementHandler handler = configuration
                     .newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
-            stmt = prepareStatement(handler, ms.getStatementLog());
+            stmt = prepareStatement(handler, ms);
             return handler.<E>query(stmt, resultHandler);
         } finally {
             closeStatement(stmt);
@@ -78,7 +77,7 @@ public class SimpleExecutor extends BaseExecutor {
             throws SQLException {
         Configuration configuration = ms.getConfiguration();
         StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
-        Statement stmt = prepareStatement(handler, ms.getStatementLog());
+        Statement stmt = prepareStatement(handler, ms);
         return handler.<E>queryCursor(stmt);
     }
 
@@ -91,13 +90,13 @@ public class SimpleExecutor extends BaseExecutor {
      * 准备声明
      *
      * @param handler
-     * @param statementLog
+     * @param ms
      * @return
      * @throws SQLException
      */
-    private Statement prepareStatement(StatementHandler handler, Log statementLog) throws SQLException {
+    private Statement prepareStatement(StatementHandler handler, MappedStatement ms) throws SQLException {
         Statement stmt;
-        Connection connection = getConnection(statementLog);
+        Connection connection = getConnection(ms);
         //这里还是没有替换参数的
         stmt = handler.prepare(connection, transaction.getTimeout());
         //将statement中的参数进行实际的替换
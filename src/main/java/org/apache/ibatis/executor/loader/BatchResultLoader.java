@@ -0,0 +1,214 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.KeyChunkPartitioner;
+
+/**
+ * 按批次加载的结果加载器
+ * 同一批次中所有父记录的嵌套查询合并成参数为键集合的查询 首次加载时按nestedSelectBatchSize分块执行
+ * 嵌套查询的参数为包含list与collection两个键的Map 子记录按foreignColumn列的值分配给各自的父记录
+ */
+public class BatchResultLoader extends ResultLoader {
+
+    private final Batch batch;
+    private final Object key;
+
+    public BatchResultLoader(Configuration config, Executor executor, MappedStatement mappedStatement,
+            Class<?> targetType, Batch batch, Object key) {
+        super(config, executor, mappedStatement, Batch.keysParameter(Collections.singletonList(key)), targetType,
+                null, null);
+        this.batch = batch;
+        this.key = Batch.normalize(key);
+        batch.add(this.key);
+    }
+
+    @Override
+    public Object loadResult() throws SQLException {
+        List<Object> list = batch.load(this, key);
+        resultObject = resultExtractor.extractObjectFromList(list, targetType);
+        return resultObject;
+    }
+
+    /**
+     * 同一个映射在一次结果集处理中共享的批次
+     */
+    public static class Batch {
+
+        private final Configuration configuration;
+        private final MappedStatement mappedStatement;
+        private final String foreignColumn;
+        private final Set<Object> pendingKeys = new LinkedHashSet<Object>();
+        private final Map<Object, List<Object>> loadedRows = new HashMap<Object, List<Object>>();
+        private String foreignProperty;
+
+        public Batch(Configuration configuration, MappedStatement mappedStatement, ResultMapping resultMapping) {
+            this.configuration = configuration;
+            this.mappedStatement = mappedStatement;
+            this.foreignColumn = resultMapping.getForeignColumn();
+        }
+
+        synchronized void add(Object key) {
+            if (!loadedRows.containsKey(key)) {
+                pendingKeys.add(key);
+            }
+        }
+
+        /**
+         * 取得键对应的子记录 键尚未加载时一并加载所有待加载的键
+         *
+         * @param loader 执行查询的加载器
+         * @param key    父记录的键
+         * @return
+         * @throws SQLException
+         */
+        synchronized List<Object> load(BatchResultLoader loader, Object key) throws SQLException {
+            if (!loadedRows.containsKey(key)) {
+                List<Object> keys = new ArrayList<Object>(pendingKeys);
+                pendingKeys.clear();
+                if (!keys.contains(key)) {
+                    keys.add(key);
+                }
+                int batchSize = configuration.getNestedSelectBatchSize();
+                int chunk = batchSize > 0 ? batchSize : keys.size();
+                int start = 0;
+                try {
+                    for (; start < keys.size(); start += chunk) {
+                        List<Object> chunkKeys = keys.subList(start, Math.min(start + chunk, keys.size()));
+                        List<Object> rows = loader.selectList(keysParameter(new ArrayList<Object>(chunkKeys)), null,
+                                null);
+                        Map<Object, List<Object>> chunkRows = new HashMap<Object, List<Object>>();
+                        for (Object chunkKey : chunkKeys) {
+                            chunkRows.put(chunkKey, new ArrayList<Object>());
+                        }
+                        for (Object row : rows) {
+                            List<Object> children = chunkRows.get(normalize(foreignKey(row)));
+                            if (children != null) {
+                                children.add(row);
+                            }
+                        }
+                        //查询成功后才算加载过 失败的块不会被当成没有子记录
+                        loadedRows.putAll(chunkRows);
+                    }
+                } finally {
+                    //失败时没有加载的键放回待加载 下次访问时重新查询
+                    for (int i = start; i < keys.size(); i++) {
+                        pendingKeys.add(keys.get(i));
+                    }
+                }
+            }
+            return new ArrayList<Object>(loadedRows.get(key));
+        }
+
+        private Object foreignKey(Object row) {
+            if (row instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) row;
+                if (map.containsKey(foreignColumn)) {
+                    return map.get(foreignColumn);
+                }
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    if (entry.getKey() instanceof String && foreignColumn.equalsIgnoreCase((String) entry.getKey())) {
+                        return entry.getValue();
+                    }
+                }
+            }
+            if (foreignProperty == null) {
+                foreignProperty = resolveForeignProperty(row);
+            }
+            MetaObject metaObject = configuration.newMetaObject(row);
+            return metaObject.getValue(foreignProperty);
+        }
+
+        /**
+         * 找到子记录中对应foreignColumn的属性 先找显式映射 再按列名匹配属性
+         *
+         * @param row
+         * @return
+         */
+        private String resolveForeignProperty(Object row) {
+            if (!mappedStatement.getResultMaps().isEmpty()) {
+                ResultMap resultMap = mappedStatement.getResultMaps().get(0);
+                for (ResultMapping resultMapping : resultMap.getPropertyResultMappings()) {
+                    if (foreignColumn.equalsIgnoreCase(resultMapping.getColumn())
+                            && resultMapping.getProperty() != null) {
+                        return resultMapping.getProperty();
+                    }
+                }
+            }
+            MetaClass metaClass = MetaClass.forClass(row.getClass(), configuration.getReflectorFactory());
+            String property = metaClass.findProperty(foreignColumn, configuration.isMapUnderscoreToCamelCase());
+            if (property == null) {
+                throw new ExecutorException("Could not find a property for foreign column '" + foreignColumn
+                        + "' in results of '" + mappedStatement.getId() + "'");
+            }
+            return property;
+        }
+
+        static Map<String, Object> keysParameter(List<Object> keys) {
+            return KeyChunkPartitioner.chunkParameter(keys);
+        }
+
+        /**
+         * 统一键的类型 父子两侧的数值列可能被映射成不同的包装类型
+         *
+         * @param key
+         * @return
+         */
+        static Object normalize(Object key) {
+            if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+                return ((Number) key).longValue();
+            }
+            if (key instanceof BigInteger) {
+                BigInteger value = (BigInteger) key;
+                return value.bitLength() < 64 ? (Object) value.longValue() : value;
+            }
+            if (key instanceof BigDecimal) {
+                BigDecimal value = ((BigDecimal) key).stripTrailingZeros();
+                if (value.signum() == 0) {
+                    return 0L;
+                }
+                if (value.scale() <= 0 && value.precision() - value.scale() < 19) {
+                    return value.longValue();
+                }
+                return value;
+            }
+            if (key instanceof Character) {
+                return key.toString();
+            }
+            return key;
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.routing.ReadWriteSplittingTransaction;
+
+/**
+ * 并发执行同一行中互不依赖的嵌套查询
+ * 第一个加载器在当前线程上使用会话的连接执行 其余的提交到线程池 各自使用会话新建的从库事务执行
+ * 只有会路由到从库的查询才会并发执行 主库上的查询必须使用会话的事务 只能在会话的连接上依次执行
+ * 工作线程中再遇到的嵌套查询依次执行 避免线程池被等待子任务的任务占满
+ */
+public final class ParallelResultLoader {
+
+    private static final ThreadLocal<Boolean> WORKER = new ThreadLocal<Boolean>();
+
+    private ParallelResultLoader() {
+        // Prevent Instantiation of Static Class
+    }
+
+    /**
+     * 当前线程是否是执行嵌套查询的工作线程
+     *
+     * @return
+     */
+    public static boolean isWorkerThread() {
+        return WORKER.get() != null;
+    }
+
+    /**
+     * 加载所有结果 返回的值与加载器一一对应
+     * 按完成的顺序检查结果 任意一个失败时立即取消其余的查询并抛出异常
+     *
+     * @param pool        线程池
+     * @param loaders     结果加载器
+     * @param transaction 会话的读写分离事务 为工作线程创建从库事务
+     * @return
+     * @throws SQLException
+     */
+    public static List<Object> loadAll(ExecutorService pool, List<ResultLoader> loaders,
+            ReadWriteSplittingTransaction transaction) throws SQLException {
+        CompletionService<Object> completionService = new ExecutorCompletionService<Object>(pool);
+        Map<Future<Object>, Integer> futures = new HashMap<Future<Object>, Integer>();
+        try {
+            for (int i = 1; i < loaders.size(); i++) {
+                final ResultLoader loader = loaders.get(i);
+                final Transaction workerTransaction = transaction.newReplicaTransaction();
+                futures.put(completionService.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        WORKER.set(Boolean.TRUE);
+                        try {
+                            return loader.loadResult(workerTransaction);
+                        } finally {
+                            WORKER.remove();
+                        }
+                    }
+                }), i);
+            }
+            Object[] values = new Object[loaders.size()];
+            values[0] = loaders.get(0).loadResult();
+            for (int i = 1; i < loaders.size(); i++) {
+                Future<Object> future = completionService.take();
+                values[futures.get(future)] = future.get();
+            }
+            return Arrays.asList(values);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutorException("Interrupted while loading nested selects.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ExecutorException("Error loading nested selects.  Cause: " + cause, cause);
+        } finally {
+            for (Future<Object> future : futures.keySet()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+}
@@ -75,14 +75,50 @@ public class ResultLoader {
         return resultObject;
     }
 
+    /**
+     * 在指定的事务上执行嵌套查询 用于其它线程并发加载 事务随执行器一起关闭
+     *
+     * @param transaction 工作线程使用的事务
+     * @return
+     * @throws SQLException
+     */
+    public Object loadResult(Transaction transaction) throws SQLException {
+        Executor localExecutor = configuration.newExecutor(transaction, ExecutorType.SIMPLE);
+        try {
+            List<Object> list = localExecutor.query(mappedStatement, parameterObject, RowBounds.DEFAULT,
+                    Executor.NO_RESULT_HANDLER, cacheKey, boundSql);
+            resultObject = resultExtractor.extractObjectFromList(list, targetType);
+            return resultObject;
+        } finally {
+            localExecutor.close(false);
+        }
+    }
+
     private <E> List<E> selectList() throws SQLException {
+        return selectList(parameterObject, cacheKey, boundSql);
+    }
+
+    /**
+     * 以指定参数执行嵌套查询 跨线程或执行器已关闭时使用新的执行器
+     *
+     * @param parameter 查询参数
+     * @param key       缓存key 为null时由执行器计算
+     * @param sql       绑定SQL 为null时由执行器计算
+     * @return
+     * @throws SQLException
+     */
+    protected <E> List<E> selectList(Object parameter, CacheKey key, BoundSql sql) throws SQLException {
         Executor localExecutor = executor;
         if (Thread.currentThread().getId() != this.creatorThreadId || localExecutor.isClosed()) {
             localExecutor = newExecutor();
         }
         try {
-            return localExecutor.<E>query(mappedStatement, parameterObject, RowBounds.DEFAULT,
-                    Executor.NO_RESULT_HANDLER, cacheKey, boundSql);
+            if (sql == null) {
+                return localExecutor.<E>query(mappedStatement, parameter, RowBounds.DEFAULT,
+                        Executor.NO_RESULT_HANDLER);
+            }
+            return localExecutor.<E>query(mappedStatement, parameter, RowBounds.DEFAULT,
+                    Executor.NO_RESULT_HANDLER, key, sql);
         } finally {
             if (localExecutor != executor) {
                 localExecutor.close(false);
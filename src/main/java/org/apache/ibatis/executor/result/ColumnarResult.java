@@ -0,0 +1,220 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.result;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.executor.ExecutorException;
+
+/**
+ * 按列保存的查询结果 数字列保存为基本类型数组 null值记录在每一列的位图中 其余的列保存为对象数组
+ * 列的索引从0开始
+ */
+public class ColumnarResult {
+
+    /**
+     * 列的存储类型
+     */
+    public enum ColumnType {
+        INT, LONG, DOUBLE, OBJECT
+    }
+
+    private final List<String> columnNames;
+    private final ColumnType[] columnTypes;
+    private final Object[] columns;
+    private final BitSet[] nulls;
+    private final int rowCount;
+
+    /**
+     * 构造函数
+     *
+     * @param columnNames
+     * @param columnTypes
+     * @param columns     每一列对应的int[]、long[]、double[]或者Object[]
+     * @param nulls       每一列的null位图 没有null值时为null
+     * @param rowCount
+     */
+    ColumnarResult(List<String> columnNames, ColumnType[] columnTypes, Object[] columns, BitSet[] nulls,
+            int rowCount) {
+        this.columnNames = Collections.unmodifiableList(columnNames);
+        this.columnTypes = columnTypes;
+        this.columns = columns;
+        this.nulls = nulls;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * 获取行数
+     *
+     * @return
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 获取列数
+     *
+     * @return
+     */
+    public int getColumnCount() {
+        return columnNames.size();
+    }
+
+    /**
+     * 获取列名称集合
+     *
+     * @return
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * 根据列名称获取列的索引 大小写不敏感
+     *
+     * @param columnName
+     * @return 列不存在时返回-1
+     */
+    public int getColumnIndex(String columnName) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 获取列的存储类型
+     *
+     * @param column
+     * @return
+     */
+    public ColumnType getColumnType(int column) {
+        return columnTypes[column];
+    }
+
+    /**
+     * 判断某一行的值是否为null 基本类型数组中null值的位置为0
+     *
+     * @param column
+     * @param row
+     * @return
+     */
+    public boolean isNull(int column, int row) {
+        return nulls[column] != null && nulls[column].get(row);
+    }
+
+    /**
+     * 获取int列
+     *
+     * @param column
+     * @return
+     */
+    public int[] getInts(int column) {
+        return (int[]) getColumn(column, ColumnType.INT);
+    }
+
+    /**
+     * 获取int列
+     *
+     * @param columnName
+     * @return
+     */
+    public int[] getInts(String columnName) {
+        return getInts(requireColumn(columnName));
+    }
+
+    /**
+     * 获取long列
+     *
+     * @param column
+     * @return
+     */
+    public long[] getLongs(int column) {
+        return (long[]) getColumn(column, ColumnType.LONG);
+    }
+
+    /**
+     * 获取long列
+     *
+     * @param columnName
+     * @return
+     */
+    public long[] getLongs(String columnName) {
+        return getLongs(requireColumn(columnName));
+    }
+
+    /**
+     * 获取double列
+     *
+     * @param column
+     * @return
+     */
+    public double[] getDoubles(int column) {
+        return (double[]) getColumn(column, ColumnType.DOUBLE);
+    }
+
+    /**
+     * 获取double列
+     *
+     * @param columnName
+     * @return
+     */
+    public double[] getDoubles(String columnName) {
+        return getDoubles(requireColumn(columnName));
+    }
+
+    /**
+     * 获取对象列
+     *
+     * @param column
+     * @return
+     */
+    public Object[] getObjects(int column) {
+        return (Object[]) getColumn(column, ColumnType.OBJECT);
+    }
+
+    /**
+     * 获取对象列
+     *
+     * @param columnName
+     * @return
+     */
+    public Object[] getObjects(String columnName) {
+        return getObjects(requireColumn(columnName));
+    }
+
+    private Object getColumn(int column, ColumnType type) {
+        if (columnTypes[column] != type) {
+            throw new ExecutorException("Column '" + columnNames.get(column) + "' is stored as " + columnTypes[column]
+                    + ", not " + type + ".");
+        }
+        return columns[column];
+    }
+
+    private int requireColumn(String columnName) {
+        final int column = getColumnIndex(columnName);
+        if (column < 0) {
+            throw new ExecutorException("Column '" + columnName + "' not found in " + columnNames + ".");
+        }
+        return column;
+    }
+
+}
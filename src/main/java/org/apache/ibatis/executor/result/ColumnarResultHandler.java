@@ -0,0 +1,251 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.result;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.result.ColumnarResult.ColumnType;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * 按列读取结果集的结果处理器 结果集处理器遇到它时不再映射行 直接把第一个结果集读成ColumnarResult
+ * 整数列用getInt或getLong读取 浮点数列用getDouble读取 读取过程中不创建每一行的对象
+ */
+public class ColumnarResultHandler implements ResultHandler<Object> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private ColumnarResult result;
+
+    /**
+     * 行已经按列读取 不会再收到映射好的对象
+     *
+     * @param context
+     */
+    @Override
+    public void handleResult(ResultContext<? extends Object> context) {
+        throw new ExecutorException("ColumnarResultHandler reads result sets by column and cannot handle mapped rows.");
+    }
+
+    /**
+     * 是否已经读取过结果集 只读取第一个结果集
+     *
+     * @return
+     */
+    public boolean hasResult() {
+        return result != null;
+    }
+
+    /**
+     * 获取结果 没有结果集时返回没有列的空结果
+     *
+     * @return
+     */
+    public ColumnarResult getResult() {
+        if (result == null) {
+            return new ColumnarResult(new ArrayList<String>(), new ColumnType[0], new Object[0], new BitSet[0], 0);
+        }
+        return result;
+    }
+
+    /**
+     * 按列读取结果集的剩余行
+     *
+     * @param rs
+     * @param columnNames
+     * @param jdbcTypes
+     * @param classNames  驱动报告的每一列的java类名 可以为null
+     * @param limit       最多读取的行数
+     * @throws SQLException
+     */
+    public void handleResultSet(ResultSet rs, List<String> columnNames, List<JdbcType> jdbcTypes,
+            List<String> classNames, int limit) throws SQLException {
+        final int columnCount = columnNames.size();
+        final ColumnType[] types = new ColumnType[columnCount];
+        final Object[] columns = new Object[columnCount];
+        final BitSet[] nulls = new BitSet[columnCount];
+        int capacity = Math.min(INITIAL_CAPACITY, Math.max(limit, 1));
+        for (int c = 0; c < columnCount; c++) {
+            types[c] = columnType(jdbcTypes.get(c), classNames == null ? null : classNames.get(c));
+            columns[c] = newColumn(types[c], capacity);
+        }
+        int row = 0;
+        while (row < limit && rs.next()) {
+            if (row == capacity) {
+                capacity = capacity > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : capacity * 2;
+                for (int c = 0; c < columnCount; c++) {
+                    columns[c] = resize(types[c], columns[c], capacity);
+                }
+            }
+            for (int c = 0; c < columnCount; c++) {
+                final int index = c + 1;
+                switch (types[c]) {
+                case INT:
+                    ((int[]) columns[c])[row] = rs.getInt(index);
+                    break;
+                case LONG:
+                    ((long[]) columns[c])[row] = rs.getLong(index);
+                    break;
+                case DOUBLE:
+                    ((double[]) columns[c])[row] = rs.getDouble(index);
+                    break;
+                default:
+                    ((Object[]) columns[c])[row] = getObject(rs, index, jdbcTypes.get(c));
+                    break;
+                }
+                if (rs.wasNull()) {
+                    if (nulls[c] == null) {
+                        nulls[c] = new BitSet();
+                    }
+                    nulls[c].set(row);
+                }
+            }
+            row++;
+        }
+        if (row < capacity) {
+            for (int c = 0; c < columnCount; c++) {
+                columns[c] = resize(types[c], columns[c], row);
+            }
+        }
+        result = new ColumnarResult(new ArrayList<String>(columnNames), types, columns, nulls, row);
+    }
+
+    /**
+     * 读取按对象保存的列 标准jdbc类型用对应的getXxx读取 保存的是String、BigDecimal、java.sql的日期时间和byte[]
+     * 而不是驱动自己的类型(比如oracle.sql.TIMESTAMP) 其余类型用getObject读取
+     *
+     * @param rs
+     * @param index
+     * @param jdbcType
+     * @return
+     * @throws SQLException
+     */
+    private static Object getObject(ResultSet rs, int index, JdbcType jdbcType) throws SQLException {
+        if (jdbcType == null) {
+            return rs.getObject(index);
+        }
+        switch (jdbcType) {
+        case CHAR:
+        case VARCHAR:
+        case LONGVARCHAR:
+        case NCHAR:
+        case NVARCHAR:
+        case LONGNVARCHAR:
+            return rs.getString(index);
+        case NUMERIC:
+        case DECIMAL:
+            return rs.getBigDecimal(index);
+        case DATE:
+            return rs.getDate(index);
+        case TIME:
+            return rs.getTime(index);
+        case TIMESTAMP:
+            return rs.getTimestamp(index);
+        case BINARY:
+        case VARBINARY:
+        case LONGVARBINARY:
+            return rs.getBytes(index);
+        default:
+            return rs.getObject(index);
+        }
+    }
+
+    /**
+     * 根据jdbc类型和驱动报告的java类名决定列的存储类型
+     * 驱动报告的类比jdbc类型更宽时(比如MySQL的INT UNSIGNED是Long BIGINT UNSIGNED是BigInteger)改用能容纳的类型
+     *
+     * @param jdbcType
+     * @param className
+     * @return
+     */
+    private static ColumnType columnType(JdbcType jdbcType, String className) {
+        final ColumnType type = columnType(jdbcType);
+        if (className == null) {
+            return type;
+        }
+        if (type == ColumnType.INT && Long.class.getName().equals(className)) {
+            return ColumnType.LONG;
+        }
+        if (type != ColumnType.OBJECT
+                && (BigInteger.class.getName().equals(className) || BigDecimal.class.getName().equals(className))) {
+            return ColumnType.OBJECT;
+        }
+        return type;
+    }
+
+    /**
+     * 根据jdbc类型决定列的存储类型 DECIMAL等可能丢失精度的类型保存为对象
+     *
+     * @param jdbcType
+     * @return
+     */
+    private static ColumnType columnType(JdbcType jdbcType) {
+        if (jdbcType == null) {
+            return ColumnType.OBJECT;
+        }
+        switch (jdbcType) {
+        case TINYINT:
+        case SMALLINT:
+        case INTEGER:
+            return ColumnType.INT;
+        case BIGINT:
+            return ColumnType.LONG;
+        case REAL:
+        case FLOAT:
+        case DOUBLE:
+            return ColumnType.DOUBLE;
+        default:
+            return ColumnType.OBJECT;
+        }
+    }
+
+    private static Object newColumn(ColumnType type, int capacity) {
+        switch (type) {
+        case INT:
+            return new int[capacity];
+        case LONG:
+            return new long[capacity];
+        case DOUBLE:
+            return new double[capacity];
+        default:
+            return new Object[capacity];
+        }
+    }
+
+    private static Object resize(ColumnType type, Object column, int length) {
+        switch (type) {
+        case INT:
+            return Arrays.copyOf((int[]) column, length);
+        case LONG:
+            return Arrays.copyOf((long[]) column, length);
+        case DOUBLE:
+            return Arrays.copyOf((double[]) column, length);
+        default:
+            return Arrays.copyOf((Object[]) column, length);
+        }
+    }
+
+}
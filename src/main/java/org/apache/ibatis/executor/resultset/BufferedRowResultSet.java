@@ -0,0 +1,313 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.List;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+import org.apache.ibatis.executor.result.ColumnarResult;
+import org.apache.ibatis.executor.result.ColumnarResult.ColumnType;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * 把按列缓存的一行数据当作只有一行的结果集 用于在结果集关闭后再映射这一行
+ * 支持类型处理器用到的按索引或名称读取的方法 其余方法抛出SQLFeatureNotSupportedException
+ */
+final class BufferedRowResultSet implements InvocationHandler {
+
+    private final ColumnarResult rows;
+    private final List<JdbcType> jdbcTypes;
+    private final List<String> classNames;
+    private final ResultSetMetaData metaData;
+    private int row = -1;
+    private boolean pending;
+    private boolean scanning;
+    private boolean wasNull;
+
+    private BufferedRowResultSet(ColumnarResult rows, List<JdbcType> jdbcTypes, List<String> classNames) {
+        this.rows = rows;
+        this.jdbcTypes = jdbcTypes;
+        this.classNames = classNames;
+        this.metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        return invokeMetaData(method, args);
+                    }
+                });
+    }
+
+    /**
+     * 创建结果集 通过moveTo选择要读取的行
+     *
+     * @param rows
+     * @param jdbcTypes
+     * @param classNames
+     * @return
+     */
+    static BufferedRowResultSet create(ColumnarResult rows, List<JdbcType> jdbcTypes, List<String> classNames) {
+        return new BufferedRowResultSet(rows, jdbcTypes, classNames);
+    }
+
+    /**
+     * 获取结果集代理
+     *
+     * @return
+     */
+    ResultSet newResultSet() {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                this);
+    }
+
+    /**
+     * 选择行 之后的第一次next()返回true 第二次返回false
+     *
+     * @param row
+     */
+    void moveTo(int row) {
+        this.row = row;
+        this.pending = true;
+        this.scanning = false;
+    }
+
+    /**
+     * 回到第一行之前 之后每次next()依次读取下一行
+     */
+    void scan() {
+        this.row = -1;
+        this.pending = false;
+        this.scanning = true;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        try {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                return method.invoke(this, args);
+            }
+            final String name = method.getName();
+            if ("next".equals(name)) {
+                if (scanning) {
+                    if (row + 1 < rows.getRowCount()) {
+                        row++;
+                        return true;
+                    }
+                    scanning = false;
+                    return false;
+                }
+                final boolean next = pending;
+                pending = false;
+                return next;
+            }
+            if ("wasNull".equals(name)) {
+                return wasNull;
+            }
+            if ("getMetaData".equals(name)) {
+                return metaData;
+            }
+            if ("getType".equals(name)) {
+                return ResultSet.TYPE_FORWARD_ONLY;
+            }
+            if ("close".equals(name)) {
+                return null;
+            }
+            if ("isClosed".equals(name)) {
+                return false;
+            }
+            if ("findColumn".equals(name)) {
+                return column(args[0]) + 1;
+            }
+            if (name.startsWith("get") && args != null && args.length > 0
+                    && (args[0] instanceof Integer || args[0] instanceof String)) {
+                return get(name, method.getReturnType(), column(args[0]), args);
+            }
+            throw new SQLFeatureNotSupportedException("Buffered rows do not support ResultSet." + name + "()");
+        } catch (Throwable t) {
+            throw ExceptionUtil.unwrapThrowable(t);
+        }
+    }
+
+    private Object invokeMetaData(Method method, Object[] args) throws SQLException {
+        final String name = method.getName();
+        if ("getColumnCount".equals(name)) {
+            return rows.getColumnCount();
+        }
+        final int column = (Integer) args[0] - 1;
+        if ("getColumnLabel".equals(name) || "getColumnName".equals(name)) {
+            return rows.getColumnNames().get(column);
+        }
+        if ("getColumnType".equals(name)) {
+            final JdbcType jdbcType = jdbcTypes.get(column);
+            return jdbcType == null ? JdbcType.OTHER.TYPE_CODE : jdbcType.TYPE_CODE;
+        }
+        if ("getColumnClassName".equals(name)) {
+            return classNames.get(column);
+        }
+        throw new SQLFeatureNotSupportedException("Buffered rows do not support ResultSetMetaData." + name + "()");
+    }
+
+    private int column(Object column) throws SQLException {
+        if (column instanceof Integer) {
+            return (Integer) column - 1;
+        }
+        final int index = rows.getColumnIndex((String) column);
+        if (index < 0) {
+            throw new SQLException("Column '" + column + "' not found.");
+        }
+        return index;
+    }
+
+    private Object value(int column) {
+        wasNull = rows.isNull(column, row);
+        if (wasNull) {
+            return null;
+        }
+        final ColumnType type = rows.getColumnType(column);
+        switch (type) {
+        case INT:
+            return rows.getInts(column)[row];
+        case LONG:
+            return rows.getLongs(column)[row];
+        case DOUBLE:
+            final double value = rows.getDoubles(column)[row];
+            return jdbcTypes.get(column) == JdbcType.REAL ? (Object) (float) value : (Object) value;
+        default:
+            final Object object = rows.getObjects(column)[row];
+            wasNull = object == null;
+            return object;
+        }
+    }
+
+    private Object get(String name, Class<?> returnType, int column, Object[] args) throws SQLException {
+        final Object value = value(column);
+        if ("getObject".equals(name)) {
+            if (args.length > 1 && args[1] instanceof Class && value != null && !((Class<?>) args[1])
+                    .isInstance(value)) {
+                return convert(value, (Class<?>) args[1]);
+            }
+            return value;
+        }
+        if (value == null) {
+            return returnType.isPrimitive() ? convert(0, returnType) : null;
+        }
+        return convert(value, returnType);
+    }
+
+    private static Object convert(Object value, Class<?> type) throws SQLException {
+        if (type.isInstance(value)) {
+            return value;
+        }
+        if (type == String.class) {
+            return value.toString();
+        }
+        if (value instanceof Boolean && type != boolean.class && type != Boolean.class) {
+            value = (Boolean) value ? 1 : 0;
+        }
+        if (value instanceof String && Number.class.isAssignableFrom(box(type))) {
+            value = new BigDecimal(((String) value).trim());
+        }
+        if (value instanceof Number) {
+            final Number number = (Number) value;
+            final Class<?> boxed = box(type);
+            if (boxed == Integer.class) {
+                return number.intValue();
+            } else if (boxed == Long.class) {
+                return number.longValue();
+            } else if (boxed == Double.class) {
+                return number.doubleValue();
+            } else if (boxed == Float.class) {
+                return number.floatValue();
+            } else if (boxed == Short.class) {
+                return number.shortValue();
+            } else if (boxed == Byte.class) {
+                return number.byteValue();
+            } else if (boxed == Boolean.class) {
+                return number.intValue() != 0;
+            } else if (type == BigDecimal.class) {
+                return number instanceof Double || number instanceof Float ? BigDecimal
+                        .valueOf(number.doubleValue()) : new BigDecimal(number.toString());
+            }
+        }
+        if ((type == boolean.class || type == Boolean.class) && value instanceof String) {
+            return "1".equals(value) || "true".equalsIgnoreCase((String) value);
+        }
+        if (value instanceof String) {
+            if (type == Clob.class) {
+                return new SerialClob(((String) value).toCharArray());
+            } else if (type == Reader.class) {
+                return new StringReader((String) value);
+            }
+        }
+        if (value instanceof byte[]) {
+            if (type == Blob.class) {
+                return new SerialBlob((byte[]) value);
+            } else if (type == InputStream.class) {
+                return new ByteArrayInputStream((byte[]) value);
+            }
+        }
+        if (value instanceof java.util.Date) {
+            final long time = ((java.util.Date) value).getTime();
+            if (type == Timestamp.class) {
+                return new Timestamp(time);
+            } else if (type == java.sql.Date.class) {
+                return new java.sql.Date(time);
+            } else if (type == Time.class) {
+                return new Time(time);
+            }
+        }
+        throw new SQLException("Cannot convert buffered value of type " + value.getClass().getName() + " to "
+                + type.getName() + ".");
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        }
+        return type;
+    }
+
+}
@@ -23,10 +23,13 @@ import org.apache.ibatis.cursor.defaults.DefaultCursor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.loader.BatchResultLoader;
+import org.apache.ibatis.executor.loader.ParallelResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.executor.result.ColumnarResultHandler;
 import org.apache.ibatis.executor.result.DefaultResultHandler;
 import org.apache.ibatis.executor.result.ResultMapException;
 import org.apache.ibatis.mapping.BoundSql;
@@ -34,17 +37,28 @@ import org.apache.ibatis.mapping.Discriminator;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.ResultFlag;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.routing.ReadWriteSplittingTransaction;
+import org.apache.ibatis.type.ByteTypeHandler;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.LongTypeHandler;
+import org.apache.ibatis.type.ShortTypeHandler;
+import org.apache.ibatis.type.StringTypeHandler;
 import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 
@@ -54,12 +68,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  * // TODO: 2021/4/7 CallYeDeGuo 核心类
@@ -75,6 +93,11 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
     private static final Object DEFERED = new Object();
 
+    /**
+     * 流式处理嵌套结果时记住的最近父对象数量
+     */
+    private static final int STREAMED_PARENT_KEYS = 1024;
+
     /**
      * 执行器
      */
@@ -135,12 +158,44 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     private final Map<String, Object> ancestorObjects = new HashMap<String, Object>();
     private Object previousRowValue;
 
+    // streaming nested results: keys of the most recent parents, a parent that appears again was split by other rows
+    private final Set<CacheKey> streamedParentKeys = Collections.newSetFromMap(new LinkedHashMap<CacheKey, Boolean>() {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, Boolean> eldest) {
+            return size() > STREAMED_PARENT_KEYS;
+        }
+    });
+
+    // deduplicated values of the current result set
+    private ValueDictionary valueDictionary;
+    private ResultSetWrapper valueDictionaryOwner;
+
     // multiple resultsets
     private final Map<String, ResultMapping> nextResultMaps = new HashMap<String, ResultMapping>();
     private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<CacheKey, List<PendingRelation>>();
 
-    // Cached Automappings
-    private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<String, List<UnMappedColumnAutoMapping>>();
+    // batched nested selects
+    private final Map<ResultMapping, BatchResultLoader.Batch> nestedSelectBatches = new HashMap<ResultMapping, BatchResultLoader.Batch>();
+    private final List<PendingLoad> pendingBatchLoads = new ArrayList<PendingLoad>();
+    private boolean deferBatchLoads;
+
+    // concurrent nested selects
+    private final ExecutorService nestedSelectExecutor;
+    private final List<PendingLoad> concurrentLoads = new ArrayList<PendingLoad>();
+
+    // column types that are copied with standard getters and can be read after the result set is closed
+    private static final Set<JdbcType> BUFFERED_JDBC_TYPES = EnumSet.of(JdbcType.BIT, JdbcType.BOOLEAN,
+            JdbcType.TINYINT, JdbcType.SMALLINT, JdbcType.INTEGER, JdbcType.BIGINT, JdbcType.REAL, JdbcType.FLOAT,
+            JdbcType.DOUBLE, JdbcType.NUMERIC, JdbcType.DECIMAL, JdbcType.CHAR, JdbcType.VARCHAR,
+            JdbcType.LONGVARCHAR, JdbcType.NCHAR, JdbcType.NVARCHAR, JdbcType.LONGNVARCHAR, JdbcType.DATE,
+            JdbcType.TIME, JdbcType.TIMESTAMP, JdbcType.BINARY, JdbcType.VARBINARY, JdbcType.LONGVARBINARY);
+
+    // type handlers shipped with mybatis only read buffered columns through the getters the buffer supports
+    private static final String BUILT_IN_TYPE_HANDLER_PACKAGE = TypeHandler.class.getName().substring(0,
+            TypeHandler.class.getName().lastIndexOf('.') + 1);
 
     // temporary marking flag that indicate using constructor mapping (use field to reduce memory usage)
     private boolean useConstructorMappings;
@@ -150,6 +205,22 @@ public class DefaultResultSetHandler implements ResultSetHandler {
      */
     private final PrimitiveTypes primitiveTypes;
 
+    /**
+     * 稍后执行的嵌套查询
+     */
+    private static class PendingLoad {
+
+        private final MetaObject metaObject;
+        private final String property;
+        private final ResultLoader resultLoader;
+
+        PendingLoad(MetaObject metaObject, String property, ResultLoader resultLoader) {
+            this.metaObject = metaObject;
+            this.property = property;
+            this.resultLoader = resultLoader;
+        }
+    }
+
     /**
      * 待定关系
      */
@@ -171,6 +242,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
      */
     private static class UnMappedColumnAutoMapping {
         private final String column;
+        private final int columnIndex;
         private final String property;
         private final TypeHandler<?> typeHandler;
         private final boolean primitive;
@@ -179,13 +251,15 @@ public class DefaultResultSetHandler implements ResultSetHandler {
          * 构造函数
          *
          * @param column
+         * @param columnIndex
          * @param property
          * @param typeHandler
          * @param primitive
          */
-        public UnMappedColumnAutoMapping(String column, String property, TypeHandler<?> typeHandler,
+        public UnMappedColumnAutoMapping(String column, int columnIndex, String property, TypeHandler<?> typeHandler,
                 boolean primitive) {
             this.column = column;
+            this.columnIndex = columnIndex;
             this.property = property;
             this.typeHandler = typeHandler;
             this.primitive = primitive;
@@ -215,6 +289,27 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         this.reflectorFactory = configuration.getReflectorFactory();
         this.resultHandler = resultHandler;
         this.primitiveTypes = new PrimitiveTypes();
+        this.nestedSelectExecutor = configuration.getNestedSelectExecutor();
+    }
+
+    /**
+     * 构造只映射缓冲区中的行的结果集处理器 不持有执行器、语句和参数 供延迟映射的结果集合使用
+     *
+     * @param configuration
+     */
+    DefaultResultSetHandler(Configuration configuration) {
+        this.executor = null;
+        this.configuration = configuration;
+        this.mappedStatement = null;
+        this.rowBounds = RowBounds.DEFAULT;
+        this.parameterHandler = null;
+        this.boundSql = null;
+        this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        this.objectFactory = configuration.getObjectFactory();
+        this.reflectorFactory = configuration.getReflectorFactory();
+        this.resultHandler = null;
+        this.primitiveTypes = new PrimitiveTypes();
+        this.nestedSelectExecutor = null;
     }
 
     //
@@ -247,7 +342,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         try {
             final String resultMapId = parameterMapping.getResultMapId();
             final ResultMap resultMap = configuration.getResultMap(resultMapId);
-            final ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration);
+            final ResultSetWrapper rsw = newResultSetWrapper(rs, parameterMapping.getProperty());
             if (this.resultHandler == null) {
                 final DefaultResultHandler resultHandler = new DefaultResultHandler(objectFactory);
                 handleRowValues(rsw, resultMap, resultHandler, new RowBounds(), null);
@@ -277,6 +372,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         ErrorContext.instance().activity("handling results").object(mappedStatement.getId());
 
         final List<Object> multipleResults = new ArrayList<Object>();
+        //没有自定义结果处理器时 非懒加载的批量嵌套查询等到所有行映射完成后再执行
+        deferBatchLoads = resultHandler == null;
 
         int resultSetCount = 0;
         //这里面存放了数据库查询出来的字段名称以及字段类型等
@@ -288,7 +385,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         while (rsw != null && resultMapCount > resultSetCount) {
             ResultMap resultMap = resultMaps.get(resultSetCount);
             handleResultSet(rsw, resultMap, multipleResults, null);
-            rsw = getNextResultSet(stmt);
+            rsw = getNextResultSet(stmt, resultSetCount + 1);
             cleanUpAfterHandlingResultSet();
             resultSetCount++;
         }
@@ -302,15 +399,54 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                     ResultMap resultMap = configuration.getResultMap(nestedResultMapId);
                     handleResultSet(rsw, resultMap, null, parentMapping);
                 }
-                rsw = getNextResultSet(stmt);
+                rsw = getNextResultSet(stmt, resultSetCount + 1);
                 cleanUpAfterHandlingResultSet();
                 resultSetCount++;
             }
         }
 
+        deferBatchLoads = false;
+        loadPendingBatches();
         return collapseSingleResultList(multipleResults);
     }
 
+    /**
+     * 执行积压的批量嵌套查询并设置属性 首次加载会把同一批次的所有键一起查出
+     *
+     * @throws SQLException
+     */
+    private void loadPendingBatches() throws SQLException {
+        for (PendingLoad pending : pendingBatchLoads) {
+            setPendingValue(pending, pending.resultLoader.loadResult());
+        }
+        pendingBatchLoads.clear();
+    }
+
+    /**
+     * 并发执行当前行积压的嵌套查询 全部完成后再设置属性
+     *
+     * @throws SQLException
+     */
+    private void loadConcurrentNestedQueries() throws SQLException {
+        List<ResultLoader> loaders = new ArrayList<ResultLoader>(concurrentLoads.size());
+        for (PendingLoad pending : concurrentLoads) {
+            loaders.add(pending.resultLoader);
+        }
+        List<Object> values = ParallelResultLoader.loadAll(nestedSelectExecutor, loaders,
+                (ReadWriteSplittingTransaction) executor.getTransaction());
+        for (int i = 0; i < values.size(); i++) {
+            setPendingValue(concurrentLoads.get(i), values.get(i));
+        }
+        concurrentLoads.clear();
+    }
+
+    private void setPendingValue(PendingLoad pending, Object value) {
+        if (value != null || (configuration.isCallSettersOnNulls() && !pending.metaObject
+                .getSetterType(pending.property).isPrimitive())) {
+            pending.metaObject.setValue(pending.property, value);
+        }
+    }
+
     @Override
     public <E> Cursor<E> handleCursorResultSets(Statement stmt) throws SQLException {
         ErrorContext.instance().activity("handling cursor results").object(mappedStatement.getId());
@@ -351,17 +487,33 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             }
         }
         //如果结果集不为null 那么新建结果集包装器
-        return rs != null ? new ResultSetWrapper(rs, configuration) : null;
+        return rs != null ? newResultSetWrapper(rs, "0") : null;
+    }
+
+    /**
+     * 新建结果集包装器 开启cacheResultSetMetadata时按映射语句以及结果集的位置复用字段布局
+     *
+     * @param rs
+     * @param position 结果集的序号或者游标类型的输出参数名称
+     * @return
+     * @throws SQLException
+     */
+    private ResultSetWrapper newResultSetWrapper(ResultSet rs, String position) throws SQLException {
+        if (configuration.isCacheResultSetMetadata()) {
+            return new ResultSetWrapper(rs, configuration, mappedStatement.getId() + "#" + position);
+        }
+        return new ResultSetWrapper(rs, configuration);
     }
 
     /**
      * 获取接下来的结果set
      *
      * @param stmt
+     * @param resultSetIndex 下一个结果集的序号
      * @return
      * @throws SQLException
      */
-    private ResultSetWrapper getNextResultSet(Statement stmt) throws SQLException {
+    private ResultSetWrapper getNextResultSet(Statement stmt, int resultSetIndex) throws SQLException {
         // Making this method tolerant of bad JDBC drivers
         try {
             //如果只只差多结果集合的话  那么迭代获取接下里的结果set
@@ -370,9 +522,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 if (!(!stmt.getMoreResults() && stmt.getUpdateCount() == -1)) {
                     ResultSet rs = stmt.getResultSet();
                     if (rs == null) {
-                        return getNextResultSet(stmt);
+                        return getNextResultSet(stmt, resultSetIndex);
                     } else {
-                        return new ResultSetWrapper(rs, configuration);
+                        return newResultSetWrapper(rs, String.valueOf(resultSetIndex));
                     }
                 }
             }
@@ -402,6 +554,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
      */
     private void cleanUpAfterHandlingResultSet() {
         nestedResultObjects.clear();
+        streamedParentKeys.clear();
+        valueDictionary = null;
+        valueDictionaryOwner = null;
     }
 
     /**
@@ -431,15 +586,25 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     private void handleResultSet(ResultSetWrapper rsw, ResultMap resultMap, List<Object> multipleResults,
             ResultMapping parentMapping) throws SQLException {
         try {
-            if (parentMapping != null) {
+            if (parentMapping == null && resultHandler instanceof ColumnarResultHandler) {
+                //按列读取 不映射行
+                final ColumnarResultHandler columnarResultHandler = (ColumnarResultHandler) resultHandler;
+                if (!columnarResultHandler.hasResult()) {
+                    skipRows(rsw.getResultSet(), rowBounds);
+                    columnarResultHandler.handleResultSet(rsw.getResultSet(), rsw.getColumnNames(),
+                            rsw.getJdbcTypes(), rsw.getClassNames(), rowBounds.getLimit());
+                }
+            } else if (parentMapping != null) {
                 handleRowValues(rsw, resultMap, null, RowBounds.DEFAULT, parentMapping);
             } else {
-                if (resultHandler == null) {
+                if (resultHandler == null && isLazyResultList(rsw, resultMap)) {
+                    multipleResults.add(createLazyResultList(rsw, resultMap));
+                } else if (resultHandler == null) {
                     DefaultResultHandler defaultResultHandler = new DefaultResultHandler(objectFactory);
-                    handleRowValues(rsw, resultMap, defaultResultHandler, rowBounds, null);
+                    handleTopLevelRowValues(rsw, resultMap, defaultResultHandler);
                     multipleResults.add(defaultResultHandler.getResultList());
                 } else {
-                    handleRowValues(rsw, resultMap, resultHandler, rowBounds, null);
+                    handleTopLevelRowValues(rsw, resultMap, resultHandler);
                 }
             }
         } finally {
@@ -448,6 +613,171 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
     }
 
+    /**
+     * 处理最外层结果集的行 开启mappingParallelism并且结果映射支持时交给线程池并行映射
+     *
+     * @param rsw
+     * @param resultMap
+     * @param resultHandler
+     * @throws SQLException
+     */
+    private void handleTopLevelRowValues(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler)
+            throws SQLException {
+        if (isParallelMapping(rsw, resultMap)) {
+            skipRows(rsw.getResultSet(), rowBounds);
+            new MappingPipeline(this, configuration.getMappingExecutor(), configuration.getMappingBatchSize(),
+                    configuration.getMappingParallelism()).mapRows(rsw, resultMap, resultHandler, rowBounds);
+        } else {
+            handleRowValues(rsw, resultMap, resultHandler, rowBounds, null);
+        }
+    }
+
+    /**
+     * 是否并行映射 每一行只能依赖自己的字段值 不支持嵌套结果映射、嵌套查询、自定义类型处理器
+     * 以及不能用标准方法复制的字段
+     *
+     * @param rsw
+     * @param resultMap
+     * @return
+     */
+    private boolean isParallelMapping(ResultSetWrapper rsw, ResultMap resultMap) {
+        return configuration.getMappingParallelism() > 0 && isIndependentRows(resultMap, new HashSet<String>())
+                && isBufferedColumns(rsw);
+    }
+
+    /**
+     * 结果集的字段都能用标准方法复制到缓冲区中 LOB、数组、厂商自定义类型等字段在结果集关闭后无法读取或无法转换
+     *
+     * @param rsw
+     * @return
+     */
+    private static boolean isBufferedColumns(ResultSetWrapper rsw) {
+        for (JdbcType jdbcType : rsw.getJdbcTypes()) {
+            if (jdbcType == null || !BUFFERED_JDBC_TYPES.contains(jdbcType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 结果映射显式指定的类型处理器都是内置的 自定义的类型处理器可能调用缓冲区不支持的方法或需要驱动自己的类型
+     *
+     * @param resultMap
+     * @return
+     */
+    private static boolean hasBuiltInTypeHandlers(ResultMap resultMap) {
+        for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+            if (!isBuiltInTypeHandler(resultMapping.getTypeHandler())) {
+                return false;
+            }
+        }
+        final Discriminator discriminator = resultMap.getDiscriminator();
+        return discriminator == null || isBuiltInTypeHandler(discriminator.getResultMapping().getTypeHandler());
+    }
+
+    private static boolean isBuiltInTypeHandler(TypeHandler<?> typeHandler) {
+        return typeHandler == null || typeHandler.getClass().getName().startsWith(BUILT_IN_TYPE_HANDLER_PACKAGE);
+    }
+
+    /**
+     * 结果映射以及鉴别器的各个分支都没有嵌套结果映射和嵌套查询
+     *
+     * @param resultMap
+     * @param visited
+     * @return
+     */
+    private boolean isIndependentRows(ResultMap resultMap, Set<String> visited) {
+        if (!visited.add(resultMap.getId())) {
+            return true;
+        }
+        if (resultMap.hasNestedResultMaps() || resultMap.hasNestedQueries() || !hasBuiltInTypeHandlers(resultMap)) {
+            return false;
+        }
+        final Discriminator discriminator = resultMap.getDiscriminator();
+        if (discriminator != null) {
+            for (String caseResultMapId : discriminator.getDiscriminatorMap().values()) {
+                if (!configuration.hasResultMap(caseResultMapId) || !isIndependentRows(
+                        configuration.getResultMap(caseResultMapId), visited)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 创建并行映射的工作线程使用的结果集处理器 映射过程中的状态不与当前处理器共享
+     *
+     * @return
+     */
+    DefaultResultSetHandler newWorker() {
+        return new DefaultResultSetHandler(executor, mappedStatement, parameterHandler, resultHandler, boundSql,
+                rowBounds);
+    }
+
+    /**
+     * 映射缓冲区中的所有行 供并行映射的工作线程使用
+     *
+     * @param rsw
+     * @param resultMap
+     * @return
+     * @throws SQLException
+     */
+    List<Object> mapBufferedRows(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+        final DefaultResultHandler rowHandler = new DefaultResultHandler();
+        try {
+            handleRowValuesForSimpleResultMap(rsw, resultMap, rowHandler, RowBounds.DEFAULT, null);
+        } finally {
+            cleanUpAfterHandlingResultSet();
+        }
+        return rowHandler.getResultList();
+    }
+
+    /**
+     * 是否延迟映射结果 只支持没有嵌套结果映射、嵌套查询、鉴别器以及自定义类型处理器的结果映射
+     * 不能用标准方法复制的LOB、厂商自定义类型等字段以及未知类型的字段也不支持
+     *
+     * @param rsw
+     * @param resultMap
+     * @return
+     */
+    private boolean isLazyResultList(ResultSetWrapper rsw, ResultMap resultMap) {
+        return configuration.isLazyResultLists() && !resultMap.hasNestedResultMaps() && !resultMap.hasNestedQueries()
+                && resultMap.getDiscriminator() == null && hasBuiltInTypeHandlers(resultMap) && isBufferedColumns(rsw);
+    }
+
+    /**
+     * 把结果集的剩余行按列复制到缓冲区中 返回延迟映射的结果集合
+     *
+     * @param rsw
+     * @param resultMap
+     * @return
+     * @throws SQLException
+     */
+    private List<Object> createLazyResultList(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+        skipRows(rsw.getResultSet(), rowBounds);
+        final ColumnarResultHandler buffer = new ColumnarResultHandler();
+        buffer.handleResultSet(rsw.getResultSet(), rsw.getColumnNames(), rsw.getJdbcTypes(), rsw.getClassNames(),
+                rowBounds.getLimit());
+        return new LazyResultList(configuration, resultMap, buffer.getResult(), rsw.getJdbcTypes(),
+                rsw.getClassNames());
+    }
+
+    /**
+     * 映射缓冲区中当前选中的行 供延迟映射的结果集合使用
+     *
+     * @param rsw
+     * @param resultMap
+     * @return
+     * @throws SQLException
+     */
+    Object materializeRow(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+        final DefaultResultHandler rowHandler = new DefaultResultHandler();
+        handleRowValuesForSimpleResultMap(rsw, resultMap, rowHandler, RowBounds.DEFAULT, null);
+        return rowHandler.getResultList().isEmpty() ? null : rowHandler.getResultList().get(0);
+    }
+
     @SuppressWarnings("unchecked")
     private List<Object> collapseSingleResultList(List<Object> multipleResults) {
         return multipleResults.size() == 1 ? (List<Object>) multipleResults.get(0) : multipleResults;
@@ -491,7 +821,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
      * 检查结果处理器
      */
     protected void checkResultHandler() {
-        if (resultHandler != null && configuration.isSafeResultHandlerEnabled() && !mappedStatement.isResultOrdered()) {
+        if (resultHandler != null && configuration.isSafeResultHandlerEnabled() && !isResultOrdered()) {
             throw new ExecutorException(
                     "Mapped Statements with nested result mappings cannot be safely used with a custom ResultHandler. "
                             + "Use safeResultHandlerEnabled=false setting to bypass this check "
@@ -514,11 +844,19 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
         //如果用RowBounds进行分页的话 是通过这里进行跳过offset条记录的
         skipRows(rsw.getResultSet(), rowBounds);
+        //开启compileRowMappers并且ResultMap支持时使用生成的行映射器
+        final RowMapper rowMapper = configuration.isCompileRowMappers() ? configuration.getRowMapperCompiler()
+                .getRowMapper(rsw, resultMap) : null;
         //循环根据结果集中的记录创建行对象
         while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
-            ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
-            // TODO: 2021/4/6 CallYeDeGuo 嵌套的sql的结果也获取在里面
-            Object rowValue = getRowValue(rsw, discriminatedResultMap);
+            Object rowValue;
+            if (rowMapper != null) {
+                rowValue = rowMapper.map(rsw.getResultSet());
+            } else {
+                ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
+                // TODO: 2021/4/6 CallYeDeGuo 嵌套的sql的结果也获取在里面
+                rowValue = getRowValue(rsw, discriminatedResultMap);
+            }
             storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
         }
     }
@@ -650,19 +988,20 @@ public class DefaultResultSetHandler implements ResultSetHandler {
      */
     private boolean applyPropertyMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject,
             ResultLoaderMap lazyLoader, String columnPrefix) throws SQLException {
-        final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
+        // 字段索引在每个结果集中只解析一次 嵌套结果映射上的column属性会被忽略
+        final int[] columnIndexes = rsw.getPropertyColumnIndexes(resultMap, columnPrefix);
         boolean foundValues = false;
         final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
-        for (ResultMapping propertyMapping : propertyMappings) {
-            String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
-            if (propertyMapping.getNestedResultMapId() != null) {
-                // the user added a column attribute to a nested result map, ignore it
-                column = null;
-            }
-            if (propertyMapping.isCompositeResult() || (column != null && mappedColumnNames
-                    .contains(column.toUpperCase(Locale.ENGLISH))) || propertyMapping.getResultSet() != null) {
+        for (int i = 0; i < columnIndexes.length; i++) {
+            final ResultMapping propertyMapping = propertyMappings.get(i);
+            final int columnIndex = columnIndexes[i];
+            if (propertyMapping.isCompositeResult() || columnIndex > 0 || propertyMapping.getResultSet() != null) {
                 Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader,
-                        columnPrefix);
+                        columnPrefix, columnIndex);
+                if (resultMap.hasDeduplicatedValues() && propertyMapping.getNestedQueryId() == null
+                        && propertyMapping.getResultSet() == null && resultMap.isDeduplicated(propertyMapping)) {
+                    value = deduplicate(rsw, columnIndex, value);
+                }
                 // issue #541 make property optional
                 final String property = propertyMapping.getProperty();
                 if (property == null) {
@@ -681,6 +1020,13 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 }
             }
         }
+        if (!concurrentLoads.isEmpty()) {
+            try {
+                loadConcurrentNestedQueries();
+            } finally {
+                concurrentLoads.clear();
+            }
+        }
         return foundValues;
     }
 
@@ -692,11 +1038,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
      * @param propertyMapping
      * @param lazyLoader
      * @param columnPrefix
+     * @param columnIndex  字段索引 为0时按名称读取
      * @return
      * @throws SQLException
      */
     private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping,
-            ResultLoaderMap lazyLoader, String columnPrefix) throws SQLException {
+            ResultLoaderMap lazyLoader, String columnPrefix, int columnIndex) throws SQLException {
         //如果有嵌套 那么
         if (propertyMapping.getNestedQueryId() != null) {
             return getNestedQueryMappingValue(rs, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
@@ -705,6 +1052,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             return DEFERED;
         } else {
             final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
+            if (columnIndex > 0) {
+                return typeHandler.getResult(rs, columnIndex);
+            }
             final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
             return typeHandler.getResult(rs, column);
         }
@@ -723,7 +1073,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     private List<UnMappedColumnAutoMapping> createAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap,
             MetaObject metaObject, String columnPrefix) throws SQLException {
         final String mapKey = resultMap.getId() + ":" + columnPrefix;
-        List<UnMappedColumnAutoMapping> autoMapping = autoMappingsCache.get(mapKey);
+        //自动映射缓存在结果集的字段布局中 开启cacheResultSetMetadata时在多次执行之间共享
+        List<UnMappedColumnAutoMapping> autoMapping = rsw.getAutoMappings(mapKey);
         if (autoMapping == null) {
             autoMapping = new ArrayList<UnMappedColumnAutoMapping>();
             final List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
@@ -747,8 +1098,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                     final Class<?> propertyType = metaObject.getSetterType(property);
                     if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
                         final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
-                        autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler,
-                                propertyType.isPrimitive()));
+                        autoMapping.add(new UnMappedColumnAutoMapping(columnName, rsw.getColumnIndex(columnName),
+                                property, typeHandler, propertyType.isPrimitive()));
                     } else {
                         configuration.getAutoMappingUnknownColumnBehavior()
                                 .doAction(mappedStatement, columnName, property, propertyType);
@@ -758,7 +1109,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                             .doAction(mappedStatement, columnName, (property != null) ? property : propertyName, null);
                 }
             }
-            autoMappingsCache.put(mapKey, autoMapping);
+            rsw.putAutoMappings(mapKey, autoMapping);
         }
         return autoMapping;
     }
@@ -778,8 +1129,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         List<UnMappedColumnAutoMapping> autoMapping = createAutomaticMappings(rsw, resultMap, metaObject, columnPrefix);
         boolean foundValues = false;
         if (!autoMapping.isEmpty()) {
+            final boolean deduplicate = Boolean.TRUE.equals(resultMap.getDeduplicate());
             for (UnMappedColumnAutoMapping mapping : autoMapping) {
-                final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
+                Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.columnIndex);
+                if (deduplicate) {
+                    value = deduplicate(rsw, mapping.columnIndex, value);
+                }
                 if (value != null) {
                     foundValues = true;
                 }
@@ -879,6 +1234,31 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return resultObject;
     }
 
+    /**
+     * 结果类型为Map接口、使用默认的对象工厂和包装工厂并且每一行的key都是字段名称时 每一行使用共享字段名称索引的RowMap
+     * 有字段前缀、属性名不是字段名称的映射或者自定义的包装工厂(比如把key转换成驼峰命名)时仍然使用HashMap
+     *
+     * @param rsw
+     * @param resultMap
+     * @param columnPrefix
+     * @return
+     */
+    private boolean isCompactRowMap(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) {
+        if (resultMap.getType() != Map.class || !configuration.isCompactRowMaps()
+                || (columnPrefix != null && !columnPrefix.isEmpty())
+                || objectFactory.getClass() != DefaultObjectFactory.class
+                || configuration.getObjectWrapperFactory().getClass() != DefaultObjectWrapperFactory.class) {
+            return false;
+        }
+        final List<String> columnNames = rsw.getColumnNames();
+        for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+            if (!columnNames.contains(propertyMapping.getProperty())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * 创建结果对象
      *
@@ -898,8 +1278,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         if (hasTypeHandlerForResultObject(rsw, resultType)) {
             return createPrimitiveResultObject(rsw, resultMap, columnPrefix);
         } else if (!constructorMappings.isEmpty()) {
-            return createParameterizedResultObject(rsw, resultType, constructorMappings, constructorArgTypes,
-                    constructorArgs, columnPrefix);
+            return createParameterizedResultObject(rsw, resultType, resultMap, constructorMappings,
+                    constructorArgTypes, constructorArgs, columnPrefix);
+        } else if (isCompactRowMap(rsw, resultMap, columnPrefix)) {
+            return rsw.newRowMap();
         } else if (resultType.isInterface() || metaType.hasDefaultConstructor()) {
             return objectFactory.create(resultType);
         } else if (shouldApplyAutomaticMappings(resultMap, false)) {
@@ -911,6 +1293,25 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     Object createParameterizedResultObject(ResultSetWrapper rsw, Class<?> resultType,
             List<ResultMapping> constructorMappings, List<Class<?>> constructorArgTypes, List<Object> constructorArgs,
             String columnPrefix) {
+        return createParameterizedResultObject(rsw, resultType, null, constructorMappings, constructorArgTypes,
+                constructorArgs, columnPrefix);
+    }
+
+    /**
+     * 使用构造函数参数创建结果对象
+     *
+     * @param rsw
+     * @param resultType
+     * @param owner               构造函数参数所在的resultMap 为null时不去重
+     * @param constructorMappings
+     * @param constructorArgTypes
+     * @param constructorArgs
+     * @param columnPrefix
+     * @return
+     */
+    private Object createParameterizedResultObject(ResultSetWrapper rsw, Class<?> resultType, ResultMap owner,
+            List<ResultMapping> constructorMappings, List<Class<?>> constructorArgTypes, List<Object> constructorArgs,
+            String columnPrefix) {
         boolean foundValues = false;
         for (ResultMapping constructorMapping : constructorMappings) {
             final Class<?> parameterType = constructorMapping.getJavaType();
@@ -924,7 +1325,13 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                     value = getRowValue(rsw, resultMap);
                 } else {
                     final TypeHandler<?> typeHandler = constructorMapping.getTypeHandler();
-                    value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(column, columnPrefix));
+                    final String prefixedColumn = prependPrefix(column, columnPrefix);
+                    if (owner != null && owner.hasDeduplicatedValues() && owner.isDeduplicated(constructorMapping)) {
+                        value = deduplicate(rsw, rsw.getColumnIndex(prefixedColumn),
+                                getColumnValue(rsw, typeHandler, prefixedColumn));
+                    } else {
+                        value = getColumnValue(rsw, typeHandler, prefixedColumn);
+                    }
                 }
             } catch (ResultMapException e) {
                 throw new ExecutorException("Could not process result for mapping: " + constructorMapping, e);
@@ -988,7 +1395,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             Class<?> parameterType = constructor.getParameterTypes()[i];
             String columnName = rsw.getColumnNames().get(i);
             TypeHandler<?> typeHandler = rsw.getTypeHandler(parameterType, columnName);
-            Object value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(columnName, columnPrefix));
+            Object value = getColumnValue(rsw, typeHandler, prependPrefix(columnName, columnPrefix));
             constructorArgTypes.add(parameterType);
             constructorArgs.add(value);
             foundValues = value != null || foundValues;
@@ -1061,7 +1468,45 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             columnName = rsw.getColumnNames().get(0);
         }
         final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, columnName);
-        return typeHandler.getResult(rsw.getResultSet(), columnName);
+        return getColumnValue(rsw, typeHandler, columnName);
+    }
+
+    /**
+     * 按字段读取值 结果集中能找到字段时按索引读取 否则按名称读取 交给驱动处理
+     *
+     * @param rsw
+     * @param typeHandler
+     * @param column
+     * @return
+     * @throws SQLException
+     */
+    private Object getColumnValue(ResultSetWrapper rsw, TypeHandler<?> typeHandler, String column)
+            throws SQLException {
+        final int columnIndex = column == null ? 0 : rsw.getColumnIndex(column);
+        if (columnIndex > 0) {
+            return typeHandler.getResult(rsw.getResultSet(), columnIndex);
+        }
+        return typeHandler.getResult(rsw.getResultSet(), column);
+    }
+
+    /**
+     * 在当前结果集的值字典中查找相同的值 结果集变化时重新创建字典
+     *
+     * @param rsw
+     * @param columnIndex 字段索引 为0时不去重
+     * @param value
+     * @return
+     */
+    private Object deduplicate(ResultSetWrapper rsw, int columnIndex, Object value) {
+        if (value == null || columnIndex <= 0) {
+            return value;
+        }
+        if (valueDictionaryOwner != rsw) {
+            valueDictionary = new ValueDictionary(rsw.getColumnNames().size(), configuration.getValueDictionarySize(),
+                    configuration.isAdaptiveDeduplication());
+            valueDictionaryOwner = rsw;
+        }
+        return valueDictionary.intern(columnIndex, value);
     }
 
     //
@@ -1105,6 +1550,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         final String property = propertyMapping.getProperty();
         final MappedStatement nestedQuery = configuration.getMappedStatement(nestedQueryId);
         final Class<?> nestedQueryParameterType = nestedQuery.getParameterMap().getType();
+        if (isBatchNestedSelect(propertyMapping)) {
+            return getBatchNestedQueryMappingValue(rs, metaResultObject, propertyMapping, nestedQuery, lazyLoader,
+                    columnPrefix);
+        }
         final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rs, propertyMapping,
                 nestedQueryParameterType, columnPrefix);
         Object value = null;
@@ -1122,6 +1571,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 if (propertyMapping.isLazy()) {
                     lazyLoader.addLoader(property, metaResultObject, resultLoader);
                     value = DEFERED;
+                } else if (isConcurrentNestedSelect(property, nestedQuery)) {
+                    concurrentLoads.add(new PendingLoad(metaResultObject, property, resultLoader));
+                    value = DEFERED;
                 } else {
                     value = resultLoader.loadResult();
                 }
@@ -1130,6 +1582,76 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return value;
     }
 
+    /**
+     * 非懒加载的嵌套查询是否与同一行的其它嵌套查询并发执行 工作线程内的嵌套查询依次执行
+     * 只有会话的事务会把嵌套查询路由到从库时才并发 工作线程使用各自的从库连接 不会绕过会话在主库上的事务
+     *
+     * @param property
+     * @param nestedQuery
+     * @return
+     */
+    private boolean isConcurrentNestedSelect(String property, MappedStatement nestedQuery) {
+        if (nestedSelectExecutor == null || property == null || ParallelResultLoader.isWorkerThread()) {
+            return false;
+        }
+        Transaction transaction = executor.getTransaction();
+        return transaction instanceof ReadWriteSplittingTransaction
+                && ((ReadWriteSplittingTransaction) transaction).isReplicaRoute(nestedQuery);
+    }
+
+    /**
+     * 嵌套查询是否按批次加载 需要单列的键以及子记录中引用父记录的foreignColumn
+     *
+     * @param propertyMapping
+     * @return
+     */
+    private boolean isBatchNestedSelect(ResultMapping propertyMapping) {
+        if (propertyMapping.isBatch()) {
+            return true;
+        }
+        return configuration.isBatchNestedSelects() && propertyMapping.getForeignColumn() != null
+                && !propertyMapping.isCompositeResult() && propertyMapping.getResultSet() == null;
+    }
+
+    /**
+     * 获取按批次加载的嵌套查询的值
+     * 懒加载时同一批次的兄弟记录在首次访问时一起加载 否则在结果集处理完成后一起加载
+     *
+     * @param rs
+     * @param metaResultObject
+     * @param propertyMapping
+     * @param nestedQuery
+     * @param lazyLoader
+     * @param columnPrefix
+     * @return
+     * @throws SQLException
+     */
+    private Object getBatchNestedQueryMappingValue(ResultSet rs, MetaObject metaResultObject,
+            ResultMapping propertyMapping, MappedStatement nestedQuery, ResultLoaderMap lazyLoader,
+            String columnPrefix) throws SQLException {
+        final Object key = prepareParameterForNestedQuery(rs, propertyMapping, Object.class, columnPrefix);
+        if (key == null) {
+            return null;
+        }
+        BatchResultLoader.Batch batch = nestedSelectBatches.get(propertyMapping);
+        if (batch == null) {
+            batch = new BatchResultLoader.Batch(configuration, nestedQuery, propertyMapping);
+            nestedSelectBatches.put(propertyMapping, batch);
+        }
+        final String property = propertyMapping.getProperty();
+        final ResultLoader resultLoader = new BatchResultLoader(configuration, executor, nestedQuery,
+                propertyMapping.getJavaType(), batch, key);
+        if (propertyMapping.isLazy()) {
+            lazyLoader.addLoader(property, metaResultObject, resultLoader);
+            return DEFERED;
+        }
+        if (deferBatchLoads && property != null) {
+            pendingBatchLoads.add(new PendingLoad(metaResultObject, property, resultLoader));
+            return DEFERED;
+        }
+        return resultLoader.loadResult();
+    }
+
     /**
      * 获取嵌套查询的参数值
      *
@@ -1260,12 +1782,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         final DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
         skipRows(rsw.getResultSet(), rowBounds);
         Object rowValue = previousRowValue;
+        final boolean resultOrdered = isResultOrdered();
         while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
             final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
             final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
             Object partialObject = nestedResultObjects.get(rowKey);
             // issue #577 && #542
-            if (mappedStatement.isResultOrdered()) {
+            if (resultOrdered) {
+                if (partialObject == null && configuration.isStreamNestedResults()) {
+                    verifyNestedResultOrder(discriminatedResultMap, rowKey);
+                }
                 if (partialObject == null && rowValue != null) {
                     nestedResultObjects.clear();
                     storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
@@ -1278,7 +1804,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 }
             }
         }
-        if (rowValue != null && mappedStatement.isResultOrdered() && shouldProcessMoreRows(resultContext, rowBounds)) {
+        if (rowValue != null && resultOrdered && shouldProcessMoreRows(resultContext, rowBounds)) {
             storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
             previousRowValue = null;
         } else if (rowValue != null) {
@@ -1286,6 +1812,33 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
     }
 
+    /**
+     * 嵌套结果是否按父对象的id有序 有序时父对象的id变化就输出已经完成的对象 不再保留之前的父对象
+     *
+     * @return
+     */
+    private boolean isResultOrdered() {
+        return mappedStatement.isResultOrdered() || configuration.isStreamNestedResults();
+    }
+
+    /**
+     * 校验新的父对象之前有没有出现过 同一个父对象的行必须是连续的 否则它会被拆成多个对象输出
+     * 只要求连续 不要求按id排序 比如order by b.created_at, b.id也可以
+     * 只记住最近STREAMED_PARENT_KEYS个父对象的key 内存不随结果集增长 更早的父对象再次出现时无法发现
+     *
+     * @param resultMap
+     * @param rowKey    父对象的key
+     */
+    private void verifyNestedResultOrder(ResultMap resultMap, CacheKey rowKey) {
+        if (rowKey == CacheKey.NULL_CACHE_KEY || streamedParentKeys.add(rowKey)) {
+            return;
+        }
+        throw new ExecutorException("Results of mapped statement '" + mappedStatement.getId()
+                + "' are not grouped by the id columns of result map '" + resultMap.getId()
+                + "': a parent row appeared again after rows of other parents. Order the query so that the rows of"
+                + " each parent are contiguous or disable the streamNestedResults setting.");
+    }
+
     //
     // GET VALUE FROM ROW FOR NESTED RESULT MAP
     //
@@ -1420,9 +1973,15 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     //
 
     private CacheKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
+        List<ResultMapping> resultMappings = getResultMappingsForRowKey(resultMap);
+        if (resultMappings.size() == 1) {
+            final CacheKey simpleRowKey = createSimpleRowKey(resultMap, rsw, resultMappings.get(0), columnPrefix);
+            if (simpleRowKey != null) {
+                return simpleRowKey;
+            }
+        }
         final CacheKey cacheKey = new CacheKey();
         cacheKey.update(resultMap.getId());
-        List<ResultMapping> resultMappings = getResultMappingsForRowKey(resultMap);
         if (resultMappings.isEmpty()) {
             if (Map.class.isAssignableFrom(resultMap.getType())) {
                 createRowKeyForMap(rsw, cacheKey);
@@ -1438,7 +1997,45 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return cacheKey;
     }
 
+    /**
+     * 只有一个数字或字符串id字段时直接用字段值创建行键 值为null等其他情况返回null 交给CacheKey处理
+     *
+     * @param resultMap
+     * @param rsw
+     * @param resultMapping
+     * @param columnPrefix
+     * @return
+     * @throws SQLException
+     */
+    private CacheKey createSimpleRowKey(ResultMap resultMap, ResultSetWrapper rsw, ResultMapping resultMapping,
+            String columnPrefix) throws SQLException {
+        final TypeHandler<?> th = resultMapping.getTypeHandler();
+        final boolean numeric = th instanceof IntegerTypeHandler || th instanceof LongTypeHandler
+                || th instanceof ShortTypeHandler || th instanceof ByteTypeHandler;
+        if (resultMapping.getNestedResultMapId() != null || resultMapping.getNestedQueryId() != null
+                || resultMapping.getColumn() == null || !(numeric || th instanceof StringTypeHandler)) {
+            return null;
+        }
+        final String column = prependPrefix(resultMapping.getColumn(), columnPrefix);
+        final int columnIndex = rsw.getMappedColumnIndex(resultMap, columnPrefix, column);
+        if (columnIndex == 0) {
+            // same as CacheKey: a key holding only the result map id
+            return CacheKey.NULL_CACHE_KEY;
+        }
+        final ResultSet rs = rsw.getResultSet();
+        if (numeric) {
+            final long number = th instanceof LongTypeHandler ? rs.getLong(columnIndex) : rs.getInt(columnIndex);
+            return rs.wasNull() ? null : SimpleRowKey.of(resultMap.getId(), column, number);
+        }
+        final String text = rs.getString(columnIndex);
+        return text == null ? null : SimpleRowKey.of(resultMap.getId(), column, text);
+    }
+
     private CacheKey combineKeys(CacheKey rowKey, CacheKey parentRowKey) {
+        if (rowKey instanceof SimpleRowKey) {
+            return parentRowKey.getUpdateCount() > 1 ? ((SimpleRowKey) rowKey).withParent(parentRowKey)
+                    : CacheKey.NULL_CACHE_KEY;
+        }
         if (rowKey.getUpdateCount() > 1 && parentRowKey.getUpdateCount() > 1) {
             CacheKey combinedKey;
             try {
@@ -1472,10 +2069,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             } else if (resultMapping.getNestedQueryId() == null) {
                 final String column = prependPrefix(resultMapping.getColumn(), columnPrefix);
                 final TypeHandler<?> th = resultMapping.getTypeHandler();
-                List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
                 // Issue #114
-                if (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
-                    final Object value = th.getResult(rsw.getResultSet(), column);
+                final int columnIndex = column == null ? 0 : rsw.getMappedColumnIndex(resultMap, columnPrefix, column);
+                if (columnIndex > 0) {
+                    final Object value = th.getResult(rsw.getResultSet(), columnIndex);
                     if (value != null || configuration.isReturnInstanceForEmptyRow()) {
                         cacheKey.update(column);
                         cacheKey.update(value);
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.result.ColumnarResult;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * 延迟映射的结果集合 结果集打开时只把字段值按列复制到紧凑的缓冲区中 get(i)时才按结果映射创建对象
+ * 创建的对象会被保留 可以通过release释放 释放后再次get会重新创建新的对象
+ * 修改集合(包括set)时会先创建所有对象 之后与普通集合一样 序列化时也会先创建所有对象
+ * 只持有配置、结果映射和缓冲区 不持有执行器、事务和查询参数 可以放入缓存
+ */
+public class LazyResultList extends AbstractList<Object> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 2938413541926452174L;
+
+    private static final Object NULL_ROW = new Object();
+
+    private final transient Configuration configuration;
+    private final transient ResultMap resultMap;
+    private transient DefaultResultSetHandler resultSetHandler;
+    private transient BufferedRowResultSet rows;
+    private transient ResultSetWrapper rsw;
+    private final int size;
+    private transient Object[] materialized;
+    private List<Object> inflated;
+
+    /**
+     * 构造函数
+     *
+     * @param configuration
+     * @param resultMap
+     * @param buffer           按列缓存的行
+     * @param jdbcTypes
+     * @param classNames
+     * @throws SQLException
+     */
+    LazyResultList(Configuration configuration, ResultMap resultMap, ColumnarResult buffer, List<JdbcType> jdbcTypes,
+            List<String> classNames) throws SQLException {
+        this.configuration = configuration;
+        this.resultMap = resultMap;
+        this.rows = BufferedRowResultSet.create(buffer, jdbcTypes, classNames);
+        this.rsw = new ResultSetWrapper(rows.newResultSet(), configuration);
+        this.size = buffer.getRowCount();
+    }
+
+    @Override
+    public synchronized Object get(int index) {
+        if (inflated != null) {
+            return inflated.get(index);
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (materialized == null) {
+            materialized = new Object[size];
+        }
+        Object value = materialized[index];
+        if (value == null) {
+            value = materialize(index);
+            materialized[index] = value == null ? NULL_ROW : value;
+        }
+        return value == NULL_ROW ? null : value;
+    }
+
+    @Override
+    public synchronized int size() {
+        return inflated != null ? inflated.size() : size;
+    }
+
+    @Override
+    public synchronized Object set(int index, Object element) {
+        return inflate().set(index, element);
+    }
+
+    @Override
+    public synchronized void add(int index, Object element) {
+        inflate().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public synchronized Object remove(int index) {
+        final Object removed = inflate().remove(index);
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * 释放已经创建的对象 集合被修改过之后不再释放
+     */
+    public synchronized void release() {
+        if (inflated == null && materialized != null) {
+            Arrays.fill(materialized, null);
+        }
+    }
+
+    /**
+     * 释放指定位置已经创建的对象
+     *
+     * @param index
+     */
+    public synchronized void release(int index) {
+        if (inflated == null && materialized != null) {
+            materialized[index] = null;
+        }
+    }
+
+    /**
+     * 判断集合是否已经被修改 修改后所有对象都已创建 缓冲区也已释放
+     *
+     * @return
+     */
+    public synchronized boolean isInflated() {
+        return inflated != null;
+    }
+
+    private Object materialize(int index) {
+        if (resultSetHandler == null) {
+            resultSetHandler = new DefaultResultSetHandler(configuration);
+        }
+        rows.moveTo(index);
+        try {
+            return resultSetHandler.materializeRow(rsw, resultMap);
+        } catch (SQLException e) {
+            throw new ExecutorException("Error materializing row " + index + " of result map '" + resultMap.getId()
+                    + "'.  Cause: " + e, e);
+        }
+    }
+
+    private List<Object> inflate() {
+        if (inflated == null) {
+            final List<Object> list = new ArrayList<Object>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(get(i));
+            }
+            inflated = list;
+            materialized = null;
+            rows = null;
+            rsw = null;
+            resultSetHandler = null;
+        }
+        return inflated;
+    }
+
+    private synchronized Object writeReplace() {
+        return new ArrayList<Object>(inflate());
+    }
+
+}
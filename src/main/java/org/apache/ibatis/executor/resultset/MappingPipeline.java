@@ -0,0 +1,199 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.result.ColumnarResult;
+import org.apache.ibatis.executor.result.ColumnarResultHandler;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.session.ConcurrentResultHandler;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * 并行映射结果集
+ * 读取结果集的线程把字段值按批次复制到缓冲区 线程池中的工作线程各自用一个新的结果集处理器把批次映射成对象
+ * 普通的结果处理器在读取线程中按结果集的顺序收到结果 ConcurrentResultHandler在工作线程中直接收到结果
+ * 同时在映射的批次不超过线程数的两倍 避免读取远快于映射时缓冲过多的行
+ */
+final class MappingPipeline {
+
+    private final DefaultResultSetHandler handler;
+    private final ExecutorService pool;
+    private final int batchSize;
+    private final int maxPendingBatches;
+
+    /**
+     * 构造函数
+     *
+     * @param handler     创建工作线程使用的结果集处理器
+     * @param pool        线程池
+     * @param batchSize   每个批次的行数
+     * @param parallelism 工作线程数
+     */
+    MappingPipeline(DefaultResultSetHandler handler, ExecutorService pool, int batchSize, int parallelism) {
+        this.handler = handler;
+        this.pool = pool;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxPendingBatches = Math.max(parallelism, 1) * 2;
+    }
+
+    /**
+     * 映射结果集的剩余行 调用前已经跳过了offset
+     *
+     * @param rsw
+     * @param resultMap
+     * @param resultHandler
+     * @param rowBounds
+     * @throws SQLException
+     */
+    void mapRows(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds)
+            throws SQLException {
+        final ResultHandler<?> concurrentHandler = resultHandler instanceof ConcurrentResultHandler ? resultHandler
+                : null;
+        final DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final LinkedList<Future<List<Object>>> pending = new LinkedList<Future<List<Object>>>();
+        int remaining = rowBounds.getLimit();
+        try {
+            while (remaining > 0 && !stopped.get()) {
+                final ColumnarResultHandler buffer = new ColumnarResultHandler();
+                buffer.handleResultSet(rsw.getResultSet(), rsw.getColumnNames(), rsw.getJdbcTypes(),
+                        rsw.getClassNames(), Math.min(batchSize, remaining));
+                final ColumnarResult batch = buffer.getResult();
+                if (batch.getRowCount() == 0) {
+                    break;
+                }
+                remaining -= batch.getRowCount();
+                final BatchTask task = new BatchTask(rsw, resultMap, batch, concurrentHandler, stopped);
+                if (pending.isEmpty() && batch.getRowCount() < batchSize) {
+                    // 只有一个批次 不必交给线程池
+                    deliver(task.call(), resultHandler, resultContext, stopped);
+                    break;
+                }
+                pending.add(pool.submit(task));
+                while (pending.size() >= maxPendingBatches || (!pending.isEmpty() && pending.getFirst().isDone())) {
+                    deliver(pending.removeFirst().get(), resultHandler, resultContext, stopped);
+                }
+            }
+            while (!pending.isEmpty()) {
+                deliver(pending.removeFirst().get(), resultHandler, resultContext, stopped);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutorException("Interrupted while mapping results.", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ExecutorException("Error mapping results.  Cause: " + cause, cause);
+        } finally {
+            for (Future<List<Object>> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 在读取线程中按顺序把一个批次的结果交给结果处理器
+     *
+     * @param rowValues     批次的结果 ConcurrentResultHandler已经在工作线程中收到时为null
+     * @param resultHandler
+     * @param resultContext
+     * @param stopped
+     */
+    @SuppressWarnings("unchecked" /* because ResultHandler<?> is always ResultHandler<Object>*/)
+    private void deliver(List<Object> rowValues, ResultHandler<?> resultHandler,
+            DefaultResultContext<Object> resultContext, AtomicBoolean stopped) {
+        if (rowValues == null) {
+            return;
+        }
+        for (Object rowValue : rowValues) {
+            if (resultContext.isStopped()) {
+                break;
+            }
+            resultContext.nextResultObject(rowValue);
+            ((ResultHandler<Object>) resultHandler).handleResult(resultContext);
+        }
+        if (resultContext.isStopped()) {
+            stopped.set(true);
+        }
+    }
+
+    /**
+     * 映射一个批次
+     */
+    private class BatchTask implements Callable<List<Object>> {
+
+        private final ResultSetWrapper rsw;
+        private final ResultMap resultMap;
+        private final ColumnarResult batch;
+        private final ResultHandler<?> concurrentHandler;
+        private final AtomicBoolean stopped;
+
+        BatchTask(ResultSetWrapper rsw, ResultMap resultMap, ColumnarResult batch, ResultHandler<?> concurrentHandler,
+                AtomicBoolean stopped) {
+            this.rsw = rsw;
+            this.resultMap = resultMap;
+            this.batch = batch;
+            this.concurrentHandler = concurrentHandler;
+            this.stopped = stopped;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked" /* because ResultHandler<?> is always ResultHandler<Object>*/)
+        public List<Object> call() throws SQLException {
+            if (stopped.get()) {
+                return null;
+            }
+            final BufferedRowResultSet rows = BufferedRowResultSet
+                    .create(batch, rsw.getJdbcTypes(), rsw.getClassNames());
+            rows.scan();
+            final List<Object> rowValues = handler.newWorker()
+                    .mapBufferedRows(new ResultSetWrapper(rows.newResultSet(), rsw), resultMap);
+            if (concurrentHandler == null) {
+                return rowValues;
+            }
+            final DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
+            for (Object rowValue : rowValues) {
+                if (stopped.get()) {
+                    break;
+                }
+                resultContext.nextResultObject(rowValue);
+                ((ResultHandler<Object>) concurrentHandler).handleResult(resultContext);
+                if (resultContext.isStopped()) {
+                    stopped.set(true);
+                }
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * 结果集元数据缓存 按映射语句加上结果集序号保存最近一次的字段布局
+ * 字段名称、jdbc类型以及类名称与缓存的布局完全一致时才复用 否则用新的布局替换
+ * 复用时类的加载、类型处理器的解析、已映射字段的计算以及自动映射都不需要重新进行
+ */
+public class ResultSetMetadataCache {
+
+    private final ConcurrentMap<String, ResultSetWrapper.ColumnLayout> layouts = new ConcurrentHashMap<String, ResultSetWrapper.ColumnLayout>();
+
+    /**
+     * 获取字段布局
+     *
+     * @param key
+     * @param columnNames
+     * @param jdbcTypes
+     * @param classNames
+     * @return
+     */
+    ResultSetWrapper.ColumnLayout getLayout(String key, List<String> columnNames, List<JdbcType> jdbcTypes,
+            List<String> classNames) {
+        ResultSetWrapper.ColumnLayout layout = layouts.get(key);
+        if (layout == null || !layout.matches(columnNames, jdbcTypes, classNames)) {
+            layout = new ResultSetWrapper.ColumnLayout(columnNames, jdbcTypes, classNames);
+            layouts.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * 缓存的字段布局数量
+     *
+     * @return
+     */
+    public int size() {
+        return layouts.size();
+    }
+
+    /**
+     * 清空缓存 比如修改了影响映射的配置之后
+     */
+    public void clear() {
+        layouts.clear();
+    }
+
+}
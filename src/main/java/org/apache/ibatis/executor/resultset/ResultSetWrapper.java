@@ -20,14 +20,17 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.ObjectTypeHandler;
@@ -52,35 +55,55 @@ public class ResultSetWrapper {
      */
     private final TypeHandlerRegistry typeHandlerRegistry;
 
+    /**
+     * 字段布局 包含字段信息以及根据字段信息推导出的各种缓存 开启cacheResultSetMetadata时在多次执行之间共享
+     */
+    private final ColumnLayout layout;
+
     /**
      * 数据库字段名称集合
      */
-    private final List<String> columnNames = new ArrayList<String>();
+    private final List<String> columnNames;
 
     /**
      * 类集合名称
      */
-    private final List<String> classNames = new ArrayList<String>();
+    private final List<String> classNames;
 
     /**
      * jdbc类型集合
      */
-    private final List<JdbcType> jdbcTypes = new ArrayList<JdbcType>();
+    private final List<JdbcType> jdbcTypes;
 
     /**
      * 类型处理器map
      */
-    private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<String, Map<Class<?>, TypeHandler<?>>>();
+    private final ConcurrentMap<String, ConcurrentMap<Class<?>, TypeHandler<?>>> typeHandlerMap;
 
     /**
      * 已映射的字段名称map
      */
-    private final Map<String, List<String>> mappedColumnNamesMap = new HashMap<String, List<String>>();
+    private final Map<String, List<String>> mappedColumnNamesMap;
 
     /**
      * 未映射的字段名称map
      */
-    private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<String, List<String>>();
+    private final Map<String, List<String>> unMappedColumnNamesMap;
+
+    /**
+     * 字段名称对应的索引 按映射中使用的原始名称缓存
+     */
+    private final Map<String, Integer> columnIndexes;
+
+    /**
+     * 结果映射在各个前缀下已映射字段的索引
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Integer>> mappedColumnIndexesMap;
+
+    /**
+     * 结果映射在各个前缀下属性映射对应的字段索引
+     */
+    private final Map<String, int[]> propertyColumnIndexesMap;
 
     /**
      * 构造函数
@@ -90,9 +113,24 @@ public class ResultSetWrapper {
      * @throws SQLException
      */
     public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
+        this(rs, configuration, null);
+    }
+
+    /**
+     * 构造函数 布局key不为null时从配置的元数据缓存中取字段布局 字段名称、jdbc类型以及类名称都一致时才会复用
+     *
+     * @param rs
+     * @param configuration
+     * @param layoutKey     一般是映射语句的id加上结果集的序号
+     * @throws SQLException
+     */
+    public ResultSetWrapper(ResultSet rs, Configuration configuration, String layoutKey) throws SQLException {
         super();
         this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
         this.resultSet = rs;
+        final List<String> columnNames = new ArrayList<String>();
+        final List<JdbcType> jdbcTypes = new ArrayList<JdbcType>();
+        final List<String> classNames = new ArrayList<String>();
         final ResultSetMetaData metaData = rs.getMetaData();
         //字段数量
         final int columnCount = metaData.getColumnCount();
@@ -105,6 +143,42 @@ public class ResultSetWrapper {
             //往类名称中添加
             classNames.add(metaData.getColumnClassName(i));
         }
+        if (layoutKey == null) {
+            this.layout = new ColumnLayout(columnNames, jdbcTypes, classNames);
+        } else {
+            this.layout = configuration.getResultSetMetadataCache()
+                    .getLayout(layoutKey, columnNames, jdbcTypes, classNames);
+        }
+        this.columnNames = layout.columnNames;
+        this.classNames = layout.classNames;
+        this.jdbcTypes = layout.jdbcTypes;
+        this.typeHandlerMap = layout.typeHandlerMap;
+        this.mappedColumnNamesMap = layout.mappedColumnNamesMap;
+        this.unMappedColumnNamesMap = layout.unMappedColumnNamesMap;
+        this.columnIndexes = layout.columnIndexes;
+        this.mappedColumnIndexesMap = layout.mappedColumnIndexesMap;
+        this.propertyColumnIndexesMap = layout.propertyColumnIndexesMap;
+    }
+
+    /**
+     * 构造函数 与另一个包装器共用字段布局 结果集的字段必须与之相同
+     *
+     * @param rs
+     * @param template 提供字段布局的包装器
+     */
+    ResultSetWrapper(ResultSet rs, ResultSetWrapper template) {
+        this.typeHandlerRegistry = template.typeHandlerRegistry;
+        this.resultSet = rs;
+        this.layout = template.layout;
+        this.columnNames = layout.columnNames;
+        this.classNames = layout.classNames;
+        this.jdbcTypes = layout.jdbcTypes;
+        this.typeHandlerMap = layout.typeHandlerMap;
+        this.mappedColumnNamesMap = layout.mappedColumnNamesMap;
+        this.unMappedColumnNamesMap = layout.unMappedColumnNamesMap;
+        this.columnIndexes = layout.columnIndexes;
+        this.mappedColumnIndexesMap = layout.mappedColumnIndexesMap;
+        this.propertyColumnIndexesMap = layout.propertyColumnIndexesMap;
     }
 
     /**
@@ -134,6 +208,94 @@ public class ResultSetWrapper {
         return Collections.unmodifiableList(classNames);
     }
 
+    /**
+     * 获取jdbc类型集合
+     *
+     * @return
+     */
+    public List<JdbcType> getJdbcTypes() {
+        return Collections.unmodifiableList(jdbcTypes);
+    }
+
+    /**
+     * 根据字段名称拿到字段的索引 大小写不敏感 同名的字段取第一个 与JDBC按名称读取的规则一致
+     *
+     * @param columnName
+     * @return 从1开始的索引 不存在时返回0
+     */
+    public int getColumnIndex(String columnName) {
+        Integer index = columnIndexes.get(columnName);
+        if (index == null) {
+            index = 0;
+            for (int i = 0; i < columnNames.size(); i++) {
+                if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+                    index = i + 1;
+                    break;
+                }
+            }
+            columnIndexes.put(columnName, index);
+        }
+        return index;
+    }
+
+    /**
+     * 获取已映射字段的索引
+     *
+     * @param resultMap
+     * @param columnPrefix
+     * @param column       已经加上前缀的字段名称
+     * @return 字段不是结果映射的已映射字段时返回0
+     * @throws SQLException
+     */
+    public int getMappedColumnIndex(ResultMap resultMap, String columnPrefix, String column) throws SQLException {
+        final String mapKey = getMapKey(resultMap, columnPrefix);
+        ConcurrentMap<String, Integer> indexes = mappedColumnIndexesMap.get(mapKey);
+        if (indexes == null) {
+            mappedColumnIndexesMap.putIfAbsent(mapKey, new ConcurrentHashMap<String, Integer>());
+            indexes = mappedColumnIndexesMap.get(mapKey);
+        }
+        Integer index = indexes.get(column);
+        if (index == null) {
+            index = getMappedColumnNames(resultMap, columnPrefix).contains(column.toUpperCase(Locale.ENGLISH))
+                    ? getColumnIndex(column) : 0;
+            indexes.put(column, index);
+        }
+        return index;
+    }
+
+    /**
+     * 获取属性映射对应的字段索引 与resultMap.getPropertyResultMappings()一一对应
+     * 嵌套结果映射、没有字段或者字段不在已映射字段中的属性映射为0
+     *
+     * @param resultMap
+     * @param columnPrefix
+     * @return
+     * @throws SQLException
+     */
+    public int[] getPropertyColumnIndexes(ResultMap resultMap, String columnPrefix) throws SQLException {
+        int[] indexes = propertyColumnIndexesMap.get(getMapKey(resultMap, columnPrefix));
+        if (indexes == null) {
+            final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
+            indexes = new int[propertyMappings.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                final ResultMapping propertyMapping = propertyMappings.get(i);
+                final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
+                if (column != null && propertyMapping.getNestedResultMapId() == null) {
+                    indexes[i] = getMappedColumnIndex(resultMap, columnPrefix, column);
+                }
+            }
+            propertyColumnIndexesMap.put(getMapKey(resultMap, columnPrefix), indexes);
+        }
+        return indexes;
+    }
+
+    private static String prependPrefix(String columnName, String prefix) {
+        if (columnName == null || columnName.length() == 0 || prefix == null || prefix.length() == 0) {
+            return columnName;
+        }
+        return prefix + columnName;
+    }
+
     /**
      * 根据字段名称拿到这个字段的jdbc类型
      *
@@ -161,11 +323,13 @@ public class ResultSetWrapper {
      */
     public TypeHandler<?> getTypeHandler(Class<?> propertyType, String columnName) {
         TypeHandler<?> handler = null;
-        Map<Class<?>, TypeHandler<?>> columnHandlers = typeHandlerMap.get(columnName);
+        //ConcurrentHashMap不支持null 没有字段名称时用空字符串代替 两者都不会出现在结果集中
+        final String handlerKey = columnName == null ? "" : columnName;
+        ConcurrentMap<Class<?>, TypeHandler<?>> columnHandlers = typeHandlerMap.get(handlerKey);
         //如果这个字段对应的类型处理器不存在 那么直接创建一个新的 然后存到map中
         if (columnHandlers == null) {
-            columnHandlers = new HashMap<Class<?>, TypeHandler<?>>();
-            typeHandlerMap.put(columnName, columnHandlers);
+            typeHandlerMap.putIfAbsent(handlerKey, new ConcurrentHashMap<Class<?>, TypeHandler<?>>());
+            columnHandlers = typeHandlerMap.get(handlerKey);
         } else {
             //否则直接这个对应的字段类型的处理器
             handler = columnHandlers.get(propertyType);
@@ -275,6 +439,41 @@ public class ResultSetWrapper {
         return unMappedColumnNames;
     }
 
+    /**
+     * 获取缓存的自动映射
+     *
+     * @param mapKey
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> getAutoMappings(String mapKey) {
+        return (List<T>) layout.autoMappings.get(mapKey);
+    }
+
+    /**
+     * 缓存自动映射
+     *
+     * @param mapKey
+     * @param autoMappings
+     */
+    void putAutoMappings(String mapKey, List<?> autoMappings) {
+        layout.autoMappings.put(mapKey, autoMappings);
+    }
+
+    /**
+     * 创建一行的RowMap 同一个字段布局的所有行共享字段名称索引
+     *
+     * @return
+     */
+    RowMap newRowMap() {
+        RowMap.Keys keys = layout.rowMapKeys;
+        if (keys == null) {
+            keys = new RowMap.Keys(columnNames);
+            layout.rowMapKeys = keys;
+        }
+        return new RowMap(keys);
+    }
+
     /**
      * 获取结果map的id
      *
@@ -306,4 +505,41 @@ public class ResultSetWrapper {
         return prefixed;
     }
 
+    /**
+     * 字段布局 字段信息加上由它们推导出的缓存 共享时会被多个线程同时访问
+     */
+    static final class ColumnLayout {
+
+        private final List<String> columnNames;
+        private final List<JdbcType> jdbcTypes;
+        private final List<String> classNames;
+        private final ConcurrentMap<String, ConcurrentMap<Class<?>, TypeHandler<?>>> typeHandlerMap = new ConcurrentHashMap<String, ConcurrentMap<Class<?>, TypeHandler<?>>>();
+        private final Map<String, List<String>> mappedColumnNamesMap = new ConcurrentHashMap<String, List<String>>();
+        private final Map<String, List<String>> unMappedColumnNamesMap = new ConcurrentHashMap<String, List<String>>();
+        private final Map<String, Integer> columnIndexes = new ConcurrentHashMap<String, Integer>();
+        private final ConcurrentMap<String, ConcurrentMap<String, Integer>> mappedColumnIndexesMap = new ConcurrentHashMap<String, ConcurrentMap<String, Integer>>();
+        private final Map<String, int[]> propertyColumnIndexesMap = new ConcurrentHashMap<String, int[]>();
+        private final Map<String, List<?>> autoMappings = new ConcurrentHashMap<String, List<?>>();
+        private volatile RowMap.Keys rowMapKeys;
+
+        ColumnLayout(List<String> columnNames, List<JdbcType> jdbcTypes, List<String> classNames) {
+            this.columnNames = columnNames;
+            this.jdbcTypes = jdbcTypes;
+            this.classNames = classNames;
+        }
+
+        /**
+         * 判断字段布局是否与结果集的元数据一致
+         *
+         * @param columnNames
+         * @param jdbcTypes
+         * @param classNames
+         * @return
+         */
+        boolean matches(List<String> columnNames, List<JdbcType> jdbcTypes, List<String> classNames) {
+            return this.columnNames.equals(columnNames) && this.jdbcTypes.equals(jdbcTypes)
+                    && this.classNames.equals(classNames);
+        }
+    }
+
 }
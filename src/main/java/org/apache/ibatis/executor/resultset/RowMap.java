@@ -0,0 +1,282 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * resultType为map时每一行使用的Map 同一个结果集的所有行共享字段名称的索引 每一行只保存值数组
+ * 结果集中不存在的key保存在每一行自己的HashMap中
+ * key区分大小写 get、containsKey、remove以及equals都与HashMap的语义一致
+ * 只在每一行的key都是字段名称时使用 它不是HashMap 需要HashMap的调用方应当在resultType中指定hashmap
+ */
+public class RowMap extends AbstractMap<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = -4187263015293764520L;
+
+    /**
+     * 区分值为null和没有值
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    private final Keys keys;
+    private final Object[] values;
+    private Map<String, Object> extra;
+    private int size;
+    private transient Set<Map.Entry<String, Object>> entrySet;
+
+    /**
+     * 构造函数
+     *
+     * @param keys 结果集共享的字段名称索引
+     */
+    RowMap(Keys keys) {
+        this.keys = keys;
+        this.values = new Object[keys.names.length];
+    }
+
+    @Override
+    public int size() {
+        return size + (extra == null ? 0 : extra.size());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        final int slot = slot(key);
+        if (slot >= 0) {
+            return true;
+        }
+        return extra != null && extra.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        final int slot = slot(key);
+        if (slot >= 0) {
+            return unmask(values[slot]);
+        }
+        return extra == null ? null : extra.get(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        final Integer slot = keys.slots.get(key);
+        if (slot == null) {
+            if (extra == null) {
+                extra = new HashMap<String, Object>();
+            }
+            return extra.put(key, value);
+        }
+        final Object previous = values[slot];
+        if (previous == null) {
+            size++;
+        }
+        values[slot] = value == null ? NULL_VALUE : value;
+        return unmask(previous);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        final Integer slot = keys.slots.get(key);
+        if (slot == null || values[slot] == null) {
+            return extra == null ? null : extra.remove(key);
+        }
+        final Object previous = values[slot];
+        values[slot] = null;
+        size--;
+        return unmask(previous);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+        size = 0;
+        extra = null;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return RowMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * 查找有值的字段位置
+     *
+     * @param key
+     * @return 没有值时返回-1
+     */
+    private int slot(Object key) {
+        final Integer slot = keys.slots.get(key);
+        return slot == null || values[slot] == null ? -1 : slot;
+    }
+
+    private static Object unmask(Object value) {
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private Object writeReplace() {
+        return new HashMap<String, Object>(this);
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private int next = advance(0);
+        private int last = -1;
+        private Iterator<Map.Entry<String, Object>> extraIterator;
+
+        private int advance(int from) {
+            int i = from;
+            while (i < values.length && values[i] == null) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next < values.length) {
+                return true;
+            }
+            if (extraIterator == null && extra != null) {
+                extraIterator = extra.entrySet().iterator();
+            }
+            return extraIterator != null && extraIterator.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (next < values.length) {
+                final int slot = next;
+                last = slot;
+                next = advance(slot + 1);
+                return new SlotEntry(slot);
+            }
+            last = -1;
+            return extraIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last >= 0) {
+                if (values[last] == null) {
+                    throw new IllegalStateException();
+                }
+                values[last] = null;
+                size--;
+            } else if (extraIterator != null) {
+                extraIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private class SlotEntry implements Map.Entry<String, Object> {
+
+        private final int slot;
+
+        SlotEntry(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public String getKey() {
+            return keys.names[slot];
+        }
+
+        @Override
+        public Object getValue() {
+            return unmask(values[slot]);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            final Object previous = values[slot];
+            values[slot] = value == null ? NULL_VALUE : value;
+            return unmask(previous);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            final Object value = getValue();
+            return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            final Object value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    /**
+     * 字段名称索引 同一个结果集的所有行共享 创建后不再修改
+     */
+    static final class Keys {
+
+        private final String[] names;
+        private final Map<String, Integer> slots = new HashMap<String, Integer>();
+
+        Keys(List<String> columnNames) {
+            this.names = new String[columnNames.size()];
+            for (int i = 0; i < names.length; i++) {
+                final String name = columnNames.get(i);
+                // 同名的字段与HashMap一样共用一个key
+                final Integer slot = slots.get(name);
+                names[i] = name;
+                if (slot == null) {
+                    slots.put(name, i);
+                }
+            }
+        }
+    }
+
+}
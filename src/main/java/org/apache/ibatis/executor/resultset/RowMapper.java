@@ -0,0 +1,37 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 行映射器 把结果集的当前行映射成结果对象
+ *
+ * @see RowMapperCompiler
+ */
+public interface RowMapper {
+
+    /**
+     * 映射当前行
+     *
+     * @param rs 已经定位到当前行的结果集
+     * @return 结果对象 这一行没有任何值的时候按returnInstanceForEmptyRow返回空对象或者null
+     * @throws SQLException
+     */
+    Object map(ResultSet rs) throws SQLException;
+
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.reflection.property.PropertyNamer;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
+import org.apache.ibatis.session.AutoMappingBehavior;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+/**
+ * 行映射器编译器
+ * 按(ResultMap, 列布局)用Javassist生成专用的行映射器 按列索引读取值并直接调用构造函数和setter 避免每行创建MetaObject和反射调用
+ * 只支持没有嵌套映射、鉴别器和构造函数映射 并且结果类型是有公共无参构造函数和公共setter的公共JavaBean的ResultMap
+ * 自动映射中有找不到属性的列时也不生成 其它情况返回null 由DefaultResultSetHandler按原来的方式映射
+ * 每个ResultMap最多编译MAX_LAYOUTS_PER_RESULT_MAP种列布局 列不固定的查询不会无限地生成新类
+ */
+public class RowMapperCompiler {
+
+    private static final Log log = LogFactory.getLog(RowMapperCompiler.class);
+
+    /**
+     * 不支持生成的标记
+     */
+    private static final RowMapper UNSUPPORTED = new RowMapper() {
+        @Override
+        public Object map(ResultSet rs) {
+            return null;
+        }
+    };
+
+    /**
+     * 每个ResultMap最多编译的列布局数量 超过之后新的布局按原来的方式映射
+     */
+    static final int MAX_LAYOUTS_PER_RESULT_MAP = 8;
+
+    private final Configuration configuration;
+    private final ConcurrentMap<String, RowMapper> rowMappers = new ConcurrentHashMap<String, RowMapper>();
+
+    /**
+     * 每个ResultMap已经编译的列布局数量
+     */
+    private final ConcurrentMap<String, AtomicInteger> layoutCounts = new ConcurrentHashMap<String, AtomicInteger>();
+
+    public RowMapperCompiler(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * 获取结果映射在当前列布局下的行映射器
+     *
+     * @param rsw
+     * @param resultMap
+     * @return 不支持生成时返回null
+     * @throws SQLException
+     */
+    public RowMapper getRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+        String key = layoutKey(rsw, resultMap);
+        RowMapper rowMapper = rowMappers.get(key);
+        if (rowMapper == null) {
+            if (!reserveLayout(resultMap)) {
+                return null;
+            }
+            rowMapper = compile(rsw, resultMap);
+            RowMapper previous = rowMappers.putIfAbsent(key, rowMapper == null ? UNSUPPORTED : rowMapper);
+            if (previous != null) {
+                rowMapper = previous;
+            }
+        }
+        return rowMapper == UNSUPPORTED ? null : rowMapper;
+    }
+
+    /**
+     * 为新的列布局占用一个名额
+     *
+     * @param resultMap
+     * @return 已经达到上限时返回false
+     */
+    private boolean reserveLayout(ResultMap resultMap) {
+        AtomicInteger count = layoutCounts.get(resultMap.getId());
+        if (count == null) {
+            count = new AtomicInteger();
+            AtomicInteger previous = layoutCounts.putIfAbsent(resultMap.getId(), count);
+            if (previous != null) {
+                count = previous;
+            }
+        }
+        for (;;) {
+            int current = count.get();
+            if (current >= MAX_LAYOUTS_PER_RESULT_MAP) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private String layoutKey(ResultSetWrapper rsw, ResultMap resultMap) {
+        StringBuilder key = new StringBuilder(resultMap.getId());
+        List<String> columnNames = rsw.getColumnNames();
+        List<String> classNames = rsw.getClassNames();
+        for (int i = 0; i < columnNames.size(); i++) {
+            String columnName = columnNames.get(i);
+            key.append('|').append(columnName).append(':').append(rsw.getJdbcType(columnName)).append(':')
+                    .append(classNames.get(i));
+        }
+        return key.toString();
+    }
+
+    private RowMapper compile(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+        List<ColumnMapping> mappings = resolveColumnMappings(rsw, resultMap);
+        if (mappings == null) {
+            return null;
+        }
+        try {
+            return RowMapperGenerator.generate(resultMap.getType(), mappings,
+                    configuration.isReturnInstanceForEmptyRow());
+        } catch (Exception e) {
+            logFallback(resultMap, e);
+        } catch (LinkageError e) {
+            logFallback(resultMap, e);
+        }
+        return null;
+    }
+
+    private void logFallback(ResultMap resultMap, Throwable cause) {
+        if (log.isDebugEnabled()) {
+            log.debug("Could not generate a row mapper for result map '" + resultMap.getId()
+                    + "', mapping it reflectively.  Cause: " + cause);
+        }
+    }
+
+    /**
+     * 按DefaultResultSetHandler中自动映射和属性映射的顺序解析每一列的映射
+     *
+     * @param rsw
+     * @param resultMap
+     * @return 不支持生成时返回null
+     * @throws SQLException
+     */
+    private List<ColumnMapping> resolveColumnMappings(ResultSetWrapper rsw, ResultMap resultMap)
+            throws SQLException {
+        final Class<?> type = resultMap.getType();
+        if (!isSupported(rsw, resultMap)) {
+            return null;
+        }
+        final MetaClass metaClass = MetaClass.forClass(type, configuration.getReflectorFactory());
+        final TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        final boolean callSettersOnNulls = configuration.isCallSettersOnNulls();
+        final List<ColumnMapping> mappings = new ArrayList<ColumnMapping>();
+        if (shouldApplyAutomaticMappings(resultMap)) {
+            for (String columnName : rsw.getUnmappedColumnNames(resultMap, null)) {
+                final String property = metaClass.findProperty(columnName, configuration.isMapUnderscoreToCamelCase());
+                if (property == null || property.indexOf('.') >= 0 || !metaClass.hasSetter(property)) {
+                    // unknown columns are reported by the reflective path
+                    return null;
+                }
+                if (resultMap.getMappedProperties().contains(property)) {
+                    continue;
+                }
+                final Class<?> propertyType = metaClass.getSetterType(property);
+                if (!typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
+                    return null;
+                }
+                final Method setter = findSetter(type, property, propertyType);
+                if (setter == null) {
+                    return null;
+                }
+                mappings.add(new ColumnMapping(columnIndex(rsw, columnName), setter,
+                        rsw.getTypeHandler(propertyType, columnName), callSettersOnNulls && !propertyType.isPrimitive()));
+            }
+        }
+        final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, null);
+        for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+            if (propertyMapping.isCompositeResult() || propertyMapping.getNestedQueryId() != null
+                    || propertyMapping.getResultSet() != null) {
+                return null;
+            }
+            final String column = propertyMapping.getColumn();
+            final String property = propertyMapping.getProperty();
+            if (column == null || property == null || !mappedColumnNames
+                    .contains(column.toUpperCase(Locale.ENGLISH))) {
+                continue;
+            }
+            if (property.indexOf('.') >= 0 || !metaClass.hasSetter(property)) {
+                return null;
+            }
+            final Class<?> propertyType = metaClass.getSetterType(property);
+            final Method setter = findSetter(type, property, propertyType);
+            if (setter == null) {
+                return null;
+            }
+            mappings.add(new ColumnMapping(columnIndex(rsw, column), setter, propertyMapping.getTypeHandler(),
+                    callSettersOnNulls && !propertyType.isPrimitive()));
+        }
+        return mappings;
+    }
+
+    private boolean isSupported(ResultSetWrapper rsw, ResultMap resultMap) {
+        if (resultMap.hasNestedResultMaps() || resultMap.hasNestedQueries() || resultMap.getDiscriminator() != null
+                || !resultMap.getConstructorResultMappings().isEmpty() || resultMap.hasDeduplicatedValues()) {
+            return false;
+        }
+        if (configuration.getObjectFactory().getClass() != DefaultObjectFactory.class
+                || configuration.getObjectWrapperFactory().getClass() != DefaultObjectWrapperFactory.class) {
+            return false;
+        }
+        final Class<?> type = resultMap.getType();
+        if (type.isPrimitive() || type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())
+                || type.getClassLoader() == null || Map.class.isAssignableFrom(type)
+                || Collection.class.isAssignableFrom(type) || !isPublic(type) || hasTypeHandlerForResultObject(rsw,
+                type)) {
+            return false;
+        }
+        try {
+            return Modifier.isPublic(type.getConstructor().getModifiers());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private boolean shouldApplyAutomaticMappings(ResultMap resultMap) {
+        if (resultMap.getAutoMapping() != null) {
+            return resultMap.getAutoMapping();
+        }
+        return AutoMappingBehavior.NONE != configuration.getAutoMappingBehavior();
+    }
+
+    private boolean hasTypeHandlerForResultObject(ResultSetWrapper rsw, Class<?> resultType) {
+        final TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        if (rsw.getColumnNames().size() == 1) {
+            return typeHandlerRegistry.hasTypeHandler(resultType, rsw.getJdbcType(rsw.getColumnNames().get(0)));
+        }
+        return typeHandlerRegistry.hasTypeHandler(resultType);
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getDeclaringClass()) {
+            if (!Modifier.isPublic(current.getModifiers()) || (current.getDeclaringClass() != null && !Modifier
+                    .isStatic(current.getModifiers()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 找到属性对应的公共setter 声明类也必须是公共的
+     *
+     * @param type
+     * @param property
+     * @param propertyType
+     * @return
+     */
+    private static Method findSetter(Class<?> type, String property, Class<?> propertyType) {
+        for (Method method : type.getMethods()) {
+            if (PropertyNamer.isSetter(method.getName()) && method.getParameterTypes().length == 1
+                    && method.getParameterTypes()[0] == propertyType && !method.isBridge()
+                    && !Modifier.isStatic(method.getModifiers())
+                    && Modifier.isPublic(method.getDeclaringClass().getModifiers())
+                    && property.equals(PropertyNamer.methodToProperty(method.getName()))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static int columnIndex(ResultSetWrapper rsw, String column) {
+        List<String> columnNames = rsw.getColumnNames();
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (columnNames.get(i).equalsIgnoreCase(column)) {
+                return i + 1;
+            }
+        }
+        throw new IllegalStateException("Column '" + column + "' is not in the result set");
+    }
+
+    /**
+     * 一列到一个setter的映射
+     */
+    static class ColumnMapping {
+
+        final int columnIndex;
+        final Method setter;
+        final TypeHandler<?> typeHandler;
+        final boolean callSetterOnNull;
+
+        ColumnMapping(int columnIndex, Method setter, TypeHandler<?> typeHandler, boolean callSetterOnNull) {
+            this.columnIndex = columnIndex;
+            this.setter = setter;
+            this.typeHandler = typeHandler;
+            this.callSetterOnNull = callSetterOnNull;
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.security.ProtectionDomain;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtField;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+
+import org.apache.ibatis.executor.resultset.RowMapperCompiler.ColumnMapping;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * 用Javassist生成行映射器类
+ * 每个生成的类定义在结果类型的类加载器的一个子类加载器中 只访问结果类型的公共成员
+ * 行映射器不再被引用时生成的类可以和它的类加载器一起被回收 不会一直留在应用的类加载器中
+ * 类型处理器通过构造函数传入
+ */
+final class RowMapperGenerator {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private RowMapperGenerator() {
+        // Prevent Instantiation of Static Class
+    }
+
+    static RowMapper generate(Class<?> type, List<ColumnMapping> mappings, boolean returnInstanceForEmptyRow)
+            throws Exception {
+        ClassLoader classLoader = type.getClassLoader();
+        if (Class.forName(RowMapper.class.getName(), false, classLoader) != RowMapper.class) {
+            throw new IllegalStateException(type + " cannot see " + RowMapper.class);
+        }
+        ClassPool pool = new ClassPool(true);
+        pool.appendClassPath(new LoaderClassPath(RowMapper.class.getClassLoader()));
+        pool.appendClassPath(new LoaderClassPath(classLoader));
+        CtClass ctClass = pool.makeClass(type.getName() + "$$RowMapper$$" + COUNTER.incrementAndGet());
+        ctClass.addInterface(pool.get(RowMapper.class.getName()));
+        ctClass.addField(CtField.make("private final " + TypeHandler.class.getName() + "[] h;", ctClass));
+        CtConstructor constructor = new CtConstructor(
+                new CtClass[] { pool.get(TypeHandler.class.getName() + "[]") }, ctClass);
+        constructor.setBody("{ this.h = $1; }");
+        ctClass.addConstructor(constructor);
+        ctClass.addMethod(CtNewMethod.make(mapMethod(type, mappings, returnInstanceForEmptyRow), ctClass));
+        byte[] bytecode = ctClass.toBytecode();
+        ctClass.detach();
+        Class<?> rowMapperClass = new RowMapperClassLoader(classLoader).define(ctClass.getName(), bytecode,
+                type.getProtectionDomain());
+        TypeHandler<?>[] typeHandlers = new TypeHandler<?>[mappings.size()];
+        for (int i = 0; i < typeHandlers.length; i++) {
+            typeHandlers[i] = mappings.get(i).typeHandler;
+        }
+        return (RowMapper) rowMapperClass.getConstructor(TypeHandler[].class).newInstance((Object) typeHandlers);
+    }
+
+    /**
+     * 只定义一个行映射器类的类加载器 其它类交给结果类型的类加载器加载
+     */
+    private static class RowMapperClassLoader extends ClassLoader {
+
+        RowMapperClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytecode, ProtectionDomain protectionDomain) {
+            return defineClass(name, bytecode, 0, bytecode.length, protectionDomain);
+        }
+    }
+
+    /**
+     * 生成map方法 与DefaultResultSetHandler.getRowValue一样 值不为null时才算找到值 callSettersOnNulls时对非基本类型设置null
+     *
+     * @param type
+     * @param mappings
+     * @param returnInstanceForEmptyRow
+     * @return
+     */
+    private static String mapMethod(Class<?> type, List<ColumnMapping> mappings, boolean returnInstanceForEmptyRow) {
+        String typeName = type.getName();
+        StringBuilder body = new StringBuilder();
+        body.append("public Object map(java.sql.ResultSet rs) throws java.sql.SQLException {\n");
+        body.append("  ").append(typeName).append(" o = new ").append(typeName).append("();\n");
+        body.append("  boolean found = false;\n");
+        body.append("  Object v;\n");
+        for (int i = 0; i < mappings.size(); i++) {
+            ColumnMapping mapping = mappings.get(i);
+            Class<?> propertyType = mapping.setter.getParameterTypes()[0];
+            String setter = "o." + mapping.setter.getName();
+            body.append("  v = this.h[").append(i).append("].getResult(rs, ").append(mapping.columnIndex)
+                    .append(");\n");
+            body.append("  if (v != null) { found = true; ").append(setter).append('(')
+                    .append(unwrap(propertyType, "v")).append("); }");
+            if (mapping.callSetterOnNull) {
+                body.append(" else { ").append(setter).append("((").append(typeName(propertyType))
+                        .append(") null); }");
+            }
+            body.append('\n');
+        }
+        body.append(returnInstanceForEmptyRow ? "  return o;\n" : "  return found ? o : null;\n");
+        body.append("}");
+        return body.toString();
+    }
+
+    private static String unwrap(Class<?> type, String value) {
+        if (type.isPrimitive()) {
+            String wrapper = wrapperName(type);
+            return "((" + wrapper + ") " + value + ")." + type.getName() + "Value()";
+        }
+        return "(" + typeName(type) + ") " + value;
+    }
+
+    private static String wrapperName(Class<?> primitive) {
+        if (primitive == int.class) {
+            return Integer.class.getName();
+        }
+        if (primitive == char.class) {
+            return Character.class.getName();
+        }
+        String name = primitive.getName();
+        return "java.lang." + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String typeName(Class<?> type) {
+        return type.isArray() ? typeName(type.getComponentType()) + "[]" : type.getName();
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheKey;
+
+/**
+ * 单个数字或字符串id字段的行键 嵌套结果映射中用来代替逐个添加字段名称和值的CacheKey
+ * 值直接保存为long或者字符串 哈希值在创建时计算 组合父对象的键时只需要多创建一个对象
+ * 与CacheKey一样包含加上前缀的字段名称 同一个结果映射以不同的columnPrefix用在多个关联中时键不会相同
+ * 不可变 不允许调用update
+ */
+final class SimpleRowKey extends CacheKey {
+
+    private static final long serialVersionUID = -2969328426356475318L;
+
+    private final String resultMapId;
+    private final String column;
+    private final long number;
+    private final String text;
+    private final CacheKey parent;
+    private final int hash;
+
+    private SimpleRowKey(String resultMapId, String column, long number, String text, CacheKey parent) {
+        this.resultMapId = resultMapId;
+        this.column = column;
+        this.number = number;
+        this.text = text;
+        this.parent = parent;
+        int h = resultMapId.hashCode();
+        h = 31 * h + column.hashCode();
+        h = 31 * h + (text == null ? (int) (number ^ (number >>> 32)) : text.hashCode());
+        this.hash = parent == null ? h : 31 * h + parent.hashCode();
+    }
+
+    /**
+     * 创建数字id的行键
+     *
+     * @param resultMapId
+     * @param column      加上前缀的字段名称
+     * @param number
+     * @return
+     */
+    static SimpleRowKey of(String resultMapId, String column, long number) {
+        return new SimpleRowKey(resultMapId, column, number, null, null);
+    }
+
+    /**
+     * 创建字符串id的行键
+     *
+     * @param resultMapId
+     * @param column      加上前缀的字段名称
+     * @param text
+     * @return
+     */
+    static SimpleRowKey of(String resultMapId, String column, String text) {
+        return new SimpleRowKey(resultMapId, column, 0L, text, null);
+    }
+
+    /**
+     * 组合父对象的行键
+     *
+     * @param parentRowKey
+     * @return
+     */
+    SimpleRowKey withParent(CacheKey parentRowKey) {
+        return new SimpleRowKey(resultMapId, column, number, text, parentRowKey);
+    }
+
+    /**
+     * 与CacheKey保持一致 结果映射id加上字段值算两次更新 组合父对象的键再算一次
+     *
+     * @return
+     */
+    @Override
+    public int getUpdateCount() {
+        return parent == null ? 2 : 3;
+    }
+
+    @Override
+    public void update(Object object) {
+        throw new CacheException("Not allowed to update a SimpleRowKey instance.");
+    }
+
+    @Override
+    public void updateAll(Object[] objects) {
+        throw new CacheException("Not allowed to update a SimpleRowKey instance.");
+    }
+
+    @Override
+    public SimpleRowKey clone() {
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof SimpleRowKey)) {
+            return false;
+        }
+        final SimpleRowKey other = (SimpleRowKey) object;
+        return hash == other.hash && number == other.number && resultMapId.equals(other.resultMapId)
+                && column.equals(other.column)
+                && (text == null ? other.text == null : text.equals(other.text))
+                && (parent == null ? other.parent == null : parent.equals(other.parent));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(resultMapId).append(':').append(column).append(':')
+                .append(text == null ? String.valueOf(number) : text);
+        if (parent != null) {
+            builder.append(':').append(parent);
+        }
+        return builder.toString();
+    }
+
+}
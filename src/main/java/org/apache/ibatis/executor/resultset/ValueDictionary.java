@@ -0,0 +1,136 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 结果集内的值字典 开启deduplicate的字段中相同的不可变值共用一个实例
+ * 每个字段的字典有大小上限 写满后不再加入新值 开启自适应时命中率低于一半的字段停止去重
+ */
+class ValueDictionary {
+
+    /**
+     * 可以共用实例的不可变类型
+     */
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>();
+
+    static {
+        IMMUTABLE_TYPES.add(String.class);
+        IMMUTABLE_TYPES.add(BigDecimal.class);
+        IMMUTABLE_TYPES.add(BigInteger.class);
+        IMMUTABLE_TYPES.add(Long.class);
+        IMMUTABLE_TYPES.add(Integer.class);
+        IMMUTABLE_TYPES.add(Short.class);
+        IMMUTABLE_TYPES.add(Byte.class);
+        IMMUTABLE_TYPES.add(Double.class);
+        IMMUTABLE_TYPES.add(Float.class);
+        IMMUTABLE_TYPES.add(Character.class);
+        IMMUTABLE_TYPES.add(UUID.class);
+    }
+
+    private final ColumnDictionary[] columns;
+    private final int maxSize;
+    private final boolean adaptive;
+
+    /**
+     * 构造函数
+     *
+     * @param columnCount 结果集的字段数量
+     * @param maxSize     每个字段最多缓存的不同值数量
+     * @param adaptive    字典写满后命中率低于一半时是否停止去重
+     */
+    ValueDictionary(int columnCount, int maxSize, boolean adaptive) {
+        this.columns = new ColumnDictionary[columnCount + 1];
+        this.maxSize = maxSize;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * 返回字段中与value相等的已有实例 没有时记住value
+     *
+     * @param columnIndex 字段索引 从1开始
+     * @param value
+     * @return
+     */
+    Object intern(int columnIndex, Object value) {
+        if (value == null || columnIndex <= 0 || columnIndex >= columns.length || !IMMUTABLE_TYPES
+                .contains(value.getClass())) {
+            return value;
+        }
+        ColumnDictionary column = columns[columnIndex];
+        if (column == null) {
+            column = new ColumnDictionary();
+            columns[columnIndex] = column;
+        }
+        return column.intern(value);
+    }
+
+    /**
+     * 判断字段是否已经停止去重
+     *
+     * @param columnIndex
+     * @return
+     */
+    boolean isDisabled(int columnIndex) {
+        final ColumnDictionary column = columns[columnIndex];
+        return column != null && column.values == null;
+    }
+
+    /**
+     * 字段中缓存的不同值数量
+     *
+     * @param columnIndex
+     * @return
+     */
+    int size(int columnIndex) {
+        final ColumnDictionary column = columns[columnIndex];
+        return column == null || column.values == null ? 0 : column.values.size();
+    }
+
+    private class ColumnDictionary {
+
+        private Map<Object, Object> values = new HashMap<Object, Object>();
+        private long lookups;
+        private long hits;
+
+        Object intern(Object value) {
+            if (values == null) {
+                return value;
+            }
+            lookups++;
+            final Object existing = values.get(value);
+            if (existing != null) {
+                hits++;
+                return existing;
+            }
+            if (values.size() < maxSize) {
+                values.put(value, value);
+            } else if (adaptive && hits * 2 < lookups) {
+                // 高基数的字段 继续查字典只会多占内存
+                values = null;
+            }
+            return value;
+        }
+    }
+
+}
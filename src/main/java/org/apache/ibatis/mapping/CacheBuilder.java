@@ -27,6 +27,7 @@ import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.decorators.BlockingCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.NegativeResultCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
@@ -71,6 +72,21 @@ public class CacheBuilder {
      */
     private boolean readWrite;
 
+    /**
+     * 读写缓存的集合结果是否按需反序列化
+     */
+    private boolean lazyCopy;
+
+    /**
+     * 空结果的存活时间 为null表示不单独缓存空结果
+     */
+    private Long negativeTimeToLive;
+
+    /**
+     * 最多缓存的空结果数量
+     */
+    private Integer negativeSize;
+
     /**
      * 属性配置
      */
@@ -146,11 +162,44 @@ public class CacheBuilder {
         return this;
     }
 
+    /**
+     * 设置读写缓存的集合结果是否按需反序列化
+     *
+     * @param lazyCopy
+     * @return
+     */
+    public CacheBuilder lazyCopy(boolean lazyCopy) {
+        this.lazyCopy = lazyCopy;
+        return this;
+    }
+
     public CacheBuilder blocking(boolean blocking) {
         this.blocking = blocking;
         return this;
     }
 
+    /**
+     * 设置空结果的存活时间
+     *
+     * @param negativeTimeToLive
+     * @return
+     */
+    public CacheBuilder negativeTimeToLive(Long negativeTimeToLive) {
+        this.negativeTimeToLive = negativeTimeToLive;
+        return this;
+    }
+
+    /**
+     * 设置最多缓存的空结果数量
+     *
+     * @param negativeSize
+     * @return
+     */
+    public CacheBuilder negativeSize(Integer negativeSize) {
+        this.negativeSize = negativeSize;
+        return this;
+    }
+
     /**
      * 设置属性配置
      *
@@ -211,6 +260,15 @@ public class CacheBuilder {
             }
             if (readWrite) {
                 cache = new SerializedCache(cache);
+                ((SerializedCache) cache).setLazy(lazyCopy);
+            }
+            //空结果缓存放在序列化之外 这样空结果不需要序列化
+            if (negativeTimeToLive != null) {
+                cache = new NegativeResultCache(cache);
+                ((NegativeResultCache) cache).setTimeToLive(negativeTimeToLive);
+                if (negativeSize != null) {
+                    ((NegativeResultCache) cache).setSize(negativeSize);
+                }
             }
             cache = new LoggingCache(cache);
             cache = new SynchronizedCache(cache);
@@ -18,6 +18,7 @@ package org.apache.ibatis.mapping;
 import javax.sql.DataSource;
 
 import org.apache.ibatis.transaction.TransactionFactory;
+import org.apache.ibatis.transaction.routing.ReplicaSelector;
 
 /**
  * 环境配置
@@ -41,6 +42,11 @@ public final class Environment {
      */
     private final DataSource dataSource;
 
+    /**
+     * 从库选择器 为null的话不做读写分离
+     */
+    private final ReplicaSelector replicaSelector;
+
     /**
      * 构造函数
      *
@@ -49,6 +55,19 @@ public final class Environment {
      * @param dataSource
      */
     public Environment(String id, TransactionFactory transactionFactory, DataSource dataSource) {
+        this(id, transactionFactory, dataSource, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param id
+     * @param transactionFactory
+     * @param dataSource         主库数据源
+     * @param replicaSelector    从库选择器
+     */
+    public Environment(String id, TransactionFactory transactionFactory, DataSource dataSource,
+            ReplicaSelector replicaSelector) {
         if (id == null) {
             throw new IllegalArgumentException("Parameter 'id' must not be null");
         }
@@ -61,6 +80,7 @@ public final class Environment {
         }
         this.transactionFactory = transactionFactory;
         this.dataSource = dataSource;
+        this.replicaSelector = replicaSelector;
     }
 
     /**
@@ -83,6 +103,11 @@ public final class Environment {
          */
         private DataSource dataSource;
 
+        /**
+         * 从库选择器
+         */
+        private ReplicaSelector replicaSelector;
+
         /**
          * 构造函数
          *
@@ -114,6 +139,17 @@ public final class Environment {
             return this;
         }
 
+        /**
+         * 设置从库选择器 设置之后查询路由到从库
+         *
+         * @param replicaSelector
+         * @return
+         */
+        public Builder replicaSelector(ReplicaSelector replicaSelector) {
+            this.replicaSelector = replicaSelector;
+            return this;
+        }
+
         /**
          * 返回id
          *
@@ -129,7 +165,7 @@ public final class Environment {
          * @return
          */
         public Environment build() {
-            return new Environment(this.id, this.transactionFactory, this.dataSource);
+            return new Environment(this.id, this.transactionFactory, this.dataSource, this.replicaSelector);
         }
 
     }
@@ -161,4 +197,13 @@ public final class Environment {
         return this.dataSource;
     }
 
+    /**
+     * 获取从库选择器
+     *
+     * @return 没有配置从库的话返回null
+     */
+    public ReplicaSelector getReplicaSelector() {
+        return this.replicaSelector;
+    }
+
 }
@@ -65,6 +65,8 @@ public class ResultMap {
     private boolean hasNestedResultMaps;
     private boolean hasNestedQueries;
     private Boolean autoMapping;
+    private Boolean deduplicate;
+    private boolean hasDeduplicatedValues;
 
     private ResultMap() {
     }
@@ -121,6 +123,17 @@ public class ResultMap {
             return this;
         }
 
+        /**
+         * 设置是否在结果集内复用相同的值 对没有单独设置的字段和自动映射的字段生效
+         *
+         * @param deduplicate
+         * @return
+         */
+        public Builder deduplicate(Boolean deduplicate) {
+            resultMap.deduplicate = deduplicate;
+            return this;
+        }
+
         /**
          * 返回原始类型
          *
@@ -154,6 +167,8 @@ public class ResultMap {
                 resultMap.hasNestedResultMaps =
                         resultMap.hasNestedResultMaps || (resultMapping.getNestedResultMapId() != null
                                 && resultMapping.getResultSet() == null);
+                resultMap.hasDeduplicatedValues =
+                        resultMap.hasDeduplicatedValues || resultMap.isDeduplicated(resultMapping);
                 final String column = resultMapping.getColumn();
                 if (column != null) {
                     resultMap.mappedColumns.add(column.toUpperCase(Locale.ENGLISH));
@@ -201,6 +216,8 @@ public class ResultMap {
                     }
                 });
             }
+            resultMap.hasDeduplicatedValues = resultMap.hasDeduplicatedValues || Boolean.TRUE
+                    .equals(resultMap.deduplicate);
             // lock down collections
             resultMap.resultMappings = Collections.unmodifiableList(resultMap.resultMappings);
             resultMap.idResultMappings = Collections.unmodifiableList(resultMap.idResultMappings);
@@ -323,4 +340,28 @@ public class ResultMap {
         return autoMapping;
     }
 
+    public Boolean getDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * 是否有需要在结果集内复用相同值的字段
+     *
+     * @return
+     */
+    public boolean hasDeduplicatedValues() {
+        return hasDeduplicatedValues;
+    }
+
+    /**
+     * 判断字段映射的值是否在结果集内复用 字段上的设置优先于resultMap的设置
+     *
+     * @param resultMapping
+     * @return
+     */
+    public boolean isDeduplicated(ResultMapping resultMapping) {
+        final Boolean value = resultMapping.getDeduplicate();
+        return value != null ? value : Boolean.TRUE.equals(deduplicate);
+    }
+
 }
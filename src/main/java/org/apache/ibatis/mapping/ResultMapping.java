@@ -98,6 +98,16 @@ public class ResultMapping {
      */
     private boolean lazy;
 
+    /**
+     * 嵌套查询是否按批次加载 需要foreignColumn指定子记录中引用父记录的列
+     */
+    private boolean batch;
+
+    /**
+     * 是否在结果集内复用相同的值 为null时使用所在resultMap的设置
+     */
+    private Boolean deduplicate;
+
     /**
      * 构造函数
      */
@@ -282,6 +292,28 @@ public class ResultMapping {
             return this;
         }
 
+        /**
+         * 设置嵌套查询是否按批次加载
+         *
+         * @param batch
+         * @return
+         */
+        public Builder batch(boolean batch) {
+            resultMapping.batch = batch;
+            return this;
+        }
+
+        /**
+         * 设置是否在结果集内复用相同的值
+         *
+         * @param deduplicate 为null时使用所在resultMap的设置
+         * @return
+         */
+        public Builder deduplicate(Boolean deduplicate) {
+            resultMapping.deduplicate = deduplicate;
+            return this;
+        }
+
         /**
          * 构建resultMapping
          *
@@ -313,6 +345,12 @@ public class ResultMapping {
                 throw new IllegalStateException(
                         "Mapping is missing column attribute for property " + resultMapping.property);
             }
+            if (resultMapping.batch && (resultMapping.nestedQueryId == null || resultMapping.foreignColumn == null
+                    || !resultMapping.composites.isEmpty())) {
+                throw new IllegalStateException(
+                        "Batch fetching requires a nested select, a single column and a foreignColumn in property "
+                                + resultMapping.property);
+            }
             if (resultMapping.getResultSet() != null) {
                 int numColumns = 0;
                 if (resultMapping.column != null) {
@@ -413,6 +451,14 @@ public class ResultMapping {
         this.lazy = lazy;
     }
 
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public Boolean getDeduplicate() {
+        return deduplicate;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -460,6 +506,8 @@ public class ResultMapping {
         sb.append(", resultSet='").append(resultSet).append('\'');
         sb.append(", foreignColumn='").append(foreignColumn).append('\'');
         sb.append(", lazy=").append(lazy);
+        sb.append(", batch=").append(batch);
+        sb.append(", deduplicate=").append(deduplicate);
         sb.append('}');
         return sb.toString();
     }
@@ -82,6 +82,22 @@ public class Plugin implements InvocationHandler {
         return target;
     }
 
+    /**
+     * 获取插件代理的目标对象
+     *
+     * @param object
+     * @return 不是插件代理的时候返回null
+     */
+    public static Object getTarget(Object object) {
+        if (object != null && Proxy.isProxyClass(object.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(object);
+            if (handler instanceof Plugin) {
+                return ((Plugin) handler).target;
+            }
+        }
+        return null;
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         try {
@@ -0,0 +1,25 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+/**
+ * 可以被多个线程同时调用的结果处理器
+ * 开启mappingParallelism时 结果直接在映射的工作线程中交给处理器 不保证与结果集中的顺序一致
+ * 每个工作线程使用自己的结果上下文 调用stop()后不再读取新的批次
+ */
+public interface ConcurrentResultHandler<T> extends ResultHandler<T> {
+
+}
@@ -24,6 +24,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.binding.MapperRegistry;
 import org.apache.ibatis.builder.CacheRefResolver;
@@ -31,11 +36,13 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheAdmissionPolicy;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationBus;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
@@ -51,6 +58,8 @@ import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetMetadataCache;
+import org.apache.ibatis.executor.resultset.RowMapperCompiler;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.io.VFS;
@@ -86,6 +95,8 @@ import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
 import org.apache.ibatis.transaction.Transaction;
 import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
 import org.apache.ibatis.transaction.managed.ManagedTransactionFactory;
+import org.apache.ibatis.transaction.routing.LatencyAwareReplicaSelector;
+import org.apache.ibatis.transaction.routing.RoundRobinReplicaSelector;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeAliasRegistry;
 import org.apache.ibatis.type.TypeHandler;
@@ -130,6 +141,11 @@ public class Configuration {
      * 是否允许缓存
      */
     protected boolean cacheEnabled = true;
+
+    /**
+     * 二级缓存失效总线 用于多个节点之间同步缓存的清空
+     */
+    protected CacheInvalidationBus cacheInvalidationBus;
     protected boolean callSettersOnNulls;
     protected boolean useActualParamName = true;
     protected boolean returnInstanceForEmptyRow;
@@ -180,6 +196,131 @@ public class Configuration {
      */
     protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
 
+    /**
+     * 批量执行时是否按sql分组复用statement
+     */
+    protected boolean batchGroupingEnabled;
+
+    /**
+     * 批量执行时自动执行executeBatch的累计行数
+     */
+    protected Integer maxBatchSize;
+
+    /**
+     * 批量执行时自动执行executeBatch的累计参数估算字节数
+     */
+    protected Long maxBatchBytes;
+
+    /**
+     * 批量执行时是否保留批量结果
+     */
+    protected boolean retainBatchResults = true;
+
+    /**
+     * 批量执行时是否把单行insert改写成多行VALUES
+     */
+    protected boolean rewriteBatchedInserts;
+
+    /**
+     * 改写后的多行insert单条语句最多的参数数量
+     */
+    protected int rewriteBatchedInsertsParameterLimit = 2000;
+
+    /**
+     * 是否把多个查询拼接成一条多语句在一次往返中执行 需要驱动支持多语句
+     */
+    protected boolean multiStatementPipelining;
+
+    /**
+     * 重用执行器最多缓存的statement数量 超过的按最近最少使用关闭 小于等于0表示不限制
+     */
+    protected int reuseStatementCacheSize = 256;
+
+    /**
+     * 是否把指定了foreignColumn的嵌套查询按批次加载
+     */
+    protected boolean batchNestedSelects;
+
+    /**
+     * 按批次加载嵌套查询时每次查询的最大键数量
+     */
+    protected int nestedSelectBatchSize = 500;
+
+    /**
+     * 同一行中互不依赖的非懒加载嵌套查询并发执行的线程数 0表示在当前连接上依次执行
+     */
+    protected int nestedSelectParallelism;
+
+    /**
+     * 并发执行嵌套查询的线程池 未设置时按nestedSelectParallelism创建
+     */
+    protected volatile ExecutorService nestedSelectExecutor;
+
+    /**
+     * 按键批量查询时每次查询的最大键数量
+     */
+    protected int keyLookupChunkSize = 500;
+
+    /**
+     * 是否为简单的ResultMap生成按列索引读取的行映射器类
+     */
+    protected boolean compileRowMappers;
+
+    /**
+     * 是否在多次执行之间缓存结果集元数据以及由它推导出的映射信息
+     */
+    protected boolean cacheResultSetMetadata;
+
+    /**
+     * 是否把所有嵌套结果映射当作resultOrdered处理 父对象的id变化时立即输出 同时校验同一个父对象的行是否连续
+     */
+    protected boolean streamNestedResults;
+
+    /**
+     * 是否延迟映射selectList的结果 结果集打开时只按列缓存字段值 get时才创建对象
+     */
+    protected boolean lazyResultLists;
+
+    /**
+     * resultType为map时每一行使用共享字段名称索引的RowMap 而不是HashMap
+     */
+    protected boolean compactRowMaps = true;
+
+    /**
+     * 开启值去重的字段在每个结果集中最多缓存的不同值数量
+     */
+    protected int valueDictionarySize = 1024;
+
+    /**
+     * 字段的值字典写满后命中率低于一半时停止对该字段去重
+     */
+    protected boolean adaptiveDeduplication = true;
+
+    /**
+     * 并行映射结果对象的工作线程数 0表示在读取结果集的线程中映射
+     */
+    protected int mappingParallelism;
+
+    /**
+     * 并行映射时每个批次的行数
+     */
+    protected int mappingBatchSize = 256;
+
+    /**
+     * 并行映射结果对象的线程池 未设置时按mappingParallelism创建
+     */
+    protected volatile ExecutorService mappingExecutor;
+
+    /**
+     * 行映射器编译器 开启compileRowMappers后首次使用时创建
+     */
+    protected RowMapperCompiler rowMapperCompiler;
+
+    /**
+     * 结果集元数据缓存 开启cacheResultSetMetadata后使用
+     */
+    protected final ResultSetMetadataCache resultSetMetadataCache = new ResultSetMetadataCache();
+
     /**
      * 默认的自动映射设置
      */
@@ -270,6 +411,12 @@ public class Configuration {
      * 缓存集合 id为namespace
      */
     protected final Map<String, Cache> caches = new StrictMap<Cache>("Caches collection");
+
+    /**
+     * 二级缓存准入策略 key为命名空间或者声明的id
+     */
+    protected final Map<String, CacheAdmissionPolicy> cacheAdmissionPolicies = new ConcurrentHashMap<String, CacheAdmissionPolicy>();
+    protected final Map<String, Partitioner> partitioners = new ConcurrentHashMap<String, Partitioner>();
     protected final Map<String, ResultMap> resultMaps = new StrictMap<ResultMap>("Result Maps collection");
     protected final Map<String, ParameterMap> parameterMaps = new StrictMap<ParameterMap>("Parameter Maps collection");
     protected final Map<String, KeyGenerator> keyGenerators = new StrictMap<KeyGenerator>("Key Generators collection");
@@ -339,6 +486,10 @@ public class Configuration {
         typeAliasRegistry.registerAlias("POOLED", PooledDataSourceFactory.class);
         //注册没有池化的数据源工厂class对应的别名
         typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
+        //注册轮询从库选择器对应的别名
+        typeAliasRegistry.registerAlias("ROUND_ROBIN", RoundRobinReplicaSelector.class);
+        //注册按延迟选择从库的选择器对应的别名
+        typeAliasRegistry.registerAlias("LATENCY_AWARE", LatencyAwareReplicaSelector.class);
         //注册无限期缓存对应的别名
         typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
         //注册新建新出缓存class对应的别名--装饰者
@@ -692,6 +843,481 @@ public class Configuration {
         this.defaultExecutorType = defaultExecutorType;
     }
 
+    /**
+     * 获取批量执行时是否按sql分组复用statement
+     *
+     * @return
+     */
+    public boolean isBatchGroupingEnabled() {
+        return batchGroupingEnabled;
+    }
+
+    /**
+     * 设置批量执行时是否按sql分组复用statement
+     *
+     * @param batchGroupingEnabled
+     */
+    public void setBatchGroupingEnabled(boolean batchGroupingEnabled) {
+        this.batchGroupingEnabled = batchGroupingEnabled;
+    }
+
+    /**
+     * 获取批量执行时自动执行executeBatch的累计行数
+     *
+     * @return
+     */
+    public Integer getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * 设置批量执行时自动执行executeBatch的累计行数
+     *
+     * @param maxBatchSize
+     */
+    public void setMaxBatchSize(Integer maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 获取批量执行时自动执行executeBatch的累计参数估算字节数
+     *
+     * @return
+     */
+    public Long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * 设置批量执行时自动执行executeBatch的累计参数估算字节数
+     *
+     * @param maxBatchBytes
+     */
+    public void setMaxBatchBytes(Long maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * 获取批量执行时是否保留批量结果
+     *
+     * @return
+     */
+    public boolean isRetainBatchResults() {
+        return retainBatchResults;
+    }
+
+    /**
+     * 设置批量执行时是否保留批量结果
+     *
+     * @param retainBatchResults
+     */
+    public void setRetainBatchResults(boolean retainBatchResults) {
+        this.retainBatchResults = retainBatchResults;
+    }
+
+    /**
+     * 获取批量执行时是否把单行insert改写成多行VALUES
+     *
+     * @return
+     */
+    public boolean isRewriteBatchedInserts() {
+        return rewriteBatchedInserts;
+    }
+
+    /**
+     * 设置批量执行时是否把单行insert改写成多行VALUES
+     *
+     * @param rewriteBatchedInserts
+     */
+    public void setRewriteBatchedInserts(boolean rewriteBatchedInserts) {
+        this.rewriteBatchedInserts = rewriteBatchedInserts;
+    }
+
+    /**
+     * 获取改写后的多行insert单条语句最多的参数数量
+     *
+     * @return
+     */
+    public int getRewriteBatchedInsertsParameterLimit() {
+        return rewriteBatchedInsertsParameterLimit;
+    }
+
+    /**
+     * 设置改写后的多行insert单条语句最多的参数数量
+     *
+     * @param rewriteBatchedInsertsParameterLimit
+     */
+    public void setRewriteBatchedInsertsParameterLimit(int rewriteBatchedInsertsParameterLimit) {
+        this.rewriteBatchedInsertsParameterLimit = rewriteBatchedInsertsParameterLimit;
+    }
+
+    /**
+     * 获取是否把多个查询拼接成一条多语句在一次往返中执行 需要驱动支持多语句
+     *
+     * @return
+     */
+    public boolean isMultiStatementPipelining() {
+        return multiStatementPipelining;
+    }
+
+    /**
+     * 设置是否把多个查询拼接成一条多语句在一次往返中执行 需要驱动支持多语句
+     *
+     * @param multiStatementPipelining
+     */
+    public void setMultiStatementPipelining(boolean multiStatementPipelining) {
+        this.multiStatementPipelining = multiStatementPipelining;
+    }
+
+    /**
+     * 获取重用执行器最多缓存的statement数量 超过的按最近最少使用关闭 小于等于0表示不限制
+     *
+     * @return
+     */
+    public int getReuseStatementCacheSize() {
+        return reuseStatementCacheSize;
+    }
+
+    /**
+     * 设置重用执行器最多缓存的statement数量 超过的按最近最少使用关闭 小于等于0表示不限制
+     *
+     * @param reuseStatementCacheSize
+     */
+    public void setReuseStatementCacheSize(int reuseStatementCacheSize) {
+        this.reuseStatementCacheSize = reuseStatementCacheSize;
+    }
+
+    /**
+     * 获取是否把指定了foreignColumn的嵌套查询按批次加载
+     *
+     * @return
+     */
+    public boolean isBatchNestedSelects() {
+        return batchNestedSelects;
+    }
+
+    /**
+     * 设置是否把指定了foreignColumn的嵌套查询按批次加载
+     *
+     * @param batchNestedSelects
+     */
+    public void setBatchNestedSelects(boolean batchNestedSelects) {
+        this.batchNestedSelects = batchNestedSelects;
+    }
+
+    /**
+     * 获取按批次加载嵌套查询时每次查询的最大键数量
+     *
+     * @return
+     */
+    public int getNestedSelectBatchSize() {
+        return nestedSelectBatchSize;
+    }
+
+    /**
+     * 设置按批次加载嵌套查询时每次查询的最大键数量
+     *
+     * @param nestedSelectBatchSize
+     */
+    public void setNestedSelectBatchSize(int nestedSelectBatchSize) {
+        this.nestedSelectBatchSize = nestedSelectBatchSize;
+    }
+
+    /**
+     * 获取同一行中互不依赖的非懒加载嵌套查询并发执行的线程数 0表示在当前连接上依次执行
+     *
+     * @return
+     */
+    public int getNestedSelectParallelism() {
+        return nestedSelectParallelism;
+    }
+
+    /**
+     * 设置同一行中互不依赖的非懒加载嵌套查询并发执行的线程数 0表示在当前连接上依次执行
+     *
+     * @param nestedSelectParallelism
+     */
+    public void setNestedSelectParallelism(int nestedSelectParallelism) {
+        this.nestedSelectParallelism = nestedSelectParallelism;
+    }
+
+    /**
+     * 获取并发执行嵌套查询的线程池 未设置时按nestedSelectParallelism创建
+     * 每个结果集处理器创建时都会调用 已经创建之后不加锁
+     *
+     * @return
+     */
+    public ExecutorService getNestedSelectExecutor() {
+        ExecutorService executor = nestedSelectExecutor;
+        if (executor == null && nestedSelectParallelism > 0) {
+            synchronized (this) {
+                executor = nestedSelectExecutor;
+                if (executor == null) {
+                    executor = newDaemonThreadPool(nestedSelectParallelism, "mybatis-nested-select-");
+                    nestedSelectExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 创建固定大小的守护线程池
+     *
+     * @param threads
+     * @param threadNamePrefix 线程名前缀 后面加上线程序号
+     * @return
+     */
+    private static ExecutorService newDaemonThreadPool(int threads, final String threadNamePrefix) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadNamePrefix + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 设置并发执行嵌套查询的线程池 未设置时按nestedSelectParallelism创建
+     *
+     * @param nestedSelectExecutor
+     */
+    public synchronized void setNestedSelectExecutor(ExecutorService nestedSelectExecutor) {
+        this.nestedSelectExecutor = nestedSelectExecutor;
+    }
+
+    /**
+     * 获取按键批量查询时每次查询的最大键数量
+     *
+     * @return
+     */
+    public int getKeyLookupChunkSize() {
+        return keyLookupChunkSize;
+    }
+
+    /**
+     * 设置按键批量查询时每次查询的最大键数量
+     *
+     * @param keyLookupChunkSize
+     */
+    public void setKeyLookupChunkSize(int keyLookupChunkSize) {
+        this.keyLookupChunkSize = keyLookupChunkSize;
+    }
+
+    /**
+     * 获取是否为简单的ResultMap生成按列索引读取的行映射器类
+     *
+     * @return
+     */
+    public boolean isCompileRowMappers() {
+        return compileRowMappers;
+    }
+
+    /**
+     * 设置是否为简单的ResultMap生成按列索引读取的行映射器类
+     *
+     * @param compileRowMappers
+     */
+    public void setCompileRowMappers(boolean compileRowMappers) {
+        this.compileRowMappers = compileRowMappers;
+    }
+
+    /**
+     * 获取是否在多次执行之间缓存结果集元数据以及由它推导出的映射信息
+     *
+     * @return
+     */
+    public boolean isCacheResultSetMetadata() {
+        return cacheResultSetMetadata;
+    }
+
+    /**
+     * 设置是否在多次执行之间缓存结果集元数据以及由它推导出的映射信息
+     *
+     * @param cacheResultSetMetadata
+     */
+    public void setCacheResultSetMetadata(boolean cacheResultSetMetadata) {
+        this.cacheResultSetMetadata = cacheResultSetMetadata;
+    }
+
+    /**
+     * 获取是否把所有嵌套结果映射当作resultOrdered处理 父对象的id变化时立即输出 同时校验同一个父对象的行是否连续
+     *
+     * @return
+     */
+    public boolean isStreamNestedResults() {
+        return streamNestedResults;
+    }
+
+    /**
+     * 设置是否把所有嵌套结果映射当作resultOrdered处理 父对象的id变化时立即输出 同时校验同一个父对象的行是否连续
+     *
+     * @param streamNestedResults
+     */
+    public void setStreamNestedResults(boolean streamNestedResults) {
+        this.streamNestedResults = streamNestedResults;
+    }
+
+    /**
+     * 获取是否延迟映射selectList的结果 结果集打开时只按列缓存字段值 get时才创建对象
+     *
+     * @return
+     */
+    public boolean isLazyResultLists() {
+        return lazyResultLists;
+    }
+
+    /**
+     * 设置是否延迟映射selectList的结果 结果集打开时只按列缓存字段值 get时才创建对象
+     *
+     * @param lazyResultLists
+     */
+    public void setLazyResultLists(boolean lazyResultLists) {
+        this.lazyResultLists = lazyResultLists;
+    }
+
+    /**
+     * 获取resultType为map时每一行使用共享字段名称索引的RowMap
+     *
+     * @return
+     */
+    public boolean isCompactRowMaps() {
+        return compactRowMaps;
+    }
+
+    /**
+     * 设置resultType为map时每一行使用共享字段名称索引的RowMap
+     *
+     * @param compactRowMaps
+     */
+    public void setCompactRowMaps(boolean compactRowMaps) {
+        this.compactRowMaps = compactRowMaps;
+    }
+
+    /**
+     * 获取开启值去重的字段在每个结果集中最多缓存的不同值数量
+     *
+     * @return
+     */
+    public int getValueDictionarySize() {
+        return valueDictionarySize;
+    }
+
+    /**
+     * 设置开启值去重的字段在每个结果集中最多缓存的不同值数量
+     *
+     * @param valueDictionarySize
+     */
+    public void setValueDictionarySize(int valueDictionarySize) {
+        this.valueDictionarySize = valueDictionarySize;
+    }
+
+    /**
+     * 获取字段的值字典写满后命中率低于一半时停止对该字段去重
+     *
+     * @return
+     */
+    public boolean isAdaptiveDeduplication() {
+        return adaptiveDeduplication;
+    }
+
+    /**
+     * 设置字段的值字典写满后命中率低于一半时停止对该字段去重
+     *
+     * @param adaptiveDeduplication
+     */
+    public void setAdaptiveDeduplication(boolean adaptiveDeduplication) {
+        this.adaptiveDeduplication = adaptiveDeduplication;
+    }
+
+    /**
+     * 获取并行映射结果对象的工作线程数 0表示在读取结果集的线程中映射
+     *
+     * @return
+     */
+    public int getMappingParallelism() {
+        return mappingParallelism;
+    }
+
+    /**
+     * 设置并行映射结果对象的工作线程数 0表示在读取结果集的线程中映射
+     *
+     * @param mappingParallelism
+     */
+    public void setMappingParallelism(int mappingParallelism) {
+        this.mappingParallelism = mappingParallelism;
+    }
+
+    /**
+     * 获取并行映射时每个批次的行数
+     *
+     * @return
+     */
+    public int getMappingBatchSize() {
+        return mappingBatchSize;
+    }
+
+    /**
+     * 设置并行映射时每个批次的行数
+     *
+     * @param mappingBatchSize
+     */
+    public void setMappingBatchSize(int mappingBatchSize) {
+        this.mappingBatchSize = mappingBatchSize;
+    }
+
+    /**
+     * 获取并行映射结果对象的线程池 未设置时按mappingParallelism创建
+     *
+     * @return
+     */
+    public ExecutorService getMappingExecutor() {
+        ExecutorService executor = mappingExecutor;
+        if (executor == null && mappingParallelism > 0) {
+            synchronized (this) {
+                executor = mappingExecutor;
+                if (executor == null) {
+                    executor = newDaemonThreadPool(mappingParallelism, "mybatis-mapping-");
+                    mappingExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 设置并行映射结果对象的线程池 未设置时按mappingParallelism创建
+     *
+     * @param mappingExecutor
+     */
+    public synchronized void setMappingExecutor(ExecutorService mappingExecutor) {
+        this.mappingExecutor = mappingExecutor;
+    }
+
+    /**
+     * 获取行映射器编译器
+     *
+     * @return
+     */
+    public synchronized RowMapperCompiler getRowMapperCompiler() {
+        if (rowMapperCompiler == null) {
+            rowMapperCompiler = new RowMapperCompiler(this);
+        }
+        return rowMapperCompiler;
+    }
+
+    /**
+     * 获取结果集元数据缓存
+     *
+     * @return
+     */
+    public ResultSetMetadataCache getResultSetMetadataCache() {
+        return resultSetMetadataCache;
+    }
+
     /**
      * 获取是否允许缓存
      *
@@ -710,6 +1336,24 @@ public class Configuration {
         this.cacheEnabled = cacheEnabled;
     }
 
+    /**
+     * 获取二级缓存失效总线
+     *
+     * @return
+     */
+    public CacheInvalidationBus getCacheInvalidationBus() {
+        return cacheInvalidationBus;
+    }
+
+    /**
+     * 设置二级缓存失效总线
+     *
+     * @param cacheInvalidationBus
+     */
+    public void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
     /**
      * 获取默认的声明超时时间
      *
@@ -1050,7 +1694,7 @@ public class Configuration {
         }
         //如果允许缓存 那么执行器类型就是缓存执行器
         if (cacheEnabled) {
-            executor = new CachingExecutor(executor);
+            executor = new CachingExecutor(executor, cacheInvalidationBus);
         }
         executor = (Executor) interceptorChain.pluginAll(executor);
         return executor;
@@ -1151,6 +1795,53 @@ public class Configuration {
         return caches.containsKey(id);
     }
 
+    /**
+     * 添加二级缓存准入策略
+     *
+     * @param id     命名空间或者声明的id
+     * @param policy
+     */
+    public void addCacheAdmissionPolicy(String id, CacheAdmissionPolicy policy) {
+        cacheAdmissionPolicies.put(id, policy);
+    }
+
+    /**
+     * 获取声明对应的二级缓存准入策略 声明上配置的优先 其次是缓存所在命名空间的
+     *
+     * @param ms
+     * @return 没有配置的话返回null
+     */
+    public CacheAdmissionPolicy getCacheAdmissionPolicy(MappedStatement ms) {
+        if (cacheAdmissionPolicies.isEmpty()) {
+            return null;
+        }
+        CacheAdmissionPolicy policy = cacheAdmissionPolicies.get(ms.getId());
+        if (policy == null && ms.getCache() != null) {
+            policy = cacheAdmissionPolicies.get(ms.getCache().getId());
+        }
+        return policy;
+    }
+
+    /**
+     * 把查询声明标记为可以分区并行执行
+     *
+     * @param statementId
+     * @param partitioner
+     */
+    public void addPartitioner(String statementId, Partitioner partitioner) {
+        partitioners.put(statementId, partitioner);
+    }
+
+    /**
+     * 获取查询声明的分区器
+     *
+     * @param statementId
+     * @return 没有标记的话返回null
+     */
+    public Partitioner getPartitioner(String statementId) {
+        return partitioners.get(statementId);
+    }
+
     /**
      * 添加结果map
      *
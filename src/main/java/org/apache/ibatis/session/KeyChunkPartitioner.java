@@ -0,0 +1,105 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按键分块的分区器
+ * 把键集合去重后按固定大小拆分 每块的参数是包含list与collection两个键的Map 可以直接用于foreach拼接的in查询
+ * 最后一块重复最后一个键补齐到不小于实际数量的2的幂(且不超过块大小) 使生成的SQL只有少数几种 便于复用预编译语句
+ */
+public class KeyChunkPartitioner implements Partitioner {
+
+    private final int chunkSize;
+
+    /**
+     * 使用keyLookupChunkSize作为块大小
+     */
+    public KeyChunkPartitioner() {
+        this(0);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param chunkSize 每块的最大键数量 小于等于0时使用keyLookupChunkSize
+     */
+    public KeyChunkPartitioner(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public List<Object> split(Configuration configuration, Object parameter) {
+        List<Object> keys = new ArrayList<Object>(new LinkedHashSet<Object>(keysOf(parameter)));
+        int size = chunkSize > 0 ? chunkSize : configuration.getKeyLookupChunkSize();
+        if (size <= 0) {
+            size = Math.max(keys.size(), 1);
+        }
+        List<Object> chunks = new ArrayList<Object>();
+        for (int start = 0; start < keys.size(); start += size) {
+            List<Object> chunk = new ArrayList<Object>(keys.subList(start, Math.min(start + size, keys.size())));
+            int padded = Math.min(paddedSize(chunk.size()), size);
+            Object last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < padded) {
+                chunk.add(last);
+            }
+            chunks.add(chunkParameter(chunk));
+        }
+        return chunks;
+    }
+
+    /**
+     * 构造一块键对应的查询参数
+     *
+     * @param keys
+     * @return
+     */
+    public static Map<String, Object> chunkParameter(List<?> keys) {
+        Map<String, Object> parameter = new HashMap<String, Object>();
+        parameter.put("list", keys);
+        parameter.put("collection", keys);
+        return parameter;
+    }
+
+    private static int paddedSize(int size) {
+        int padded = 1;
+        while (padded < size) {
+            padded <<= 1;
+        }
+        return padded;
+    }
+
+    private static Collection<?> keysOf(Object parameter) {
+        if (parameter instanceof Collection) {
+            return (Collection<?>) parameter;
+        }
+        if (parameter instanceof Object[]) {
+            return Arrays.asList((Object[]) parameter);
+        }
+        if (parameter instanceof Map && ((Map<?, ?>) parameter).get("collection") instanceof Collection) {
+            return (Collection<?>) ((Map<?, ?>) parameter).get("collection");
+        }
+        throw new IllegalArgumentException("Cannot split " + parameter + " into key chunks, a collection is expected");
+    }
+
+}
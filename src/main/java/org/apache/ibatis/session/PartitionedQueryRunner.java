@@ -0,0 +1,293 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.executor.result.DefaultMapResultHandler;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+
+/**
+ * 分区并行查询
+ * 按声明的分区器拆分参数 每个分区从sqlSession工厂打开单独的session(连接)并行查询 然后合并结果
+ * 没有分区器的声明按普通查询执行
+ */
+public class PartitionedQueryRunner {
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    /**
+     * 执行分区查询的线程池 由调用方管理生命周期
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * 构造函数
+     *
+     * @param sqlSessionFactory
+     * @param executorService   线程数量不要超过数据源的连接数
+     */
+    public PartitionedQueryRunner(SqlSessionFactory sqlSessionFactory, ExecutorService executorService) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.executorService = executorService;
+    }
+
+    /**
+     * 分区查询 按分区顺序拼接结果
+     *
+     * @param statement
+     * @param parameter
+     * @param <E>
+     * @return
+     */
+    public <E> List<E> selectList(String statement, Object parameter) {
+        return selectList(statement, parameter, partitioner(statement), null);
+    }
+
+    /**
+     * 分区查询 每个分区的结果已经按comparator排好序 合并成一个有序的结果
+     *
+     * @param statement
+     * @param parameter
+     * @param comparator
+     * @param <E>
+     * @return
+     */
+    public <E> List<E> selectList(String statement, Object parameter, Comparator<? super E> comparator) {
+        return selectList(statement, parameter, partitioner(statement), comparator);
+    }
+
+    /**
+     * 使用指定的分区器分区查询
+     *
+     * @param statement
+     * @param parameter
+     * @param partitioner 为null的话不分区
+     * @param comparator  为null的话按分区顺序拼接 否则有序合并
+     * @param <E>
+     * @return
+     */
+    public <E> List<E> selectList(final String statement, Object parameter, Partitioner partitioner,
+            Comparator<? super E> comparator) {
+        List<Callable<List<E>>> tasks = new ArrayList<Callable<List<E>>>();
+        for (final Object partition : split(partitioner, parameter)) {
+            tasks.add(new Callable<List<E>>() {
+                @Override
+                public List<E> call() {
+                    SqlSession sqlSession = sqlSessionFactory.openSession();
+                    try {
+                        return sqlSession.selectList(statement, partition);
+                    } finally {
+                        sqlSession.close();
+                    }
+                }
+            });
+        }
+        List<List<E>> results = invokeAll(tasks);
+        return comparator == null ? concat(results) : merge(results, comparator);
+    }
+
+    /**
+     * 按键集合分块并行查询 结果按指定属性组织成Map
+     *
+     * @param statement
+     * @param keys        要查询的键
+     * @param keyProperty 作为Map键的结果属性
+     * @param <K>
+     * @param <V>
+     * @return
+     * @see SqlSessionUtil#selectByKeys(SqlSession, String, Collection, String)
+     */
+    public <K, V> Map<K, V> selectByKeys(String statement, Collection<K> keys, String keyProperty) {
+        List<V> list = selectList(statement, keys, new KeyChunkPartitioner(), null);
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        DefaultMapResultHandler<K, V> mapResultHandler = new DefaultMapResultHandler<K, V>(keyProperty,
+                configuration.getObjectFactory(), configuration.getObjectWrapperFactory(),
+                configuration.getReflectorFactory());
+        DefaultResultContext<V> context = new DefaultResultContext<V>();
+        for (V value : list) {
+            context.nextResultObject(value);
+            mapResultHandler.handleResult(context);
+        }
+        return mapResultHandler.getMappedResults();
+    }
+
+    /**
+     * 分区查询 结果交给结果处理器 多个分区会同时调用处理器 所以处理器必须是线程安全的
+     * 在处理器中stop只会停止当前分区
+     *
+     * @param statement
+     * @param parameter
+     * @param handler
+     */
+    public void select(String statement, Object parameter, ResultHandler<?> handler) {
+        select(statement, parameter, partitioner(statement), handler);
+    }
+
+    /**
+     * 使用指定的分区器分区查询 结果交给结果处理器
+     *
+     * @param statement
+     * @param parameter
+     * @param partitioner 为null的话不分区
+     * @param handler     线程安全的结果处理器
+     */
+    public void select(final String statement, Object parameter, Partitioner partitioner,
+            final ResultHandler<?> handler) {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Object partition : split(partitioner, parameter)) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    SqlSession sqlSession = sqlSessionFactory.openSession();
+                    try {
+                        sqlSession.select(statement, partition, handler);
+                        return null;
+                    } finally {
+                        sqlSession.close();
+                    }
+                }
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    private Partitioner partitioner(String statement) {
+        return sqlSessionFactory.getConfiguration().getPartitioner(statement);
+    }
+
+    private List<Object> split(Partitioner partitioner, Object parameter) {
+        if (partitioner == null) {
+            return Collections.singletonList(parameter);
+        }
+        return partitioner.split(sqlSessionFactory.getConfiguration(), parameter);
+    }
+
+    /**
+     * 并行执行所有分区 只有一个分区的时候直接在当前线程执行
+     * 任意分区失败的话取消其他分区并抛出异常
+     *
+     * @param tasks
+     * @param <T>
+     * @return 按分区顺序排列的结果
+     */
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (tasks.size() == 1) {
+            try {
+                results.add(tasks.get(0).call());
+                return results;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e);
+            }
+        }
+        CompletionService<T> completionService = new ExecutorCompletionService<T>(executorService);
+        Map<Future<T>, Integer> futures = new HashMap<Future<T>, Integer>();
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                futures.put(completionService.submit(tasks.get(i)), i);
+                results.add(null);
+            }
+            //按完成的顺序获取结果 第一个失败的分区会立即取消其他分区
+            for (int i = 0; i < tasks.size(); i++) {
+                Future<T> future = completionService.take();
+                results.set(futures.get(future), future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ExceptionFactory.wrapException("Interrupted while querying database partitions.  Cause: " + e, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw ExceptionFactory.wrapException("Error querying database partition.  Cause: " + cause, e);
+        } finally {
+            for (Future<T> future : futures.keySet()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static <E> List<E> concat(List<List<E>> results) {
+        int size = 0;
+        for (List<E> result : results) {
+            size += result.size();
+        }
+        List<E> list = new ArrayList<E>(size);
+        for (List<E> result : results) {
+            list.addAll(result);
+        }
+        return list;
+    }
+
+    /**
+     * 多路归并有序的分区结果 相等的元素保持分区顺序
+     *
+     * @param results
+     * @param comparator
+     * @param <E>
+     * @return
+     */
+    private static <E> List<E> merge(final List<List<E>> results, final Comparator<? super E> comparator) {
+        if (results.size() == 1) {
+            return results.get(0);
+        }
+        final int[] positions = new int[results.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<Integer>(results.size(), new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int c = comparator.compare(results.get(a).get(positions[a]), results.get(b).get(positions[b]));
+                return c != 0 ? c : a.compareTo(b);
+            }
+        });
+        int size = 0;
+        for (int i = 0; i < results.size(); i++) {
+            size += results.get(i).size();
+            if (!results.get(i).isEmpty()) {
+                heads.add(i);
+            }
+        }
+        List<E> merged = new ArrayList<E>(size);
+        while (!heads.isEmpty()) {
+            int i = heads.poll();
+            List<E> result = results.get(i);
+            merged.add(result.get(positions[i]++));
+            if (positions[i] < result.size()) {
+                heads.add(i);
+            }
+        }
+        return merged;
+    }
+
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.List;
+
+/**
+ * 分区器
+ * 把一次查询的参数拆分成多个分区的参数 每个分区在单独的连接上并行执行
+ *
+ * @see PartitionedQueryRunner
+ */
+public interface Partitioner {
+
+    /**
+     * 拆分参数
+     *
+     * @param configuration
+     * @param parameter     原始的查询参数
+     * @return 每个分区的查询参数 按分区顺序排列
+     */
+    List<Object> split(Configuration configuration, Object parameter);
+
+}
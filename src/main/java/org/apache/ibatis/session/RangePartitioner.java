@@ -0,0 +1,117 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.reflection.MetaObject;
+
+/**
+ * 按范围分区
+ * 每个分区的参数是原始参数的一份拷贝 再加上这个分区的下界和上界
+ * sql中通过下界和上界的属性名引用 例如 where id &gt;= #{from} and id &lt; #{to}
+ */
+public class RangePartitioner implements Partitioner {
+
+    private final String lowerProperty;
+
+    private final String upperProperty;
+
+    private final List<Object[]> ranges = new ArrayList<Object[]>();
+
+    /**
+     * 构造函数
+     *
+     * @param lowerProperty 下界的参数名
+     * @param upperProperty 上界的参数名
+     */
+    public RangePartitioner(String lowerProperty, String upperProperty) {
+        this.lowerProperty = lowerProperty;
+        this.upperProperty = upperProperty;
+    }
+
+    /**
+     * 把[start, end)平均拆分成指定数量的范围
+     *
+     * @param lowerProperty 下界的参数名
+     * @param upperProperty 上界的参数名
+     * @param start         包含
+     * @param end           不包含
+     * @param partitions    分区数量
+     * @return
+     */
+    public static RangePartitioner evenly(String lowerProperty, String upperProperty, long start, long end,
+            int partitions) {
+        if (partitions <= 0 || end < start) {
+            throw new IllegalArgumentException("Cannot split [" + start + ", " + end + ") into " + partitions + " partitions");
+        }
+        RangePartitioner partitioner = new RangePartitioner(lowerProperty, upperProperty);
+        long size = (end - start + partitions - 1) / partitions;
+        for (long lower = start; lower < end; lower += size) {
+            partitioner.range(lower, Math.min(end, lower + size));
+        }
+        return partitioner;
+    }
+
+    /**
+     * 添加一个范围
+     *
+     * @param lower
+     * @param upper
+     * @return
+     */
+    public RangePartitioner range(Object lower, Object upper) {
+        ranges.add(new Object[] { lower, upper });
+        return this;
+    }
+
+    @Override
+    public List<Object> split(Configuration configuration, Object parameter) {
+        List<Object> partitions = new ArrayList<Object>(ranges.size());
+        for (Object[] range : ranges) {
+            Map<String, Object> partition = copy(configuration, parameter);
+            partition.put(lowerProperty, range[0]);
+            partition.put(upperProperty, range[1]);
+            partitions.add(partition);
+        }
+        return partitions;
+    }
+
+    /**
+     * 拷贝原始参数 map直接拷贝 对象拷贝所有可读的属性
+     *
+     * @param configuration
+     * @param parameter
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> copy(Configuration configuration, Object parameter) {
+        Map<String, Object> copy = new HashMap<String, Object>();
+        if (parameter instanceof Map) {
+            copy.putAll((Map<String, Object>) parameter);
+        } else if (parameter != null) {
+            MetaObject metaObject = configuration.newMetaObject(parameter);
+            for (String name : metaObject.getGetterNames()) {
+                copy.put(name, metaObject.getValue(name));
+            }
+        }
+        return copy;
+    }
+
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+/**
+ * 一个查询请求 由声明id和参数组成
+ *
+ * @see SqlSessionUtil#selectMultiple(SqlSession, java.util.List)
+ */
+public class SelectRequest {
+
+    private final String statement;
+
+    private final Object parameter;
+
+    /**
+     * 构造函数
+     *
+     * @param statement 声明id
+     * @param parameter 参数
+     */
+    public SelectRequest(String statement, Object parameter) {
+        this.statement = statement;
+        this.parameter = parameter;
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    public Object getParameter() {
+        return parameter;
+    }
+
+}
@@ -112,6 +112,15 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
         return this.localSqlSession.get() != null;
     }
 
+    /**
+     * 获取当前线程的托管session
+     *
+     * @return 没有开始托管session的时候返回null
+     */
+    SqlSession getManagedSession() {
+        return this.localSqlSession.get();
+    }
+
     @Override
     public SqlSession openSession() {
         return sqlSessionFactory.openSession();
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.executor.result.ColumnarResult;
+import org.apache.ibatis.executor.result.ColumnarResultHandler;
+import org.apache.ibatis.executor.result.DefaultMapResultHandler;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+
+/**
+ * SqlSession的扩展操作
+ * 这些操作不属于{@link SqlSession}接口 其他SqlSession实现(比如mybatis-spring的SqlSessionTemplate)不需要实现它们
+ * 默认实现能直接使用执行器的时候走优化的路径 其他实现通过SqlSession接口中的方法完成同样的操作
+ */
+public final class SqlSessionUtil {
+
+    private SqlSessionUtil() {
+        // Prevent Instantiation of Static Class
+    }
+
+    /**
+     * Execute several independent selects and return each mapped result separately.
+     * When multiStatementPipelining is enabled and the session is a {@link DefaultSqlSession} the selects are sent in
+     * one round trip as a multi-statement query, otherwise they are executed one after another.
+     * 执行多个互不相关的查询 分别返回每一个查询的结果
+     *
+     * @param sqlSession
+     * @param requests   statement ids and parameters
+     * @return List of mapped objects for each request, in request order
+     */
+    public static List<List<Object>> selectMultiple(SqlSession sqlSession, List<SelectRequest> requests) {
+        if (sqlSession instanceof SqlSessionManager) {
+            SqlSessionManager manager = (SqlSessionManager) sqlSession;
+            SqlSession managed = manager.getManagedSession();
+            if (managed != null) {
+                return selectMultiple(managed, requests);
+            }
+            //没有托管session的时候和其他操作一样使用自动提交的新session
+            SqlSession autoSqlSession = manager.openSession();
+            try {
+                List<List<Object>> results = selectMultiple(autoSqlSession, requests);
+                autoSqlSession.commit();
+                return results;
+            } finally {
+                autoSqlSession.close();
+            }
+        }
+        if (sqlSession instanceof DefaultSqlSession) {
+            return ((DefaultSqlSession) sqlSession).selectMultiple(requests);
+        }
+        List<List<Object>> results = new ArrayList<List<Object>>(requests.size());
+        for (SelectRequest request : requests) {
+            results.add(sqlSession.selectList(request.getStatement(), request.getParameter()));
+        }
+        return results;
+    }
+
+    /**
+     * Read the first result set column by column instead of mapping rows.
+     * Integer, bigint and floating point columns are returned as int[], long[] and double[] with null bitmaps,
+     * other columns as Object[].
+     * 按列读取查询结果 数字列保存为基本类型数组
+     *
+     * @param sqlSession
+     * @param statement  Unique identifier matching the statement to use.
+     * @return Column oriented result
+     */
+    public static ColumnarResult selectColumns(SqlSession sqlSession, String statement) {
+        return selectColumns(sqlSession, statement, null);
+    }
+
+    /**
+     * Read the first result set column by column instead of mapping rows.
+     * 按列读取查询结果 数字列保存为基本类型数组
+     *
+     * @param sqlSession
+     * @param statement  Unique identifier matching the statement to use.
+     * @param parameter  A parameter object to pass to the statement.
+     * @return Column oriented result
+     */
+    public static ColumnarResult selectColumns(SqlSession sqlSession, String statement, Object parameter) {
+        return selectColumns(sqlSession, statement, parameter, RowBounds.DEFAULT);
+    }
+
+    /**
+     * Read the first result set column by column instead of mapping rows.
+     * 按列读取查询结果 通过结果处理器执行查询 结果集处理器遇到ColumnarResultHandler时直接按列读取
+     *
+     * @param sqlSession
+     * @param statement  Unique identifier matching the statement to use.
+     * @param parameter  A parameter object to pass to the statement.
+     * @param rowBounds  Bounds to limit the rows read
+     * @return Column oriented result
+     */
+    public static ColumnarResult selectColumns(SqlSession sqlSession, String statement, Object parameter,
+            RowBounds rowBounds) {
+        ColumnarResultHandler handler = new ColumnarResultHandler();
+        sqlSession.select(statement, parameter, rowBounds, handler);
+        return handler.getResult();
+    }
+
+    /**
+     * Look up rows by a collection of keys and return them keyed by a result property.
+     * The keys are de-duplicated and split into chunks of keyLookupChunkSize, the last chunk is padded by repeating
+     * its last key so that only a few distinct SQL texts are generated. Each chunk is passed to the statement as a
+     * map with the keys under "list" and "collection".
+     * 按键集合分块查询 结果按指定属性组织成Map
+     *
+     * @param sqlSession
+     * @param statement   Unique identifier matching the statement to use.
+     * @param keys        Keys to look up.
+     * @param keyProperty The property to use as key for each value in the result.
+     * @param <K>         the returned Map keys type.
+     * @param <V>         the returned Map values type.
+     * @return Map containing key pair data.
+     */
+    public static <K, V> Map<K, V> selectByKeys(SqlSession sqlSession, String statement, Collection<K> keys,
+            String keyProperty) {
+        Configuration configuration = sqlSession.getConfiguration();
+        DefaultMapResultHandler<K, V> mapResultHandler = new DefaultMapResultHandler<K, V>(keyProperty,
+                configuration.getObjectFactory(), configuration.getObjectWrapperFactory(),
+                configuration.getReflectorFactory());
+        DefaultResultContext<V> context = new DefaultResultContext<V>();
+        for (Object chunk : new KeyChunkPartitioner().split(configuration, keys)) {
+            for (V value : sqlSession.<V>selectList(statement, chunk)) {
+                context.nextResultObject(value);
+                mapResultHandler.handleResult(context);
+            }
+        }
+        return mapResultHandler.getMappedResults();
+    }
+
+    /**
+     * Sets a barrier between the batched statements added before and after this call.
+     * With batchGroupingEnabled, statements on different tables may be reordered to reuse an earlier
+     * PreparedStatement; a barrier keeps the later statements from moving in front of the earlier ones
+     * without executing the batch. Has no effect unless the session uses the BATCH executor.
+     * Sessions other than {@link DefaultSqlSession} flush their statements instead, which also keeps the order.
+     * 在批量执行的语句之间设置屏障 屏障之后的语句不会合并到屏障之前的statement中
+     *
+     * @param sqlSession
+     */
+    public static void batchBarrier(SqlSession sqlSession) {
+        if (sqlSession instanceof SqlSessionManager) {
+            SqlSession managed = ((SqlSessionManager) sqlSession).getManagedSession();
+            if (managed == null) {
+                throw new SqlSessionException("Error:  Cannot set a batch barrier.  No managed session is started.");
+            }
+            batchBarrier(managed);
+        } else if (sqlSession instanceof DefaultSqlSession) {
+            ((DefaultSqlSession) sqlSession).batchBarrier();
+        } else {
+            sqlSession.flushStatements();
+        }
+    }
+
+}
@@ -28,15 +28,20 @@ import org.apache.ibatis.binding.BindingException;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.exceptions.ExceptionFactory;
 import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.executor.BatchExecutor;
 import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.MultiQueryExecutor;
 import org.apache.ibatis.executor.result.DefaultMapResultHandler;
 import org.apache.ibatis.executor.result.DefaultResultContext;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Plugin;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SelectRequest;
 import org.apache.ibatis.session.SqlSession;
 
 /**
@@ -285,6 +290,37 @@ public class DefaultSqlSession implements SqlSession {
         }
     }
 
+    /**
+     * 执行多个互不相关的查询 执行器被插件代理等不支持一次执行多个查询的时候依次执行 插件仍然能拦截每一个查询
+     * 不属于{@link SqlSession}接口 通过{@link org.apache.ibatis.session.SqlSessionUtil#selectMultiple}调用
+     *
+     * @param requests statement ids and parameters
+     * @return
+     */
+    public List<List<Object>> selectMultiple(List<SelectRequest> requests) {
+        try {
+            List<MappedStatement> mss = new ArrayList<MappedStatement>(requests.size());
+            List<Object> parameters = new ArrayList<Object>(requests.size());
+            for (SelectRequest request : requests) {
+                mss.add(configuration.getMappedStatement(request.getStatement()));
+                parameters.add(wrapCollection(request.getParameter()));
+            }
+            if (executor instanceof MultiQueryExecutor) {
+                return ((MultiQueryExecutor) executor).queryMultiple(mss, parameters);
+            }
+            List<List<Object>> results = new ArrayList<List<Object>>(mss.size());
+            for (int i = 0; i < mss.size(); i++) {
+                results.add(executor.<Object>query(mss.get(i), parameters.get(i), RowBounds.DEFAULT,
+                        Executor.NO_RESULT_HANDLER));
+            }
+            return results;
+        } catch (Exception e) {
+            throw ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e);
+        } finally {
+            ErrorContext.instance().reset();
+        }
+    }
+
     /**
      * 基于结果处理器查询
      *
@@ -471,6 +507,38 @@ public class DefaultSqlSession implements SqlSession {
         }
     }
 
+    /**
+     * 在批量执行的语句之间设置屏障 屏障之后的语句不会合并到屏障之前的statement中 不使用批量执行器的时候没有效果
+     * 不属于{@link SqlSession}接口 通过{@link org.apache.ibatis.session.SqlSessionUtil#batchBarrier}调用
+     */
+    public void batchBarrier() {
+        BatchExecutor batchExecutor = unwrapExecutor(BatchExecutor.class);
+        if (batchExecutor != null) {
+            batchExecutor.barrier();
+        }
+    }
+
+    /**
+     * 穿过二级缓存执行器和插件代理查找指定类型的执行器
+     *
+     * @param type
+     * @return 找不到的时候返回null
+     */
+    private <T> T unwrapExecutor(Class<T> type) {
+        Object current = executor;
+        while (current != null) {
+            if (type.isInstance(current)) {
+                return type.cast(current);
+            }
+            if (current instanceof CachingExecutor) {
+                current = ((CachingExecutor) current).getDelegate();
+            } else {
+                current = Plugin.getTarget(current);
+            }
+        }
+        return null;
+    }
+
     /**
      * 关闭
      */
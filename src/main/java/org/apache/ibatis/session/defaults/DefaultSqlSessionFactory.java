@@ -30,6 +30,7 @@ import org.apache.ibatis.session.TransactionIsolationLevel;
 import org.apache.ibatis.transaction.Transaction;
 import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.transaction.managed.ManagedTransactionFactory;
+import org.apache.ibatis.transaction.routing.ReadWriteSplittingTransaction;
 
 /**
  * // TODO: 2021/4/7 CallYeDeGuo 核心类
@@ -171,6 +172,10 @@ public class DefaultSqlSessionFactory implements SqlSessionFactory {
             final TransactionFactory transactionFactory = getTransactionFactoryFromEnvironment(environment);
             //根据数据源、事务隔离级别、是否自动提交创建一个事务
             tx = transactionFactory.newTransaction(environment.getDataSource(), level, autoCommit);
+            //配置了从库的话 自动提交会话的查询路由到从库
+            if (environment.getReplicaSelector() != null) {
+                tx = new ReadWriteSplittingTransaction(tx, environment.getReplicaSelector(), level, autoCommit);
+            }
             //根据执行器类型从全局配置中创建一个执行器
             final Executor executor = configuration.newExecutor(tx, execType);
             return new DefaultSqlSession(configuration, executor, autoCommit);
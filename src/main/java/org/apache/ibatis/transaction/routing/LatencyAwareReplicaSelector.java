@@ -0,0 +1,349 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.transaction.routing;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 按延迟选择从库
+ * 每个从库统计语句执行延迟和错误率的指数加权移动平均 以及正在使用的连接数量
+ * 选择的时候随机挑两个可用的从库 取延迟乘以(连接数+1)较小的那个
+ * 错误率超过上限 或者延迟超过最快从库的若干倍的从库会被暂时摘除 摘除到期后重新统计
+ */
+public class LatencyAwareReplicaSelector implements ReplicaSelector {
+
+    private static final Log log = LogFactory.getLog(LatencyAwareReplicaSelector.class);
+
+    private final Random random = new Random();
+
+    private List<Replica> replicas = new ArrayList<Replica>();
+
+    /**
+     * 新样本在移动平均中的权重
+     */
+    private double decay = 0.2;
+
+    /**
+     * 错误率上限
+     */
+    private double maxErrorRate = 0.5;
+
+    /**
+     * 延迟超过最快从库多少倍的时候摘除
+     */
+    private double latencyEjectionFactor = 5;
+
+    /**
+     * 延迟低于这个值(毫秒)的时候不会因为延迟被摘除
+     */
+    private double minEjectionLatency = 100;
+
+    /**
+     * 摘除时间(毫秒)
+     */
+    private long ejectionTime = 30000;
+
+    @Override
+    public void setProperties(Properties properties) {
+        if (properties.getProperty("decay") != null) {
+            setDecay(Double.parseDouble(properties.getProperty("decay")));
+        }
+        if (properties.getProperty("maxErrorRate") != null) {
+            setMaxErrorRate(Double.parseDouble(properties.getProperty("maxErrorRate")));
+        }
+        if (properties.getProperty("latencyEjectionFactor") != null) {
+            setLatencyEjectionFactor(Double.parseDouble(properties.getProperty("latencyEjectionFactor")));
+        }
+        if (properties.getProperty("minEjectionLatency") != null) {
+            setMinEjectionLatency(Double.parseDouble(properties.getProperty("minEjectionLatency")));
+        }
+        if (properties.getProperty("ejectionTime") != null) {
+            setEjectionTime(Long.parseLong(properties.getProperty("ejectionTime")));
+        }
+    }
+
+    @Override
+    public void setReplicas(List<DataSource> dataSources) {
+        List<Replica> list = new ArrayList<Replica>(dataSources.size());
+        for (DataSource dataSource : dataSources) {
+            list.add(new Replica(dataSource));
+        }
+        this.replicas = list;
+    }
+
+    @Override
+    public DataSource select() {
+        long now = System.currentTimeMillis();
+        List<Replica> candidates = new ArrayList<Replica>(replicas.size());
+        for (Replica replica : replicas) {
+            replica.reinstateIfExpired(now);
+            if (replica.isAvailable(now)) {
+                candidates.add(replica);
+            }
+        }
+        //全部被摘除的时候仍然从所有从库中选择
+        if (candidates.isEmpty()) {
+            candidates = replicas;
+        }
+        int size = candidates.size();
+        if (size == 0) {
+            throw new IllegalStateException("No replica data source was configured.");
+        }
+        if (size == 1) {
+            return candidates.get(0).dataSource;
+        }
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Replica a = candidates.get(first);
+        Replica b = candidates.get(second);
+        return (a.score() <= b.score() ? a : b).dataSource;
+    }
+
+    public void setDecay(double decay) {
+        this.decay = decay;
+    }
+
+    public void setMaxErrorRate(double maxErrorRate) {
+        this.maxErrorRate = maxErrorRate;
+    }
+
+    public void setLatencyEjectionFactor(double latencyEjectionFactor) {
+        this.latencyEjectionFactor = latencyEjectionFactor;
+    }
+
+    public void setMinEjectionLatency(double minEjectionLatency) {
+        this.minEjectionLatency = minEjectionLatency;
+    }
+
+    public void setEjectionTime(long ejectionTime) {
+        this.ejectionTime = ejectionTime;
+    }
+
+    /**
+     * 最快的可用从库的延迟
+     *
+     * @param now
+     * @return 还没有统计的话返回-1
+     */
+    private double fastestLatency(long now) {
+        double fastest = -1;
+        for (Replica replica : replicas) {
+            double latency = replica.latency;
+            if (latency >= 0 && replica.isAvailable(now) && (fastest < 0 || latency < fastest)) {
+                fastest = latency;
+            }
+        }
+        return fastest;
+    }
+
+    /**
+     * 一个从库以及它的统计
+     * 返回给事务的数据源是一个代理 通过它打开的连接和语句都会被统计
+     */
+    private class Replica implements InvocationHandler {
+
+        private final DataSource target;
+
+        private final DataSource dataSource;
+
+        /**
+         * 正在使用的连接数量
+         */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * 延迟的移动平均(毫秒) 小于0表示还没有统计
+         */
+        private volatile double latency = -1;
+
+        /**
+         * 错误率的移动平均
+         */
+        private volatile double errorRate;
+
+        /**
+         * 摘除到期的时间
+         */
+        private volatile long ejectedUntil;
+
+        Replica(DataSource target) {
+            this.target = target;
+            this.dataSource = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                    new Class<?>[] { DataSource.class }, this);
+        }
+
+        boolean isAvailable(long now) {
+            return ejectedUntil == 0 || ejectedUntil <= now;
+        }
+
+        /**
+         * 分数越小越好 没有统计的从库分数最小 让它先得到样本
+         *
+         * @return
+         */
+        double score() {
+            return (Math.max(latency, 0) + 1) * (inFlight.get() + 1);
+        }
+
+        /**
+         * 摘除到期的从库重新开始统计 没有统计的从库会优先得到下一个会话
+         *
+         * @param now
+         */
+        synchronized void reinstateIfExpired(long now) {
+            if (ejectedUntil != 0 && ejectedUntil <= now) {
+                ejectedUntil = 0;
+                latency = -1;
+                errorRate = 0;
+            }
+        }
+
+        /**
+         * 记录一次结果 失败的请求只计入错误率 不作为延迟样本
+         *
+         * @param elapsedNanos 耗时
+         * @param failed       是否是从库的连接错误
+         */
+        synchronized void record(long elapsedNanos, boolean failed) {
+            long now = System.currentTimeMillis();
+            reinstateIfExpired(now);
+            if (!failed) {
+                double sample = elapsedNanos / 1000000.0;
+                latency = latency < 0 ? sample : latency + decay * (sample - latency);
+            }
+            errorRate = errorRate + decay * ((failed ? 1 : 0) - errorRate);
+            if (ejectedUntil != 0) {
+                return;
+            }
+            double fastest = fastestLatency(now);
+            if (errorRate > maxErrorRate
+                    || latency > minEjectionLatency && fastest >= 0 && latency > fastest * latencyEjectionFactor) {
+                ejectedUntil = now + ejectionTime;
+                if (log.isDebugEnabled()) {
+                    log.debug("Ejected replica [" + target + "] for " + ejectionTime + " ms, latency " + latency
+                            + " ms, error rate " + errorRate);
+                }
+            }
+        }
+
+        /**
+         * 代理数据源 打开连接失败算一次错误
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().equals("getConnection")) {
+                return invokeTarget(target, method, args);
+            }
+            Connection connection;
+            try {
+                connection = (Connection) invokeTarget(target, method, args);
+            } catch (SQLException e) {
+                record(0, true);
+                throw e;
+            }
+            inFlight.incrementAndGet();
+            return wrapConnection(connection);
+        }
+
+        private Connection wrapConnection(final Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new InvocationHandler() {
+                        private boolean closed;
+
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("close")) {
+                                if (!closed) {
+                                    closed = true;
+                                    inFlight.decrementAndGet();
+                                }
+                                return invokeTarget(connection, method, args);
+                            }
+                            Object result = invokeTarget(connection, method, args);
+                            if (result instanceof Statement) {
+                                return wrapStatement((Statement) result, method.getReturnType());
+                            }
+                            return result;
+                        }
+                    });
+        }
+
+        private Object wrapStatement(final Statement statement, Class<?> type) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (!method.getName().startsWith("execute")) {
+                        return invokeTarget(statement, method, args);
+                    }
+                    long start = System.nanoTime();
+                    Object result;
+                    try {
+                        result = invokeTarget(statement, method, args);
+                    } catch (SQLException e) {
+                        //语法错误 约束冲突之类是语句本身的问题 只有连接错误才算从库的错误
+                        if (isConnectionError(e)) {
+                            record(0, true);
+                        }
+                        throw e;
+                    }
+                    record(System.nanoTime() - start, false);
+                    return result;
+                }
+            });
+        }
+
+    }
+
+    /**
+     * 是否是连接错误 SQLState为08开头
+     *
+     * @param e
+     * @return
+     */
+    private static boolean isConnectionError(SQLException e) {
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw ExceptionUtil.unwrapThrowable(e);
+        }
+    }
+
+}
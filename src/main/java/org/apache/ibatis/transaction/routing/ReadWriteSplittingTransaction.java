@@ -0,0 +1,187 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.transaction.routing;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+
+/**
+ * 读写分离的事务
+ * 没有flushCache的select在从库上执行 其他声明以及直接获取连接都使用主库的事务
+ * 一旦用过主库 这个事务之后的查询也都在主库上执行 保证能读到自己写入的数据
+ * 非自动提交的会话所有声明都在主库上执行 保证事务内的读写看到同一份数据
+ * 从库连接是自动提交的 使用会话请求的事务隔离级别 只在关闭事务的时候关闭
+ */
+public class ReadWriteSplittingTransaction implements Transaction {
+
+    private static final Log log = LogFactory.getLog(ReadWriteSplittingTransaction.class);
+
+    /**
+     * 主库事务
+     */
+    private final Transaction primary;
+
+    private final ReplicaSelector replicaSelector;
+
+    /**
+     * 会话请求的事务隔离级别 也用在从库连接上
+     */
+    private final TransactionIsolationLevel level;
+
+    private Connection replicaConnection;
+
+    /**
+     * 是否已经使用过主库
+     */
+    private boolean primaryUsed;
+
+    /**
+     * 构造函数
+     *
+     * @param primary         主库事务
+     * @param replicaSelector 从库选择器
+     * @param level           事务隔离级别
+     * @param autoCommit      是否自动提交 非自动提交的会话固定使用主库
+     */
+    public ReadWriteSplittingTransaction(Transaction primary, ReplicaSelector replicaSelector,
+            TransactionIsolationLevel level, boolean autoCommit) {
+        this.primary = primary;
+        this.replicaSelector = replicaSelector;
+        this.level = level;
+        this.primaryUsed = !autoCommit;
+    }
+
+    /**
+     * 获取主库连接
+     *
+     * @return
+     * @throws SQLException
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        primaryUsed = true;
+        return primary.getConnection();
+    }
+
+    /**
+     * 获取执行声明的连接
+     *
+     * @param ms
+     * @return
+     * @throws SQLException
+     */
+    public Connection getConnection(MappedStatement ms) throws SQLException {
+        if (primaryUsed || !isReplicaRead(ms)) {
+            return getConnection();
+        }
+        if (replicaConnection == null) {
+            replicaConnection = replicaSelector.select().getConnection();
+            if (!replicaConnection.getAutoCommit()) {
+                replicaConnection.setAutoCommit(true);
+            }
+            if (level != null) {
+                replicaConnection.setTransactionIsolation(level.getLevel());
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Opened replica JDBC Connection [" + replicaConnection + "]");
+            }
+        }
+        return replicaConnection;
+    }
+
+    /**
+     * 是否使用过主库 使用过之后所有声明都在主库上执行 非自动提交的会话一开始就是true
+     *
+     * @return
+     */
+    public boolean isPrimaryUsed() {
+        return primaryUsed;
+    }
+
+    /**
+     * 声明是否会在从库上执行
+     *
+     * @param ms
+     * @return
+     */
+    public boolean isReplicaRoute(MappedStatement ms) {
+        return !primaryUsed && isReplicaRead(ms);
+    }
+
+    /**
+     * 新建一个独立的从库事务 用于在其它线程中执行会路由到从库的声明
+     * 连接同样是自动提交的 使用会话请求的事务隔离级别 由调用方关闭
+     *
+     * @return
+     */
+    public Transaction newReplicaTransaction() {
+        return new JdbcTransaction(replicaSelector.select(), level, true);
+    }
+
+    /**
+     * 能否在从库上执行
+     * 存储过程 selectKey 以及配置了flushCache的查询都在主库上执行
+     *
+     * @param ms
+     * @return
+     */
+    private static boolean isReplicaRead(MappedStatement ms) {
+        return ms.getSqlCommandType() == SqlCommandType.SELECT && !ms.isFlushCacheRequired()
+                && ms.getStatementType() != StatementType.CALLABLE
+                && !ms.getId().endsWith(SelectKeyGenerator.SELECT_KEY_SUFFIX);
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        primary.commit();
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        primary.rollback();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (replicaConnection != null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Closing replica JDBC Connection [" + replicaConnection + "]");
+                }
+                replicaConnection.close();
+                replicaConnection = null;
+            }
+        } finally {
+            primary.close();
+        }
+    }
+
+    @Override
+    public Integer getTimeout() throws SQLException {
+        return primary.getTimeout();
+    }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.transaction.routing;
+
+import java.util.List;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+/**
+ * 从库选择器
+ * 每个会话第一次查询从库的时候选择一个从库数据源
+ */
+public interface ReplicaSelector {
+
+    /**
+     * 设置属性 对应replicas下配置的property
+     *
+     * @param properties
+     */
+    void setProperties(Properties properties);
+
+    /**
+     * 设置从库数据源
+     *
+     * @param replicas
+     */
+    void setReplicas(List<DataSource> replicas);
+
+    /**
+     * 选择一个从库
+     *
+     * @return
+     */
+    DataSource select();
+
+}
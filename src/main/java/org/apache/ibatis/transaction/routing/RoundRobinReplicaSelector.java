@@ -0,0 +1,52 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.transaction.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+/**
+ * 轮询选择从库
+ */
+public class RoundRobinReplicaSelector implements ReplicaSelector {
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private List<DataSource> replicas = new ArrayList<DataSource>();
+
+    @Override
+    public void setProperties(Properties properties) {
+        // NOP
+    }
+
+    @Override
+    public void setReplicas(List<DataSource> replicas) {
+        this.replicas = new ArrayList<DataSource>(replicas);
+    }
+
+    @Override
+    public DataSource select() {
+        if (replicas.isEmpty()) {
+            throw new IllegalStateException("No replica data source was configured.");
+        }
+        return replicas.get((next.getAndIncrement() & Integer.MAX_VALUE) % replicas.size());
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * 测试二级缓存准入策略
+ */
+public class CacheAdmissionPolicyTest {
+
+    @Test
+    public void shouldAdmitEverythingWithoutRules() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy();
+        assertTrue(policy.isEmpty());
+        assertTrue(policy.admit(new CacheKey(new Object[] { 1 }), rows(100000), 0));
+    }
+
+    @Test
+    public void shouldRejectTooManyRows() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy().maxRows(10);
+        assertTrue(policy.admit("key", rows(10), 0));
+        assertFalse(policy.admit("key", rows(11), 0));
+    }
+
+    @Test
+    public void shouldRejectTooManyBytes() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy().maxBytes(4096L);
+        assertTrue(policy.admit("key", rows(2), 0));
+        assertFalse(policy.admit("key", rows(10000), 0));
+        assertTrue(policy.admit("key", Collections.emptyList(), 0));
+    }
+
+    @Test
+    public void shouldRejectCheapQueries() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy().minQueryTime(50L);
+        assertFalse(policy.admit("key", rows(1), 10));
+        assertTrue(policy.admit("key", rows(1), 50));
+    }
+
+    @Test
+    public void shouldAdmitOnSecondRequest() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy().admitOnSecondRequest(true);
+        CacheKey key = new CacheKey(new Object[] { "select", 1 });
+        assertFalse(policy.admit(key, rows(1), 0));
+        assertTrue(policy.admit(new CacheKey(new Object[] { "select", 1 }), rows(1), 0));
+        assertFalse(policy.admit(new CacheKey(new Object[] { "select", 2 }), rows(1), 0));
+    }
+
+    @Test
+    public void shouldNotRecordRejectedResultsInDoorkeeper() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy().maxRows(1).admitOnSecondRequest(true);
+        assertFalse(policy.admit("key", rows(2), 0));
+        assertFalse(policy.admit("key", rows(1), 0));
+        assertTrue(policy.admit("key", rows(1), 0));
+    }
+
+    @Test
+    public void shouldForgetKeysWhenDoorkeeperIsFull() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy().admitOnSecondRequest(true, 4);
+        assertFalse(policy.admit("first", rows(1), 0));
+        for (int i = 0; i < 4; i++) {
+            policy.admit("other" + i, rows(1), 0);
+        }
+        assertFalse(policy.admit("first", rows(1), 0));
+    }
+
+    private List<String> rows(int count) {
+        List<String> rows = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            rows.add("row number " + i);
+        }
+        return rows;
+    }
+
+}
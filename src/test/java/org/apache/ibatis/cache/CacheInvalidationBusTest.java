@@ -0,0 +1,243 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.net.DatagramSocket;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationBus;
+import org.apache.ibatis.cache.invalidation.InvalidationListener;
+import org.apache.ibatis.cache.invalidation.InvalidationMessage;
+import org.apache.ibatis.cache.invalidation.InvalidationTransport;
+import org.apache.ibatis.cache.invalidation.LoopbackInvalidationTransport;
+import org.apache.ibatis.cache.invalidation.UdpInvalidationTransport;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+/**
+ * 测试缓存失效总线
+ */
+public class CacheInvalidationBusTest {
+
+    private static final byte[] SECRET = "test-secret".getBytes();
+
+    /**
+     * 测试消息编码解码
+     */
+    @Test
+    public void shouldEncodeAndDecodeMessages() {
+        InvalidationMessage clear = InvalidationMessage
+                .fromBytes(InvalidationMessage.clear("a", "ns").toBytes(SECRET), SECRET);
+        assertEquals("a", clear.getOrigin());
+        assertEquals("ns", clear.getCacheId());
+        assertTrue(clear.isClearAll());
+
+        CacheKey key = new CacheKey(new Object[] { "select", 1, 2L, null, new BigDecimal("1.50"),
+                new Timestamp(1234567L) });
+        InvalidationMessage remove = InvalidationMessage
+                .fromBytes(InvalidationMessage.remove("a", "ns", Arrays.asList(key)).toBytes(SECRET), SECRET);
+        assertFalse(remove.isClearAll());
+        assertEquals(Arrays.<Object>asList(key), remove.getKeys());
+        assertEquals(key.hashCode(), remove.getKeys().get(0).hashCode());
+    }
+
+    /**
+     * 测试拒绝签名不正确的消息
+     */
+    @Test
+    public void shouldRejectMessagesWithWrongSignature() {
+        byte[] data = InvalidationMessage.clear("a", "ns").toBytes("other-secret".getBytes());
+        try {
+            InvalidationMessage.fromBytes(data, SECRET);
+            fail("Should have thrown CacheException");
+        } catch (CacheException e) {
+            assertTrue(e.getMessage().contains("signature"));
+        }
+        byte[] tampered = InvalidationMessage.clear("a", "ns").toBytes(SECRET);
+        tampered[3] ^= 1;
+        try {
+            InvalidationMessage.fromBytes(tampered, SECRET);
+            fail("Should have thrown CacheException");
+        } catch (CacheException e) {
+            assertTrue(e.getMessage().contains("signature"));
+        }
+    }
+
+    /**
+     * 测试签名正确但是不认识的key类型会被拒绝 不会反序列化任意对象
+     */
+    @Test(expected = CacheException.class)
+    public void shouldNotEncodeArbitraryObjects() {
+        InvalidationMessage.remove("a", "ns", Arrays.asList(new Object()));
+    }
+
+    /**
+     * 测试伪造的消息不会清空缓存
+     */
+    @Test
+    public void shouldIgnoreSpoofedMessages() {
+        Cache remote = new PerpetualCache("ns");
+        CacheInvalidationBus remoteBus = newBus(remote, new LoopbackInvalidationTransport("spoof"));
+        LoopbackInvalidationTransport attacker = new LoopbackInvalidationTransport("spoof");
+        attacker.start(new InvalidationListener() {
+            @Override
+            public void onMessage(byte[] message) {
+            }
+        });
+        try {
+            remote.putObject("key", "value");
+            attacker.publish(InvalidationMessage.clear("attacker", "ns").toBytes("guess".getBytes()));
+            assertEquals(1, remote.getSize());
+        } finally {
+            attacker.close();
+            remoteBus.close();
+        }
+    }
+
+    /**
+     * 测试不能编码的key退化为清空整个缓存
+     */
+    @Test
+    public void shouldClearRemoteCacheWhenKeysCannotBeEncoded() {
+        Cache remote = new PerpetualCache("ns");
+        CacheInvalidationBus localBus = newBus(new PerpetualCache("ns"), new LoopbackInvalidationTransport("opaque"));
+        CacheInvalidationBus remoteBus = newBus(remote, new LoopbackInvalidationTransport("opaque"));
+        try {
+            remote.putObject("a", "1");
+            localBus.publishRemove("ns", Arrays.asList(new Object()));
+            assertEquals(0, remote.getSize());
+        } finally {
+            localBus.close();
+            remoteBus.close();
+        }
+    }
+
+    /**
+     * 测试一个节点提交时清空缓存 其他节点的缓存也被清空
+     */
+    @Test
+    public void shouldClearRemoteCacheOnCommit() {
+        Cache local = new PerpetualCache("ns");
+        Cache remote = new PerpetualCache("ns");
+        CacheInvalidationBus localBus = newBus(local, new LoopbackInvalidationTransport("commit"));
+        CacheInvalidationBus remoteBus = newBus(remote, new LoopbackInvalidationTransport("commit"));
+        try {
+            remote.putObject("key", "value");
+            TransactionalCache txCache = new TransactionalCache(local, localBus);
+            txCache.clear();
+            assertEquals(1, remote.getSize());
+            txCache.commit();
+            assertEquals(0, remote.getSize());
+        } finally {
+            localBus.close();
+            remoteBus.close();
+        }
+    }
+
+    /**
+     * 测试只提交新的缓存项不会通知其他节点
+     */
+    @Test
+    public void shouldNotPublishWhenNothingWasFlushed() {
+        Cache local = new PerpetualCache("ns");
+        Cache remote = new PerpetualCache("ns");
+        CacheInvalidationBus localBus = newBus(local, new LoopbackInvalidationTransport("noflush"));
+        CacheInvalidationBus remoteBus = newBus(remote, new LoopbackInvalidationTransport("noflush"));
+        try {
+            remote.putObject("key", "value");
+            TransactionalCache txCache = new TransactionalCache(local, localBus);
+            txCache.putObject("other", "value");
+            txCache.commit();
+            assertEquals(1, remote.getSize());
+            assertEquals(1, local.getSize());
+        } finally {
+            localBus.close();
+            remoteBus.close();
+        }
+    }
+
+    /**
+     * 测试按key失效
+     */
+    @Test
+    public void shouldRemoveRemoteKeys() {
+        Cache remote = new PerpetualCache("ns");
+        CacheInvalidationBus localBus = newBus(new PerpetualCache("ns"), new LoopbackInvalidationTransport("keys"));
+        CacheInvalidationBus remoteBus = newBus(remote, new LoopbackInvalidationTransport("keys"));
+        try {
+            remote.putObject("a", "1");
+            remote.putObject("b", "2");
+            localBus.publishRemove("ns", Arrays.asList("a"));
+            assertNull(remote.getObject("a"));
+            assertEquals("2", remote.getObject("b"));
+        } finally {
+            localBus.close();
+            remoteBus.close();
+        }
+    }
+
+    /**
+     * 测试通过本机UDP传输失效消息
+     *
+     * @throws Exception
+     */
+    @Test
+    public void shouldClearRemoteCacheOverUdp() throws Exception {
+        int localPort = freePort();
+        int remotePort = freePort();
+        Cache remote = new PerpetualCache("ns");
+        CacheInvalidationBus localBus = newBus(new PerpetualCache("ns"),
+                new UdpInvalidationTransport(localPort, remotePort));
+        CacheInvalidationBus remoteBus = newBus(remote, new UdpInvalidationTransport(remotePort, localPort));
+        try {
+            remote.putObject("key", "value");
+            localBus.publishClear("ns");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (remote.getSize() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, remote.getSize());
+        } finally {
+            localBus.close();
+            remoteBus.close();
+        }
+    }
+
+    private CacheInvalidationBus newBus(Cache cache, InvalidationTransport transport) {
+        Configuration configuration = new Configuration();
+        configuration.addCache(cache);
+        CacheInvalidationBus bus = new CacheInvalidationBus(configuration, transport, SECRET);
+        configuration.setCacheInvalidationBus(bus);
+        bus.start();
+        return bus;
+    }
+
+    private int freePort() throws Exception {
+        DatagramSocket socket = new DatagramSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.cache.decorators.NegativeResultCache;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.junit.Test;
+
+/**
+ * 测试空结果缓存
+ */
+public class NegativeResultCacheTest {
+
+    @Test
+    public void shouldKeepEmptyResultsOutOfDelegate() {
+        PerpetualCache delegate = new PerpetualCache("default");
+        NegativeResultCache cache = new NegativeResultCache(delegate);
+        cache.putObject("missing", new ArrayList<Object>());
+        cache.putObject("found", Arrays.asList("row"));
+        assertEquals(1, delegate.getSize());
+        assertEquals(2, cache.getSize());
+        assertEquals(new ArrayList<Object>(), cache.getObject("missing"));
+        assertEquals(Arrays.asList("row"), cache.getObject("found"));
+    }
+
+    @Test
+    public void shouldReturnNewListOnEveryHit() {
+        NegativeResultCache cache = new NegativeResultCache(new PerpetualCache("default"));
+        cache.putObject("missing", new ArrayList<Object>());
+        @SuppressWarnings("unchecked") List<Object> first = (List<Object>) cache.getObject("missing");
+        first.add("changed");
+        assertTrue(((List<?>) cache.getObject("missing")).isEmpty());
+    }
+
+    @Test
+    public void shouldExpireEmptyResults() throws Exception {
+        NegativeResultCache cache = new NegativeResultCache(new PerpetualCache("default"));
+        cache.setTimeToLive(20);
+        cache.putObject("missing", new ArrayList<Object>());
+        assertNotNull(cache.getObject("missing"));
+        Thread.sleep(50);
+        assertNull(cache.getObject("missing"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEmptyResults() {
+        NegativeResultCache cache = new NegativeResultCache(new PerpetualCache("default"));
+        cache.setSize(2);
+        cache.putObject(1, new ArrayList<Object>());
+        cache.putObject(2, new ArrayList<Object>());
+        cache.getObject(1);
+        cache.putObject(3, new ArrayList<Object>());
+        assertNotNull(cache.getObject(1));
+        assertNull(cache.getObject(2));
+        assertNotNull(cache.getObject(3));
+    }
+
+    @Test
+    public void shouldReplaceEmptyResultWithRealResultAndClear() {
+        NegativeResultCache cache = new NegativeResultCache(new PerpetualCache("default"));
+        cache.putObject("key", new ArrayList<Object>());
+        cache.putObject("key", Arrays.asList("row"));
+        assertEquals(Arrays.asList("row"), cache.getObject("key"));
+        cache.putObject("other", new ArrayList<Object>());
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertNull(cache.getObject("other"));
+    }
+
+    @Test
+    public void shouldBuildNegativeCacheOutsideSerializedCache() {
+        Cache cache = new CacheBuilder("default").readWrite(true).negativeTimeToLive(1000L).negativeSize(10).build();
+        Object delegate = SystemMetaObject.forObject(cache).getValue("delegate.delegate");
+        assertTrue(delegate instanceof NegativeResultCache);
+        assertTrue(SystemMetaObject.forObject(delegate).getValue("delegate") instanceof SerializedCache);
+    }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.Test;
+
+/**
+ * 测试序列化缓存
+ */
+public class SerializedCacheTest {
+
+    @Test
+    public void shouldReturnCopyOfCachedObject() {
+        SerializedCache cache = new SerializedCache(new PerpetualCache("default"));
+        List<Row> rows = rows(3);
+        cache.putObject("key", rows);
+        Object copy = cache.getObject("key");
+        assertEquals(rows, copy);
+        assertNotSame(rows, copy);
+    }
+
+    @Test
+    public void shouldOnlyDeserializeTouchedChunks() {
+        SerializedCache cache = new SerializedCache(new PerpetualCache("default"));
+        cache.setLazy(true);
+        cache.setChunkSize(10);
+        cache.putObject("key", rows(1000));
+        Row.deserialized = 0;
+        @SuppressWarnings("unchecked") List<Row> copy = (List<Row>) cache.getObject("key");
+        assertEquals(1000, copy.size());
+        assertEquals(0, Row.deserialized);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, copy.get(i).id);
+        }
+        assertEquals(10, Row.deserialized);
+        assertEquals(999, copy.get(999).id);
+        assertEquals(20, Row.deserialized);
+    }
+
+    @Test
+    public void shouldIsolateLazyCopies() {
+        SerializedCache cache = new SerializedCache(new PerpetualCache("default"));
+        cache.setLazy(true);
+        cache.putObject("key", rows(40));
+        @SuppressWarnings("unchecked") List<Row> first = (List<Row>) cache.getObject("key");
+        first.get(5).id = -1;
+        first.set(6, new Row(-2));
+        first.remove(0);
+        first.add(new Row(100));
+        assertSame(first.get(4), first.get(4));
+        assertEquals(-1, first.get(4).id);
+        assertEquals(-2, first.get(5).id);
+        assertEquals(40, first.size());
+        @SuppressWarnings("unchecked") List<Row> second = (List<Row>) cache.getObject("key");
+        assertEquals(rows(40), second);
+    }
+
+    @Test
+    public void shouldSerializeLazyCopyAsArrayList() throws Exception {
+        SerializedCache cache = new SerializedCache(new PerpetualCache("default"));
+        cache.setLazy(true);
+        cache.putObject("key", rows(20));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(cache.getObject("key"));
+        oos.close();
+        Object read = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())).readObject();
+        assertEquals(ArrayList.class, read.getClass());
+        assertEquals(rows(20), read);
+    }
+
+    private static List<Row> rows(int count) {
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new Row(i));
+        }
+        return rows;
+    }
+
+    static class Row implements Serializable {
+        private static final long serialVersionUID = 1L;
+        static int deserialized;
+        int id;
+
+        Row(int id) {
+            this.id = id;
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            deserialized++;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Row && ((Row) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试批量执行器达到阈值自动执行
+ */
+public class BatchExecutorAutoFlushTest {
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private BatchExecutor executor;
+    private MappedStatement insertName;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        jdbc = new RecordingConnection();
+        executor = new BatchExecutor(config, new JdbcTransaction(jdbc.connection()));
+        List<ParameterMapping> mappings = new ArrayList<ParameterMapping>();
+        mappings.add(new ParameterMapping.Builder(config, "name", new StringTypeHandler()).build());
+        insertName = new MappedStatement.Builder(config, "insertName",
+                new StaticSqlSource(config, "insert into names (name) values (?)", mappings), SqlCommandType.INSERT)
+                .build();
+        config.addMappedStatement(insertName);
+    }
+
+    @Test
+    public void shouldExecuteBatchWhenMaxSizeIsReached() throws Exception {
+        config.setMaxBatchSize(2);
+        executor.update(insertName, param("a"));
+        assertTrue(jdbc.executed.isEmpty());
+        executor.update(insertName, param("b"));
+        assertEquals(Arrays.asList("insert into names (name) values (?) -> [a], [b]"), jdbc.executed);
+        executor.update(insertName, param("c"));
+        List<BatchResult> results = executor.flushStatements();
+        assertEquals(Arrays.asList("insert into names (name) values (?) -> [a], [b]",
+                "insert into names (name) values (?) -> [c]"), jdbc.executed);
+        assertEquals(1, jdbc.prepared.size());
+        assertEquals(1, results.size());
+        assertEquals(3, results.get(0).getParameterObjects().size());
+        assertEquals(3, results.get(0).getUpdateCounts().length);
+    }
+
+    @Test
+    public void shouldExecuteBatchWhenMaxBytesIsReached() throws Exception {
+        config.setMaxBatchBytes(20L);
+        executor.update(insertName, param("12345"));
+        assertTrue(jdbc.executed.isEmpty());
+        executor.update(insertName, param("12345"));
+        assertEquals(1, jdbc.executed.size());
+    }
+
+    @Test
+    public void shouldReleaseParametersWhenResultsAreNotRetained() throws Exception {
+        config.setMaxBatchSize(2);
+        config.setRetainBatchResults(false);
+        for (int i = 0; i < 5; i++) {
+            executor.update(insertName, param("n" + i));
+        }
+        assertEquals(2, jdbc.executed.size());
+        assertTrue(executor.flushStatements().isEmpty());
+        assertEquals("insert into names (name) values (?) -> [n4]", jdbc.executed.get(2));
+    }
+
+    @Test
+    public void shouldNotExecuteEmptyBatchOnFlush() throws Exception {
+        config.setMaxBatchSize(2);
+        config.setRetainBatchResults(false);
+        executor.update(insertName, param("a"));
+        executor.update(insertName, param("b"));
+        executor.flushStatements();
+        assertEquals(1, jdbc.executed.size());
+    }
+
+    private Map<String, Object> param(String name) {
+        Map<String, Object> param = new HashMap<String, Object>();
+        param.put("name", name);
+        return param;
+    }
+
+}
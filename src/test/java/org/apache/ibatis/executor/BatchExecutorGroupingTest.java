@@ -0,0 +1,166 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionUtil;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试批量执行器按sql分组
+ */
+public class BatchExecutorGroupingTest {
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private BatchExecutor executor;
+    private MappedStatement insertOrder;
+    private MappedStatement insertLine;
+    private MappedStatement updateOrder;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        config.setBatchGroupingEnabled(true);
+        jdbc = new RecordingConnection();
+        executor = new BatchExecutor(config, new JdbcTransaction(jdbc.connection()));
+        insertOrder = statement("insertOrder", "insert into orders (id) values (?)", "id");
+        insertLine = statement("insertLine", "insert into order_line (order_id) values (?)", "id");
+        updateOrder = statement("updateOrder", "update orders set total = 0 where id = ?", "id");
+    }
+
+    @Test
+    public void shouldGroupInterleavedStatements() throws Exception {
+        executor.update(insertOrder, param(1));
+        executor.update(insertLine, param(1));
+        executor.update(insertLine, param(1));
+        executor.update(insertOrder, param(2));
+        executor.update(insertLine, param(2));
+        List<BatchResult> results = executor.flushStatements();
+        assertEquals(2, results.size());
+        assertEquals(Arrays.asList(
+                "insert into orders (id) values (?) -> [1], [2]",
+                "insert into order_line (order_id) values (?) -> [1], [1], [2]"), jdbc.executed);
+        assertEquals(2, jdbc.prepared.size());
+    }
+
+    @Test
+    public void shouldKeepOrderOfStatementsOnSameTable() throws Exception {
+        executor.update(insertOrder, param(1));
+        executor.update(updateOrder, param(1));
+        executor.update(insertOrder, param(2));
+        executor.flushStatements();
+        assertEquals(Arrays.asList(
+                "insert into orders (id) values (?) -> [1]",
+                "update orders set total = 0 where id = ? -> [1]",
+                "insert into orders (id) values (?) -> [2]"), jdbc.executed);
+    }
+
+    @Test
+    public void shouldNotRegroupAcrossBarrier() throws Exception {
+        executor.update(insertOrder, param(1));
+        executor.update(insertLine, param(1));
+        executor.barrier();
+        executor.update(insertOrder, param(2));
+        executor.flushStatements();
+        assertEquals(Arrays.asList(
+                "insert into orders (id) values (?) -> [1]",
+                "insert into order_line (order_id) values (?) -> [1]",
+                "insert into orders (id) values (?) -> [2]"), jdbc.executed);
+    }
+
+    @Test
+    public void shouldSetBarrierThroughSqlSession() throws Exception {
+        Executor wrapped = (Executor) Plugin.wrap(new CachingExecutor(executor), new PassThroughPlugin());
+        SqlSession session = new DefaultSqlSession(config, wrapped);
+        session.insert("insertLine", param(1));
+        session.insert("insertOrder", param(2));
+        SqlSessionUtil.batchBarrier(session);
+        session.insert("insertLine", param(2));
+        session.flushStatements();
+        assertEquals(Arrays.asList(
+                "insert into order_line (order_id) values (?) -> [1]",
+                "insert into orders (id) values (?) -> [2]",
+                "insert into order_line (order_id) values (?) -> [2]"), jdbc.executed);
+    }
+
+    @Test
+    public void shouldOnlyReuseLastStatementWithoutGrouping() throws Exception {
+        config.setBatchGroupingEnabled(false);
+        executor.update(insertOrder, param(1));
+        executor.update(insertLine, param(1));
+        executor.update(insertOrder, param(2));
+        executor.flushStatements();
+        assertEquals(3, jdbc.executed.size());
+    }
+
+    @Intercepts(@Signature(type = Executor.class, method = "flushStatements", args = {}))
+    public static class PassThroughPlugin implements Interceptor {
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            return invocation.proceed();
+        }
+
+        @Override
+        public Object plugin(Object target) {
+            return Plugin.wrap(target, this);
+        }
+
+        @Override
+        public void setProperties(Properties properties) {
+        }
+    }
+
+    private MappedStatement statement(String id, String sql, String property) {
+        List<ParameterMapping> mappings = new ArrayList<ParameterMapping>();
+        mappings.add(new ParameterMapping.Builder(config, property, new IntegerTypeHandler()).build());
+        MappedStatement ms = new MappedStatement.Builder(config, id, new StaticSqlSource(config, sql, mappings),
+                SqlCommandType.INSERT).build();
+        config.addMappedStatement(ms);
+        return ms;
+    }
+
+    private Map<String, Object> param(int id) {
+        Map<String, Object> param = new HashMap<String, Object>();
+        param.put("id", id);
+        return param;
+    }
+
+}
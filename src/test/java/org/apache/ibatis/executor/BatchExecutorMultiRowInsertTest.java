@@ -0,0 +1,187 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试批量插入改写成多行VALUES
+ */
+public class BatchExecutorMultiRowInsertTest {
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private BatchExecutor executor;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        jdbc = new RecordingConnection();
+        executor = new BatchExecutor(config, new JdbcTransaction(jdbc.connection()));
+    }
+
+    @Test
+    public void shouldNotRewriteByDefault() throws Exception {
+        MappedStatement ms = insert("insertName", "insert into names (name, nick) values (?, ?)");
+        executor.update(ms, param("a"));
+        executor.update(ms, param("b"));
+        executor.flushStatements();
+        assertEquals(Arrays.asList("insert into names (name, nick) values (?, ?) -> [a, a!], [b, b!]"), jdbc.executed);
+    }
+
+    @Test
+    public void shouldRewriteInsertsIntoMultiRowValues() throws Exception {
+        config.setRewriteBatchedInserts(true);
+        MappedStatement ms = insert("insertName", "insert into names (name, nick) values (?, ?)");
+        executor.update(ms, param("a"));
+        executor.update(ms, param("b"));
+        executor.update(ms, param("c"));
+        List<BatchResult> results = executor.flushStatements();
+        assertEquals(Arrays.asList(
+                "insert into names (name, nick) values (?, ?), (?, ?), (?, ?) -> [a, a!, b, b!, c, c!]"),
+                jdbc.executed);
+        assertEquals(1, results.size());
+        assertArrayEquals(new int[] { 1, 1, 1 }, results.get(0).getUpdateCounts());
+        assertEquals(1, jdbc.closedStatements);
+    }
+
+    @Test
+    public void shouldSplitRowsByParameterLimit() throws Exception {
+        config.setRewriteBatchedInserts(true);
+        config.setRewriteBatchedInsertsParameterLimit(4);
+        MappedStatement ms = insert("insertName", "insert into names (name, nick) values (?, ?)");
+        for (String name : Arrays.asList("a", "b", "c", "d", "e")) {
+            executor.update(ms, param(name));
+        }
+        List<BatchResult> results = executor.flushStatements();
+        assertEquals(Arrays.asList(
+                "insert into names (name, nick) values (?, ?), (?, ?) -> [a, a!, b, b!]",
+                "insert into names (name, nick) values (?, ?), (?, ?) -> [c, c!, d, d!]",
+                "insert into names (name, nick) values (?, ?) -> [e, e!]"), jdbc.executed);
+        assertEquals(2, jdbc.prepared.size());
+        assertEquals(5, results.get(0).getUpdateCounts().length);
+    }
+
+    @Test
+    public void shouldNotRewriteStatementsThatAreNotSingleRowInserts() throws Exception {
+        config.setRewriteBatchedInserts(true);
+        MappedStatement upsert = insert("upsertName",
+                "insert into names (name, nick) values (?, ?) on duplicate key update nick = 'x'");
+        MappedStatement multi = insert("insertTwo", "insert into names (name, nick) values (?, 'x'), (?, 'y')");
+        executor.update(upsert, param("a"));
+        executor.update(multi, param("b"));
+        executor.flushStatements();
+        assertEquals(Arrays.asList(
+                "insert into names (name, nick) values (?, ?) on duplicate key update nick = 'x' -> [a, a!]",
+                "insert into names (name, nick) values (?, 'x'), (?, 'y') -> [b, b!]"), jdbc.executed);
+    }
+
+    @Test
+    public void shouldBindEachRowWhenParameterObjectIsReused() throws Exception {
+        config.setRewriteBatchedInserts(true);
+        MappedStatement ms = insert("insertName", "insert into names (name, nick) values (?, ?)");
+        Map<String, Object> param = new HashMap<String, Object>();
+        for (String name : Arrays.asList("a", "b", "c")) {
+            param.put("name", name);
+            param.put("nick", name + "!");
+            executor.update(ms, param);
+        }
+        executor.flushStatements();
+        assertEquals(Arrays.asList(
+                "insert into names (name, nick) values (?, ?), (?, ?), (?, ?) -> [a, a!, b, b!, c, c!]"),
+                jdbc.executed);
+    }
+
+    @Test
+    public void shouldPrepareRewrittenStatementThroughStatementHandler() throws Exception {
+        config.setRewriteBatchedInserts(true);
+        final List<String> prepared = new ArrayList<String>();
+        config.addInterceptor(new PrepareRecorder(prepared));
+        MappedStatement ms = insert("insertName", "insert into names (name, nick) values (?, ?)");
+        executor.update(ms, param("a"));
+        executor.update(ms, param("b"));
+        executor.flushStatements();
+        assertEquals(Arrays.asList("insert into names (name, nick) values (?, ?), (?, ?)"), prepared);
+    }
+
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class,
+            Integer.class }))
+    public static class PrepareRecorder implements Interceptor {
+
+        private final List<String> prepared;
+
+        public PrepareRecorder(List<String> prepared) {
+            this.prepared = prepared;
+        }
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            prepared.add(((StatementHandler) invocation.getTarget()).getBoundSql().getSql());
+            return invocation.proceed();
+        }
+
+        @Override
+        public Object plugin(Object target) {
+            return Plugin.wrap(target, this);
+        }
+
+        @Override
+        public void setProperties(Properties properties) {
+        }
+    }
+
+    private MappedStatement insert(String id, String sql) {
+        List<ParameterMapping> mappings = new ArrayList<ParameterMapping>();
+        mappings.add(new ParameterMapping.Builder(config, "name", new StringTypeHandler()).build());
+        mappings.add(new ParameterMapping.Builder(config, "nick", new StringTypeHandler()).build());
+        MappedStatement ms = new MappedStatement.Builder(config, id, new StaticSqlSource(config, sql, mappings),
+                SqlCommandType.INSERT).build();
+        config.addMappedStatement(ms);
+        return ms;
+    }
+
+    private Map<String, Object> param(String name) {
+        Map<String, Object> param = new HashMap<String, Object>();
+        param.put("name", name);
+        param.put("nick", name + "!");
+        return param;
+    }
+
+}
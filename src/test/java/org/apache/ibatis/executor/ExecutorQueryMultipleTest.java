@@ -0,0 +1,216 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SelectRequest;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionUtil;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试多个查询拼接成一条多语句执行
+ */
+public class ExecutorQueryMultipleTest {
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private BaseExecutor executor;
+    private MappedStatement selectAuthor;
+    private MappedStatement selectPost;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        jdbc = new RecordingConnection();
+        executor = new SimpleExecutor(config, new JdbcTransaction(jdbc.connection()));
+        selectAuthor = select("selectAuthor", "select name from author where id = ?");
+        selectPost = select("selectPost", "select title from post where author_id = ?;");
+    }
+
+    @Test
+    public void shouldExecuteSelectsInOneRoundTrip() throws Exception {
+        config.setMultiStatementPipelining(true);
+        jdbc.results.add(new Object[][] { { "name" }, { "jim" } });
+        jdbc.results.add(new Object[][] { { "title" }, { "first" }, { "second" } });
+        List<List<Object>> results = executor.queryMultiple(Arrays.asList(selectAuthor, selectPost),
+                Arrays.<Object>asList(param(1), param(2)));
+        assertEquals(Arrays.asList("select name from author where id = ?;\nselect title from post where author_id = ?"),
+                jdbc.prepared);
+        assertEquals(Arrays.asList(
+                "select name from author where id = ?;\nselect title from post where author_id = ? -> [1, 2]"),
+                jdbc.executed);
+        assertEquals(2, results.size());
+        assertEquals(Arrays.asList(row("name", "jim")), results.get(0));
+        assertEquals(Arrays.asList(row("title", "first"), row("title", "second")), results.get(1));
+        assertEquals(1, jdbc.closedStatements);
+    }
+
+    @Test
+    public void shouldServeRepeatedSelectsFromLocalCache() throws Exception {
+        config.setMultiStatementPipelining(true);
+        jdbc.results.add(new Object[][] { { "name" }, { "jim" } });
+        jdbc.results.add(new Object[][] { { "title" }, { "first" } });
+        executor.queryMultiple(Arrays.asList(selectAuthor, selectPost), Arrays.<Object>asList(param(1), param(2)));
+        List<List<Object>> results = executor.queryMultiple(Arrays.asList(selectPost, selectAuthor),
+                Arrays.<Object>asList(param(2), param(1)));
+        assertEquals(1, jdbc.prepared.size());
+        assertEquals(Arrays.asList(row("title", "first")), results.get(0));
+        assertEquals(Arrays.asList(row("name", "jim")), results.get(1));
+    }
+
+    @Test
+    public void shouldExecuteSelectsSeparatelyWhenPipeliningIsDisabled() throws Exception {
+        jdbc.results.add(new Object[][] { { "name" }, { "jim" } });
+        List<List<Object>> results = executor.queryMultiple(Arrays.asList(selectAuthor, selectPost),
+                Arrays.<Object>asList(param(1), param(2)));
+        assertEquals(Arrays.asList("select name from author where id = ?",
+                "select title from post where author_id = ?;"), jdbc.prepared);
+        assertEquals(Arrays.asList(row("name", "jim")), results.get(0));
+    }
+
+    @Test
+    public void shouldPrepareCombinedStatementThroughStatementHandler() throws Exception {
+        config.setMultiStatementPipelining(true);
+        List<String> prepared = new ArrayList<String>();
+        config.addInterceptor(new BatchExecutorMultiRowInsertTest.PrepareRecorder(prepared));
+        jdbc.results.add(new Object[][] { { "name" }, { "jim" } });
+        jdbc.results.add(new Object[][] { { "title" }, { "first" } });
+        executor.queryMultiple(Arrays.asList(selectAuthor, selectPost), Arrays.<Object>asList(param(1), param(2)));
+        assertEquals(Arrays.asList("select name from author where id = ?;\nselect title from post where author_id = ?"),
+                prepared);
+    }
+
+    @Test
+    public void shouldQueryEachStatementThroughExecutorPlugins() throws Exception {
+        config.setMultiStatementPipelining(true);
+        QueryCounter counter = new QueryCounter();
+        SqlSession session = new DefaultSqlSession(config, (Executor) counter.plugin(new CachingExecutor(executor)));
+        jdbc.results.add(new Object[][] { { "name" }, { "jim" } });
+        jdbc.results.add(new Object[][] { { "title" }, { "first" } });
+        List<List<Object>> results = SqlSessionUtil.selectMultiple(session, requests());
+        assertEquals(2, counter.queries);
+        assertEquals(Arrays.asList(row("name", "jim")), results.get(0));
+        assertEquals(Arrays.asList(row("title", "first")), results.get(1));
+    }
+
+    @Test
+    public void shouldPipelineSelectsThroughDefaultSqlSession() throws Exception {
+        config.setMultiStatementPipelining(true);
+        jdbc.results.add(new Object[][] { { "name" }, { "jim" } });
+        jdbc.results.add(new Object[][] { { "title" }, { "first" } });
+        SqlSessionUtil.selectMultiple(new DefaultSqlSession(config, executor), requests());
+        assertEquals(1, jdbc.prepared.size());
+    }
+
+    @Test
+    public void shouldSelectOneByOneThroughOtherSqlSessions() throws Exception {
+        config.setMultiStatementPipelining(true);
+        final SqlSession target = new DefaultSqlSession(config, executor);
+        SqlSession wrapper = (SqlSession) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { SqlSession.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        return method.invoke(target, args);
+                    }
+                });
+        jdbc.results.add(new Object[][] { { "name" }, { "jim" } });
+        jdbc.results.add(new Object[][] { { "title" }, { "first" } });
+        List<List<Object>> results = SqlSessionUtil.selectMultiple(wrapper, requests());
+        assertEquals(2, jdbc.prepared.size());
+        assertEquals(Arrays.asList(row("title", "first")), results.get(1));
+    }
+
+    private static List<SelectRequest> requests() {
+        return Arrays.asList(new SelectRequest("selectAuthor", param(1)), new SelectRequest("selectPost", param(2)));
+    }
+
+    @Intercepts(@Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class,
+            RowBounds.class, ResultHandler.class }))
+    public static class QueryCounter implements Interceptor {
+
+        private int queries;
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            queries++;
+            return invocation.proceed();
+        }
+
+        @Override
+        public Object plugin(Object target) {
+            return Plugin.wrap(target, this);
+        }
+
+        @Override
+        public void setProperties(Properties properties) {
+        }
+    }
+
+    private MappedStatement select(String id, String sql) {
+        List<ParameterMapping> mappings = new ArrayList<ParameterMapping>();
+        mappings.add(new ParameterMapping.Builder(config, "id", new IntegerTypeHandler()).build());
+        List<ResultMap> resultMaps = new ArrayList<ResultMap>();
+        resultMaps.add(new ResultMap.Builder(config, id + "-Inline", HashMap.class, new ArrayList<ResultMapping>())
+                .build());
+        MappedStatement ms = new MappedStatement.Builder(config, id, new StaticSqlSource(config, sql, mappings),
+                SqlCommandType.SELECT).resultMaps(resultMaps).build();
+        config.addMappedStatement(ms);
+        return ms;
+    }
+
+    private static Map<String, Object> param(int id) {
+        Map<String, Object> param = new HashMap<String, Object>();
+        param.put("id", id);
+        return param;
+    }
+
+    private static Map<String, Object> row(String column, Object value) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put(column, value);
+        return row;
+    }
+
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+
+/**
+ * 记录执行过程的假数据库连接 用于不依赖数据库测试执行器
+ * 每次executeBatch会记录一条 "sql -> [第一行参数], [第二行参数]..."
+ * 每次executeUpdate和execute会记录一条 "sql -> [全部参数]"
+ * execute返回的结果集依次从results中取出 每个结果集的第一行是列名 嵌套查询会取到下一个结果集
+ */
+public class RecordingConnection {
+
+    /**
+     * 执行记录
+     */
+    public final List<String> executed = new ArrayList<String>();
+
+    /**
+     * 预编译的sql
+     */
+    public final List<String> prepared = new ArrayList<String>();
+
+    /**
+     * 关闭的statement数量
+     */
+    public int closedStatements;
+
+    /**
+     * 等待返回的结果集
+     */
+    public final LinkedList<Object[][]> results = new LinkedList<Object[][]>();
+
+    /**
+     * 字段的jdbc类型 没有设置的字段为VARCHAR
+     */
+    public final Map<String, Integer> columnTypes = new HashMap<String, Integer>();
+
+    /**
+     * 驱动报告的字段java类名 没有设置的字段为String
+     */
+    public final Map<String, String> columnClassNames = new HashMap<String, String>();
+
+    /**
+     * 最后一次设置的事务隔离级别 没有设置过为null
+     */
+    public Integer transactionIsolation;
+
+    /**
+     * 下一次execute抛出的异常 抛出后清空
+     */
+    public SQLException failure;
+
+    /**
+     * 在配置中注册一个 "select * from id" 查询 结果映射为没有显式映射的type
+     *
+     * @param config
+     * @param id
+     * @param type
+     */
+    public static void addSelect(Configuration config, String id, Class<?> type) {
+        addSelect(config, id, new ResultMap.Builder(config, id + "-Inline", type, new ArrayList<ResultMapping>())
+                .build());
+    }
+
+    /**
+     * 在配置中注册一个 "select * from id" 查询 使用指定的结果映射
+     *
+     * @param config
+     * @param id
+     * @param resultMap
+     */
+    public static void addSelect(Configuration config, String id, ResultMap resultMap) {
+        config.addMappedStatement(new MappedStatement.Builder(config, id,
+                new StaticSqlSource(config, "select * from " + id, new ArrayList<ParameterMapping>()),
+                SqlCommandType.SELECT).resultMaps(Collections.singletonList(resultMap)).build());
+    }
+
+    /**
+     * 打开一个通过这个连接执行的会话
+     *
+     * @param config
+     * @return
+     */
+    public SqlSession openSession(Configuration config) {
+        return new DefaultSqlSession(config, new SimpleExecutor(config, new JdbcTransaction(connection())));
+    }
+
+    public Connection connection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("prepareStatement")) {
+                            prepared.add((String) args[0]);
+                            return statement((Connection) proxy, (String) args[0]);
+                        }
+                        if (method.getName().equals("getAutoCommit")) {
+                            return false;
+                        }
+                        if (method.getName().equals("setTransactionIsolation")) {
+                            transactionIsolation = (Integer) args[0];
+                            return null;
+                        }
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private PreparedStatement statement(final Connection connection, final String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+                    private final Map<Integer, Object> row = new TreeMap<Integer, Object>();
+                    private final List<String> rows = new ArrayList<String>();
+                    private ResultSet current;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                        String name = method.getName();
+                        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                                && !name.equals("setQueryTimeout")) {
+                            row.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                            return null;
+                        }
+                        if (name.equals("addBatch")) {
+                            rows.add(row.values().toString());
+                            row.clear();
+                            return null;
+                        }
+                        if (name.equals("executeBatch")) {
+                            executed.add(sql + " -> " + join(rows));
+                            int[] counts = new int[rows.size()];
+                            Arrays.fill(counts, 1);
+                            rows.clear();
+                            return counts;
+                        }
+                        if (name.equals("executeUpdate") && (args == null || args.length == 0)) {
+                            executed.add(sql + " -> " + row.values());
+                            int count = 1;
+                            for (int i = sql.indexOf("), ("); i >= 0; i = sql.indexOf("), (", i + 1)) {
+                                count++;
+                            }
+                            row.clear();
+                            return count;
+                        }
+                        if (name.equals("execute") && (args == null || args.length == 0)) {
+                            executed.add(sql + " -> " + row.values());
+                            row.clear();
+                            if (failure != null) {
+                                SQLException e = failure;
+                                failure = null;
+                                throw e;
+                            }
+                            return !results.isEmpty();
+                        }
+                        if (name.equals("getResultSet")) {
+                            if (current == null && !results.isEmpty()) {
+                                current = resultSet(results.poll());
+                            }
+                            return current;
+                        }
+                        if (name.equals("getMoreResults")) {
+                            if (current == null) {
+                                results.poll();
+                            }
+                            current = null;
+                            return !results.isEmpty();
+                        }
+                        if (name.equals("getUpdateCount")) {
+                            return -1;
+                        }
+                        if (name.equals("getConnection")) {
+                            return connection;
+                        }
+                        if (name.equals("close")) {
+                            closedStatements++;
+                            return null;
+                        }
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    /**
+     * 创建假结果集 第一行是列名
+     *
+     * @param rows
+     * @return
+     */
+    public ResultSet resultSet(final Object[][] rows) {
+        final List<Object> columns = Arrays.asList(rows[0]);
+        final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("getColumnCount")) {
+                            return columns.size();
+                        }
+                        if (name.equals("getColumnLabel") || name.equals("getColumnName")) {
+                            return columns.get((Integer) args[0] - 1);
+                        }
+                        if (name.equals("getColumnType")) {
+                            Integer type = columnTypes.get(columns.get((Integer) args[0] - 1));
+                            return type == null ? Types.VARCHAR : type;
+                        }
+                        if (name.equals("getColumnClassName")) {
+                            String className = columnClassNames.get(columns.get((Integer) args[0] - 1));
+                            return className == null ? String.class.getName() : className;
+                        }
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+                new InvocationHandler() {
+                    private int current;
+                    private boolean wasNull;
+
+                    private Object value(Object column) {
+                        int index = column instanceof Integer ? (Integer) column - 1 : columns.indexOf(column);
+                        Object value = rows[current][index];
+                        wasNull = value == null;
+                        return value;
+                    }
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("next")) {
+                            return ++current < rows.length;
+                        }
+                        if (name.equals("getMetaData")) {
+                            return metaData;
+                        }
+                        if (name.equals("getType")) {
+                            return ResultSet.TYPE_FORWARD_ONLY;
+                        }
+                        if (name.equals("getString") || name.equals("getObject")) {
+                            Object value = value(args[0]);
+                            return value == null ? null : name.equals("getString") ? value.toString() : value;
+                        }
+                        if (name.equals("getInt") || name.equals("getLong")) {
+                            Object value = value(args[0]);
+                            long number = value == null ? 0 : Long.parseLong(value.toString());
+                            return name.equals("getInt") ? (Object) (int) number : (Object) number;
+                        }
+                        if (name.equals("getTimestamp")) {
+                            Object value = value(args[0]);
+                            return value == null || value instanceof Timestamp ? value
+                                    : Timestamp.valueOf(value.toString());
+                        }
+                        if (name.equals("getDouble")) {
+                            Object value = value(args[0]);
+                            return value == null ? 0d : Double.parseDouble(value.toString());
+                        }
+                        if (name.equals("wasNull")) {
+                            return wasNull;
+                        }
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static String join(List<String> rows) {
+        StringBuilder builder = new StringBuilder();
+        for (String row : rows) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(row);
+        }
+        return builder.toString();
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+}
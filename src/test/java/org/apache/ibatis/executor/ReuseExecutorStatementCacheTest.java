@@ -0,0 +1,139 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试重用执行器的statement缓存
+ */
+public class ReuseExecutorStatementCacheTest {
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        jdbc = new RecordingConnection();
+    }
+
+    @Test
+    public void shouldReuseStatementForSameSql() throws Exception {
+        Executor executor = new ReuseExecutor(config, new JdbcTransaction(jdbc.connection()));
+        MappedStatement ms = update("deleteA", "delete from a where name = ?");
+        executor.update(ms, param("x"));
+        executor.update(ms, param("y"));
+        assertEquals(1, jdbc.prepared.size());
+        assertEquals(0, jdbc.closedStatements);
+    }
+
+    @Test
+    public void shouldCloseLeastRecentlyUsedStatement() throws Exception {
+        config.setReuseStatementCacheSize(2);
+        Executor executor = new ReuseExecutor(config, new JdbcTransaction(jdbc.connection()));
+        MappedStatement a = update("deleteA", "delete from a where name = ?");
+        MappedStatement b = update("deleteB", "delete from b where name = ?");
+        MappedStatement c = update("deleteC", "delete from c where name = ?");
+        executor.update(a, param("x"));
+        executor.update(b, param("x"));
+        executor.update(a, param("x"));
+        executor.update(c, param("x"));
+        assertEquals(1, jdbc.closedStatements);
+        executor.update(a, param("x"));
+        executor.update(b, param("x"));
+        assertEquals(Arrays.asList("delete from a where name = ?", "delete from b where name = ?",
+                "delete from c where name = ?", "delete from b where name = ?"), jdbc.prepared);
+        assertEquals(2, jdbc.closedStatements);
+        executor.flushStatements();
+        assertEquals(4, jdbc.closedStatements);
+    }
+
+    @Test
+    public void shouldNotShareStatementsBetweenSqlTemplates() throws Exception {
+        Executor executor = new ReuseExecutor(config, new JdbcTransaction(jdbc.connection()));
+        executor.update(update("deleteA", "delete from a where name = ?"), param("x"));
+        executor.update(update("deleteAgain", "delete from a where name = ?"), param("x"));
+        assertEquals(2, jdbc.prepared.size());
+    }
+
+    @Test
+    public void shouldNotEvictStatementOfOpenCursor() throws Exception {
+        config.setReuseStatementCacheSize(1);
+        Executor executor = new ReuseExecutor(config, new JdbcTransaction(jdbc.connection()));
+        jdbc.results.add(new Object[][] { { "name" }, { "x" }, { "y" } });
+        Cursor<Object> cursor = executor.queryCursor(select("selectA", "select name from a where name > ?"),
+                param("a"), RowBounds.DEFAULT);
+        executor.update(update("deleteA", "delete from a where name = ?"), param("x"));
+        executor.update(update("deleteB", "delete from b where name = ?"), param("x"));
+        assertEquals(1, jdbc.closedStatements);
+        List<Object> rows = new ArrayList<Object>();
+        for (Object row : cursor) {
+            rows.add(row);
+        }
+        assertEquals(2, rows.size());
+        executor.flushStatements();
+        assertEquals(3, jdbc.closedStatements);
+    }
+
+    private MappedStatement select(String id, String sql) {
+        List<ParameterMapping> mappings = new ArrayList<ParameterMapping>();
+        mappings.add(new ParameterMapping.Builder(config, "name", new StringTypeHandler()).build());
+        List<ResultMap> resultMaps = new ArrayList<ResultMap>();
+        resultMaps.add(new ResultMap.Builder(config, id + "-Inline", HashMap.class, new ArrayList<ResultMapping>())
+                .build());
+        MappedStatement ms = new MappedStatement.Builder(config, id, new StaticSqlSource(config, sql, mappings),
+                SqlCommandType.SELECT).resultMaps(resultMaps).build();
+        config.addMappedStatement(ms);
+        return ms;
+    }
+
+    private MappedStatement update(String id, String sql) {
+        List<ParameterMapping> mappings = new ArrayList<ParameterMapping>();
+        mappings.add(new ParameterMapping.Builder(config, "name", new StringTypeHandler()).build());
+        MappedStatement ms = new MappedStatement.Builder(config, id, new StaticSqlSource(config, sql, mappings),
+                SqlCommandType.DELETE).build();
+        config.addMappedStatement(ms);
+        return ms;
+    }
+
+    private static Map<String, Object> param(String name) {
+        Map<String, Object> param = new HashMap<String, Object>();
+        param.put("name", name);
+        return param;
+    }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试嵌套查询按批次加载
+ */
+public class BatchResultLoaderTest {
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private Executor executor;
+    private MappedStatement selectAuthors;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        jdbc = new RecordingConnection();
+        executor = new SimpleExecutor(config, new JdbcTransaction(jdbc.connection()));
+        SqlSource postsSql = new XMLLanguageDriver().createSqlSource(config,
+                "<script>select author_id, title from post where author_id in"
+                        + "<foreach collection='list' item='id' open='(' separator=',' close=')'>#{id}</foreach>"
+                        + "</script>", Object.class);
+        config.addMappedStatement(new MappedStatement.Builder(config, "selectPosts", postsSql, SqlCommandType.SELECT)
+                .resultMaps(inlineResultMap("selectPosts-Inline", new ArrayList<ResultMapping>())).build());
+        List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+        mappings.add(new ResultMapping.Builder(config, "id", "id", new StringTypeHandler()).build());
+        mappings.add(new ResultMapping.Builder(config, "posts", "id", List.class).nestedQueryId("selectPosts")
+                .foreignColumn("author_id").batch(true).build());
+        selectAuthors = new MappedStatement.Builder(config, "selectAuthors",
+                new StaticSqlSource(config, "select id from author", new ArrayList<ParameterMapping>()),
+                SqlCommandType.SELECT).resultMaps(inlineResultMap("selectAuthors-Inline", mappings)).build();
+        config.addMappedStatement(selectAuthors);
+    }
+
+    @Test
+    public void shouldLoadChildrenOfAllParentsInChunks() throws Exception {
+        config.setNestedSelectBatchSize(2);
+        jdbc.results.add(new Object[][] { { "id" }, { "1" }, { "2" }, { "3" } });
+        jdbc.results.add(new Object[][] { { "author_id", "title" }, { "2", "b" }, { "1", "a1" }, { "1", "a2" } });
+        jdbc.results.add(new Object[][] { { "author_id", "title" } });
+        List<Map<String, Object>> authors = executor.query(selectAuthors, null, RowBounds.DEFAULT,
+                Executor.NO_RESULT_HANDLER);
+        assertEquals(Arrays.asList("select id from author -> []",
+                "select author_id, title from post where author_id in (  ? , ? ) -> [1, 2]",
+                "select author_id, title from post where author_id in (  ? ) -> [3]"), jdbc.executed);
+        assertEquals(Arrays.asList(post("1", "a1"), post("1", "a2")), authors.get(0).get("posts"));
+        assertEquals(Arrays.asList(post("2", "b")), authors.get(1).get("posts"));
+        assertEquals(new ArrayList<Object>(), authors.get(2).get("posts"));
+    }
+
+    @Test
+    public void shouldQueryKeysAgainAfterFailedChunk() throws Exception {
+        config.setNestedSelectBatchSize(2);
+        MappedStatement selectPosts = config.getMappedStatement("selectPosts");
+        BatchResultLoader.Batch batch = new BatchResultLoader.Batch(config, selectPosts,
+                selectAuthors.getResultMaps().get(0).getPropertyResultMappings().get(1));
+        BatchResultLoader first = new BatchResultLoader(config, executor, selectPosts, List.class, batch, "1");
+        new BatchResultLoader(config, executor, selectPosts, List.class, batch, "2");
+        BatchResultLoader third = new BatchResultLoader(config, executor, selectPosts, List.class, batch, "3");
+        jdbc.failure = new SQLException("connection reset", "08S01");
+        try {
+            first.loadResult();
+            fail("Expected the nested select to fail");
+        } catch (Exception e) {
+            // expected
+        }
+        jdbc.results.add(new Object[][] { { "author_id", "title" }, { "1", "a" } });
+        jdbc.results.add(new Object[][] { { "author_id", "title" }, { "3", "c" } });
+        assertEquals(Arrays.asList(post("1", "a")), first.loadResult());
+        assertEquals(Arrays.asList(post("3", "c")), third.loadResult());
+        assertEquals(3, jdbc.executed.size());
+    }
+
+    @Test
+    public void shouldMatchKeysOfDifferentNumericTypes() {
+        assertEquals(BatchResultLoader.Batch.normalize(1), BatchResultLoader.Batch.normalize(1L));
+        assertEquals(BatchResultLoader.Batch.normalize(1L), BatchResultLoader.Batch.normalize(new BigDecimal("1.00")));
+        assertEquals(BatchResultLoader.Batch.normalize(0), BatchResultLoader.Batch.normalize(new BigDecimal("0.0")));
+        assertEquals("a", BatchResultLoader.Batch.normalize("a"));
+    }
+
+    private List<ResultMap> inlineResultMap(String id, List<ResultMapping> mappings) {
+        List<ResultMap> resultMaps = new ArrayList<ResultMap>();
+        resultMaps.add(new ResultMap.Builder(config, id, HashMap.class, mappings).build());
+        return resultMaps;
+    }
+
+    private static Map<String, Object> post(String authorId, String title) {
+        Map<String, Object> post = new HashMap<String, Object>();
+        post.put("author_id", authorId);
+        post.put("title", title);
+        return post;
+    }
+
+}
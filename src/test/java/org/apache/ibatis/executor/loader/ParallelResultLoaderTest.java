@@ -0,0 +1,185 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.transaction.routing.ReadWriteSplittingTransaction;
+import org.apache.ibatis.transaction.routing.RoundRobinReplicaSelector;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试同一行的嵌套查询并发执行
+ */
+public class ParallelResultLoaderTest {
+
+    private Configuration config;
+    private RecordingConnection primary;
+    private RecordingConnection replica;
+    private RecordingConnection worker;
+    private ExecutorService pool;
+    private MappedStatement selectOrders;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        primary = new RecordingConnection();
+        replica = new RecordingConnection();
+        worker = new RecordingConnection();
+        pool = Executors.newFixedThreadPool(2);
+        select("selectCustomer", "select name from customer where id = ?", true, new ArrayList<ResultMapping>());
+        select("selectAddress", "select city from address where id = ?", true, new ArrayList<ResultMapping>());
+        List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+        mappings.add(new ResultMapping.Builder(config, "id", "id", new StringTypeHandler()).build());
+        mappings.add(new ResultMapping.Builder(config, "customer", "customer_id", Map.class)
+                .nestedQueryId("selectCustomer").build());
+        mappings.add(new ResultMapping.Builder(config, "address", "address_id", Map.class)
+                .nestedQueryId("selectAddress").build());
+        selectOrders = select("selectOrders", "select id, customer_id, address_id from orders", false, mappings);
+    }
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void shouldRunNestedSelectsOfOneRowConcurrentlyOnReplicas() throws Exception {
+        config.setNestedSelectExecutor(pool);
+        replica.results.add(new Object[][] { { "id", "customer_id", "address_id" }, { "1", "c1", "a1" } });
+        replica.results.add(new Object[][] { { "name" }, { "jim" } });
+        worker.results.add(new Object[][] { { "city" }, { "Paris" } });
+        List<Map<String, Object>> orders = query(splitting(true));
+        assertEquals(Arrays.asList("select id, customer_id, address_id from orders -> []",
+                "select name from customer where id = ? -> [c1]"), replica.executed);
+        assertEquals(Arrays.asList("select city from address where id = ? -> [a1]"), worker.executed);
+        assertTrue(primary.executed.isEmpty());
+        assertEquals(row("name", "jim"), orders.get(0).get("customer"));
+        assertEquals(row("city", "Paris"), orders.get(0).get("address"));
+    }
+
+    @Test
+    public void shouldRunNestedSelectsOnTheSessionConnectionByDefault() throws Exception {
+        primary.results.add(new Object[][] { { "id", "customer_id", "address_id" }, { "1", "c1", "a1" } });
+        primary.results.add(new Object[][] { { "name" }, { "jim" } });
+        primary.results.add(new Object[][] { { "city" }, { "Paris" } });
+        List<Map<String, Object>> orders = query(new JdbcTransaction(primary.connection()));
+        assertEquals(3, primary.executed.size());
+        assertEquals(row("city", "Paris"), orders.get(0).get("address"));
+    }
+
+    @Test
+    public void shouldKeepNestedSelectsInsideTheSessionTransaction() throws Exception {
+        config.setNestedSelectExecutor(pool);
+        primary.results.add(new Object[][] { { "id", "customer_id", "address_id" }, { "1", "c1", "a1" } });
+        primary.results.add(new Object[][] { { "name" }, { "jim" } });
+        primary.results.add(new Object[][] { { "city" }, { "Paris" } });
+        List<Map<String, Object>> orders = query(splitting(false));
+        assertEquals(3, primary.executed.size());
+        assertTrue(replica.executed.isEmpty());
+        assertTrue(worker.executed.isEmpty());
+        assertEquals(row("city", "Paris"), orders.get(0).get("address"));
+    }
+
+    @Test
+    public void shouldFailWhenAConcurrentNestedSelectFails() throws Exception {
+        config.setNestedSelectExecutor(pool);
+        replica.results.add(new Object[][] { { "id", "customer_id", "address_id" }, { "1", "c1", "a1" } });
+        replica.results.add(new Object[][] { { "name" }, { "jim" } });
+        worker.failure = new SQLException("address is unavailable");
+        try {
+            query(splitting(true));
+            fail("Expected the nested select to fail");
+        } catch (SQLException e) {
+            assertEquals("address is unavailable", e.getMessage());
+        }
+    }
+
+    private List<Map<String, Object>> query(Transaction transaction) throws Exception {
+        Executor executor = new SimpleExecutor(config, transaction);
+        return executor.query(selectOrders, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    }
+
+    /**
+     * 读写分离的会话事务 会话的从库连接来自replica 工作线程的从库连接来自worker
+     */
+    private Transaction splitting(boolean autoCommit) {
+        RoundRobinReplicaSelector selector = new RoundRobinReplicaSelector();
+        selector.setReplicas(Arrays.asList(dataSource(replica), dataSource(worker)));
+        return new ReadWriteSplittingTransaction(new JdbcTransaction(primary.connection()), selector, null,
+                autoCommit);
+    }
+
+    private MappedStatement select(String id, String sql, boolean byId, List<ResultMapping> resultMappings) {
+        List<ParameterMapping> parameters = new ArrayList<ParameterMapping>();
+        if (byId) {
+            parameters.add(new ParameterMapping.Builder(config, "id", new StringTypeHandler()).build());
+        }
+        List<ResultMap> resultMaps = new ArrayList<ResultMap>();
+        resultMaps.add(new ResultMap.Builder(config, id + "-Inline", HashMap.class, resultMappings).build());
+        MappedStatement ms = new MappedStatement.Builder(config, id, new StaticSqlSource(config, sql, parameters),
+                SqlCommandType.SELECT).resultMaps(resultMaps).build();
+        config.addMappedStatement(ms);
+        return ms;
+    }
+
+    private static DataSource dataSource(final RecordingConnection jdbc) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[] { DataSource.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return method.getName().equals("getConnection") ? jdbc.connection() : null;
+                    }
+                });
+    }
+
+    private static Map<String, Object> row(String column, Object value) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put(column, value);
+        return row;
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.result;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.executor.result.ColumnarResult.ColumnType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试按列读取查询结果
+ */
+public class ColumnarResultHandlerTest {
+
+    private RecordingConnection jdbc;
+    private SqlSession session;
+
+    @Before
+    public void setup() {
+        Configuration config = new Configuration();
+        jdbc = new RecordingConnection();
+        jdbc.columnTypes.put("id", Types.INTEGER);
+        jdbc.columnTypes.put("total", Types.BIGINT);
+        jdbc.columnTypes.put("ratio", Types.DOUBLE);
+        RecordingConnection.addSelect(config, "selectStats", Map.class);
+        session = jdbc.openSession(config);
+    }
+
+    @Test
+    public void shouldReadNumericColumnsIntoPrimitiveArrays() {
+        Object[][] rows = new Object[101][];
+        rows[0] = new Object[] { "id", "total", "ratio", "name" };
+        for (int i = 1; i < rows.length; i++) {
+            rows[i] = new Object[] { String.valueOf(i), String.valueOf(i * 10000000000L), i % 10 == 0 ? null : "0.5",
+                    "n" + i };
+        }
+        jdbc.results.add(rows);
+        ColumnarResult result = SqlSessionUtil.selectColumns(session, "selectStats", new HashMap<String, Object>());
+        assertEquals(100, result.getRowCount());
+        assertEquals(4, result.getColumnCount());
+        assertEquals(ColumnType.INT, result.getColumnType(0));
+        assertEquals(ColumnType.OBJECT, result.getColumnType(result.getColumnIndex("NAME")));
+        assertEquals(100, result.getInts("id").length);
+        assertEquals(100, result.getInts("id")[99]);
+        assertEquals(1000000000000L, result.getLongs(1)[99]);
+        assertEquals(0.5d, result.getDoubles("ratio")[0], 0d);
+        assertTrue(result.isNull(2, 9));
+        assertFalse(result.isNull(2, 10));
+        assertFalse(result.isNull(0, 9));
+        assertEquals("n7", result.getObjects(3)[6]);
+    }
+
+    @Test
+    public void shouldUseWiderStorageWhenDriverReportsWiderClass() {
+        // MySQL的INT UNSIGNED报告为INTEGER和Long BIGINT UNSIGNED报告为BIGINT和BigInteger
+        jdbc.columnClassNames.put("id", Long.class.getName());
+        jdbc.columnClassNames.put("total", BigInteger.class.getName());
+        jdbc.columnClassNames.put("ratio", BigDecimal.class.getName());
+        jdbc.results.add(new Object[][] { { "id", "total", "ratio" },
+                { "4294967295", "18446744073709551615", "0.1" } });
+        ColumnarResult result = SqlSessionUtil.selectColumns(session, "selectStats");
+        assertEquals(ColumnType.LONG, result.getColumnType(0));
+        assertEquals(ColumnType.OBJECT, result.getColumnType(1));
+        assertEquals(ColumnType.OBJECT, result.getColumnType(2));
+        assertEquals(4294967295L, result.getLongs("id")[0]);
+        assertEquals("18446744073709551615", result.getObjects("total")[0]);
+    }
+
+    @Test
+    public void shouldApplyRowBounds() {
+        jdbc.results.add(new Object[][] { { "id" }, { "1" }, { "2" }, { "3" }, { "4" } });
+        ColumnarResult result = SqlSessionUtil.selectColumns(session, "selectStats", null, new RowBounds(1, 2));
+        assertArrayEquals(new int[] { 2, 3 }, result.getInts(0));
+    }
+
+    @Test(expected = ExecutorException.class)
+    public void shouldRejectMappedRows() {
+        new ColumnarResultHandler().handleResult(new DefaultResultContext<Object>());
+    }
+
+    @Test(expected = ExecutorException.class)
+    public void shouldRejectAccessWithWrongType() {
+        jdbc.results.add(new Object[][] { { "id" }, { "1" } });
+        SqlSessionUtil.selectColumns(session, "selectStats").getLongs("id");
+    }
+
+}
@@ -85,12 +85,12 @@ public class DefaultResultSetHandlerTest {
         final DefaultResultSetHandler fastResultSetHandler = new DefaultResultSetHandler(executor, ms, parameterHandler,
                 resultHandler, boundSql, rowBounds);
         //基于MockitoJUnitRunner以及@mock注解 在执行下面的这些方法的时候就会返回你指定的数据
-        //比如when(rs.getInt("CoLuMn1")).thenReturn(100); 在rs执行getInt方法的时候 就会返回100
+        //比如when(rs.getInt(1)).thenReturn(100); 在rs执行getInt方法的时候 就会返回100 字段按索引读取 名称的大小写保留在结果的key中
         when(stmt.getResultSet()).thenReturn(rs);
         when(rs.getMetaData()).thenReturn(rsmd);
         when(rs.getType()).thenReturn(ResultSet.TYPE_FORWARD_ONLY);
         when(rs.next()).thenReturn(true).thenReturn(false);
-        when(rs.getInt("CoLuMn1")).thenReturn(100);
+        when(rs.getInt(1)).thenReturn(100);
         when(rs.wasNull()).thenReturn(false);
         when(rsmd.getColumnCount()).thenReturn(1);
         when(rsmd.getColumnLabel(1)).thenReturn("CoLuMn1");
@@ -0,0 +1,236 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试延迟映射的结果集合
+ */
+public class LazyResultListTest {
+
+    public static class Author implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        static int created;
+
+        private long id;
+        private String name;
+        private Double score;
+        private Date joined;
+
+        public Author() {
+            created++;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Double getScore() {
+            return score;
+        }
+
+        public void setScore(Double score) {
+            this.score = score;
+        }
+
+        public Date getJoined() {
+            return joined;
+        }
+
+        public void setJoined(Date joined) {
+            this.joined = joined;
+        }
+    }
+
+    /**
+     * 驱动自己的时间类型 只能通过getTimestamp转换成标准类型
+     */
+    static class VendorTimestamp {
+
+        private final String value;
+
+        VendorTimestamp(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    /**
+     * 自定义类型处理器
+     */
+    public static class UpperCaseTypeHandler extends BaseTypeHandler<String> {
+
+        @Override
+        public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType)
+                throws SQLException {
+            ps.setString(i, parameter);
+        }
+
+        @Override
+        public String getNullableResult(ResultSet rs, String columnName) throws SQLException {
+            final String value = rs.getString(columnName);
+            return value == null ? null : value.toUpperCase();
+        }
+
+        @Override
+        public String getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+            final String value = rs.getString(columnIndex);
+            return value == null ? null : value.toUpperCase();
+        }
+
+        @Override
+        public String getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+            final String value = cs.getString(columnIndex);
+            return value == null ? null : value.toUpperCase();
+        }
+    }
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private SqlSession session;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        config.setLazyResultLists(true);
+        jdbc = new RecordingConnection();
+        jdbc.columnTypes.put("id", Types.INTEGER);
+        jdbc.columnTypes.put("score", Types.DOUBLE);
+        RecordingConnection.addSelect(config, "selectAuthors", Author.class);
+        session = jdbc.openSession(config);
+        Author.created = 0;
+    }
+
+    @Test
+    public void shouldMaterializeRowsOnAccess() {
+        jdbc.results.add(new Object[][] { { "id", "name", "score" }, { "1", "jim", "1.5" }, { "2", null, null },
+                { "3", "sam", "2" } });
+        List<Author> authors = session.selectList("selectAuthors");
+        assertTrue((Object) authors instanceof LazyResultList);
+        assertEquals(3, authors.size());
+        assertEquals(0, Author.created);
+        Author second = authors.get(1);
+        assertEquals(1, Author.created);
+        assertEquals(2L, second.getId());
+        assertNull(second.getName());
+        assertNull(second.getScore());
+        assertSame(second, authors.get(1));
+        assertEquals(Double.valueOf(1.5d), authors.get(0).getScore());
+        assertEquals("sam", authors.get(2).getName());
+        assertEquals(3, Author.created);
+    }
+
+    @Test
+    public void shouldMaterializeAgainAfterRelease() {
+        jdbc.results.add(new Object[][] { { "id", "name", "score" }, { "1", "jim", "1.5" } });
+        LazyResultList authors = (LazyResultList) session.<Object> selectList("selectAuthors");
+        Object first = authors.get(0);
+        authors.release();
+        assertNotSame(first, authors.get(0));
+        assertEquals(2, Author.created);
+    }
+
+    @Test
+    public void shouldBehaveAsPlainListOnceModified() throws Exception {
+        jdbc.results.add(new Object[][] { { "id", "name", "score" }, { "1", "jim", "1.5" }, { "2", "tim", "2" },
+                { "3", "sam", "3" } });
+        List<Author> authors = session.selectList("selectAuthors", null, new RowBounds(1, 2));
+        assertEquals(2, authors.size());
+        authors.remove(0);
+        assertTrue(((LazyResultList) (Object) authors).isInflated());
+        assertEquals("sam", authors.get(0).getName());
+    }
+
+    @Test
+    public void shouldBufferVendorTimestampsAsStandardTypes() {
+        jdbc.columnTypes.put("joined", Types.TIMESTAMP);
+        jdbc.results.add(new Object[][] { { "id", "joined" }, { "1", new VendorTimestamp("2020-01-02 03:04:05") } });
+        List<Author> authors = session.selectList("selectAuthors");
+        assertTrue((Object) authors instanceof LazyResultList);
+        assertEquals(Timestamp.valueOf("2020-01-02 03:04:05").getTime(), authors.get(0).getJoined().getTime());
+    }
+
+    @Test
+    public void shouldMapEagerlyWithCustomTypeHandler() {
+        ResultMap resultMap = new ResultMap.Builder(config, "upperCaseAuthor", Author.class,
+                Collections.singletonList(
+                        new ResultMapping.Builder(config, "name", "name", new UpperCaseTypeHandler()).build()))
+                .build();
+        RecordingConnection.addSelect(config, "selectUpperCaseAuthors", resultMap);
+        jdbc.results.add(new Object[][] { { "id", "name" }, { "1", "jim" } });
+        List<Author> authors = session.selectList("selectUpperCaseAuthors");
+        assertFalse((Object) authors instanceof LazyResultList);
+        assertEquals("JIM", authors.get(0).getName());
+    }
+
+    @Test
+    public void shouldSerializeAsArrayList() throws Exception {
+        jdbc.results.add(new Object[][] { { "id", "name", "score" }, { "1", "jim", "1.5" } });
+        List<Object> authors = session.selectList("selectAuthors");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ObjectOutputStream(bytes).writeObject(authors);
+        Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(ArrayList.class, copy.getClass());
+        assertEquals("jim", ((Author) ((List<?>) copy).get(0)).getName());
+    }
+
+}
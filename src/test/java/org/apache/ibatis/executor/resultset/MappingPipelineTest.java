@@ -0,0 +1,185 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.session.ConcurrentResultHandler;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试并行映射结果对象
+ */
+public class MappingPipelineTest {
+
+    public static class Item {
+
+        private int id;
+        private String name;
+        private String mappedBy;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            if ("broken".equals(name)) {
+                throw new IllegalArgumentException("cannot map " + name);
+            }
+            this.name = name;
+            this.mappedBy = Thread.currentThread().getName();
+        }
+
+        public String getMappedBy() {
+            return mappedBy;
+        }
+    }
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private SqlSession session;
+    private ExecutorService pool;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        config.setMappingParallelism(3);
+        config.setMappingBatchSize(2);
+        pool = Executors.newFixedThreadPool(3);
+        config.setMappingExecutor(pool);
+        jdbc = new RecordingConnection();
+        jdbc.columnTypes.put("id", Types.INTEGER);
+        RecordingConnection.addSelect(config, "selectItems", Item.class);
+        session = jdbc.openSession(config);
+    }
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void addItems(int count) {
+        Object[][] rows = new Object[count + 1][];
+        rows[0] = new Object[] { "id", "name" };
+        for (int i = 1; i <= count; i++) {
+            rows[i] = new Object[] { String.valueOf(i), "item" + i };
+        }
+        jdbc.results.add(rows);
+    }
+
+    @Test
+    public void shouldKeepOrderOfSelectList() {
+        addItems(9);
+        List<Item> items = session.selectList("selectItems");
+        assertEquals(9, items.size());
+        boolean mappedByWorker = false;
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(i + 1, items.get(i).getId());
+            assertEquals("item" + (i + 1), items.get(i).getName());
+            mappedByWorker |= !Thread.currentThread().getName().equals(items.get(i).getMappedBy());
+        }
+        assertTrue(mappedByWorker);
+    }
+
+    @Test
+    public void shouldApplyRowBounds() {
+        addItems(9);
+        List<Item> items = session.selectList("selectItems", null, new RowBounds(2, 5));
+        assertEquals(5, items.size());
+        assertEquals(3, items.get(0).getId());
+        assertEquals(7, items.get(4).getId());
+    }
+
+    @Test
+    public void shouldMapSingleBatchOnCallingThread() {
+        addItems(1);
+        List<Item> items = session.selectList("selectItems");
+        assertEquals(1, items.size());
+        assertEquals(Thread.currentThread().getName(), items.get(0).getMappedBy());
+    }
+
+    @Test
+    public void shouldStopOrderedHandler() {
+        addItems(9);
+        final List<Integer> ids = new ArrayList<Integer>();
+        session.select("selectItems", new ResultHandler<Item>() {
+            @Override
+            public void handleResult(ResultContext<? extends Item> context) {
+                ids.add(context.getResultObject().getId());
+                if (context.getResultCount() == 4) {
+                    context.stop();
+                }
+            }
+        });
+        assertEquals(Arrays.asList(1, 2, 3, 4), ids);
+    }
+
+    @Test
+    public void shouldDeliverToConcurrentHandler() {
+        addItems(9);
+        final Set<Integer> ids = Collections.synchronizedSet(new HashSet<Integer>());
+        session.select("selectItems", new ConcurrentResultHandler<Item>() {
+            @Override
+            public void handleResult(ResultContext<? extends Item> context) {
+                ids.add(context.getResultObject().getId());
+            }
+        });
+        assertEquals(9, ids.size());
+    }
+
+    @Test
+    public void shouldPropagateMappingErrors() {
+        jdbc.results.add(new Object[][] { { "id", "name" }, { "1", "a" }, { "2", "b" }, { "3", "broken" },
+                { "4", "c" }, { "5", "d" } });
+        try {
+            session.selectList("selectItems");
+            fail();
+        } catch (RuntimeException e) {
+            Throwable cause = e;
+            while (cause.getCause() != null && !(cause instanceof IllegalArgumentException)) {
+                cause = cause.getCause();
+            }
+            assertEquals("cannot map broken", cause.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试结果集元数据缓存
+ */
+public class ResultSetMetadataCacheTest {
+
+    public static class Author {
+
+        private int id;
+        private String name;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        jdbc = new RecordingConnection();
+    }
+
+    @Test
+    public void shouldShareLayoutWhileColumnsMatch() throws Exception {
+        Object[][] rows = { { "id", "name" } };
+        ResultSetWrapper first = new ResultSetWrapper(jdbc.resultSet(rows), config, "select#0");
+        ResultSetWrapper second = new ResultSetWrapper(jdbc.resultSet(rows), config, "select#0");
+        assertSame(first.getColumnNames(), second.getColumnNames());
+        assertSame(first.getTypeHandler(Integer.class, "id"), second.getTypeHandler(Integer.class, "id"));
+
+        ResultSetWrapper changed = new ResultSetWrapper(jdbc.resultSet(new Object[][] { { "name", "id" } }), config,
+                "select#0");
+        assertNotSame(first.getColumnNames(), changed.getColumnNames());
+        assertEquals(1, changed.getColumnIndex("name"));
+        assertEquals(1, config.getResultSetMetadataCache().size());
+    }
+
+    @Test
+    public void shouldNotShareLayoutWithoutKey() throws Exception {
+        Object[][] rows = { { "id", "name" } };
+        assertNotSame(new ResultSetWrapper(jdbc.resultSet(rows), config).getColumnNames(),
+                new ResultSetWrapper(jdbc.resultSet(rows), config).getColumnNames());
+        assertEquals(0, config.getResultSetMetadataCache().size());
+    }
+
+    @Test
+    public void shouldReuseAutomappingAcrossExecutions() throws Exception {
+        config.setCacheResultSetMetadata(true);
+        List<ResultMap> resultMaps = new ArrayList<ResultMap>();
+        resultMaps.add(new ResultMap.Builder(config, "author", Author.class, new ArrayList<ResultMapping>()).build());
+        MappedStatement ms = new MappedStatement.Builder(config, "selectAuthors",
+                new StaticSqlSource(config, "select * from author", new ArrayList<ParameterMapping>()),
+                SqlCommandType.SELECT).resultMaps(resultMaps).build();
+        jdbc.results.add(new Object[][] { { "id", "name" }, { "1", "jim" } });
+        jdbc.results.add(new Object[][] { { "id", "name" }, { "2", "tim" } });
+        jdbc.results.add(new Object[][] { { "name", "id" }, { "sam", "3" } });
+        Executor executor = new SimpleExecutor(config, new JdbcTransaction(jdbc.connection()));
+        List<Author> authors = new ArrayList<Author>();
+        for (int i = 0; i < 3; i++) {
+            authors.addAll(executor.<Author> query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER));
+            executor.clearLocalCache();
+        }
+        assertEquals(3, authors.size());
+        assertEquals("tim", authors.get(1).getName());
+        assertEquals(3, authors.get(2).getId());
+        assertEquals("sam", authors.get(2).getName());
+        assertEquals(1, config.getResultSetMetadataCache().size());
+    }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.AutoMappingBehavior;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试结果映射按字段索引读取
+ */
+public class ResultSetWrapperColumnIndexTest {
+
+    public static class Author {
+
+        private int id;
+        private String name;
+        private String bio;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getBio() {
+            return bio;
+        }
+
+        public void setBio(String bio) {
+            this.bio = bio;
+        }
+    }
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private ResultMap resultMap;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        jdbc = new RecordingConnection();
+        List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+        mappings.add(new ResultMapping.Builder(config, "id", "ID", new IntegerTypeHandler()).build());
+        mappings.add(new ResultMapping.Builder(config, "name", "Name", new StringTypeHandler()).build());
+        resultMap = new ResultMap.Builder(config, "author", Author.class, mappings).build();
+    }
+
+    @Test
+    public void shouldResolveColumnIndexIgnoringCase() throws Exception {
+        ResultSetWrapper rsw = new ResultSetWrapper(
+                jdbc.resultSet(new Object[][] { { "id", "name", "NAME" } }), config);
+        assertEquals(1, rsw.getColumnIndex("ID"));
+        assertEquals(2, rsw.getColumnIndex("Name"));
+        assertEquals(0, rsw.getColumnIndex("bio"));
+    }
+
+    @Test
+    public void shouldResolvePropertyColumnIndexesPerPrefix() throws Exception {
+        ResultSetWrapper rsw = new ResultSetWrapper(
+                jdbc.resultSet(new Object[][] { { "a_name", "id", "A_ID" } }), config);
+        assertArrayEquals(new int[] { 2, 0 }, rsw.getPropertyColumnIndexes(resultMap, null));
+        assertArrayEquals(new int[] { 3, 1 }, rsw.getPropertyColumnIndexes(resultMap, "a_"));
+        assertSame(rsw.getPropertyColumnIndexes(resultMap, "a_"), rsw.getPropertyColumnIndexes(resultMap, "a_"));
+    }
+
+    @Test
+    public void shouldReadMappedAndAutomappedColumnsByIndex() throws Exception {
+        config.setAutoMappingBehavior(AutoMappingBehavior.FULL);
+        List<ResultMap> resultMaps = new ArrayList<ResultMap>();
+        resultMaps.add(resultMap);
+        MappedStatement ms = new MappedStatement.Builder(config, "selectAuthors",
+                new StaticSqlSource(config, "select * from author", new ArrayList<ParameterMapping>()),
+                SqlCommandType.SELECT).resultMaps(resultMaps).build();
+        // 假结果集按名称读取时大小写敏感 只有按索引读取才能取到值
+        jdbc.results.add(new Object[][] { { "id", "name", "BIO" }, { "1", "jim", "writer" } });
+        Executor executor = new SimpleExecutor(config, new JdbcTransaction(jdbc.connection()));
+        List<Author> authors = executor.query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        assertEquals(1, authors.size());
+        assertEquals(1, authors.get(0).getId());
+        assertEquals("jim", authors.get(0).getName());
+        assertEquals("writer", authors.get(0).getBio());
+    }
+
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.Test;
+
+/**
+ * 测试共享字段名称索引的RowMap
+ */
+public class RowMapTest {
+
+    private RowMap newRowMap(String... columns) {
+        return new RowMap(new RowMap.Keys(Arrays.asList(columns)));
+    }
+
+    @Test
+    public void shouldBehaveLikeHashMap() throws Exception {
+        RowMap row = newRowMap("ID", "NAME", "SCORE");
+        row.put("ID", 1);
+        row.put("NAME", null);
+        row.put("extra", "x");
+        Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put("ID", 1);
+        expected.put("NAME", null);
+        expected.put("extra", "x");
+        assertEquals(expected, row);
+        assertEquals(row, expected);
+        assertEquals(expected.hashCode(), row.hashCode());
+        assertEquals(3, row.size());
+        assertTrue(row.containsKey("NAME"));
+        assertFalse(row.containsKey("SCORE"));
+        assertNull(row.get("SCORE"));
+        assertEquals(1, row.remove("ID"));
+        assertFalse(row.containsKey("ID"));
+        assertEquals(2, row.size());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(row);
+        out.close();
+        Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertTrue(copy instanceof HashMap);
+        assertEquals(row, copy);
+    }
+
+    @Test
+    public void shouldUseExactKeysLikeHashMap() {
+        RowMap row = newRowMap("ID", "NAME");
+        row.put("ID", 7);
+        row.put("NAME", "jim");
+        assertNull(row.get("id"));
+        assertFalse(row.containsKey("id"));
+        assertFalse(row.keySet().contains("id"));
+        // 大小写不同的key是另一个key
+        row.put("id", 8);
+        assertEquals(8, row.get("id"));
+        assertEquals(7, row.get("ID"));
+        assertEquals(3, row.size());
+        assertEquals(8, row.remove("id"));
+        assertEquals(7, row.get("ID"));
+    }
+
+    @Test
+    public void shouldKeepEqualsSymmetric() {
+        RowMap row = newRowMap("id", "name");
+        row.put("id", 1);
+        row.put("name", "jim");
+        Map<String, Object> upperCase = new HashMap<String, Object>();
+        upperCase.put("ID", 1);
+        upperCase.put("NAME", "jim");
+        assertFalse(row.equals(upperCase));
+        assertFalse(upperCase.equals(row));
+        Map<String, Object> same = new HashMap<String, Object>(row);
+        assertTrue(row.equals(same));
+        assertTrue(same.equals(row));
+        assertEquals(same.hashCode(), row.hashCode());
+    }
+
+    @Test
+    public void shouldRemoveColumnsFoundByContainsKey() {
+        RowMap row = newRowMap("ID", "NAME");
+        row.put("ID", 7);
+        row.put("extra", "x");
+        for (String key : new String[] { "ID", "extra", "NAME", "id" }) {
+            boolean contained = row.containsKey(key);
+            assertEquals(contained, row.keySet().contains(key));
+            Object value = row.get(key);
+            assertEquals(value, row.remove(key));
+            assertFalse(row.containsKey(key));
+            assertNull(row.get(key));
+        }
+        assertTrue(row.isEmpty());
+    }
+
+    @Test
+    public void shouldWriteThroughEntries() {
+        RowMap row = newRowMap("A", "B");
+        row.put("B", "b");
+        row.put("C", "c");
+        Iterator<Map.Entry<String, Object>> it = row.entrySet().iterator();
+        Map.Entry<String, Object> first = it.next();
+        assertEquals("B", first.getKey());
+        first.setValue("bb");
+        assertEquals("bb", row.get("B"));
+        assertEquals("C", it.next().getKey());
+        assertFalse(it.hasNext());
+        it.remove();
+        assertEquals(Collections.singletonMap("B", (Object) "bb"), row);
+    }
+
+    @Test
+    public void shouldShareKeysAcrossRowsForMapResults() {
+        Configuration config = new Configuration();
+        RecordingConnection jdbc = new RecordingConnection();
+        RecordingConnection.addSelect(config, "selectMaps", Map.class);
+        RecordingConnection.addSelect(config, "selectHashMaps", HashMap.class);
+        SqlSession session = jdbc.openSession(config);
+        jdbc.results.add(new Object[][] { { "ID", "NAME" }, { "1", "jim" }, { "2", "sam" } });
+        List<Map<String, Object>> rows = session.selectList("selectMaps");
+        assertEquals(2, rows.size());
+        assertTrue(rows.get(0) instanceof RowMap);
+        assertEquals("2", rows.get(1).get("ID"));
+        assertEquals("sam", rows.get(1).get("NAME"));
+
+        jdbc.results.add(new Object[][] { { "ID", "NAME" }, { "1", "jim" } });
+        rows = session.selectList("selectHashMaps");
+        assertTrue(rows.get(0) instanceof HashMap);
+
+        config.setCompactRowMaps(false);
+        session.clearCache();
+        jdbc.results.add(new Object[][] { { "ID", "NAME" }, { "1", "jim" } });
+        rows = session.selectList("selectMaps");
+        assertTrue(rows.get(0) instanceof HashMap);
+        assertEquals("1", rows.get(0).get("ID"));
+    }
+
+    @Test
+    public void shouldUseHashMapWhenKeysAreNotColumnNames() {
+        Configuration config = new Configuration();
+        RecordingConnection jdbc = new RecordingConnection();
+        RecordingConnection.addSelect(config, "selectSameNames", new ResultMap.Builder(config, "sameNames", Map.class,
+                Collections.singletonList(new ResultMapping.Builder(config, "NAME", "NAME", String.class).build()))
+                .build());
+        RecordingConnection.addSelect(config, "selectRenamed", new ResultMap.Builder(config, "renamed", Map.class,
+                Collections.singletonList(new ResultMapping.Builder(config, "userName", "NAME", String.class).build()))
+                .build());
+        SqlSession session = jdbc.openSession(config);
+        jdbc.results.add(new Object[][] { { "ID", "NAME" }, { "1", "jim" } });
+        List<Map<String, Object>> rows = session.selectList("selectSameNames");
+        assertTrue(rows.get(0) instanceof RowMap);
+
+        jdbc.results.add(new Object[][] { { "ID", "NAME" }, { "1", "jim" } });
+        rows = session.selectList("selectRenamed");
+        assertTrue(rows.get(0) instanceof HashMap);
+        assertEquals("jim", rows.get(0).get("userName"));
+        assertEquals("1", rows.get(0).get("ID"));
+    }
+
+}
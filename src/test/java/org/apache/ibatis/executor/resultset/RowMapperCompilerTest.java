@@ -0,0 +1,173 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试生成的行映射器
+ */
+public class RowMapperCompilerTest {
+
+    public static class Author {
+
+        private int id;
+        private String name = "unnamed";
+        private String userName;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public void setUserName(String userName) {
+            this.userName = userName;
+        }
+    }
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private ResultMap resultMap;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        config.setMapUnderscoreToCamelCase(true);
+        jdbc = new RecordingConnection();
+        List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+        mappings.add(new ResultMapping.Builder(config, "id", "author_id", new IntegerTypeHandler()).build());
+        resultMap = new ResultMap.Builder(config, "author", Author.class, mappings).build();
+    }
+
+    @Test
+    public void shouldMapColumnsByIndexThroughGeneratedClass() throws Exception {
+        ResultSet rs = jdbc.resultSet(new Object[][] { { "name", "author_id", "user_name" }, { "jim", "7", "j" } });
+        RowMapper rowMapper = compiler().getRowMapper(new ResultSetWrapper(rs, config), resultMap);
+        assertTrue(rowMapper.getClass().getName().startsWith(Author.class.getName() + "$$RowMapper$$"));
+        rs.next();
+        Author author = (Author) rowMapper.map(rs);
+        assertEquals(7, author.getId());
+        assertEquals("jim", author.getName());
+        assertEquals("j", author.getUserName());
+    }
+
+    @Test
+    public void shouldReuseMapperForSameColumnLayout() throws Exception {
+        Object[][] rows = { { "author_id", "name" }, { "1", "jim" } };
+        RowMapperCompiler compiler = compiler();
+        assertSame(compiler.getRowMapper(new ResultSetWrapper(jdbc.resultSet(rows), config), resultMap),
+                compiler.getRowMapper(new ResultSetWrapper(jdbc.resultSet(rows), config), resultMap));
+    }
+
+    @Test
+    public void shouldDefineMappersInDiscardableClassLoaders() throws Exception {
+        Object[][] rows = { { "author_id", "name" }, { "1", "jim" } };
+        RowMapper rowMapper = compiler().getRowMapper(new ResultSetWrapper(jdbc.resultSet(rows), config), resultMap);
+        ClassLoader classLoader = rowMapper.getClass().getClassLoader();
+        assertNotSame(Author.class.getClassLoader(), classLoader);
+        assertSame(Author.class.getClassLoader(), classLoader.getParent());
+    }
+
+    @Test
+    public void shouldStopCachingLayoutsAfterLimit() throws Exception {
+        RowMapperCompiler compiler = compiler();
+        for (int i = 0; i < RowMapperCompiler.MAX_LAYOUTS_PER_RESULT_MAP; i++) {
+            Object[][] rows = { { "author_id", "extra_" + i } };
+            assertNull(compiler.getRowMapper(new ResultSetWrapper(jdbc.resultSet(rows), config), resultMap));
+        }
+        Object[][] rows = { { "author_id", "name" } };
+        assertNull(compiler.getRowMapper(new ResultSetWrapper(jdbc.resultSet(rows), config), resultMap));
+        assertNotNull(compiler().getRowMapper(new ResultSetWrapper(jdbc.resultSet(rows), config), resultMap));
+    }
+
+    @Test
+    public void shouldHonourNullHandlingSettings() throws Exception {
+        Object[][] rows = { { "author_id", "name" }, { null, null } };
+        ResultSet rs = jdbc.resultSet(rows);
+        rs.next();
+        assertNull(compiler().getRowMapper(new ResultSetWrapper(rs, config), resultMap).map(rs));
+        config.setCallSettersOnNulls(true);
+        config.setReturnInstanceForEmptyRow(true);
+        rs = jdbc.resultSet(rows);
+        rs.next();
+        Author author = (Author) compiler().getRowMapper(new ResultSetWrapper(rs, config), resultMap).map(rs);
+        assertNull(author.getName());
+        assertEquals(0, author.getId());
+    }
+
+    @Test
+    public void shouldNotGenerateMapperForUnknownColumns() throws Exception {
+        ResultSet rs = jdbc.resultSet(new Object[][] { { "author_id", "nickname" }, { "1", "jj" } });
+        assertNull(compiler().getRowMapper(new ResultSetWrapper(rs, config), resultMap));
+    }
+
+    @Test
+    public void shouldUseGeneratedMapperWhenEnabled() throws Exception {
+        config.setCompileRowMappers(true);
+        List<ResultMap> resultMaps = new ArrayList<ResultMap>();
+        resultMaps.add(resultMap);
+        MappedStatement ms = new MappedStatement.Builder(config, "selectAuthors",
+                new StaticSqlSource(config, "select * from author", new ArrayList<ParameterMapping>()),
+                SqlCommandType.SELECT).resultMaps(resultMaps).build();
+        jdbc.results.add(new Object[][] { { "author_id", "name" }, { "1", "jim" }, { "2", null } });
+        Executor executor = new SimpleExecutor(config, new JdbcTransaction(jdbc.connection()));
+        List<Author> authors = executor.query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        assertEquals(2, authors.size());
+        assertEquals("jim", authors.get(0).getName());
+        assertEquals(2, authors.get(1).getId());
+        assertEquals("unnamed", authors.get(1).getName());
+    }
+
+    private RowMapperCompiler compiler() {
+        return new RowMapperCompiler(config);
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultFlag;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.Test;
+
+/**
+ * 测试单个id字段的行键
+ */
+public class SimpleRowKeyTest {
+
+    @Test
+    public void shouldCompareResultMapAndValue() {
+        assertEquals(SimpleRowKey.of("blog", "id", 1L), SimpleRowKey.of("blog", "id", 1L));
+        assertEquals(SimpleRowKey.of("blog", "id", 1L).hashCode(), SimpleRowKey.of("blog", "id", 1L).hashCode());
+        assertEquals(SimpleRowKey.of("blog", "id", "a"), SimpleRowKey.of("blog", "id", "a"));
+        assertFalse(SimpleRowKey.of("blog", "id", 1L).equals(SimpleRowKey.of("post", "id", 1L)));
+        assertFalse(SimpleRowKey.of("blog", "id", 1L).equals(SimpleRowKey.of("blog", "id", 2L)));
+        assertFalse(SimpleRowKey.of("blog", "id", 0L).equals(SimpleRowKey.of("blog", "id", "0")));
+        assertFalse(SimpleRowKey.of("user", "author_id", 1L).equals(SimpleRowKey.of("user", "editor_id", 1L)));
+    }
+
+    @Test
+    public void shouldKeepAssociationsWithDifferentPrefixesApart() throws Exception {
+        Configuration config = new Configuration();
+        List<ResultMapping> userMappings = new ArrayList<ResultMapping>();
+        userMappings.add(new ResultMapping.Builder(config, "id", "id", new IntegerTypeHandler())
+                .flags(Collections.singletonList(ResultFlag.ID)).build());
+        userMappings.add(new ResultMapping.Builder(config, "name", "name", new StringTypeHandler()).build());
+        config.addResultMap(new ResultMap.Builder(config, "user", HashMap.class, userMappings).build());
+        List<ResultMapping> blogMappings = new ArrayList<ResultMapping>();
+        blogMappings.add(new ResultMapping.Builder(config, "id", "blog_id", new IntegerTypeHandler())
+                .flags(Collections.singletonList(ResultFlag.ID)).build());
+        blogMappings.add(new ResultMapping.Builder(config, "author").javaType(Map.class).nestedResultMapId("user")
+                .columnPrefix("author_").build());
+        blogMappings.add(new ResultMapping.Builder(config, "editor").javaType(Map.class).nestedResultMapId("user")
+                .columnPrefix("editor_").build());
+        ResultMap blog = new ResultMap.Builder(config, "blog", HashMap.class, blogMappings).build();
+        config.addResultMap(blog);
+        MappedStatement ms = new MappedStatement.Builder(config, "selectBlogs",
+                new StaticSqlSource(config, "select * from blog", new ArrayList<ParameterMapping>()),
+                SqlCommandType.SELECT).resultMaps(Collections.singletonList(blog)).build();
+        RecordingConnection jdbc = new RecordingConnection();
+        jdbc.results.add(new Object[][] { { "blog_id", "author_id", "author_name", "editor_id", "editor_name" },
+                { "1", "7", "jim", "7", "jim" } });
+        List<Map<String, Object>> blogs = new SimpleExecutor(config, new JdbcTransaction(jdbc.connection()))
+                .query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        assertEquals(1, blogs.size());
+        assertNotNull(blogs.get(0).get("author"));
+        assertNotNull(blogs.get(0).get("editor"));
+        assertEquals("jim", ((Map<?, ?>) blogs.get(0).get("editor")).get("name"));
+    }
+
+    @Test
+    public void shouldCombineWithParentKeys() {
+        CacheKey parent = new CacheKey(new Object[] { "blog", "id", 1 });
+        SimpleRowKey post = SimpleRowKey.of("post", "id", 10L);
+        assertEquals(2, post.getUpdateCount());
+        assertEquals(3, post.withParent(parent).getUpdateCount());
+        assertEquals(post.withParent(parent), SimpleRowKey.of("post", "id", 10L)
+                .withParent(new CacheKey(new Object[] { "blog", "id", 1 })));
+        assertFalse(post.withParent(parent).equals(post.withParent(SimpleRowKey.of("blog", "id", 1L))));
+        assertFalse(post.equals(post.withParent(parent)));
+    }
+
+    @Test(expected = CacheException.class)
+    public void shouldNotAllowUpdates() {
+        SimpleRowKey.of("blog", "id", 1L).update("id");
+    }
+
+}
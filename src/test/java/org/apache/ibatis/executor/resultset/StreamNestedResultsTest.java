@@ -0,0 +1,241 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultFlag;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试按父对象id流式输出嵌套结果
+ */
+public class StreamNestedResultsTest {
+
+    public static class Blog {
+
+        private Integer id;
+        private List<Post> posts;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public List<Post> getPosts() {
+            return posts;
+        }
+
+        public void setPosts(List<Post> posts) {
+            this.posts = posts;
+        }
+    }
+
+    public static class Tag {
+
+        private String name;
+        private List<Post> posts;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<Post> getPosts() {
+            return posts;
+        }
+
+        public void setPosts(List<Post> posts) {
+            this.posts = posts;
+        }
+    }
+
+    public static class Post {
+
+        private Integer id;
+        private List<Comment> comments;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public List<Comment> getComments() {
+            return comments;
+        }
+
+        public void setComments(List<Comment> comments) {
+            this.comments = comments;
+        }
+    }
+
+    public static class Comment {
+
+        private Integer id;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+    }
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private MappedStatement ms;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        config.setStreamNestedResults(true);
+        jdbc = new RecordingConnection();
+        config.addResultMap(resultMap("comment", Comment.class, "comment_id", null, null));
+        config.addResultMap(resultMap("post", Post.class, "post_id", "comments", "comment"));
+        ResultMap blog = resultMap("blog", Blog.class, "blog_id", "posts", "post");
+        config.addResultMap(blog);
+        ms = new MappedStatement.Builder(config, "selectBlogs",
+                new StaticSqlSource(config, "select * from blog", new ArrayList<ParameterMapping>()),
+                SqlCommandType.SELECT).resultMaps(Collections.singletonList(blog)).build();
+    }
+
+    @Test
+    public void shouldEmitCompletedParentsWhenIdChanges() throws Exception {
+        jdbc.results.add(new Object[][] { { "blog_id", "post_id", "comment_id" }, { "1", "10", "100" },
+                { "1", "10", "101" }, { "1", "11", "102" }, { "2", "20", "200" }, { "3", "30", "300" },
+                { "3", "30", "301" } });
+        final List<Blog> blogs = new ArrayList<Blog>();
+        final List<Integer> commentCounts = new ArrayList<Integer>();
+        executor().query(ms, null, RowBounds.DEFAULT, new ResultHandler<Blog>() {
+            @Override
+            public void handleResult(ResultContext<? extends Blog> context) {
+                Blog blog = context.getResultObject();
+                blogs.add(blog);
+                int comments = 0;
+                for (Post post : blog.getPosts()) {
+                    comments += post.getComments().size();
+                }
+                commentCounts.add(comments);
+            }
+        });
+        assertEquals(3, blogs.size());
+        assertEquals(2, blogs.get(0).getPosts().size());
+        assertEquals(2, blogs.get(0).getPosts().get(0).getComments().size());
+        assertEquals(Integer.valueOf(3), commentCounts.get(0));
+        assertEquals(Integer.valueOf(1), commentCounts.get(1));
+        assertEquals(Integer.valueOf(2), commentCounts.get(2));
+    }
+
+    @Test
+    public void shouldAcceptDescendingOrder() throws Exception {
+        jdbc.results.add(new Object[][] { { "blog_id", "post_id", "comment_id" }, { "3", "30", "300" },
+                { "2", "20", "200" }, { "1", "10", "100" } });
+        List<Blog> blogs = executor().query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        assertEquals(3, blogs.size());
+        assertEquals(Integer.valueOf(1), blogs.get(2).getId());
+    }
+
+    @Test
+    public void shouldAcceptParentsOrderedByOtherColumns() throws Exception {
+        // order by b.created_at, b.id
+        jdbc.results.add(new Object[][] { { "blog_id", "post_id", "comment_id" }, { "2", "20", "200" },
+                { "2", "21", "201" }, { "1", "10", "100" }, { "3", "30", "300" } });
+        List<Blog> blogs = executor().query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        assertEquals(3, blogs.size());
+        assertEquals(Integer.valueOf(2), blogs.get(0).getId());
+        assertEquals(2, blogs.get(0).getPosts().size());
+    }
+
+    @Test
+    public void shouldDetectParentsThatAreNotContiguous() throws Exception {
+        jdbc.results.add(new Object[][] { { "blog_id", "post_id", "comment_id" }, { "1", "10", "100" },
+                { "2", "20", "200" }, { "1", "11", "101" } });
+        try {
+            executor().query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+            fail("Should have thrown ExecutorException");
+        } catch (ExecutorException e) {
+            assertTrue(e.getMessage().contains("not grouped by the id columns of result map 'blog'"));
+        }
+    }
+
+    @Test
+    public void shouldAcceptStringIdsInCollationOrder() throws Exception {
+        List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+        mappings.add(new ResultMapping.Builder(config, "name", "tag_name", new StringTypeHandler())
+                .flags(Collections.singletonList(ResultFlag.ID)).build());
+        mappings.add(new ResultMapping.Builder(config, "posts").javaType(List.class).nestedResultMapId("post").build());
+        ResultMap tag = new ResultMap.Builder(config, "tag", Tag.class, mappings).build();
+        config.addResultMap(tag);
+        MappedStatement selectTags = new MappedStatement.Builder(config, "selectTags",
+                new StaticSqlSource(config, "select * from tag order by tag_name", new ArrayList<ParameterMapping>()),
+                SqlCommandType.SELECT).resultMaps(Collections.singletonList(tag)).build();
+        // 不区分大小写的排序规则
+        jdbc.results.add(new Object[][] { { "tag_name", "post_id", "comment_id" }, { "a", "10", "100" },
+                { "B", "20", "200" }, { "c", "30", "300" }, { "c", "30", "301" } });
+        List<Tag> tags = executor().query(selectTags, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        assertEquals(3, tags.size());
+        assertEquals("B", tags.get(1).getName());
+        assertEquals(2, tags.get(2).getPosts().get(0).getComments().size());
+    }
+
+    private Executor executor() {
+        return new SimpleExecutor(config, new JdbcTransaction(jdbc.connection()));
+    }
+
+    private ResultMap resultMap(String id, Class<?> type, String idColumn, String property, String nestedId) {
+        List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+        mappings.add(new ResultMapping.Builder(config, "id", idColumn, new IntegerTypeHandler())
+                .flags(Collections.singletonList(ResultFlag.ID)).build());
+        if (property != null) {
+            mappings.add(new ResultMapping.Builder(config, property).javaType(List.class).nestedResultMapId(nestedId)
+                    .build());
+        }
+        return new ResultMap.Builder(config, id, type, mappings).build();
+    }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.sql.Types;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试结果集内的值去重
+ */
+public class ValueDeduplicationTest {
+
+    public static class Account {
+
+        private int code;
+        private String status;
+        private String name;
+
+        public int getCode() {
+            return code;
+        }
+
+        public void setCode(int code) {
+            this.code = code;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class Tenant {
+
+        private final Integer tenantId;
+
+        public Tenant(Integer tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        public Integer getTenantId() {
+            return tenantId;
+        }
+    }
+
+    private static final String MAPPER = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+            + "<!DOCTYPE mapper PUBLIC \"-//mybatis.org//DTD Mapper 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-mapper.dtd\">\n"
+            + "<mapper namespace=\"accounts\">\n"
+            + "  <resultMap id=\"account\" type=\"" + Account.class.getName() + "\" deduplicate=\"true\">\n"
+            + "    <result property=\"name\" column=\"name\" deduplicate=\"false\"/>\n"
+            + "  </resultMap>\n"
+            + "  <resultMap id=\"extendedAccount\" type=\"" + Account.class.getName() + "\" extends=\"account\"/>\n"
+            + "  <resultMap id=\"plainAccount\" type=\"" + Account.class.getName() + "\">\n"
+            + "    <result property=\"status\" column=\"status\" deduplicate=\"true\"/>\n"
+            + "  </resultMap>\n"
+            + "  <resultMap id=\"tenant\" type=\"" + Tenant.class.getName() + "\">\n"
+            + "    <constructor><arg column=\"tenant_id\" javaType=\"int\" deduplicate=\"true\"/></constructor>\n"
+            + "  </resultMap>\n"
+            + "  <select id=\"selectAccounts\" resultMap=\"account\">select * from account</select>\n"
+            + "  <select id=\"selectExtendedAccounts\" resultMap=\"extendedAccount\">select * from account</select>\n"
+            + "  <select id=\"selectPlainAccounts\" resultMap=\"plainAccount\">select * from account</select>\n"
+            + "  <select id=\"selectTenants\" resultMap=\"tenant\">select * from tenant</select>\n"
+            + "</mapper>";
+
+    private Configuration config;
+    private RecordingConnection jdbc;
+    private SqlSession session;
+
+    @Before
+    public void setup() throws Exception {
+        config = new Configuration();
+        new XMLMapperBuilder(new ByteArrayInputStream(MAPPER.getBytes("UTF-8")), config, "accounts.xml",
+                config.getSqlFragments()).parse();
+        jdbc = new RecordingConnection();
+        jdbc.columnTypes.put("code", Types.INTEGER);
+        jdbc.columnTypes.put("tenant_id", Types.INTEGER);
+        session = new DefaultSqlSession(config, new SimpleExecutor(config, new JdbcTransaction(jdbc.connection())));
+    }
+
+    private void addAccounts() {
+        jdbc.results.add(new Object[][] { { "code", "status", "name" },
+                { "1000", new String("ACTIVE"), new String("jim") },
+                { "1000", new String("ACTIVE"), new String("jim") },
+                { "2000", new String("CLOSED"), new String("sam") } });
+    }
+
+    @Test
+    public void shouldShareRepeatedValuesOfResultMap() {
+        assertTrue(config.getResultMap("accounts.account").hasDeduplicatedValues());
+        addAccounts();
+        List<Account> accounts = session.selectList("selectAccounts");
+        assertEquals(3, accounts.size());
+        assertSame(accounts.get(0).getStatus(), accounts.get(1).getStatus());
+        assertEquals("CLOSED", accounts.get(2).getStatus());
+        // 字段上的设置优先
+        assertEquals(accounts.get(0).getName(), accounts.get(1).getName());
+        assertNotSame(accounts.get(0).getName(), accounts.get(1).getName());
+    }
+
+    @Test
+    public void shouldInheritFromExtendedResultMap() {
+        addAccounts();
+        List<Account> accounts = session.selectList("selectExtendedAccounts");
+        assertSame(accounts.get(0).getStatus(), accounts.get(1).getStatus());
+    }
+
+    @Test
+    public void shouldShareValuesOfMarkedColumnsOnly() {
+        jdbc.results.add(new Object[][] { { "status", "name" }, { new String("ACTIVE"), new String("jim") },
+                { new String("ACTIVE"), new String("jim") } });
+        List<Account> accounts = session.selectList("selectPlainAccounts");
+        assertSame(accounts.get(0).getStatus(), accounts.get(1).getStatus());
+        assertNotSame(accounts.get(0).getName(), accounts.get(1).getName());
+    }
+
+    @Test
+    public void shouldShareConstructorArguments() {
+        jdbc.results.add(new Object[][] { { "tenant_id" }, { "4000" }, { "4000" } });
+        List<Tenant> tenants = session.selectList("selectTenants");
+        assertEquals(Integer.valueOf(4000), tenants.get(0).getTenantId());
+        assertSame(tenants.get(0).getTenantId(), tenants.get(1).getTenantId());
+    }
+
+    @Test
+    public void shouldStopDeduplicatingHighCardinalityColumns() {
+        ValueDictionary dictionary = new ValueDictionary(2, 4, true);
+        for (int i = 0; i < 8; i++) {
+            dictionary.intern(1, "value" + i);
+            dictionary.intern(2, new String("status" + (i % 2)));
+        }
+        assertTrue(dictionary.isDisabled(1));
+        assertFalse(dictionary.isDisabled(2));
+        assertEquals(2, dictionary.size(2));
+        Object first = dictionary.intern(2, new String("status0"));
+        assertSame(first, dictionary.intern(2, new String("status0")));
+    }
+
+    @Test
+    public void shouldKeepBoundedDictionaryWhenNotAdaptive() {
+        ValueDictionary dictionary = new ValueDictionary(1, 4, false);
+        for (int i = 0; i < 8; i++) {
+            dictionary.intern(1, "value" + i);
+        }
+        assertFalse(dictionary.isDisabled(1));
+        assertEquals(4, dictionary.size(1));
+        Object first = dictionary.intern(1, new String("value0"));
+        assertSame(first, dictionary.intern(1, new String("value0")));
+        String unknown = new String("value7");
+        assertSame(unknown, dictionary.intern(1, unknown));
+        // 可变的值不共用实例
+        Date date = new Date(0);
+        assertSame(date, dictionary.intern(1, date));
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.annotations.BatchLookup;
+import org.apache.ibatis.annotations.MapKey;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Test;
+
+/**
+ * 测试按键分块查询
+ */
+public class KeyChunkPartitionerTest {
+
+    interface AuthorMapper {
+
+        @BatchLookup
+        @MapKey("id")
+        @Select("<script>select id, name from author where id in"
+                + "<foreach collection='list' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+        Map<String, Map<String, Object>> selectByIds(Collection<String> ids);
+    }
+
+    interface FilteredAuthorMapper {
+
+        @BatchLookup
+        @MapKey("id")
+        @Select("<script>select id, name from author where name = #{name} and id in"
+                + "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+        Map<String, Map<String, Object>> selectByIds(@Param("ids") Collection<String> ids, @Param("name") String name);
+    }
+
+    private final Configuration configuration = new Configuration();
+
+    @Test
+    public void shouldSplitDistinctKeysIntoChunks() {
+        List<Object> chunks = new KeyChunkPartitioner(4).split(configuration, Arrays.asList(1, 2, 3, 4, 5, 6, 1));
+        assertEquals(2, chunks.size());
+        assertEquals(Arrays.asList(1, 2, 3, 4), keys(chunks.get(0)));
+        assertEquals(Arrays.asList(5, 6), keys(chunks.get(1)));
+    }
+
+    @Test
+    public void shouldPadLastChunkToPowerOfTwo() {
+        List<Object> chunks = new KeyChunkPartitioner(8).split(configuration, Arrays.asList(1, 2, 3, 4, 5));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 5, 5, 5), keys(chunks.get(0)));
+        chunks = new KeyChunkPartitioner(6).split(configuration, Arrays.asList(1, 2, 3, 4, 5));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 5), keys(chunks.get(0)));
+    }
+
+    @Test
+    public void shouldUseConfiguredChunkSizeByDefault() {
+        configuration.setKeyLookupChunkSize(2);
+        assertEquals(3, new KeyChunkPartitioner().split(configuration, Arrays.asList("a", "b", "c", "d", "e")).size());
+        assertTrue(new KeyChunkPartitioner().split(configuration, Arrays.asList()).isEmpty());
+    }
+
+    @Test
+    public void shouldLookUpKeysThroughMapperMethod() {
+        configuration.setKeyLookupChunkSize(2);
+        configuration.addMapper(AuthorMapper.class);
+        RecordingConnection jdbc = new RecordingConnection();
+        jdbc.results.add(new Object[][] { { "id", "name" }, { "1", "jim" }, { "2", "ann" } });
+        jdbc.results.add(new Object[][] { { "id", "name" }, { "3", "bob" } });
+        SqlSession sqlSession = new DefaultSqlSession(configuration,
+                new SimpleExecutor(configuration, new JdbcTransaction(jdbc.connection())), false);
+        Map<String, Map<String, Object>> authors = sqlSession.getMapper(AuthorMapper.class)
+                .selectByIds(Arrays.asList("1", "2", "3"));
+        assertEquals(Arrays.asList("select id, name from author where id in (  ? , ? ) -> [1, 2]",
+                "select id, name from author where id in (  ? ) -> [3]"), jdbc.executed);
+        assertEquals(3, authors.size());
+        assertEquals("ann", authors.get("2").get("name"));
+        assertEquals("bob", authors.get("3").get("name"));
+    }
+
+    @Test
+    public void shouldRejectBatchLookupWithMoreThanOneParameter() {
+        configuration.addMapper(FilteredAuthorMapper.class);
+        RecordingConnection jdbc = new RecordingConnection();
+        SqlSession sqlSession = new DefaultSqlSession(configuration,
+                new SimpleExecutor(configuration, new JdbcTransaction(jdbc.connection())), false);
+        try {
+            sqlSession.getMapper(FilteredAuthorMapper.class).selectByIds(Arrays.asList("1"), "jim");
+            fail("Expected a BindingException");
+        } catch (BindingException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("only parameter"));
+        }
+        assertTrue(jdbc.executed.isEmpty());
+    }
+
+    private static List<?> keys(Object chunk) {
+        return (List<?>) ((Map<?, ?>) chunk).get("list");
+    }
+
+}
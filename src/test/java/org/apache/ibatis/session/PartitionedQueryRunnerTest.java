@@ -0,0 +1,219 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试分区并行查询
+ * 假的session返回从from开始步长为3并且小于to的数字 每个分区的结果有序
+ */
+public class PartitionedQueryRunnerTest {
+
+    private Configuration configuration;
+    private ExecutorService executorService;
+    private PartitionedQueryRunner runner;
+    private static final long BLOCKING_MILLIS = 10000;
+
+    private final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    @Before
+    public void setup() {
+        configuration = new Configuration();
+        executorService = Executors.newFixedThreadPool(4);
+        runner = new PartitionedQueryRunner(sqlSessionFactory(), executorService);
+    }
+
+    @After
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void shouldSplitRangesEvenly() {
+        List<Object> partitions = RangePartitioner.evenly("from", "to", 0, 10, 3).split(configuration, null);
+        assertEquals(3, partitions.size());
+        assertEquals(range(0L, 4L), partitions.get(0));
+        assertEquals(range(4L, 8L), partitions.get(1));
+        assertEquals(range(8L, 10L), partitions.get(2));
+    }
+
+    @Test
+    public void shouldCopyBeanPropertiesIntoEachPartition() {
+        Map<?, ?> partition = (Map<?, ?>) new RangePartitioner("from", "to").range(1, 2)
+                .split(configuration, new RowBounds(5, 7)).get(0);
+        assertEquals(5, partition.get("offset"));
+        assertEquals(7, partition.get("limit"));
+        assertEquals(1, partition.get("from"));
+    }
+
+    @Test
+    public void shouldConcatenatePartitionsInOrder() {
+        configuration.addPartitioner("numbers", RangePartitioner.evenly("from", "to", 0, 12, 3));
+        List<Long> numbers = runner.selectList("numbers", null);
+        assertEquals(Arrays.asList(0L, 3L, 4L, 7L, 8L, 11L), numbers);
+        assertEquals(3, threads.size());
+        assertFalse(threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void shouldMergeOrderedPartitions() {
+        Partitioner partitioner = new RangePartitioner("from", "to").range(0L, 7L).range(1L, 8L).range(2L, 9L);
+        List<Long> numbers = runner.selectList("numbers", null, partitioner, new Comparator<Long>() {
+            @Override
+            public int compare(Long a, Long b) {
+                return a.compareTo(b);
+            }
+        });
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), numbers);
+    }
+
+    @Test
+    public void shouldStreamPartitionsIntoHandler() {
+        configuration.addPartitioner("numbers", RangePartitioner.evenly("from", "to", 0, 12, 4));
+        final List<Long> handled = Collections.synchronizedList(new ArrayList<Long>());
+        runner.select("numbers", null, new ResultHandler<Object>() {
+            @Override
+            public void handleResult(ResultContext<?> context) {
+                handled.add((Long) context.getResultObject());
+            }
+        });
+        Collections.sort(handled);
+        assertEquals(Arrays.asList(0L, 3L, 6L, 9L), handled);
+    }
+
+    @Test
+    public void shouldRunUnpartitionedStatementInCallerThread() {
+        List<Long> numbers = runner.selectList("numbers", range(0L, 4L));
+        assertEquals(Arrays.asList(0L, 3L), numbers);
+        assertEquals(Arrays.asList(Thread.currentThread().getName()), threads);
+    }
+
+    @Test
+    public void shouldPropagatePartitionFailure() {
+        Partitioner partitioner = new RangePartitioner("from", "to").range(0L, 3L).range(-1L, 3L);
+        try {
+            runner.selectList("numbers", null, partitioner, null);
+            fail();
+        } catch (PersistenceException e) {
+            assertEquals("negative lower bound", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldCancelOtherPartitionsOnFirstFailure() throws Exception {
+        Partitioner partitioner = new RangePartitioner("from", "to").range(100L, 103L).range(-1L, 3L);
+        long start = System.currentTimeMillis();
+        try {
+            runner.selectList("numbers", null, partitioner, null);
+            fail();
+        } catch (PersistenceException e) {
+            assertEquals("negative lower bound", e.getMessage());
+        }
+        assertTrue(System.currentTimeMillis() - start < BLOCKING_MILLIS);
+        assertTrue(interrupted.await(BLOCKING_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    private static Map<String, Object> range(Object from, Object to) {
+        Map<String, Object> range = new HashMap<String, Object>();
+        range.put("from", from);
+        range.put("to", to);
+        return range;
+    }
+
+    private SqlSessionFactory sqlSessionFactory() {
+        return (SqlSessionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { SqlSessionFactory.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getConfiguration")) {
+                            return configuration;
+                        }
+                        return sqlSession();
+                    }
+                });
+    }
+
+    private SqlSession sqlSession() {
+        return (SqlSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { SqlSession.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("selectList")) {
+                            return numbers(args[1]);
+                        }
+                        if (method.getName().equals("select")) {
+                            handle(numbers(args[1]), args[2]);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void handle(List<Long> numbers, Object handler) {
+        DefaultResultContext<Object> context = new DefaultResultContext<Object>();
+        for (Long number : numbers) {
+            context.nextResultObject(number);
+            ((ResultHandler<Object>) handler).handleResult(context);
+        }
+    }
+
+    private List<Long> numbers(Object parameter) {
+        threads.add(Thread.currentThread().getName());
+        Map<?, ?> range = (Map<?, ?>) parameter;
+        long from = (Long) range.get("from");
+        if (from < 0) {
+            throw new PersistenceException("negative lower bound");
+        }
+        if (from >= 100) {
+            //一直等到被取消
+            try {
+                Thread.sleep(BLOCKING_MILLIS);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        }
+        List<Long> numbers = new ArrayList<Long>();
+        for (long i = from; i < (Long) range.get("to"); i += 3) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.transaction.routing;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+
+/**
+ * 测试按延迟选择从库 使用注入了延迟和错误的假数据源
+ */
+public class LatencyAwareReplicaSelectorTest {
+
+    @Test
+    public void shouldPreferFastReplicaAndEjectSlowOne() throws Exception {
+        LatencyAwareReplicaSelector selector = new LatencyAwareReplicaSelector();
+        Properties properties = new Properties();
+        properties.setProperty("minEjectionLatency", "5");
+        properties.setProperty("latencyEjectionFactor", "3");
+        selector.setProperties(properties);
+        FakeReplica fast = new FakeReplica("fast", 0, false);
+        FakeReplica slow = new FakeReplica("slow", 30, false);
+        selector.setReplicas(Arrays.asList(fast.dataSource(), slow.dataSource()));
+        Map<String, Integer> counts = run(selector, 40);
+        assertTrue(counts.toString(), counts.get("slow") <= 2);
+        assertEquals(40, counts.get("fast") + counts.get("slow"));
+    }
+
+    @Test
+    public void shouldEjectFailingReplicaUntilEjectionTimeExpires() throws Exception {
+        LatencyAwareReplicaSelector selector = new LatencyAwareReplicaSelector();
+        selector.setMaxErrorRate(0.1);
+        selector.setEjectionTime(200);
+        FakeReplica healthy = new FakeReplica("healthy", 0, false);
+        FakeReplica failing = new FakeReplica("failing", 0, true);
+        selector.setReplicas(Arrays.asList(healthy.dataSource(), failing.dataSource()));
+        Map<String, Integer> counts = run(selector, 30);
+        assertTrue(counts.toString(), counts.get("failing") <= 1);
+        Thread.sleep(250);
+        failing.failing = false;
+        counts = run(selector, 30);
+        assertTrue(counts.toString(), counts.get("failing") > 0);
+    }
+
+    @Test
+    public void shouldNotEjectReplicaForStatementErrors() throws Exception {
+        LatencyAwareReplicaSelector selector = new LatencyAwareReplicaSelector();
+        selector.setMaxErrorRate(0.1);
+        FakeReplica healthy = new FakeReplica("healthy", 0, false);
+        FakeReplica broken = new FakeReplica("failing", 0, true);
+        broken.sqlState = "42000";
+        selector.setReplicas(Arrays.asList(healthy.dataSource(), broken.dataSource()));
+        Map<String, Integer> counts = run(selector, 30);
+        assertTrue(counts.toString(), counts.get("failing") > 5);
+    }
+
+    @Test
+    public void shouldBalanceBetweenEqualReplicasByInFlightConnections() throws Exception {
+        LatencyAwareReplicaSelector selector = new LatencyAwareReplicaSelector();
+        FakeReplica a = new FakeReplica("a", 0, false);
+        FakeReplica b = new FakeReplica("b", 0, false);
+        selector.setReplicas(Arrays.asList(a.dataSource(), b.dataSource()));
+        List<Connection> open = new ArrayList<Connection>();
+        for (int i = 0; i < 10; i++) {
+            open.add(selector.select().getConnection());
+        }
+        assertEquals(5, a.opened);
+        assertEquals(5, b.opened);
+        for (Connection connection : open) {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void shouldUseAllReplicasWhenEveryReplicaIsEjected() throws Exception {
+        LatencyAwareReplicaSelector selector = new LatencyAwareReplicaSelector();
+        FakeReplica failing = new FakeReplica("failing", 0, true);
+        selector.setReplicas(Arrays.asList(failing.dataSource()));
+        run(selector, 5);
+        assertNotNull(selector.select());
+    }
+
+    /**
+     * 模拟会话 每次选择一个从库 打开连接执行一条语句再关闭
+     */
+    private static Map<String, Integer> run(ReplicaSelector selector, int sessions) throws SQLException {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < sessions; i++) {
+            Connection connection = selector.select().getConnection();
+            String name = connection.getCatalog();
+            Integer count = counts.get(name);
+            counts.put(name, count == null ? 1 : count + 1);
+            try {
+                PreparedStatement ps = connection.prepareStatement("select 1");
+                ps.execute();
+            } catch (SQLException e) {
+                // expected for failing replicas
+            } finally {
+                connection.close();
+            }
+        }
+        for (String name : new String[] { "fast", "slow", "healthy", "failing" }) {
+            if (!counts.containsKey(name)) {
+                counts.put(name, 0);
+            }
+        }
+        return counts;
+    }
+
+    private static class FakeReplica {
+
+        private final String name;
+        private final long delay;
+        private volatile boolean failing;
+        private volatile String sqlState = "08S01";
+        private int opened;
+
+        FakeReplica(String name, long delay, boolean failing) {
+            this.name = name;
+            this.delay = delay;
+            this.failing = failing;
+        }
+
+        DataSource dataSource() {
+            return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DataSource.class },
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if (method.getName().equals("getConnection")) {
+                                opened++;
+                                return connection();
+                            }
+                            return method.getName().equals("toString") ? name : null;
+                        }
+                    });
+        }
+
+        private Connection connection() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if (method.getName().equals("getCatalog")) {
+                                return name;
+                            }
+                            if (method.getName().equals("prepareStatement")) {
+                                return statement();
+                            }
+                            return null;
+                        }
+                    });
+        }
+
+        private PreparedStatement statement() {
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("execute")) {
+                                Thread.sleep(delay);
+                                if (failing) {
+                                    throw new SQLException("replica " + name + " is down", sqlState);
+                                }
+                                return true;
+                            }
+                            return null;
+                        }
+                    });
+        }
+
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2009-2019 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.transaction.routing;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.executor.RecordingConnection;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试读写分离
+ */
+public class ReadWriteSplittingTransactionTest {
+
+    private Configuration config;
+    private RecordingConnection primary;
+    private RecordingConnection replica;
+    private DefaultSqlSessionFactory sqlSessionFactory;
+
+    @Before
+    public void setup() {
+        config = new Configuration();
+        primary = new RecordingConnection();
+        replica = new RecordingConnection();
+        RoundRobinReplicaSelector selector = new RoundRobinReplicaSelector();
+        selector.setReplicas(Arrays.asList(dataSource(replica)));
+        config.setEnvironment(new Environment.Builder("test").transactionFactory(new JdbcTransactionFactory())
+                .dataSource(dataSource(primary)).replicaSelector(selector).build());
+        statement("selectNames", "select name from names", SqlCommandType.SELECT, false);
+        statement("lockNames", "select name from names for update", SqlCommandType.SELECT, true);
+        statement("deleteNames", "delete from names", SqlCommandType.DELETE, true);
+        sqlSessionFactory = new DefaultSqlSessionFactory(config);
+    }
+
+    @Test
+    public void shouldRouteReadsToReplica() {
+        SqlSession sqlSession = sqlSessionFactory.openSession(true);
+        try {
+            sqlSession.selectList("selectNames");
+            assertEquals(Arrays.asList("select name from names"), replica.prepared);
+            assertTrue(primary.prepared.isEmpty());
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    @Test
+    public void shouldStickToPrimaryAfterWrite() {
+        SqlSession sqlSession = sqlSessionFactory.openSession(true);
+        try {
+            sqlSession.selectList("selectNames");
+            sqlSession.delete("deleteNames");
+            sqlSession.selectList("selectNames");
+            assertEquals(Arrays.asList("select name from names"), replica.prepared);
+            assertEquals(Arrays.asList("delete from names", "select name from names"), primary.prepared);
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    @Test
+    public void shouldRouteFlushCacheSelectsToPrimary() {
+        SqlSession sqlSession = sqlSessionFactory.openSession(true);
+        try {
+            sqlSession.selectList("lockNames");
+            assertEquals(Arrays.asList("select name from names for update"), primary.prepared);
+            assertTrue(replica.prepared.isEmpty());
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    @Test
+    public void shouldPinTransactionalSessionToPrimary() {
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+            sqlSession.selectList("selectNames");
+            sqlSession.delete("deleteNames");
+            assertEquals(Arrays.asList("select name from names", "delete from names"), primary.prepared);
+            assertTrue(replica.prepared.isEmpty());
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    @Test
+    public void shouldApplyIsolationLevelToReplica() throws Exception {
+        ReadWriteSplittingTransaction transaction = new ReadWriteSplittingTransaction(null,
+                config.getEnvironment().getReplicaSelector(), TransactionIsolationLevel.SERIALIZABLE, true);
+        transaction.getConnection(config.getMappedStatement("selectNames"));
+        assertEquals(Integer.valueOf(Connection.TRANSACTION_SERIALIZABLE), replica.transactionIsolation);
+    }
+
+    @Test
+    public void shouldParseReplicasFromXml() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+                + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+                + "<configuration><environments default=\"development\"><environment id=\"development\">"
+                + "<transactionManager type=\"JDBC\"/><dataSource type=\"UNPOOLED\"/>"
+                + "<replicas><dataSource type=\"UNPOOLED\"/><dataSource type=\"UNPOOLED\"/></replicas>"
+                + "</environment></environments></configuration>";
+        Configuration configuration = new XMLConfigBuilder(new StringReader(xml)).parse();
+        ReplicaSelector selector = configuration.getEnvironment().getReplicaSelector();
+        assertTrue(selector instanceof RoundRobinReplicaSelector);
+        DataSource first = selector.select();
+        DataSource second = selector.select();
+        assertNotSame(first, second);
+        assertSame(first, selector.select());
+    }
+
+    private void statement(String id, String sql, SqlCommandType type, boolean flushCache) {
+        List<ResultMap> resultMaps = new ArrayList<ResultMap>();
+        resultMaps.add(new ResultMap.Builder(config, id + "-Inline", HashMap.class, new ArrayList<ResultMapping>())
+                .build());
+        config.addMappedStatement(new MappedStatement.Builder(config, id,
+                new StaticSqlSource(config, sql, new ArrayList<ParameterMapping>()), type).resultMaps(resultMaps)
+                .flushCacheRequired(flushCache).build());
+    }
+
+    private static DataSource dataSource(final RecordingConnection jdbc) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[] { DataSource.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return method.getName().equals("getConnection") ? jdbc.connection() : null;
+                    }
+                });
+    }
+
+}